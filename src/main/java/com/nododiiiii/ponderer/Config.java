@@ -12,5 +12,24 @@ public class Config {
                  "the built-in Blueprint item will not appear in the creative tab.")
         .define("blueprintCarrierItem", "minecraft:paper");
 
+    public static final ModConfigSpec.BooleanValue SUBSCRIBE_SCENE_UPDATES = BUILDER
+        .comment("Subscribe to live scene updates when joining a server with Ponderer installed.",
+                 "Scenes uploaded by other authors are then pushed to this client as they are saved,",
+                 "without having to run /ponderer pull.")
+        .define("subscribeSceneUpdates", false);
+
+    public static final ModConfigSpec.BooleanValue LAZY_SCENE_FETCH = BUILDER
+        .comment("Only download the scene index when joining a server.",
+                 "A scene and its structures are fetched the first time its ponder is opened,",
+                 "so large server libraries do not have to be downloaded up front.")
+        .define("lazySceneFetch", false);
+
+    public static final ModConfigSpec.BooleanValue LIVE_EDIT_SYNC = BUILDER
+        .comment("Send each change made in the scene editor to the server as it happens.",
+                 "Only the edited step or segment is sent, and edits by other authors of the same scene",
+                 "are merged in live. Applies to scenes that are in sync with the server; others still",
+                 "need /ponderer push.")
+        .define("liveEditSync", false);
+
     public static final ModConfigSpec SPEC = BUILDER.build();
 }
@@ -6,16 +6,19 @@ import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.config.ModConfig;
 import net.neoforged.fml.event.lifecycle.FMLClientSetupEvent;
 import net.neoforged.neoforge.client.event.RegisterClientCommandsEvent;
+import net.neoforged.neoforge.client.event.RegisterClientReloadListenersEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.BuildCreativeModeTabContentsEvent;
 import com.nododiiiii.ponderer.blueprint.BlueprintFeature;
 import com.nododiiiii.ponderer.ponder.DynamicPonderPlugin;
+import com.nododiiiii.ponderer.ponder.LocalizedText;
 import com.nododiiiii.ponderer.ponder.PondererClientCommands;
 import com.nododiiiii.ponderer.ponder.SceneStore;
 import com.nododiiiii.ponderer.registry.ModItems;
 import net.createmod.ponder.foundation.PonderIndex;
 import net.createmod.ponder.enums.PonderConfig;
 import com.nododiiiii.ponderer.network.PondererNetwork;
+import net.minecraft.server.packs.resources.ResourceManagerReloadListener;
 import net.minecraft.world.item.CreativeModeTabs;
 import net.minecraft.world.item.ItemStack;
 import net.neoforged.neoforge.network.event.RegisterPayloadHandlersEvent;
@@ -27,10 +30,12 @@ public class Ponderer {
     public Ponderer(IEventBus modEventBus, ModContainer modContainer) {
         ModItems.ITEMS.register(modEventBus);
         modContainer.registerConfig(ModConfig.Type.CLIENT, Config.SPEC);
+        modContainer.registerConfig(ModConfig.Type.SERVER, ServerConfig.SPEC);
 
         modEventBus.addListener(this::onClientSetup);
         modEventBus.addListener(this::onRegisterPayloads);
         modEventBus.addListener(this::onBuildCreativeTab);
+        modEventBus.addListener(this::onRegisterClientReloadListeners);
         NeoForge.EVENT_BUS.addListener(this::onRegisterClientCommands);
     }
 
@@ -44,6 +49,11 @@ public class Ponderer {
         });
     }
 
+    private void onRegisterClientReloadListeners(RegisterClientReloadListenersEvent event) {
+        // Changing the language reloads resources; resolved texts are cached until then
+        event.registerReloadListener((ResourceManagerReloadListener) manager -> LocalizedText.onLanguageChanged());
+    }
+
     private void onRegisterClientCommands(RegisterClientCommandsEvent event) {
         PondererClientCommands.register(event);
     }
@@ -0,0 +1,64 @@
+package com.nododiiiii.ponderer;
+
+import net.neoforged.neoforge.common.ModConfigSpec;
+
+public class ServerConfig {
+    private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
+
+    public static final ModConfigSpec.IntValue SYNC_REQUEST_BURST = BUILDER
+        .comment("How many pull/download requests a single player may send back to back",
+                 "before being throttled to syncRequestsPerMinute.")
+        .defineInRange("syncRequestBurst", 4, 1, 1000);
+
+    public static final ModConfigSpec.IntValue SYNC_REQUESTS_PER_MINUTE = BUILDER
+        .comment("Sustained rate of pull/download requests allowed per player.")
+        .defineInRange("syncRequestsPerMinute", 12, 1, 6000);
+
+    public static final ModConfigSpec.IntValue SYNC_MEGABYTES_PER_MINUTE = BUILDER
+        .comment("Sustained amount of scene and structure data (in MiB) sent to a single player per minute.",
+                 "A request is still answered in full once started; further requests wait until the budget recovers.")
+        .defineInRange("syncMegabytesPerMinute", 64, 1, 65536);
+
+    public static final ModConfigSpec.IntValue MAX_CONCURRENT_SYNCS = BUILDER
+        .comment("How many pull/download requests the server prepares at the same time across all players.",
+                 "Further requests are queued.")
+        .defineInRange("maxConcurrentSyncs", 2, 1, 64);
+
+    public static final ModConfigSpec.IntValue MAX_SCENE_KILOBYTES = BUILDER
+        .comment("Largest scene JSON (in KiB) accepted from a push. Larger or malformed scenes are rejected before anything is written.")
+        .defineInRange("maxSceneKilobytes", 256, 1, 65536);
+
+    public static final ModConfigSpec.IntValue MAX_STRUCTURE_KILOBYTES = BUILDER
+        .comment("Largest structure file (in KiB, compressed) accepted from a push.")
+        .defineInRange("maxStructureKilobytes", 2048, 1, 262144);
+
+    public static final ModConfigSpec.IntValue MAX_ENTRIES_PER_UPLOAD = BUILDER
+        .comment("Most scenes, and separately most structures, a single push may carry.")
+        .defineInRange("maxEntriesPerUpload", 256, 1, 4096);
+
+    public static final ModConfigSpec.IntValue PLAYER_STORAGE_QUOTA_MEGABYTES = BUILDER
+        .comment("Server storage (in MiB) each non-operator may fill with uploaded scenes and structures.",
+                 "Files count against the player who uploaded them last. 0 disables the quota.")
+        .defineInRange("playerStorageQuotaMegabytes", 64, 0, 1048576);
+
+    public static final ModConfigSpec.IntValue PLAYER_SCENE_LIMIT = BUILDER
+        .comment("Most scenes each non-operator may have stored on the server. 0 means unlimited.",
+                 "Per-player and per-namespace overrides go in world/ponderer/upload_allowlist.txt.")
+        .defineInRange("playerSceneLimit", 0, 0, 1000000);
+
+    public static final ModConfigSpec.IntValue PLAYER_STRUCTURE_MEGABYTES = BUILDER
+        .comment("Structure storage (in MiB) each non-operator may fill; it also counts towards playerStorageQuotaMegabytes.",
+                 "0 means unlimited.")
+        .defineInRange("playerStructureMegabytes", 0, 0, 1048576);
+
+    public static final ModConfigSpec.IntValue PLAYER_UPLOADS_PER_MINUTE = BUILDER
+        .comment("Most pushes a non-operator may make per minute; a batch push counts once. 0 means unlimited.")
+        .defineInRange("playerUploadsPerMinute", 20, 0, 6000);
+
+    public static final ModConfigSpec.IntValue LIVE_EDITS_PER_UPLOAD = BUILDER
+        .comment("Live-edit batches a non-operator may send per minute, as a multiple of their upload limits",
+                 "(playerUploadsPerMinute and the namespace limits). Edits are counted separately from pushes.")
+        .defineInRange("liveEditsPerUpload", 10, 1, 1000);
+
+    public static final ModConfigSpec SPEC = BUILDER.build();
+}
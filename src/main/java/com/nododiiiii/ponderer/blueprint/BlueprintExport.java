@@ -1,15 +1,18 @@
 package com.nododiiiii.ponderer.blueprint;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
 
 import com.mojang.logging.LogUtils;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtIo;
@@ -25,18 +28,45 @@ import net.minecraft.world.level.levelgen.structure.templatesystem.StructureTemp
 public class BlueprintExport {
     private static final Logger LOGGER = LogUtils.getLogger();
 
-    @Nullable
-    public static ExportResult saveBlueprint(Path dir, String fileName, boolean overwrite,
-                                             Level level, BlockPos first, BlockPos second) {
+    /**
+     * Capture the selection on the calling (main) thread, then convert, compress and write it on
+     * background threads. The file is written to a temporary name and moved into place.
+     *
+     * @return the saved file, or null if writing it failed
+     */
+    public static CompletableFuture<ExportResult> saveBlueprint(Path dir, String fileName, boolean overwrite,
+                                                                Level level, BlockPos first, BlockPos second) {
         BoundingBox bb = BoundingBox.fromCorners(first, second);
         BlockPos origin = new BlockPos(bb.minX(), bb.minY(), bb.minZ());
         BlockPos bounds = new BlockPos(bb.getXSpan(), bb.getYSpan(), bb.getZSpan());
 
+        // Only reading the world has to happen here; the template is not shared after this
         StructureTemplate structure = new StructureTemplate();
         structure.fillFromWorld(level, origin, bounds, true, Blocks.AIR);
+
+        return CompletableFuture.supplyAsync(() -> compress(structure), Util.backgroundExecutor())
+            .thenApplyAsync(bytes -> write(bytes, dir, fileName, overwrite, origin, bounds), Util.ioPool())
+            .exceptionally(e -> {
+                LOGGER.error("An error occurred while saving blueprint [{}]", fileName, e);
+                return null;
+            });
+    }
+
+    private static byte[] compress(StructureTemplate structure) {
         CompoundTag data = structure.save(new CompoundTag());
         BlueprintItem.replaceStructureVoidWithAir(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            NbtIo.writeCompressed(data, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
 
+    @Nullable
+    private static ExportResult write(byte[] bytes, Path dir, String fileName, boolean overwrite,
+                                      BlockPos origin, BlockPos bounds) {
         if (fileName.isEmpty())
             fileName = "blueprint";
         if (!overwrite)
@@ -47,10 +77,10 @@ public class BlueprintExport {
 
         try {
             Files.createDirectories(dir);
-            boolean overwritten = Files.deleteIfExists(file);
-            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE)) {
-                NbtIo.writeCompressed(data, out);
-            }
+            boolean overwritten = Files.exists(file);
+            Path tmp = file.resolveSibling(fileName + ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             return new ExportResult(file, dir, fileName, overwritten, origin, bounds);
         } catch (IOException e) {
             LOGGER.error("An error occurred while saving blueprint [{}]", fileName, e);
@@ -197,11 +197,16 @@ public class BlueprintHandler {
         LocalPlayer player = mc.player;
         if (player == null || firstPos == null || secondPos == null) return;
 
+        BlockPos first = firstPos;
+        BlockPos second = secondPos;
         Path dir = SceneStore.getStructureDir();
-        BlueprintExport.ExportResult result = BlueprintExport.saveBlueprint(
-                dir, name, true,
-                mc.level, firstPos, secondPos
-        );
+        sendStatus(player, Component.translatable("item.ponderer.blueprint.saving"));
+        BlueprintExport.saveBlueprint(dir, name, true, mc.level, first, second)
+                .thenAcceptAsync(result -> onSaved(result, first, second), mc);
+    }
+
+    private void onSaved(BlueprintExport.ExportResult result, BlockPos first, BlockPos second) {
+        LocalPlayer player = Minecraft.getInstance().player;
         if (result == null) {
             sendStatus(player, Component.translatable("item.ponderer.blueprint.save_failed")
                     .withStyle(ChatFormatting.RED));
@@ -215,8 +220,11 @@ public class BlueprintHandler {
         String id = "ponderer:" + savedName;
         sendStatus(player, Component.translatable("item.ponderer.blueprint.saved", id)
                 .withStyle(ChatFormatting.GREEN));
-        firstPos = null;
-        secondPos = null;
+        // Keep a selection the player started while this one was being written
+        if (first.equals(firstPos) && second.equals(secondPos)) {
+            firstPos = null;
+            secondPos = null;
+        }
     }
 
     // -- helpers ------------------------------------------------------------------
@@ -2,6 +2,7 @@ package com.nododiiiii.ponderer.mixin;
 
 import com.mojang.logging.LogUtils;
 import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.LazyFetch;
 import com.nododiiiii.ponderer.ponder.SceneStore;
 import net.createmod.ponder.foundation.registration.PonderSceneRegistry;
 import net.minecraft.client.Minecraft;
@@ -31,9 +32,13 @@ public class PonderSceneRegistryMixin {
     private static void ponderer$loadLocalSchematic(ResourceManager resourceManager, ResourceLocation location,
                                                     CallbackInfoReturnable<StructureTemplate> cir) {
         if (Ponderer.MODID.equals(location.getNamespace())) {
-            Path path = SceneStore.getStructurePath(location.getPath());
+            Path path = SceneStore.resolveStructure(location);
             if (!Files.exists(path)) {
-                LOGGER.warn("Ponderer schematic missing: {}", path);
+                if (LazyFetch.requestStructure(location)) {
+                    LOGGER.debug("Ponderer schematic {} not cached yet, requested from server", location);
+                } else {
+                    LOGGER.warn("Ponderer schematic missing: {}", path);
+                }
                 return;
             }
 
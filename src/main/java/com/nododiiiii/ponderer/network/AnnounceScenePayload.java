@@ -0,0 +1,90 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client -> Server, first phase of a push: the scene JSON plus the SHA-256 of every
+ * structure it references, without the structure bytes.
+ * <p>
+ * If the server already holds all structures with matching hashes the scene is applied
+ * right away. Otherwise the server answers with {@link MissingStructuresPayload} and the
+ * client follows up with an {@link UploadScenePayload} carrying only the missing blobs.
+ */
+public record AnnounceScenePayload(String sceneId, String json,
+                                   List<StructureHash> structures,
+                                   String mode, String lastSyncHash) implements CustomPacketPayload {
+    public static final Type<AnnounceScenePayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "announce_scene"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, AnnounceScenePayload> CODEC =
+        StreamCodec.of(AnnounceScenePayload::encode, AnnounceScenePayload::decode);
+
+    public record StructureHash(String id, String sha256) {
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, AnnounceScenePayload payload) {
+        buf.writeUtf(payload.sceneId());
+        UploadScenePayload.writeJson(buf, payload.json());
+        buf.writeVarInt(payload.structures().size());
+        for (StructureHash entry : payload.structures()) {
+            buf.writeUtf(entry.id());
+            buf.writeUtf(entry.sha256());
+        }
+        buf.writeUtf(payload.mode() == null ? "check" : payload.mode());
+        buf.writeUtf(payload.lastSyncHash() == null ? "" : payload.lastSyncHash());
+    }
+
+    private static AnnounceScenePayload decode(RegistryFriendlyByteBuf buf) {
+        String sceneId = buf.readUtf();
+        String json = UploadScenePayload.readJson(buf);
+        int size = UploadScenePayload.readCount(buf);
+        List<StructureHash> structures = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            structures.add(new StructureHash(buf.readUtf(), buf.readUtf()));
+        }
+        String mode = buf.readUtf();
+        String lastSyncHash = buf.readUtf();
+        return new AnnounceScenePayload(sceneId, json, structures, mode, lastSyncHash);
+    }
+
+    public static void handle(AnnounceScenePayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        if (!UploadScenePayload.checkPush(player, payload.sceneId(), payload.mode(), payload.lastSyncHash())) {
+            return;
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (StructureHash entry : payload.structures()) {
+            if (entry == null || entry.id() == null || entry.id().isBlank()) {
+                continue;
+            }
+            String serverHash = SceneStore.hashServerStructure(player.server, entry.id());
+            if (!serverHash.equals(entry.sha256())) {
+                missing.add(entry.id());
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            PacketDistributor.sendToPlayer(player, new MissingStructuresPayload(payload.sceneId(), missing));
+            return;
+        }
+        UploadScenePayload.apply(player, payload.sceneId(), payload.json(), List.of());
+    }
+}
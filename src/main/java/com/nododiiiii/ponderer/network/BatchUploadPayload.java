@@ -0,0 +1,201 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.SyncMeta;
+import com.nododiiiii.ponderer.ponder.UploadPermissions;
+import com.nododiiiii.ponderer.ponder.UploadValidator;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client -> Server: many scenes pushed at once (used by {@code /ponderer push} without an id).
+ * <p>
+ * Structures are deduplicated across scenes and, like {@link AnnounceScenePayload}, are first
+ * sent as hashes only ({@code bytes} empty). The server answers with
+ * {@link MissingStructuresPayload} if it needs any blobs, and the client resends the batch
+ * with just those filled in. The batch is applied as one transaction: either every scene
+ * and structure is written, or none is.
+ */
+public record BatchUploadPayload(String batchId, List<SceneEntry> scenes,
+                                 List<StructureBlob> structures, String mode) implements CustomPacketPayload {
+    public static final Type<BatchUploadPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "batch_upload"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, BatchUploadPayload> CODEC =
+        StreamCodec.of(BatchUploadPayload::encode, BatchUploadPayload::decode);
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    public record SceneEntry(String sceneId, String json, String lastSyncHash) {
+    }
+
+    /**
+     * @param bytes empty when only the hash is announced
+     */
+    public record StructureBlob(String id, String sha256, byte[] bytes) {
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    /** Copy of this batch with every structure reduced to its hash. */
+    public BatchUploadPayload withoutBlobs() {
+        return withBlobsFor(Set.of());
+    }
+
+    /** Copy of this batch carrying bytes only for the given structure ids. */
+    public BatchUploadPayload withBlobsFor(Set<String> ids) {
+        List<StructureBlob> blobs = new ArrayList<>(structures.size());
+        for (StructureBlob blob : structures) {
+            blobs.add(ids.contains(blob.id()) ? blob : new StructureBlob(blob.id(), blob.sha256(), NO_BYTES));
+        }
+        return new BatchUploadPayload(batchId, scenes, blobs, mode);
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, BatchUploadPayload payload) {
+        buf.writeUtf(payload.batchId());
+        buf.writeVarInt(payload.scenes().size());
+        for (SceneEntry entry : payload.scenes()) {
+            buf.writeUtf(entry.sceneId());
+            UploadScenePayload.writeJson(buf, entry.json());
+            buf.writeUtf(entry.lastSyncHash() == null ? "" : entry.lastSyncHash());
+        }
+        buf.writeVarInt(payload.structures().size());
+        for (StructureBlob blob : payload.structures()) {
+            buf.writeUtf(blob.id());
+            buf.writeUtf(blob.sha256());
+            buf.writeByteArray(blob.bytes());
+        }
+        buf.writeUtf(payload.mode() == null ? "check" : payload.mode());
+    }
+
+    private static BatchUploadPayload decode(RegistryFriendlyByteBuf buf) {
+        String batchId = buf.readUtf();
+        int sceneCount = UploadScenePayload.readCount(buf);
+        List<SceneEntry> scenes = new ArrayList<>(sceneCount);
+        for (int i = 0; i < sceneCount; i++) {
+            String sceneId = buf.readUtf();
+            String json = UploadScenePayload.readJson(buf);
+            scenes.add(new SceneEntry(sceneId, json, buf.readUtf()));
+        }
+        int structureCount = UploadScenePayload.readCount(buf);
+        List<StructureBlob> structures = new ArrayList<>(structureCount);
+        for (int i = 0; i < structureCount; i++) {
+            structures.add(new StructureBlob(buf.readUtf(), buf.readUtf(), buf.readByteArray()));
+        }
+        String mode = buf.readUtf();
+        return new BatchUploadPayload(batchId, scenes, structures, mode);
+    }
+
+    public static void handle(BatchUploadPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        if (!UploadPermissions.canUpload(player)) {
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.no_permission"));
+            return;
+        }
+
+        // Conflict detection for the whole batch before anything is written
+        if (!"force".equals(payload.mode())) {
+            List<String> conflicts = new ArrayList<>();
+            for (SceneEntry entry : payload.scenes()) {
+                if (UploadScenePayload.isStale(player.server, entry.sceneId(), entry.lastSyncHash())) {
+                    conflicts.add(entry.sceneId());
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                player.sendSystemMessage(Component.translatable("ponderer.cmd.push.batch_conflict", conflicts.size()));
+                PacketDistributor.sendToPlayer(player,
+                    new BatchUploadResponsePayload(payload.batchId(), "conflict", Map.of(), conflicts));
+                return;
+            }
+        }
+
+        Map<String, byte[]> blobs = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (StructureBlob blob : payload.structures()) {
+            if (blob.bytes().length > 0) {
+                if (!SyncMeta.sha256(blob.bytes()).equals(blob.sha256())) {
+                    player.sendSystemMessage(Component.translatable("ponderer.cmd.push.upload_failed", blob.id()));
+                    PacketDistributor.sendToPlayer(player,
+                        new BatchUploadResponsePayload(payload.batchId(), "error", Map.of(), List.of()));
+                    return;
+                }
+                blobs.put(blob.id(), blob.bytes());
+            } else if (!SceneStore.hashServerStructure(player.server, blob.id()).equals(blob.sha256())) {
+                missing.add(blob.id());
+            }
+        }
+        if (!missing.isEmpty()) {
+            PacketDistributor.sendToPlayer(player, new MissingStructuresPayload(payload.batchId(), missing));
+            return;
+        }
+
+        Map<String, String> sceneJson = new LinkedHashMap<>();
+        for (SceneEntry entry : payload.scenes()) {
+            sceneJson.put(entry.sceneId(), entry.json());
+        }
+        Component rejection = UploadValidator.checkRate(player, sceneJson.keySet());
+        if (rejection == null) {
+            rejection = UploadValidator.check(player, sceneJson, blobs);
+        }
+        if (rejection != null) {
+            player.sendSystemMessage(Component.translatable("ponderer.upload.rejected", rejection));
+            PacketDistributor.sendToPlayer(player,
+                new BatchUploadResponsePayload(payload.batchId(), "error", Map.of(), List.of()));
+            return;
+        }
+
+        List<SyncResponsePayload.FileEntry> changedStructures = new ArrayList<>();
+        for (var e : blobs.entrySet()) {
+            if (!SceneStore.isServerStructureUnchanged(player.server, e.getKey(), e.getValue())) {
+                changedStructures.add(new SyncResponsePayload.FileEntry(e.getKey(), e.getValue()));
+            }
+        }
+
+        if (!SceneStore.saveBatchToServer(player.server, sceneJson, blobs)) {
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.batch_failed", sceneJson.size()));
+            PacketDistributor.sendToPlayer(player,
+                new BatchUploadResponsePayload(payload.batchId(), "error", Map.of(), List.of()));
+            return;
+        }
+
+        UploadValidator.recordStored(player, sceneJson, blobs);
+        UploadValidator.countUpload(player, sceneJson.keySet());
+
+        // The stored file is exactly the uploaded UTF-8 JSON, so its hash needs no re-read
+        Map<String, byte[]> sceneBytes = new LinkedHashMap<>();
+        List<SyncResponsePayload.FileEntry> scripts = new ArrayList<>();
+        for (var e : sceneJson.entrySet()) {
+            byte[] bytes = e.getValue().getBytes(StandardCharsets.UTF_8);
+            sceneBytes.put(e.getKey(), bytes);
+            scripts.add(new SyncResponsePayload.FileEntry(e.getKey(), bytes));
+        }
+        Map<String, SceneRevisions.Entry> revisions = SceneRevisions.record(player.server, sceneBytes, blobs);
+        Map<String, String> newHashes = new LinkedHashMap<>();
+        revisions.forEach((id, entry) -> newHashes.put(id, entry.sha256()));
+
+        player.sendSystemMessage(Component.translatable("ponderer.cmd.push.batch_ok", sceneJson.size(), blobs.size()));
+        SceneSubscriptions.broadcast(player.server, player, new SceneDeltaPayload(scripts, changedStructures));
+        PacketDistributor.sendToPlayer(player,
+            new BatchUploadResponsePayload(payload.batchId(), "ok", newHashes, List.of()));
+        RevisionsPayload.sendIfSupported(player, false, revisions);
+    }
+}
@@ -0,0 +1,106 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.PondererClientCommands;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.SyncMeta;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server -> Client summary of a {@link BatchUploadPayload}.
+ * Status is one of "ok", "conflict" (nothing written, see {@code conflicts}) or "error".
+ *
+ * @param sceneHashes server hash of each written scene, keyed by scene id
+ */
+public record BatchUploadResponsePayload(String batchId, String status,
+                                         Map<String, String> sceneHashes,
+                                         List<String> conflicts) implements CustomPacketPayload {
+    public static final Type<BatchUploadResponsePayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "batch_upload_response"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, BatchUploadResponsePayload> CODEC =
+        StreamCodec.of(BatchUploadResponsePayload::encode, BatchUploadResponsePayload::decode);
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, BatchUploadResponsePayload payload) {
+        buf.writeUtf(payload.batchId());
+        buf.writeUtf(payload.status());
+        buf.writeVarInt(payload.sceneHashes().size());
+        for (var e : payload.sceneHashes().entrySet()) {
+            buf.writeUtf(e.getKey());
+            buf.writeUtf(e.getValue());
+        }
+        buf.writeVarInt(payload.conflicts().size());
+        for (String id : payload.conflicts()) {
+            buf.writeUtf(id);
+        }
+    }
+
+    private static BatchUploadResponsePayload decode(RegistryFriendlyByteBuf buf) {
+        String batchId = buf.readUtf();
+        String status = buf.readUtf();
+        int hashCount = buf.readVarInt();
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (int i = 0; i < hashCount; i++) {
+            hashes.put(buf.readUtf(), buf.readUtf());
+        }
+        int conflictCount = buf.readVarInt();
+        List<String> conflicts = new ArrayList<>(conflictCount);
+        for (int i = 0; i < conflictCount; i++) {
+            conflicts.add(buf.readUtf());
+        }
+        return new BatchUploadResponsePayload(batchId, status, hashes, conflicts);
+    }
+
+    public static void handle(BatchUploadResponsePayload payload) {
+        PondererClientCommands.takePendingBatch(payload.batchId());
+
+        if ("ok".equals(payload.status())) {
+            // One SyncMeta update for the whole batch. As with single pushes, the sync point is the
+            // local file in its keys-inlined sync form, falling back to the server hash if it cannot be read.
+            Map<String, byte[]> synced = new HashMap<>();
+            Map<String, String> fallback = new HashMap<>();
+            Path scriptsDir = SceneStore.getSceneDir();
+            for (var e : payload.sceneHashes().entrySet()) {
+                Path localFile = SyncResponsePayload.resolveLocalPath(scriptsDir, e.getKey(), ".json");
+                try {
+                    synced.put("scripts/" + e.getKey(), Files.readAllBytes(localFile));
+                } catch (IOException ex) {
+                    fallback.put("scripts/" + e.getKey(), e.getValue());
+                }
+            }
+            SyncMeta.recordHashes(synced);
+            SyncMeta.putHashes(fallback);
+            SyncMeta.flush();
+            notifyClient(Component.translatable("ponderer.cmd.push.batch_done", payload.sceneHashes().size()));
+        } else if ("conflict".equals(payload.status())) {
+            for (String id : payload.conflicts()) {
+                notifyClient(Component.translatable("ponderer.cmd.push.conflict", id));
+            }
+            notifyClient(Component.translatable("ponderer.cmd.push.batch_rejected", payload.conflicts().size()));
+        }
+    }
+
+    private static void notifyClient(Component message) {
+        if (Minecraft.getInstance().player != null) {
+            Minecraft.getInstance().player.displayClientMessage(message, false);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRuntime;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.ServerCache;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Server -> Client: answer to {@link SyncManifestPayload}. Brings the client's cache for this
+ * server up to date; local scene files are never touched.
+ */
+public record CacheDeltaPayload(List<SyncResponsePayload.FileEntry> scripts,
+                                List<SyncResponsePayload.FileEntry> structures,
+                                List<String> removedScripts,
+                                List<String> removedStructures) implements CustomPacketPayload {
+    public static final Type<CacheDeltaPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "cache_delta"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, CacheDeltaPayload> CODEC =
+        StreamCodec.of(CacheDeltaPayload::encode, CacheDeltaPayload::decode);
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, CacheDeltaPayload payload) {
+        writeEntries(buf, payload.scripts());
+        writeEntries(buf, payload.structures());
+        writeIds(buf, payload.removedScripts());
+        writeIds(buf, payload.removedStructures());
+    }
+
+    private static CacheDeltaPayload decode(RegistryFriendlyByteBuf buf) {
+        List<SyncResponsePayload.FileEntry> scripts = readEntries(buf);
+        List<SyncResponsePayload.FileEntry> structures = readEntries(buf);
+        List<String> removedScripts = readIds(buf);
+        List<String> removedStructures = readIds(buf);
+        return new CacheDeltaPayload(scripts, structures, removedScripts, removedStructures);
+    }
+
+    private static void writeEntries(RegistryFriendlyByteBuf buf, List<SyncResponsePayload.FileEntry> entries) {
+        buf.writeVarInt(entries.size());
+        for (SyncResponsePayload.FileEntry entry : entries) {
+            buf.writeUtf(entry.id());
+            buf.writeByteArray(entry.bytes());
+        }
+    }
+
+    private static List<SyncResponsePayload.FileEntry> readEntries(RegistryFriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        List<SyncResponsePayload.FileEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new SyncResponsePayload.FileEntry(buf.readUtf(), buf.readByteArray()));
+        }
+        return entries;
+    }
+
+    private static void writeIds(RegistryFriendlyByteBuf buf, List<String> ids) {
+        buf.writeVarInt(ids.size());
+        for (String id : ids) {
+            buf.writeUtf(id);
+        }
+    }
+
+    private static List<String> readIds(RegistryFriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(buf.readUtf());
+        }
+        return ids;
+    }
+
+    public static void handle(CacheDeltaPayload payload) {
+        int changed = payload.scripts().size() + payload.structures().size();
+        int removed = payload.removedScripts().size() + payload.removedStructures().size();
+        if (changed == 0 && removed == 0) {
+            LOGGER.debug("Server cache is up to date");
+            return;
+        }
+        boolean scenesChanged = !payload.scripts().isEmpty() || !payload.removedScripts().isEmpty();
+        Minecraft mc = Minecraft.getInstance();
+
+        CompletableFuture
+            .supplyAsync(() -> {
+                ServerCache.applyDelta(payload.scripts(), payload.structures(),
+                    payload.removedScripts(), payload.removedStructures());
+                return scenesChanged ? SceneStore.loadScenesFromDisk() : null;
+            }, Util.ioPool())
+            .thenAcceptAsync(scenes -> {
+                if (scenes != null) {
+                    SceneRuntime.setScenes(scenes);
+                    PonderIndex.reload();
+                }
+                if (mc.player != null) {
+                    mc.player.displayClientMessage(Component.translatable("ponderer.sync.cache_updated", changed, removed), false);
+                }
+            }, mc)
+            .exceptionally(e -> {
+                LOGGER.error("Failed to apply cache delta from server", e);
+                return null;
+            });
+    }
+}
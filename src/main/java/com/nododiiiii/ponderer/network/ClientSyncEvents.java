@@ -0,0 +1,116 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Config;
+import com.nododiiiii.ponderer.ponder.LazyFetch;
+import com.nododiiiii.ponderer.ponder.LibraryDigestSync;
+import com.nododiiiii.ponderer.ponder.PondererClientCommands;
+import com.nododiiiii.ponderer.ponder.SceneOpSync;
+import com.nododiiiii.ponderer.ponder.SceneRuntime;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.ServerCache;
+import com.nododiiiii.ponderer.ponder.SyncMeta;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ServerData;
+import net.minecraft.world.level.storage.LevelResource;
+import net.neoforged.api.distmarker.Dist;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.client.event.ClientPlayerNetworkEvent;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.slf4j.Logger;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client-side connection hooks for the ponderer channel.
+ */
+@EventBusSubscriber(value = Dist.CLIENT)
+public class ClientSyncEvents {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    @SubscribeEvent
+    public static void onLoggingIn(ClientPlayerNetworkEvent.LoggingIn event) {
+        SyncCapabilities.resetServer();
+        LazyFetch.reset();
+        LibraryDigestSync.reset();
+        SceneOpSync.reset();
+        // Overlay whatever we cached from this server last time right away
+        ServerCache.activate(serverIdentity());
+        if (ServerCache.hasManifest()) {
+            reloadScenes();
+        }
+
+        var connection = Minecraft.getInstance().getConnection();
+        if (connection == null || !connection.hasChannel(HelloPayload.TYPE)) {
+            // Server predates capability negotiation: stick to the base payloads
+            return;
+        }
+        // Live updates etc. are enabled once the server answers
+        PacketDistributor.sendToServer(HelloPayload.local());
+    }
+
+    @SubscribeEvent
+    public static void onLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        SyncCapabilities.resetServer();
+        PondererClientCommands.clearPendingUploads();
+        LazyFetch.reset();
+        LibraryDigestSync.reset();
+        SceneOpSync.reset();
+        // Every batch flushes on its own; this only catches updates from an interrupted one
+        SyncMeta.flush();
+        boolean hadCachedScenes = SceneRuntime.getScenes().stream().anyMatch(scene -> scene.fromServerCache);
+        ServerCache.activate(null);
+        if (hadCachedScenes) {
+            reloadScenes();
+        }
+    }
+
+    /**
+     * Called once capabilities are known: subscribe to live updates, then either fetch the
+     * scene index (lazy mode) or bring the cache up to date with only what changed, by
+     * revision if the cache knows where it left off, otherwise by comparing digests or hashes.
+     */
+    static void onNegotiated(Set<String> capabilities) {
+        var connection = Minecraft.getInstance().getConnection();
+        if (capabilities.contains(SyncCapabilities.LIVE_UPDATES) && Config.SUBSCRIBE_SCENE_UPDATES.get()
+            && connection != null && connection.hasChannel(SubscribeUpdatesPayload.TYPE)) {
+            PacketDistributor.sendToServer(new SubscribeUpdatesPayload(true));
+        }
+        if (capabilities.contains(SyncCapabilities.LAZY_FETCH) && Config.LAZY_SCENE_FETCH.get()) {
+            PacketDistributor.sendToServer(new SceneIndexRequestPayload());
+        } else if (capabilities.contains(SyncCapabilities.REVISIONS) && ServerCache.headRevision() > 0) {
+            PacketDistributor.sendToServer(new SyncSincePayload(ServerCache.headRevision()));
+        } else if (capabilities.contains(SyncCapabilities.LIBRARY_DIGEST) && ServerCache.hasManifest()) {
+            LibraryDigestSync.refreshCache();
+        } else if (capabilities.contains(SyncCapabilities.DELTA_SYNC) && ServerCache.hasManifest()) {
+            PacketDistributor.sendToServer(new SyncManifestPayload(ServerCache.scriptHashes(), ServerCache.structureHashes()));
+        }
+    }
+
+    private static String serverIdentity() {
+        Minecraft mc = Minecraft.getInstance();
+        if (mc.hasSingleplayerServer() && mc.getSingleplayerServer() != null) {
+            // The save folder, not the level name: two worlds may share a name
+            return "singleplayer:" + mc.getSingleplayerServer().getWorldPath(LevelResource.ROOT).toAbsolutePath().normalize();
+        }
+        ServerData data = mc.getCurrentServer();
+        return data != null ? data.ip : "unknown";
+    }
+
+    private static void reloadScenes() {
+        Minecraft mc = Minecraft.getInstance();
+        CompletableFuture.supplyAsync(SceneStore::loadScenesFromDisk, Util.ioPool())
+            .thenAcceptAsync(scenes -> {
+                SceneRuntime.setScenes(scenes);
+                PonderIndex.reload();
+            }, mc)
+            .exceptionally(e -> {
+                LOGGER.error("Failed to reload scenes for server cache", e);
+                return null;
+            });
+    }
+}
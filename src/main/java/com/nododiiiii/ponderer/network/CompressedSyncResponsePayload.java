@@ -0,0 +1,91 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Ponderer;
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Server -> Client: a {@link SyncResponsePayload} encoded with its normal codec and then deflated.
+ * Scene JSON compresses very well; only used when both sides negotiated
+ * {@link SyncCapabilities#COMPRESSION}.
+ */
+public record CompressedSyncResponsePayload(int rawLength, byte[] data) implements CustomPacketPayload {
+    public static final Type<CompressedSyncResponsePayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "sync_response_deflated"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, CompressedSyncResponsePayload> CODEC =
+        StreamCodec.of(CompressedSyncResponsePayload::encode, CompressedSyncResponsePayload::decode);
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+    /** Refuse to inflate anything claiming to be larger than this. */
+    private static final int MAX_RAW_LENGTH = 256 * 1024 * 1024;
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, CompressedSyncResponsePayload payload) {
+        buf.writeVarInt(payload.rawLength());
+        buf.writeByteArray(payload.data());
+    }
+
+    private static CompressedSyncResponsePayload decode(RegistryFriendlyByteBuf buf) {
+        return new CompressedSyncResponsePayload(buf.readVarInt(), buf.readByteArray());
+    }
+
+    /** Encode and deflate; called on the sync scheduler's worker, not the netty thread. */
+    public static CompressedSyncResponsePayload compress(SyncResponsePayload response, RegistryAccess registryAccess) {
+        RegistryFriendlyByteBuf raw = new RegistryFriendlyByteBuf(Unpooled.buffer(), registryAccess);
+        try {
+            SyncResponsePayload.CODEC.encode(raw, response);
+            int rawLength = raw.readableBytes();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, rawLength / 4));
+            try (OutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED))) {
+                raw.readBytes(deflater, rawLength);
+            }
+            return new CompressedSyncResponsePayload(rawLength, out.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to compress sync response", e);
+        } finally {
+            raw.release();
+        }
+    }
+
+    public SyncResponsePayload decompress(RegistryAccess registryAccess) throws IOException {
+        if (rawLength < 0 || rawLength > MAX_RAW_LENGTH) {
+            throw new IOException("Compressed sync response too large: " + rawLength);
+        }
+        byte[] raw;
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            raw = in.readNBytes(rawLength);
+        }
+        if (raw.length != rawLength) {
+            throw new IOException("Truncated sync response: " + raw.length + " of " + rawLength + " bytes");
+        }
+        RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(Unpooled.wrappedBuffer(raw), registryAccess);
+        return SyncResponsePayload.CODEC.decode(buf);
+    }
+
+    public static void handle(CompressedSyncResponsePayload payload, RegistryAccess registryAccess) {
+        try {
+            SyncResponsePayload.handle(payload.decompress(registryAccess));
+        } catch (IOException e) {
+            LOGGER.error("Failed to inflate sync response", e);
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.nododiiiii.ponderer.network;
 
 import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
 import com.nododiiiii.ponderer.ponder.SceneStore;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.storage.LevelResource;
 import net.neoforged.neoforge.network.PacketDistributor;
@@ -15,6 +17,7 @@ import org.jetbrains.annotations.Nullable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 public record DownloadStructurePayload(String sourceId) implements CustomPacketPayload {
     public static final Type<DownloadStructurePayload> TYPE =
@@ -39,79 +42,105 @@ public record DownloadStructurePayload(String sourceId) implements CustomPacketP
         if (player == null) {
             return;
         }
+        SyncRequestScheduler.submit(player, "download:" + payload.sourceId(), target -> process(payload, target));
+    }
 
+    /**
+     * Read the structure on the sync scheduler's worker, then import it and reply on the server thread,
+     * where every other write to server storage happens.
+     *
+     * @return bytes sent to the player
+     */
+    private static long process(DownloadStructurePayload payload, ServerPlayer player) {
+        MinecraftServer server = player.server;
         ResourceLocation source = ResourceLocation.tryParse(payload.sourceId());
         if (source == null) {
-            player.sendSystemMessage(Component.translatable("ponderer.cmd.download.invalid_id", payload.sourceId()));
-            PacketDistributor.sendToPlayer(player,
-                new DownloadStructureResultPayload(payload.sourceId(), "", false,
-                    "Invalid structure id"));
-            return;
+            server.execute(() -> fail(player, "ponderer.cmd.download.invalid_id", payload.sourceId(), "",
+                "Invalid structure id"));
+            return 0;
         }
 
         Path sourcePath = resolveSourcePath(player, source);
 
         if (sourcePath == null || !Files.exists(sourcePath)) {
-            player.sendSystemMessage(Component.translatable("ponderer.cmd.download.not_found", source.toString()));
-            PacketDistributor.sendToPlayer(player,
-                new DownloadStructureResultPayload(source.toString(), "", false,
-                    "Structure not found"));
-            return;
+            server.execute(() -> fail(player, "ponderer.cmd.download.not_found", source.toString(), "",
+                "Structure not found"));
+            return 0;
         }
 
         ResourceLocation target = source.getNamespace().equals(Ponderer.MODID)
             ? source
             : ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, source.getPath());
+        byte[] bytes;
         try {
-            byte[] bytes = Files.readAllBytes(sourcePath);
-            boolean ok = SceneStore.saveStructureToServer(player.server, target.toString(), bytes);
-            if (!ok) {
-                player.sendSystemMessage(Component.translatable("ponderer.cmd.download.import_failed", source.toString()));
-                PacketDistributor.sendToPlayer(player,
-                    new DownloadStructureResultPayload(source.toString(), target.toString(), false,
-                        "Import failed"));
-                return;
-            }
+            bytes = Files.readAllBytes(sourcePath);
+        } catch (Exception e) {
+            server.execute(() -> fail(player, "ponderer.cmd.download.read_failed", source.toString(), target.toString(),
+                "Read failed"));
+            return 0;
+        }
+        server.execute(() -> importStructure(player, source, target, bytes));
+        // Charged up front; an older client's full pull is scheduled, and charged, on its own
+        return bytes.length;
+    }
 
-            List<SyncResponsePayload.FileEntry> scripts = SceneStore.collectServerScripts(player.server);
-            List<SyncResponsePayload.FileEntry> structures = SceneStore.collectServerStructures(player.server);
-            PacketDistributor.sendToPlayer(player, new SyncResponsePayload(scripts, structures));
+    /** Store the downloaded structure, bump its revision and reply. Server thread only. */
+    private static void importStructure(ServerPlayer player, ResourceLocation source, ResourceLocation target, byte[] bytes) {
+        if (player.hasDisconnected()) {
+            return;
+        }
+        boolean ok = SceneStore.saveStructureToServer(player.server, target.toString(), bytes);
+        if (!ok) {
+            fail(player, "ponderer.cmd.download.import_failed", source.toString(), target.toString(), "Import failed");
+            return;
+        }
 
-            PacketDistributor.sendToPlayer(player,
-                new DownloadStructureResultPayload(source.toString(), target.toString(), true,
-                    "OK"));
+        SceneRevisions.record(player.server, Map.of(), Map.of(target.toString(), bytes));
 
-            player.sendSystemMessage(Component.translatable("ponderer.cmd.download.done", source.toString(), target.toString()));
-        } catch (Exception e) {
-            player.sendSystemMessage(Component.translatable("ponderer.cmd.download.read_failed", source.toString()));
-            PacketDistributor.sendToPlayer(player,
-                new DownloadStructureResultPayload(source.toString(), target.toString(), false,
-                    "Read failed"));
+        if (SyncCapabilities.has(player, SyncCapabilities.TARGETED_DOWNLOAD)) {
+            // Send back just the imported structure; the client writes it in place without a full reload
+            PacketDistributor.sendToPlayer(player, new SceneDeltaPayload(List.of(),
+                List.of(new SyncResponsePayload.FileEntry(target.toString(), bytes))));
+        } else {
+            // Older client: only understands a full library pull, which is read on the scheduler's worker
+            SyncRequestScheduler.submit(player, "sync", SyncRequestPayload::sendLibrary);
         }
+
+        PacketDistributor.sendToPlayer(player,
+            new DownloadStructureResultPayload(source.toString(), target.toString(), true,
+                "OK"));
+
+        player.sendSystemMessage(Component.translatable("ponderer.cmd.download.done", source.toString(), target.toString()));
+    }
+
+    private static void fail(ServerPlayer player, String messageKey, String source, String target, String reason) {
+        player.sendSystemMessage(Component.translatable(messageKey, source));
+        PacketDistributor.sendToPlayer(player, new DownloadStructureResultPayload(source, target, false, reason));
     }
 
+    @Nullable
     private static Path resolveSourcePath(ServerPlayer player, ResourceLocation source) {
         if (Ponderer.MODID.equals(source.getNamespace())) {
-            Path serverRoot = SceneStore.getServerStructureDir(player.server);
-            Path direct = serverRoot.resolve(source.getPath() + ".nbt");
-            if (Files.exists(direct)) {
+            Path direct = SceneStore.resolveServerStructurePath(player.server, source.toString());
+            if (direct != null && Files.exists(direct)) {
                 return direct;
             }
             return null;
         }
 
-        Path generatedPath = player.server.getWorldPath(LevelResource.ROOT)
-            .resolve("generated")
+        // Resource paths may contain "..": keep every candidate inside its root
+        Path generatedRoot = player.server.getWorldPath(LevelResource.ROOT).resolve("generated").normalize();
+        Path generatedPath = generatedRoot
             .resolve(source.getNamespace())
             .resolve("structures")
-            .resolve(source.getPath() + ".nbt");
-        if (Files.exists(generatedPath)) {
+            .resolve(source.getPath() + ".nbt")
+            .normalize();
+        if (generatedPath.startsWith(generatedRoot) && Files.exists(generatedPath)) {
             return generatedPath;
         }
 
-        Path serverRoot = SceneStore.getServerStructureDir(player.server);
-        Path fallback = serverRoot.resolve(source.getNamespace()).resolve(source.getPath() + ".nbt");
-        if (Files.exists(fallback)) {
+        Path fallback = SceneStore.resolveServerStructurePath(player.server, source.toString());
+        if (fallback != null && Files.exists(fallback)) {
             return fallback;
         }
         return null;
@@ -0,0 +1,77 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Ponderer;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Capability handshake, sent in both directions. The client sends its capabilities on login,
+ * the server stores the common set for that player and answers with its own, and the client
+ * stores the common set for the server.
+ */
+public record HelloPayload(int protocol, Set<String> capabilities) implements CustomPacketPayload {
+    /** Informational protocol revision; features are gated on capabilities, not on this number. */
+    public static final int PROTOCOL = 2;
+
+    public static final Type<HelloPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "hello"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, HelloPayload> CODEC =
+        StreamCodec.of(HelloPayload::encode, HelloPayload::decode);
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public static HelloPayload local() {
+        return new HelloPayload(PROTOCOL, SyncCapabilities.SUPPORTED);
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, HelloPayload payload) {
+        buf.writeVarInt(payload.protocol());
+        buf.writeVarInt(payload.capabilities().size());
+        for (String capability : payload.capabilities()) {
+            buf.writeUtf(capability);
+        }
+    }
+
+    private static HelloPayload decode(RegistryFriendlyByteBuf buf) {
+        int protocol = buf.readVarInt();
+        int size = UploadScenePayload.readCount(buf);
+        Set<String> capabilities = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            capabilities.add(buf.readUtf());
+        }
+        return new HelloPayload(protocol, capabilities);
+    }
+
+    public static void handleOnServer(HelloPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        Set<String> common = SyncCapabilities.negotiate(payload.capabilities());
+        SyncCapabilities.setForPlayer(player.getUUID(), common);
+        LOGGER.debug("Player {} (protocol {}) negotiated {}", player.getGameProfile().getName(), payload.protocol(), common);
+        PacketDistributor.sendToPlayer(player, local());
+    }
+
+    public static void handleOnClient(HelloPayload payload) {
+        Set<String> common = SyncCapabilities.negotiate(payload.capabilities());
+        SyncCapabilities.setForServer(common);
+        LOGGER.debug("Server (protocol {}) negotiated {}", payload.protocol(), common);
+
+        ClientSyncEvents.onNegotiated(common);
+    }
+}
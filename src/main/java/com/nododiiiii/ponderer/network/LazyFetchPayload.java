@@ -0,0 +1,127 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.DslScene;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client -> Server: fetch one scene (with the structures it references) or one structure
+ * on demand. Answered with a {@link SceneDeltaPayload}.
+ */
+public record LazyFetchPayload(String kind, String id) implements CustomPacketPayload {
+    public static final String SCENE = "scene";
+    public static final String STRUCTURE = "structure";
+
+    public static final Type<LazyFetchPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "lazy_fetch"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, LazyFetchPayload> CODEC =
+        StreamCodec.of(LazyFetchPayload::encode, LazyFetchPayload::decode);
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, LazyFetchPayload payload) {
+        buf.writeUtf(payload.kind());
+        buf.writeUtf(payload.id());
+    }
+
+    private static LazyFetchPayload decode(RegistryFriendlyByteBuf buf) {
+        return new LazyFetchPayload(buf.readUtf(), buf.readUtf());
+    }
+
+    public static void handle(LazyFetchPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        SyncRequestScheduler.submit(player, "fetch:" + payload.kind() + ":" + payload.id(), target -> {
+            List<SyncResponsePayload.FileEntry> scripts = new ArrayList<>();
+            List<SyncResponsePayload.FileEntry> structures = new ArrayList<>();
+            // Only ids the revision store knows, i.e. files in the library, are served
+            Map<String, SceneRevisions.Entry> known = SceneRevisions.scenes(target.server);
+            Map<String, SceneRevisions.Entry> knownStructures = SceneRevisions.structures(target.server);
+            if (SCENE.equals(payload.kind()) && known.containsKey(payload.id())) {
+                byte[] json = SceneStore.readServerScene(target.server, payload.id());
+                DslScene scene = json == null ? null : SceneStore.parseScene(json);
+                if (scene != null) {
+                    scripts.add(new SyncResponsePayload.FileEntry(payload.id(), json));
+                    addStructures(target, structureRefs(scene), knownStructures, structures);
+                }
+            } else if (STRUCTURE.equals(payload.kind())) {
+                addStructures(target, Set.of(payload.id()), knownStructures, structures);
+            }
+            // An empty delta still tells the client the fetch is over
+            PacketDistributor.sendToPlayer(target, new SceneDeltaPayload(scripts, structures));
+            if (!scripts.isEmpty()) {
+                SceneRevisions.Entry revision = known.get(payload.id());
+                if (revision != null) {
+                    RevisionsPayload.sendIfSupported(target, false, Map.of(payload.id(), revision));
+                }
+            }
+            return SyncResponsePayload.totalBytes(scripts) + SyncResponsePayload.totalBytes(structures);
+        });
+    }
+
+    private static void addStructures(ServerPlayer player, Set<String> ids, Map<String, SceneRevisions.Entry> known,
+                                      List<SyncResponsePayload.FileEntry> out) {
+        for (String id : ids) {
+            if (!known.containsKey(id)) {
+                continue;
+            }
+            byte[] bytes = SceneStore.readServerStructure(player.server, id);
+            if (bytes != null) {
+                out.add(new SyncResponsePayload.FileEntry(id, bytes));
+            }
+        }
+    }
+
+    /** Fully qualified structure ids a scene refers to; bare paths point at Ponder's built-ins. */
+    private static Set<String> structureRefs(DslScene scene) {
+        Set<String> refs = new LinkedHashSet<>();
+        addRef(refs, scene.structure);
+        if (scene.structures != null) {
+            scene.structures.forEach(ref -> addRef(refs, ref));
+        }
+        addStepRefs(refs, scene.steps);
+        if (scene.scenes != null) {
+            for (DslScene.SceneSegment segment : scene.scenes) {
+                if (segment != null) {
+                    addStepRefs(refs, segment.steps);
+                }
+            }
+        }
+        return refs;
+    }
+
+    private static void addStepRefs(Set<String> refs, @Nullable List<DslScene.DslStep> steps) {
+        if (steps == null) {
+            return;
+        }
+        for (DslScene.DslStep step : steps) {
+            if (step != null) {
+                addRef(refs, step.structure);
+            }
+        }
+    }
+
+    private static void addRef(Set<String> refs, @Nullable String ref) {
+        if (ref != null && ref.contains(":") && ResourceLocation.tryParse(ref.trim()) != null) {
+            refs.add(ref.trim());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.LibraryDigest;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Client -> Server: "this is my hash for each of these {@link LibraryDigest} nodes". Answered with
+ * a {@link LibraryDigestReplyPayload} listing the children of every node whose hash differs, so a
+ * client that is in sync gets back an empty reply. Hashes go over the wire as raw 32-byte digests;
+ * an empty hash means the client does not have the node.
+ */
+public record LibraryDigestPayload(int queryId, List<Node> nodes) implements CustomPacketPayload {
+    public static final Type<LibraryDigestPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "library_digest"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, LibraryDigestPayload> CODEC =
+        StreamCodec.of(LibraryDigestPayload::encode, LibraryDigestPayload::decode);
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    public record Node(String path, byte[] hash) {
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, LibraryDigestPayload payload) {
+        buf.writeVarInt(payload.queryId());
+        buf.writeVarInt(payload.nodes().size());
+        for (Node node : payload.nodes()) {
+            buf.writeUtf(node.path());
+            buf.writeByteArray(node.hash());
+        }
+    }
+
+    private static LibraryDigestPayload decode(RegistryFriendlyByteBuf buf) {
+        int queryId = buf.readVarInt();
+        int size = UploadScenePayload.readCount(buf);
+        List<Node> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            nodes.add(new Node(buf.readUtf(), buf.readByteArray(32)));
+        }
+        return new LibraryDigestPayload(queryId, nodes);
+    }
+
+    public static byte[] toBytes(@Nullable String hash) {
+        return hash == null || hash.isEmpty() ? new byte[0] : HEX.parseHex(hash);
+    }
+
+    public static String toHex(byte[] hash) {
+        return HEX.formatHex(hash);
+    }
+
+    public static void handle(LibraryDigestPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        LibraryDigest digest = SceneRevisions.digest(player.server);
+        List<LibraryDigestReplyPayload.Expanded> expanded = new ArrayList<>();
+        for (Node node : payload.nodes()) {
+            String hash = digest.hash(node.path());
+            if (hash != null && Arrays.equals(node.hash(), toBytes(hash))) {
+                continue;
+            }
+            expanded.add(new LibraryDigestReplyPayload.Expanded(node.path(),
+                hash == null ? List.of() : digest.children(node.path())));
+        }
+        PacketDistributor.sendToPlayer(player, new LibraryDigestReplyPayload(payload.queryId(), expanded));
+    }
+}
@@ -0,0 +1,64 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.LibraryDigest;
+import com.nododiiiii.ponderer.ponder.LibraryDigestSync;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server -> Client: answer to a {@link LibraryDigestPayload}. Every queried node whose hash differs
+ * is listed with the server's children of it (none if the server does not have the node).
+ */
+public record LibraryDigestReplyPayload(int queryId, List<Expanded> expanded) implements CustomPacketPayload {
+    public static final Type<LibraryDigestReplyPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "library_digest_reply"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, LibraryDigestReplyPayload> CODEC =
+        StreamCodec.of(LibraryDigestReplyPayload::encode, LibraryDigestReplyPayload::decode);
+
+    public record Expanded(String path, List<LibraryDigest.Child> children) {
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, LibraryDigestReplyPayload payload) {
+        buf.writeVarInt(payload.queryId());
+        buf.writeVarInt(payload.expanded().size());
+        for (Expanded node : payload.expanded()) {
+            buf.writeUtf(node.path());
+            buf.writeVarInt(node.children().size());
+            for (LibraryDigest.Child child : node.children()) {
+                buf.writeUtf(child.name());
+                buf.writeByteArray(LibraryDigestPayload.toBytes(child.hash()));
+            }
+        }
+    }
+
+    private static LibraryDigestReplyPayload decode(RegistryFriendlyByteBuf buf) {
+        int queryId = buf.readVarInt();
+        int size = buf.readVarInt();
+        List<Expanded> expanded = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String path = buf.readUtf();
+            int count = buf.readVarInt();
+            List<LibraryDigest.Child> children = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                children.add(new LibraryDigest.Child(buf.readUtf(), LibraryDigestPayload.toHex(buf.readByteArray(32))));
+            }
+            expanded.add(new Expanded(path, children));
+        }
+        return new LibraryDigestReplyPayload(queryId, expanded);
+    }
+
+    public static void handle(LibraryDigestReplyPayload payload) {
+        LibraryDigestSync.onReply(payload.queryId(), payload.expanded());
+    }
+}
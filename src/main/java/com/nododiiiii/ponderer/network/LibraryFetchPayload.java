@@ -0,0 +1,108 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client -> Server: the files a {@link LibraryDigestPayload} descent found to differ. Answered with a
+ * {@link CacheDeltaPayload} holding the requested files the server has, and the rest as removed.
+ * At most {@link #MAX_IDS} ids per request.
+ */
+public record LibraryFetchPayload(List<String> scripts, List<String> structures) implements CustomPacketPayload {
+    public static final int MAX_IDS = UploadScenePayload.MAX_DECODED_ENTRIES;
+
+    public static final Type<LibraryFetchPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "library_fetch"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, LibraryFetchPayload> CODEC =
+        StreamCodec.of(LibraryFetchPayload::encode, LibraryFetchPayload::decode);
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, LibraryFetchPayload payload) {
+        writeIds(buf, payload.scripts());
+        writeIds(buf, payload.structures());
+    }
+
+    private static LibraryFetchPayload decode(RegistryFriendlyByteBuf buf) {
+        List<String> scripts = readIds(buf);
+        List<String> structures = readIds(buf);
+        return new LibraryFetchPayload(scripts, structures);
+    }
+
+    private static void writeIds(RegistryFriendlyByteBuf buf, List<String> ids) {
+        buf.writeVarInt(ids.size());
+        for (String id : ids) {
+            buf.writeUtf(id);
+        }
+    }
+
+    private static List<String> readIds(RegistryFriendlyByteBuf buf) {
+        int size = UploadScenePayload.readCount(buf);
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(buf.readUtf());
+        }
+        return ids;
+    }
+
+    public static void handle(LibraryFetchPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        // Keyed by the first id: chunks of one descent are distinct requests, repeats of a chunk coalesce
+        String first = !payload.scripts().isEmpty() ? payload.scripts().get(0)
+            : !payload.structures().isEmpty() ? payload.structures().get(0) : "";
+        SyncRequestScheduler.submit(player, "library_fetch:" + first, target -> {
+            // Only ids in the library are read; anything else is reported as removed
+            Map<String, SceneRevisions.Entry> all = SceneRevisions.scenes(target.server);
+            Map<String, SceneRevisions.Entry> allStructures = SceneRevisions.structures(target.server);
+            List<SyncResponsePayload.FileEntry> scripts = new ArrayList<>();
+            List<String> removedScripts = new ArrayList<>();
+            for (String id : payload.scripts()) {
+                byte[] bytes = all.containsKey(id) ? SceneStore.readServerScene(target.server, id) : null;
+                if (bytes != null) {
+                    scripts.add(new SyncResponsePayload.FileEntry(id, bytes));
+                } else {
+                    removedScripts.add(id);
+                }
+            }
+            List<SyncResponsePayload.FileEntry> structures = new ArrayList<>();
+            List<String> removedStructures = new ArrayList<>();
+            for (String id : payload.structures()) {
+                byte[] bytes = allStructures.containsKey(id) ? SceneStore.readServerStructure(target.server, id) : null;
+                if (bytes != null) {
+                    structures.add(new SyncResponsePayload.FileEntry(id, bytes));
+                } else {
+                    removedStructures.add(id);
+                }
+            }
+            PacketDistributor.sendToPlayer(target, new CacheDeltaPayload(scripts, structures, removedScripts, removedStructures));
+
+            Map<String, SceneRevisions.Entry> revisions = new HashMap<>();
+            for (SyncResponsePayload.FileEntry entry : scripts) {
+                SceneRevisions.Entry revision = all.get(entry.id());
+                if (revision != null) {
+                    revisions.put(entry.id(), revision);
+                }
+            }
+            RevisionsPayload.sendIfSupported(target, false, revisions);
+            return SyncResponsePayload.totalBytes(scripts) + SyncResponsePayload.totalBytes(structures);
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.PondererClientCommands;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.neoforged.neoforge.network.PacketDistributor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Server -> Client reply to {@link AnnounceScenePayload} or a hash-only {@link BatchUploadPayload}:
+ * the structure ids whose bytes the server does not have yet. The client completes the push by
+ * sending only those blobs.
+ *
+ * @param uploadId the scene id for single pushes, or the batch id for batch pushes
+ */
+public record MissingStructuresPayload(String uploadId, List<String> structureIds) implements CustomPacketPayload {
+    public static final Type<MissingStructuresPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "missing_structures"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, MissingStructuresPayload> CODEC =
+        StreamCodec.of(MissingStructuresPayload::encode, MissingStructuresPayload::decode);
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, MissingStructuresPayload payload) {
+        buf.writeUtf(payload.uploadId());
+        buf.writeVarInt(payload.structureIds().size());
+        for (String id : payload.structureIds()) {
+            buf.writeUtf(id);
+        }
+    }
+
+    private static MissingStructuresPayload decode(RegistryFriendlyByteBuf buf) {
+        String uploadId = buf.readUtf();
+        int size = buf.readVarInt();
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(buf.readUtf());
+        }
+        return new MissingStructuresPayload(uploadId, ids);
+    }
+
+    public static void handle(MissingStructuresPayload payload) {
+        Set<String> missing = Set.copyOf(payload.structureIds());
+        BatchUploadPayload batch = PondererClientCommands.takePendingBatch(payload.uploadId());
+        if (batch != null) {
+            PacketDistributor.sendToServer(batch.withBlobsFor(missing));
+            return;
+        }
+        UploadScenePayload pending = PondererClientCommands.takePendingUpload(payload.uploadId());
+        if (pending == null) {
+            return;
+        }
+        List<UploadScenePayload.StructureEntry> blobs = pending.structures().stream()
+            .filter(e -> missing.contains(e.id()))
+            .toList();
+        PacketDistributor.sendToServer(new UploadScenePayload(pending.sceneId(), pending.json(), blobs,
+            pending.mode(), pending.lastSyncHash()));
+    }
+}
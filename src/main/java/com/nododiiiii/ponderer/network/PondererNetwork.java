@@ -1,13 +1,15 @@
 package com.nododiiiii.ponderer.network;
 
 import net.neoforged.neoforge.network.event.RegisterPayloadHandlersEvent;
+import net.neoforged.neoforge.network.handling.DirectionalPayloadHandler;
 import net.neoforged.neoforge.network.registration.PayloadRegistrar;
 import net.minecraft.server.level.ServerPlayer;
-import net.neoforged.neoforge.network.PacketDistributor;
-import com.nododiiiii.ponderer.ponder.SceneStore;
-import java.util.List;
 
 public final class PondererNetwork {
+    /**
+     * Version of the base payload set. Bumping it locks out every peer on another version,
+     * so new features are added as optional payloads plus a {@link SyncCapabilities} entry instead.
+     */
     public static final String VERSION = "1";
 
     private PondererNetwork() {
@@ -19,13 +21,7 @@ public final class PondererNetwork {
             ctx.enqueueWork(() -> UploadScenePayload.handle(payload, (ServerPlayer) ctx.player()));
         });
         registrar.playToServer(SyncRequestPayload.TYPE, SyncRequestPayload.CODEC, (payload, ctx) -> {
-            ctx.enqueueWork(() -> {
-                ServerPlayer player = (ServerPlayer) ctx.player();
-                if (player == null) return;
-                List<SyncResponsePayload.FileEntry> scripts = SceneStore.collectServerScripts(player.server);
-                List<SyncResponsePayload.FileEntry> structures = SceneStore.collectServerStructures(player.server);
-                PacketDistributor.sendToPlayer(player, new SyncResponsePayload(scripts, structures));
-            });
+            ctx.enqueueWork(() -> SyncRequestPayload.handle(payload, (ServerPlayer) ctx.player()));
         });
         registrar.playToServer(DownloadStructurePayload.TYPE, DownloadStructurePayload.CODEC, (payload, ctx) -> {
             ctx.enqueueWork(() -> DownloadStructurePayload.handle(payload, (ServerPlayer) ctx.player()));
@@ -39,5 +35,72 @@ public final class PondererNetwork {
         registrar.playToClient(UploadResponsePayload.TYPE, UploadResponsePayload.CODEC, (payload, ctx) -> {
             ctx.enqueueWork(() -> UploadResponsePayload.handle(payload));
         });
+
+        // Optional payloads: a peer without them can still connect, and they are only
+        // sent once the matching capability has been negotiated through HelloPayload.
+        PayloadRegistrar optional = registrar.optional();
+        optional.playBidirectional(HelloPayload.TYPE, HelloPayload.CODEC, new DirectionalPayloadHandler<>(
+            (payload, ctx) -> ctx.enqueueWork(() -> HelloPayload.handleOnClient(payload)),
+            (payload, ctx) -> ctx.enqueueWork(() -> HelloPayload.handleOnServer(payload, (ServerPlayer) ctx.player()))));
+        optional.playToServer(AnnounceScenePayload.TYPE, AnnounceScenePayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> AnnounceScenePayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(BatchUploadPayload.TYPE, BatchUploadPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> BatchUploadPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(SyncManifestPayload.TYPE, SyncManifestPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SyncManifestPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(SceneIndexRequestPayload.TYPE, SceneIndexRequestPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SceneIndexRequestPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(LazyFetchPayload.TYPE, LazyFetchPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> LazyFetchPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(SceneOpsPayload.TYPE, SceneOpsPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SceneOpsPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(SyncSincePayload.TYPE, SyncSincePayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SyncSincePayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(LibraryDigestPayload.TYPE, LibraryDigestPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> LibraryDigestPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(LibraryFetchPayload.TYPE, LibraryFetchPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> LibraryFetchPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToServer(SubscribeUpdatesPayload.TYPE, SubscribeUpdatesPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SubscribeUpdatesPayload.handle(payload, (ServerPlayer) ctx.player()));
+        });
+        optional.playToClient(MissingStructuresPayload.TYPE, MissingStructuresPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> MissingStructuresPayload.handle(payload));
+        });
+        optional.playToClient(BatchUploadResponsePayload.TYPE, BatchUploadResponsePayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> BatchUploadResponsePayload.handle(payload));
+        });
+        optional.playToClient(SceneDeltaPayload.TYPE, SceneDeltaPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SceneDeltaPayload.handle(payload));
+        });
+        optional.playToClient(CacheDeltaPayload.TYPE, CacheDeltaPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> CacheDeltaPayload.handle(payload));
+        });
+        optional.playToClient(SceneIndexPayload.TYPE, SceneIndexPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SceneIndexPayload.handle(payload));
+        });
+        optional.playToClient(SceneOpsResultPayload.TYPE, SceneOpsResultPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SceneOpsResultPayload.handle(payload));
+        });
+        optional.playToClient(SceneOpsAppliedPayload.TYPE, SceneOpsAppliedPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> SceneOpsAppliedPayload.handle(payload));
+        });
+        optional.playToClient(RevisionsPayload.TYPE, RevisionsPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> RevisionsPayload.handle(payload));
+        });
+        optional.playToClient(LibraryDigestReplyPayload.TYPE, LibraryDigestReplyPayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> LibraryDigestReplyPayload.handle(payload));
+        });
+        optional.playToClient(CompressedSyncResponsePayload.TYPE, CompressedSyncResponsePayload.CODEC, (payload, ctx) -> {
+            ctx.enqueueWork(() -> CompressedSyncResponsePayload.handle(payload, ctx.player().registryAccess()));
+        });
     }
-}
\ No newline at end of file
+}
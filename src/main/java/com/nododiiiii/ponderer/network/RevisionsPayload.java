@@ -0,0 +1,86 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.ServerCache;
+import com.nododiiiii.ponderer.ponder.SyncMeta;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server -> Client: current revisions of some scenes.
+ *
+ * @param complete true if the client now holds everything up to {@code head}
+ *                 (after a pull), so its cache may resume from there next time
+ */
+public record RevisionsPayload(long head, boolean complete, List<Entry> scenes) implements CustomPacketPayload {
+    public static final Type<RevisionsPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "revisions"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, RevisionsPayload> CODEC =
+        StreamCodec.of(RevisionsPayload::encode, RevisionsPayload::decode);
+
+    public record Entry(String id, long rev, String sha256) {
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, RevisionsPayload payload) {
+        buf.writeVarLong(payload.head());
+        buf.writeBoolean(payload.complete());
+        buf.writeVarInt(payload.scenes().size());
+        for (Entry entry : payload.scenes()) {
+            buf.writeUtf(entry.id());
+            buf.writeVarLong(entry.rev());
+            buf.writeUtf(entry.sha256());
+        }
+    }
+
+    private static RevisionsPayload decode(RegistryFriendlyByteBuf buf) {
+        long head = buf.readVarLong();
+        boolean complete = buf.readBoolean();
+        int size = buf.readVarInt();
+        List<Entry> scenes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            scenes.add(new Entry(buf.readUtf(), buf.readVarLong(), buf.readUtf()));
+        }
+        return new RevisionsPayload(head, complete, scenes);
+    }
+
+    /** Send revisions to a player that negotiated them; no-op otherwise. */
+    static void sendIfSupported(ServerPlayer player, boolean complete, Map<String, SceneRevisions.Entry> scenes) {
+        if (!SyncCapabilities.has(player, SyncCapabilities.REVISIONS)) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>(scenes.size());
+        scenes.forEach((id, entry) -> entries.add(new Entry(id, entry.rev(), entry.sha256())));
+        PacketDistributor.sendToPlayer(player, new RevisionsPayload(SceneRevisions.head(player.server), complete, entries));
+    }
+
+    public static void handle(RevisionsPayload payload) {
+        Map<String, Long> revisions = new HashMap<>();
+        Map<String, String> hashes = new HashMap<>();
+        for (Entry entry : payload.scenes()) {
+            revisions.put("scripts/" + entry.id(), entry.rev());
+            hashes.put("scripts/" + entry.id(), entry.sha256());
+        }
+        if (!revisions.isEmpty()) {
+            SyncMeta.putRevisions(revisions, hashes, payload.complete());
+            SyncMeta.flush();
+        }
+        if (payload.complete()) {
+            ServerCache.setHeadRevision(payload.head());
+        }
+    }
+}
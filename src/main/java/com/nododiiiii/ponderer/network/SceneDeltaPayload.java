@@ -0,0 +1,179 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.DslScene;
+import com.nododiiiii.ponderer.ponder.DynamicPonderPlugin;
+import com.nododiiiii.ponderer.ponder.LazyFetch;
+import com.nododiiiii.ponderer.ponder.SceneMerge;
+import com.nododiiiii.ponderer.ponder.SceneRuntime;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.ServerCache;
+import com.nododiiiii.ponderer.ponder.SyncMeta;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server -> Client: a small subset of the server library, such as one uploaded scene and the
+ * structures it introduced, or the single structure imported by {@link DownloadStructurePayload}.
+ * The files go into the server cache; local copies are only updated if they already exist.
+ * Unlike {@link SyncResponsePayload} this is applied in place: only the contained scenes are
+ * swapped into {@link SceneRuntime}, nothing is re-read from disk, and a structure-only delta
+ * needs no re-registration at all since schematics are loaded when a scene is opened.
+ */
+public record SceneDeltaPayload(List<SyncResponsePayload.FileEntry> scripts,
+                                List<SyncResponsePayload.FileEntry> structures) implements CustomPacketPayload {
+    public static final Type<SceneDeltaPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "scene_delta"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SceneDeltaPayload> CODEC =
+        StreamCodec.of(SceneDeltaPayload::encode, SceneDeltaPayload::decode);
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, SceneDeltaPayload payload) {
+        writeEntries(buf, payload.scripts());
+        writeEntries(buf, payload.structures());
+    }
+
+    private static SceneDeltaPayload decode(RegistryFriendlyByteBuf buf) {
+        List<SyncResponsePayload.FileEntry> scripts = readEntries(buf);
+        List<SyncResponsePayload.FileEntry> structures = readEntries(buf);
+        return new SceneDeltaPayload(scripts, structures);
+    }
+
+    private static void writeEntries(RegistryFriendlyByteBuf buf, List<SyncResponsePayload.FileEntry> entries) {
+        buf.writeVarInt(entries.size());
+        for (SyncResponsePayload.FileEntry entry : entries) {
+            buf.writeUtf(entry.id());
+            buf.writeByteArray(entry.bytes());
+        }
+    }
+
+    private static List<SyncResponsePayload.FileEntry> readEntries(RegistryFriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        List<SyncResponsePayload.FileEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new SyncResponsePayload.FileEntry(buf.readUtf(), buf.readByteArray()));
+        }
+        return entries;
+    }
+
+    public static void handle(SceneDeltaPayload payload) {
+        Path scriptsDir = SceneStore.getSceneDir();
+        Path structuresDir = SceneStore.getStructureDir();
+        boolean cached = ServerCache.isActive();
+        Map<String, byte[]> syncedHashes = new HashMap<>();
+        boolean reregister = false;
+
+        if (cached) {
+            ServerCache.applyDelta(payload.scripts(), payload.structures(), List.of(), List.of());
+        }
+
+        // Structures first so that re-registered scenes can resolve them immediately
+        for (SyncResponsePayload.FileEntry entry : payload.structures()) {
+            LazyFetch.completeStructure(entry.id());
+            String metaKey = "structures/" + entry.id();
+            Path localFile = SyncResponsePayload.resolveLocalPath(structuresDir, entry.id(), ".nbt");
+            if (cached && !Files.exists(localFile)) {
+                continue;
+            }
+            if (hasLocalChanges(metaKey, entry.bytes(), localFile)) {
+                notifyClient(Component.translatable("ponderer.sync.update_conflict", entry.id()));
+                continue;
+            }
+            SyncResponsePayload.writeFile(structuresDir, entry.id(), entry.bytes(), ".nbt");
+            syncedHashes.put(metaKey, entry.bytes());
+        }
+
+        for (SyncResponsePayload.FileEntry entry : payload.scripts()) {
+            String metaKey = "scripts/" + entry.id();
+            Path localFile = SyncResponsePayload.resolveLocalPath(scriptsDir, entry.id(), ".json");
+            boolean localCopy = !cached || Files.exists(localFile);
+            DslScene scene;
+            byte[] localBytes = entry.bytes();
+            if (localCopy && hasLocalChanges(metaKey, entry.bytes(), localFile)) {
+                // Only a clean merge is applied live; overlapping edits wait for an explicit pull
+                SceneMerge.Result merged = SceneMerge.mergeWithLocal(entry.id(), localFile, entry.bytes(), false);
+                if (merged == null || !merged.conflicts().isEmpty()) {
+                    // The local file overrides the cached one, so the update stays invisible
+                    notifyClient(Component.translatable("ponderer.sync.update_conflict", entry.id()));
+                    continue;
+                }
+                scene = merged.scene();
+                localBytes = SceneStore.toJson(scene).getBytes(StandardCharsets.UTF_8);
+            } else {
+                scene = SceneStore.parseScene(entry.bytes());
+            }
+            if (scene == null) {
+                LOGGER.warn("Ignoring invalid scene update from server: {}", entry.id());
+                continue;
+            }
+            if (localCopy) {
+                SyncResponsePayload.writeFile(scriptsDir, entry.id(), localBytes, ".json");
+                syncedHashes.put(metaKey, entry.bytes());
+            } else if (isShadowedLocally(entry.id())) {
+                // A local scene with this id (saved under another file name) keeps precedence
+                continue;
+            } else {
+                scene.fromServerCache = true;
+            }
+            DslScene previous = SceneRuntime.findById(entry.id());
+            if (previous == null || !DynamicPonderPlugin.registrationKey(previous).equals(DynamicPonderPlugin.registrationKey(scene))) {
+                reregister = true;
+            }
+            SceneRuntime.upsertScene(scene);
+            notifyClient(LazyFetch.completeScene(entry.id())
+                ? Component.translatable("ponderer.lazy.fetched", entry.id())
+                : Component.translatable("ponderer.sync.update_received", entry.id()));
+        }
+
+        if (!syncedHashes.isEmpty()) {
+            SyncMeta.recordHashes(syncedHashes);
+            SyncMeta.flush();
+        }
+        if (reregister) {
+            // A scene's items, tags or segments changed. Ponder cannot unregister one scene's
+            // storyboards, so this takes a full reload; content-only updates skip it
+            PonderIndex.reload();
+        }
+    }
+
+    private static boolean isShadowedLocally(String sceneId) {
+        for (DslScene loaded : SceneRuntime.getScenes()) {
+            if (sceneId.equals(loaded.id)) {
+                return !loaded.fromServerCache;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLocalChanges(String metaKey, byte[] serverContent, Path localFile) {
+        String status = SyncMeta.checkConflict(metaKey, serverContent, localFile);
+        return "local_modified".equals(status) || "both_modified".equals(status);
+    }
+
+    private static void notifyClient(Component message) {
+        if (Minecraft.getInstance().player != null) {
+            Minecraft.getInstance().player.displayClientMessage(message, false);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.LazyFetch;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server -> Client: what the server library contains, without any scene content.
+ * The client registers placeholders for scenes it has not cached yet.
+ */
+public record SceneIndexPayload(List<Entry> entries) implements CustomPacketPayload {
+    public static final Type<SceneIndexPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "scene_index"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SceneIndexPayload> CODEC =
+        StreamCodec.of(SceneIndexPayload::encode, SceneIndexPayload::decode);
+
+    public record Entry(String id, List<String> items, List<String> tags, String sha256) {
+    }
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, SceneIndexPayload payload) {
+        buf.writeVarInt(payload.entries().size());
+        for (Entry entry : payload.entries()) {
+            buf.writeUtf(entry.id());
+            writeStrings(buf, entry.items());
+            writeStrings(buf, entry.tags());
+            buf.writeUtf(entry.sha256());
+        }
+    }
+
+    private static SceneIndexPayload decode(RegistryFriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(buf.readUtf(), readStrings(buf), readStrings(buf), buf.readUtf()));
+        }
+        return new SceneIndexPayload(entries);
+    }
+
+    private static void writeStrings(RegistryFriendlyByteBuf buf, List<String> values) {
+        buf.writeVarInt(values.size());
+        for (String value : values) {
+            buf.writeUtf(value);
+        }
+    }
+
+    private static List<String> readStrings(RegistryFriendlyByteBuf buf) {
+        int size = buf.readVarInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(buf.readUtf());
+        }
+        return values;
+    }
+
+    public static void handle(SceneIndexPayload payload) {
+        LazyFetch.applyIndex(payload.entries());
+    }
+}
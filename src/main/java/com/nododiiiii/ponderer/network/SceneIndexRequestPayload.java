@@ -0,0 +1,50 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client -> Server: ask for the lightweight {@link SceneIndexPayload} instead of the full library.
+ */
+public record SceneIndexRequestPayload() implements CustomPacketPayload {
+    public static final Type<SceneIndexRequestPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "scene_index_request"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SceneIndexRequestPayload> CODEC =
+        StreamCodec.of((buf, payload) -> {}, buf -> new SceneIndexRequestPayload());
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    public static void handle(SceneIndexRequestPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        SyncRequestScheduler.submit(player, "index", target -> {
+            // Answered from the metadata kept with the revisions, without reading the library
+            List<SceneIndexPayload.Entry> entries = new ArrayList<>();
+            long bytes = 0;
+            for (Map.Entry<String, SceneRevisions.Indexed> e : SceneRevisions.sceneIndex(target.server).entrySet()) {
+                SceneRevisions.Indexed indexed = e.getValue();
+                SceneIndexPayload.Entry entry = new SceneIndexPayload.Entry(e.getKey(),
+                    indexed.items(), indexed.tags(), indexed.entry().sha256());
+                entries.add(entry);
+                bytes += entry.id().length() + entry.sha256().length();
+            }
+            PacketDistributor.sendToPlayer(target, new SceneIndexPayload(entries));
+            return bytes;
+        });
+    }
+}
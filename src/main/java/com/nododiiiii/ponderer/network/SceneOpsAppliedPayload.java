@@ -0,0 +1,54 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneOp;
+import com.nododiiiii.ponderer.ponder.SceneOpSync;
+import com.nododiiiii.ponderer.ui.SceneEditorScreen;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.List;
+
+/**
+ * Server -> Client: operations another author applied to a scene, taking it from revision
+ * {@code fromRevision} to {@code revision} (whose stored content hashes to {@code sha256}).
+ */
+public record SceneOpsAppliedPayload(String sceneId, long fromRevision, long revision, String sha256,
+                                     List<SceneOp> ops) implements CustomPacketPayload {
+    public static final Type<SceneOpsAppliedPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "scene_ops_applied"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SceneOpsAppliedPayload> CODEC =
+        StreamCodec.of(SceneOpsAppliedPayload::encode, SceneOpsAppliedPayload::decode);
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, SceneOpsAppliedPayload payload) {
+        buf.writeUtf(payload.sceneId());
+        buf.writeVarLong(payload.fromRevision());
+        buf.writeVarLong(payload.revision());
+        buf.writeUtf(payload.sha256());
+        SceneOpsPayload.writeOps(buf, payload.ops());
+    }
+
+    private static SceneOpsAppliedPayload decode(RegistryFriendlyByteBuf buf) {
+        String sceneId = buf.readUtf();
+        long fromRevision = buf.readVarLong();
+        long revision = buf.readVarLong();
+        String sha256 = buf.readUtf();
+        return new SceneOpsAppliedPayload(sceneId, fromRevision, revision, sha256, SceneOpsPayload.readOps(buf));
+    }
+
+    public static void handle(SceneOpsAppliedPayload payload) {
+        boolean applied = SceneOpSync.onRemote(payload.sceneId(), payload.fromRevision(), payload.revision(),
+            payload.sha256(), payload.ops());
+        if (applied && Minecraft.getInstance().screen instanceof SceneEditorScreen editor) {
+            editor.refreshAfterRemoteEdit(payload.sceneId());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.DslScene;
+import com.nododiiiii.ponderer.ponder.SceneOp;
+import com.nododiiiii.ponderer.ponder.SceneOpLog;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.UploadPermissions;
+import com.nododiiiii.ponderer.ponder.UploadValidator;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client -> Server: editor operations on one scene, made on top of {@code baseRevision}.
+ * <p>
+ * The server applies them to its copy (rebasing over operations other authors got in first),
+ * answers with a {@link SceneOpsResultPayload} and relays the applied operations to subscribers
+ * as a {@link SceneOpsAppliedPayload}, or as the whole scene to those without
+ * {@link SyncCapabilities#SCENE_OPS}.
+ */
+public record SceneOpsPayload(String sceneId, long baseRevision, List<SceneOp> ops) implements CustomPacketPayload {
+    public static final Type<SceneOpsPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "scene_ops"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SceneOpsPayload> CODEC =
+        StreamCodec.of(SceneOpsPayload::encode, SceneOpsPayload::decode);
+
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, SceneOpsPayload payload) {
+        buf.writeUtf(payload.sceneId());
+        buf.writeVarLong(payload.baseRevision());
+        writeOps(buf, payload.ops());
+    }
+
+    private static SceneOpsPayload decode(RegistryFriendlyByteBuf buf) {
+        String sceneId = buf.readUtf();
+        long baseRevision = buf.readVarLong();
+        return new SceneOpsPayload(sceneId, baseRevision, readOps(buf));
+    }
+
+    static void writeOps(RegistryFriendlyByteBuf buf, List<SceneOp> ops) {
+        buf.writeVarInt(ops.size());
+        for (SceneOp op : ops) {
+            buf.writeByte(op.kind().ordinal());
+            // Shifted so the flat step list (-1) stays a one-byte varint
+            buf.writeVarInt(op.segment() + 1);
+            buf.writeVarInt(op.index());
+            buf.writeVarInt(op.target());
+            UploadScenePayload.writeJson(buf, op.json());
+        }
+    }
+
+    static List<SceneOp> readOps(RegistryFriendlyByteBuf buf) {
+        int size = UploadScenePayload.readCount(buf);
+        SceneOp.Kind[] kinds = SceneOp.Kind.values();
+        List<SceneOp> ops = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int kind = buf.readUnsignedByte();
+            if (kind >= kinds.length) {
+                throw new DecoderException("Unknown scene operation: " + kind);
+            }
+            ops.add(new SceneOp(kinds[kind], buf.readVarInt() - 1, buf.readVarInt(), buf.readVarInt(),
+                UploadScenePayload.readJson(buf)));
+        }
+        return ops;
+    }
+
+    public static void handle(SceneOpsPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        String sceneId = payload.sceneId();
+        if (!UploadPermissions.canUpload(player)) {
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.no_permission"));
+            reply(player, sceneId, SceneOpsResultPayload.ERROR, 0, "");
+            return;
+        }
+
+        Component limited = UploadValidator.checkEditRate(player, sceneId);
+        if (limited != null) {
+            player.sendSystemMessage(Component.translatable("ponderer.upload.rejected", limited));
+            reply(player, sceneId, SceneOpsResultPayload.ERROR, 0, "");
+            return;
+        }
+
+        long head = SceneRevisions.sceneRevision(player.server, sceneId);
+        byte[] stored = head == 0 ? null : SceneStore.readServerScene(player.server, sceneId);
+        DslScene scene = stored == null ? null : SceneStore.parseScene(stored);
+        if (scene == null) {
+            reply(player, sceneId, SceneOpsResultPayload.CONFLICT, head, "");
+            return;
+        }
+
+        List<SceneOp> ops = payload.ops();
+        if (payload.baseRevision() != head) {
+            List<SceneOp> missed = payload.baseRevision() > head ? null
+                : SceneOpLog.between(sceneId, payload.baseRevision(), head);
+            SceneOp.Rebased rebased = missed == null ? null : SceneOp.rebase(ops, missed);
+            if (rebased == null) {
+                reply(player, sceneId, SceneOpsResultPayload.CONFLICT, head, "");
+                return;
+            }
+            ops = rebased.ops();
+        }
+        for (SceneOp op : ops) {
+            if (!op.apply(scene)) {
+                reply(player, sceneId, SceneOpsResultPayload.CONFLICT, head, "");
+                return;
+            }
+        }
+
+        String json = SceneStore.toJson(scene);
+        Component rejection = UploadValidator.check(player, Map.of(sceneId, json), Map.of());
+        if (rejection != null) {
+            player.sendSystemMessage(Component.translatable("ponderer.upload.rejected", rejection));
+            reply(player, sceneId, SceneOpsResultPayload.ERROR, head, "");
+            return;
+        }
+        if (!SceneStore.saveToServer(player.server, sceneId, json)) {
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.upload_failed", sceneId));
+            reply(player, sceneId, SceneOpsResultPayload.ERROR, head, "");
+            return;
+        }
+        UploadValidator.recordStored(player, Map.of(sceneId, json), Map.of());
+        UploadValidator.countEdit(player, sceneId);
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        SceneRevisions.Entry entry = SceneRevisions.record(player.server, Map.of(sceneId, bytes), Map.of()).get(sceneId);
+        reply(player, sceneId, SceneOpsResultPayload.OK, entry.rev(), entry.sha256());
+        if (entry.rev() == head) {
+            // The operations left the scene as it was
+            return;
+        }
+        SceneOpLog.record(sceneId, head, entry.rev(), ops);
+        int relayed = SceneSubscriptions.broadcast(player.server, player, SyncCapabilities.SCENE_OPS,
+            new SceneOpsAppliedPayload(sceneId, head, entry.rev(), entry.sha256(), ops),
+            new SceneDeltaPayload(List.of(new SyncResponsePayload.FileEntry(sceneId, bytes)), List.of()));
+        LOGGER.debug("Applied {} operation(s) to {} (r{} -> r{}), relayed to {} player(s)",
+            ops.size(), sceneId, head, entry.rev(), relayed);
+    }
+
+    private static void reply(ServerPlayer player, String sceneId, String status, long revision, String sha256) {
+        PacketDistributor.sendToPlayer(player, new SceneOpsResultPayload(sceneId, status, revision, sha256));
+    }
+}
@@ -0,0 +1,44 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneOpSync;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+
+/**
+ * Server -> Client: outcome of a {@link SceneOpsPayload}.
+ * Status is {@link #OK} (with the new revision and hash of the stored scene),
+ * {@link #CONFLICT} (the operations could not be rebased) or {@link #ERROR}.
+ */
+public record SceneOpsResultPayload(String sceneId, String status, long revision, String sha256) implements CustomPacketPayload {
+    public static final Type<SceneOpsResultPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "scene_ops_result"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SceneOpsResultPayload> CODEC =
+        StreamCodec.of(SceneOpsResultPayload::encode, SceneOpsResultPayload::decode);
+
+    public static final String OK = "ok";
+    public static final String CONFLICT = "conflict";
+    public static final String ERROR = "error";
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, SceneOpsResultPayload payload) {
+        buf.writeUtf(payload.sceneId());
+        buf.writeUtf(payload.status());
+        buf.writeVarLong(payload.revision());
+        buf.writeUtf(payload.sha256());
+    }
+
+    private static SceneOpsResultPayload decode(RegistryFriendlyByteBuf buf) {
+        return new SceneOpsResultPayload(buf.readUtf(), buf.readUtf(), buf.readVarLong(), buf.readUtf());
+    }
+
+    public static void handle(SceneOpsResultPayload payload) {
+        SceneOpSync.onResult(payload.sceneId(), payload.status(), payload.revision(), payload.sha256());
+    }
+}
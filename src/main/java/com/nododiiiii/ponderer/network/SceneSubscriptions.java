@@ -0,0 +1,85 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Server-side registry of players that opted in to live scene updates
+ * via {@link SubscribeUpdatesPayload}.
+ */
+public final class SceneSubscriptions {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Set<UUID> SUBSCRIBERS = ConcurrentHashMap.newKeySet();
+
+    private SceneSubscriptions() {
+    }
+
+    public static void subscribe(ServerPlayer player) {
+        if (!player.connection.hasChannel(SceneDeltaPayload.TYPE)) {
+            // The client can't receive deltas; it keeps pulling instead
+            return;
+        }
+        if (SUBSCRIBERS.add(player.getUUID())) {
+            LOGGER.debug("Player {} subscribed to scene updates", player.getGameProfile().getName());
+        }
+    }
+
+    public static void unsubscribe(UUID playerId) {
+        SUBSCRIBERS.remove(playerId);
+    }
+
+    public static boolean isSubscribed(ServerPlayer player) {
+        return SUBSCRIBERS.contains(player.getUUID());
+    }
+
+    /**
+     * Send a payload to every online subscriber except {@code source} that has its channel.
+     *
+     * @return the number of players the payload was sent to
+     */
+    public static int broadcast(MinecraftServer server, @Nullable ServerPlayer source, CustomPacketPayload payload) {
+        return broadcast(server, source, target -> payload);
+    }
+
+    /**
+     * Like {@link #broadcast(MinecraftServer, ServerPlayer, CustomPacketPayload)}, but subscribers that
+     * negotiated {@code capability} get {@code capable} and the others get {@code fallback}.
+     */
+    public static int broadcast(MinecraftServer server, @Nullable ServerPlayer source, String capability,
+                                CustomPacketPayload capable, CustomPacketPayload fallback) {
+        return broadcast(server, source, target -> SyncCapabilities.has(target, capability) ? capable : fallback);
+    }
+
+    private static int broadcast(MinecraftServer server, @Nullable ServerPlayer source,
+                                 Function<ServerPlayer, CustomPacketPayload> payloadFor) {
+        int sent = 0;
+        for (UUID id : SUBSCRIBERS) {
+            ServerPlayer target = server.getPlayerList().getPlayer(id);
+            if (target == null) {
+                // Logged out without the logout event reaching us (e.g. server crash recovery)
+                SUBSCRIBERS.remove(id);
+                continue;
+            }
+            if (source != null && target.getUUID().equals(source.getUUID())) {
+                continue;
+            }
+            CustomPacketPayload payload = payloadFor.apply(target);
+            if (!target.connection.hasChannel(payload)) {
+                continue;
+            }
+            PacketDistributor.sendToPlayer(target, payload);
+            sent++;
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,29 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.ponder.FileHashCache;
+import com.nododiiiii.ponderer.ponder.SceneOpLog;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+
+/**
+ * Server-side bookkeeping for per-player sync state.
+ */
+@EventBusSubscriber
+public class ServerSyncEvents {
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        SceneSubscriptions.unsubscribe(event.getEntity().getUUID());
+        SyncRequestScheduler.forget(event.getEntity().getUUID());
+        SyncCapabilities.forget(event.getEntity().getUUID());
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(ServerStoppedEvent event) {
+        // Revisions belong to one world; an integrated server may load another next
+        SceneOpLog.clear();
+        FileHashCache.flush();
+    }
+}
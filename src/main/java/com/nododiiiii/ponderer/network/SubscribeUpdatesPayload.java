@@ -0,0 +1,36 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Client -> Server: opt in to (or out of) live scene update broadcasts.
+ */
+public record SubscribeUpdatesPayload(boolean subscribe) implements CustomPacketPayload {
+    public static final Type<SubscribeUpdatesPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "subscribe_updates"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SubscribeUpdatesPayload> CODEC =
+        StreamCodec.of((buf, payload) -> buf.writeBoolean(payload.subscribe()),
+            buf -> new SubscribeUpdatesPayload(buf.readBoolean()));
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    public static void handle(SubscribeUpdatesPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        if (payload.subscribe()) {
+            SceneSubscriptions.subscribe(player);
+        } else {
+            SceneSubscriptions.unsubscribe(player.getUUID());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.nododiiiii.ponderer.network;
+
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional protocol features negotiated through {@link HelloPayload}.
+ * <p>
+ * The base payload set registered under {@link PondererNetwork#VERSION} never changes shape;
+ * every improvement is a capability that is only used when both sides announced it.
+ * Peers that never send a hello (older versions) simply end up with no capabilities
+ * and get today's payloads.
+ */
+public final class SyncCapabilities {
+    /** Push announces structure hashes first and only sends missing blobs. */
+    public static final String STRUCTURE_HASHES = "structure_hashes";
+    /** {@code /ponderer push} sends one {@link BatchUploadPayload}. */
+    public static final String BATCH_UPLOAD = "batch_upload";
+    /** Server pushes {@link SceneDeltaPayload}s to subscribed clients. */
+    public static final String LIVE_UPDATES = "live_updates";
+    /** Structure downloads are answered with the single imported structure. */
+    public static final String TARGETED_DOWNLOAD = "targeted_download";
+    /** Full pulls are sent as {@link CompressedSyncResponsePayload}. */
+    public static final String COMPRESSION = "compression";
+    /** Reconnects send the client's cache manifest and get back only what changed. */
+    public static final String DELTA_SYNC = "delta_sync";
+    /** Login sends only a scene index; scenes and structures are fetched when first opened. */
+    public static final String LAZY_FETCH = "lazy_fetch";
+    /** Server revision numbers: pushes carry a base revision and pulls can start after one. */
+    public static final String REVISIONS = "revisions";
+    /** Editor changes are sent and relayed as {@link SceneOpsPayload}s instead of whole scenes. */
+    public static final String SCENE_OPS = "scene_ops";
+    /** Pulls and cache refreshes compare {@link com.nododiiiii.ponderer.ponder.LibraryDigest} hashes first. */
+    public static final String LIBRARY_DIGEST = "library_digest";
+
+    /** Capabilities this build implements. */
+    public static final Set<String> SUPPORTED = Set.of(
+        STRUCTURE_HASHES, BATCH_UPLOAD, LIVE_UPDATES, TARGETED_DOWNLOAD, COMPRESSION, DELTA_SYNC, LAZY_FETCH, REVISIONS,
+        SCENE_OPS, LIBRARY_DIGEST);
+
+    private static final Map<UUID, Set<String>> PLAYERS = new ConcurrentHashMap<>();
+    private static volatile Set<String> server = Set.of();
+
+    private SyncCapabilities() {
+    }
+
+    static Set<String> negotiate(Set<String> offered) {
+        Set<String> common = new HashSet<>(offered);
+        common.retainAll(SUPPORTED);
+        return Set.copyOf(common);
+    }
+
+    // ---- server side: what each connected client agreed to ----
+
+    public static boolean has(ServerPlayer player, String capability) {
+        return PLAYERS.getOrDefault(player.getUUID(), Set.of()).contains(capability);
+    }
+
+    static void setForPlayer(UUID playerId, Set<String> capabilities) {
+        PLAYERS.put(playerId, capabilities);
+    }
+
+    public static void forget(UUID playerId) {
+        PLAYERS.remove(playerId);
+    }
+
+    // ---- client side: what the current server agreed to ----
+
+    public static boolean serverHas(String capability) {
+        return server.contains(capability);
+    }
+
+    static void setForServer(Set<String> capabilities) {
+        server = capabilities;
+    }
+
+    public static void resetServer() {
+        server = Set.of();
+    }
+}
@@ -0,0 +1,107 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Client -> Server: the hashes of everything in the client's cache for this server.
+ * Answered with a {@link CacheDeltaPayload} holding only changed and removed files.
+ */
+public record SyncManifestPayload(Map<String, String> scripts, Map<String, String> structures) implements CustomPacketPayload {
+    public static final Type<SyncManifestPayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "sync_manifest"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SyncManifestPayload> CODEC =
+        StreamCodec.of(SyncManifestPayload::encode, SyncManifestPayload::decode);
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    private static void encode(RegistryFriendlyByteBuf buf, SyncManifestPayload payload) {
+        writeHashes(buf, payload.scripts());
+        writeHashes(buf, payload.structures());
+    }
+
+    private static SyncManifestPayload decode(RegistryFriendlyByteBuf buf) {
+        Map<String, String> scripts = readHashes(buf);
+        Map<String, String> structures = readHashes(buf);
+        return new SyncManifestPayload(scripts, structures);
+    }
+
+    private static void writeHashes(RegistryFriendlyByteBuf buf, Map<String, String> hashes) {
+        buf.writeVarInt(hashes.size());
+        for (Map.Entry<String, String> e : hashes.entrySet()) {
+            buf.writeUtf(e.getKey());
+            buf.writeUtf(e.getValue());
+        }
+    }
+
+    private static Map<String, String> readHashes(RegistryFriendlyByteBuf buf) {
+        int size = UploadScenePayload.readCount(buf);
+        Map<String, String> hashes = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            hashes.put(buf.readUtf(), buf.readUtf());
+        }
+        return hashes;
+    }
+
+    public static void handle(SyncManifestPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        // Same key as a full pull: a delta and a full pull for the same player are coalesced
+        SyncRequestScheduler.submit(player, "sync", target -> {
+            // Compare against the hashes the revision store keeps; only changed files are read
+            Map<String, SceneRevisions.Entry> sceneEntries = SceneRevisions.scenes(target.server);
+            Map<String, SceneRevisions.Entry> structureEntries = SceneRevisions.structures(target.server);
+            CacheDeltaPayload delta = new CacheDeltaPayload(
+                changed(sceneEntries, payload.scripts(), id -> SceneStore.readServerScene(target.server, id)),
+                changed(structureEntries, payload.structures(), id -> SceneStore.readServerStructure(target.server, id)),
+                removed(sceneEntries, payload.scripts()), removed(structureEntries, payload.structures()));
+            PacketDistributor.sendToPlayer(target, delta);
+            RevisionsPayload.sendIfSupported(target, true, sceneEntries);
+            return SyncResponsePayload.totalBytes(delta.scripts()) + SyncResponsePayload.totalBytes(delta.structures());
+        });
+    }
+
+    private static List<SyncResponsePayload.FileEntry> changed(Map<String, SceneRevisions.Entry> server,
+                                                               Map<String, String> cached,
+                                                               Function<String, byte[]> read) {
+        List<SyncResponsePayload.FileEntry> changed = new ArrayList<>();
+        for (Map.Entry<String, SceneRevisions.Entry> e : server.entrySet()) {
+            if (e.getValue().sha256().equals(cached.get(e.getKey()))) {
+                continue;
+            }
+            byte[] bytes = read.apply(e.getKey());
+            if (bytes != null) {
+                changed.add(new SyncResponsePayload.FileEntry(e.getKey(), bytes));
+            }
+        }
+        return changed;
+    }
+
+    private static List<String> removed(Map<String, SceneRevisions.Entry> server, Map<String, String> cached) {
+        List<String> removed = new ArrayList<>();
+        for (String id : cached.keySet()) {
+            if (!server.containsKey(id)) {
+                removed.add(id);
+            }
+        }
+        return removed;
+    }
+}
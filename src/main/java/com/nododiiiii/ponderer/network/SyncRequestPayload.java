@@ -1,10 +1,17 @@
 package com.nododiiiii.ponderer.network;
 
 import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
 
 public record SyncRequestPayload() implements CustomPacketPayload {
     public static final Type<SyncRequestPayload> TYPE =
@@ -16,4 +23,33 @@ public record SyncRequestPayload() implements CustomPacketPayload {
     public Type<? extends CustomPacketPayload> type() {
         return TYPE;
     }
+
+    public static void handle(SyncRequestPayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        SyncRequestScheduler.submit(player, "sync", SyncRequestPayload::sendLibrary);
+    }
+
+    /**
+     * Send the whole server library, deflated if the client negotiated compression.
+     *
+     * @return bytes put on the wire
+     */
+    static long sendLibrary(ServerPlayer target) {
+        List<SyncResponsePayload.FileEntry> scripts = SceneStore.collectServerScripts(target.server);
+        List<SyncResponsePayload.FileEntry> structures = SceneStore.collectServerStructures(target.server);
+        SyncResponsePayload response = new SyncResponsePayload(scripts, structures);
+        long sent;
+        if (SyncCapabilities.has(target, SyncCapabilities.COMPRESSION)) {
+            CompressedSyncResponsePayload compressed = CompressedSyncResponsePayload.compress(response, target.registryAccess());
+            PacketDistributor.sendToPlayer(target, compressed);
+            sent = compressed.data().length;
+        } else {
+            PacketDistributor.sendToPlayer(target, response);
+            sent = SyncResponsePayload.totalBytes(scripts) + SyncResponsePayload.totalBytes(structures);
+        }
+        RevisionsPayload.sendIfSupported(target, true, SceneRevisions.scenes(target.server));
+        return sent;
+    }
 }
\ No newline at end of file
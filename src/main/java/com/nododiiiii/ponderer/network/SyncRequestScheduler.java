@@ -0,0 +1,160 @@
+package com.nododiiiii.ponderer.network;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.ServerConfig;
+import net.minecraft.Util;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-side admission control for the expensive sync endpoints (full library pulls and
+ * structure downloads).
+ * <ul>
+ *   <li>Duplicate requests from the same player are coalesced while one is queued or running.</li>
+ *   <li>Each player has a token bucket for requests and one for bytes sent.</li>
+ *   <li>At most {@code maxConcurrentSyncs} jobs run at once; the rest wait in a FIFO queue.</li>
+ * </ul>
+ * Jobs run on the IO pool, so library reads never block the server thread.
+ */
+public final class SyncRequestScheduler {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long BYTES_PER_MIB = 1024L * 1024L;
+
+    private static final Map<UUID, Buckets> BUCKETS = new ConcurrentHashMap<>();
+    private static final Set<String> IN_FLIGHT = ConcurrentHashMap.newKeySet();
+    private static final Queue<Runnable> QUEUE = new ArrayDeque<>();
+    private static int running = 0;
+
+    private SyncRequestScheduler() {
+    }
+
+    /**
+     * A unit of sync work. Runs off the server thread and sends its own replies; it may only read
+     * server storage, and hands writes back to the server thread with {@code server.execute}.
+     */
+    @FunctionalInterface
+    public interface Job {
+        /**
+         * @return the number of payload bytes sent to the player, charged to their byte budget
+         */
+        long run(ServerPlayer player) throws Exception;
+    }
+
+    /**
+     * Admit and schedule a request.
+     *
+     * @param requestKey identifies duplicates, e.g. "sync" or "download:minecraft:castle"
+     */
+    public static void submit(ServerPlayer player, String requestKey, Job job) {
+        String flightKey = player.getUUID() + "|" + requestKey;
+        if (!IN_FLIGHT.add(flightKey)) {
+            LOGGER.debug("Coalesced duplicate {} request from {}", requestKey, player.getGameProfile().getName());
+            return;
+        }
+
+        Buckets buckets = BUCKETS.computeIfAbsent(player.getUUID(), id -> new Buckets());
+        if (!buckets.tryAdmit()) {
+            IN_FLIGHT.remove(flightKey);
+            player.sendSystemMessage(Component.translatable("ponderer.sync.rate_limited"));
+            return;
+        }
+
+        enqueue(() -> {
+            try {
+                if (player.hasDisconnected()) {
+                    return;
+                }
+                long sent = job.run(player);
+                buckets.chargeBytes(sent);
+            } catch (Exception e) {
+                LOGGER.warn("Sync request {} for {} failed", requestKey, player.getGameProfile().getName(), e);
+            } finally {
+                IN_FLIGHT.remove(flightKey);
+            }
+        });
+    }
+
+    public static void forget(UUID playerId) {
+        BUCKETS.remove(playerId);
+    }
+
+    private static void enqueue(Runnable task) {
+        synchronized (QUEUE) {
+            QUEUE.add(task);
+        }
+        pump();
+    }
+
+    private static void pump() {
+        synchronized (QUEUE) {
+            int cap = ServerConfig.MAX_CONCURRENT_SYNCS.get();
+            while (running < cap && !QUEUE.isEmpty()) {
+                Runnable task = QUEUE.poll();
+                running++;
+                Util.ioPool().execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        synchronized (QUEUE) {
+                            running--;
+                        }
+                        pump();
+                    }
+                });
+            }
+        }
+    }
+
+    /** Request and byte budgets of one player. */
+    private static final class Buckets {
+        private final TokenBucket requests = new TokenBucket();
+        private final TokenBucket bytes = new TokenBucket();
+
+        synchronized boolean tryAdmit() {
+            double burst = ServerConfig.SYNC_REQUEST_BURST.get();
+            double requestRate = ServerConfig.SYNC_REQUESTS_PER_MINUTE.get() / 60.0;
+            double byteRate = ServerConfig.SYNC_MEGABYTES_PER_MINUTE.get() * BYTES_PER_MIB / 60.0;
+            // The byte bucket may hold up to one minute of budget
+            double byteCapacity = ServerConfig.SYNC_MEGABYTES_PER_MINUTE.get() * BYTES_PER_MIB;
+
+            bytes.refill(byteCapacity, byteRate);
+            if (bytes.tokens <= 0) {
+                return false;
+            }
+            requests.refill(burst, requestRate);
+            if (requests.tokens < 1) {
+                return false;
+            }
+            requests.tokens -= 1;
+            return true;
+        }
+
+        synchronized void chargeBytes(long amount) {
+            // Allowed to go negative: the reply is already sent, later requests wait for the debt to clear
+            bytes.tokens -= amount;
+        }
+    }
+
+    private static final class TokenBucket {
+        private double tokens = Double.NaN;
+        private long lastRefill = System.nanoTime();
+
+        void refill(double capacity, double perSecond) {
+            long now = System.nanoTime();
+            if (Double.isNaN(tokens)) {
+                tokens = capacity;
+            } else {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) / 1_000_000_000.0 * perSecond);
+            }
+            lastRefill = now;
+        }
+    }
+}
@@ -2,21 +2,32 @@ package com.nododiiiii.ponderer.network;
 
 import com.mojang.logging.LogUtils;
 import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.DslScene;
 import com.nododiiiii.ponderer.ponder.PondererClientCommands;
+import com.nododiiiii.ponderer.ponder.SceneMerge;
+import com.nododiiiii.ponderer.ponder.SceneRuntime;
 import com.nododiiiii.ponderer.ponder.SceneStore;
+import com.nododiiiii.ponderer.ponder.ServerCache;
 import com.nododiiiii.ponderer.ponder.SyncMeta;
 import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.components.toasts.SystemToast;
+import net.minecraft.network.chat.Component;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.minecraft.resources.ResourceLocation;
 import org.slf4j.Logger;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public record SyncResponsePayload(List<FileEntry> scripts, List<FileEntry> structures) implements CustomPacketPayload {
     public static final Type<SyncResponsePayload> TYPE =
@@ -25,6 +36,8 @@ public record SyncResponsePayload(List<FileEntry> scripts, List<FileEntry> struc
         StreamCodec.of(SyncResponsePayload::encode, SyncResponsePayload::decode);
 
     private static final Logger LOGGER = LogUtils.getLogger();
+    /** Update the progress toast every this many files. */
+    private static final int PROGRESS_INTERVAL = 16;
 
     @Override
     public Type<? extends CustomPacketPayload> type() {
@@ -34,6 +47,14 @@ public record SyncResponsePayload(List<FileEntry> scripts, List<FileEntry> struc
     public record FileEntry(String id, byte[] bytes) {
     }
 
+    public static long totalBytes(List<FileEntry> entries) {
+        long total = 0;
+        for (FileEntry entry : entries) {
+            total += entry.bytes().length;
+        }
+        return total;
+    }
+
     private static void encode(RegistryFriendlyByteBuf buf, SyncResponsePayload payload) {
         buf.writeVarInt(payload.scripts().size());
         for (FileEntry entry : payload.scripts()) {
@@ -61,98 +82,178 @@ public record SyncResponsePayload(List<FileEntry> scripts, List<FileEntry> struc
         return new SyncResponsePayload(scripts, structures);
     }
 
+    /** Serializes pipelines so a second pull never interleaves with one still being written. */
+    private static CompletableFuture<Void> pipeline = CompletableFuture.completedFuture(null);
+    private static final SystemToast.SystemToastId PROGRESS_TOAST = new SystemToast.SystemToastId(10000L);
+
+    /**
+     * Apply a full pull. Runs as a staged pipeline so large pulls do not freeze the game:
+     * <ol>
+     *   <li>IO pool: server cache, conflict checks, hashing, writes, sync meta, and parsing the new scene set</li>
+     *   <li>main thread: swap the scenes into {@link com.nododiiiii.ponderer.ponder.SceneRuntime},
+     *       re-register with Ponder and report</li>
+     * </ol>
+     * A progress toast is shown while the first stage runs.
+     */
     public static void handle(SyncResponsePayload payload) {
+        String pullMode = PondererClientCommands.consumePullMode();
+        int total = payload.scripts().size() + payload.structures().size();
+        Minecraft mc = Minecraft.getInstance();
+        showProgress(0, total);
+
+        pipeline = pipeline
+            .thenApplyAsync(ignored -> writeFiles(payload, pullMode, total), Util.ioPool())
+            .thenApplyAsync(result -> result == null ? null : result.withScenes(SceneStore.loadScenesFromDisk()), Util.ioPool())
+            .thenAcceptAsync(SyncResponsePayload::commit, mc)
+            .exceptionally(e -> {
+                LOGGER.error("Failed to apply sync from server", e);
+                mc.execute(() -> SystemToast.forceHide(mc.getToasts(), PROGRESS_TOAST));
+                return null;
+            });
+    }
+
+    private record ApplyResult(int written, int skipped, int conflicts, boolean checkMode,
+                               List<Component> messages, List<DslScene> scenes) {
+        ApplyResult withScenes(List<DslScene> loaded) {
+            return new ApplyResult(written, skipped, conflicts, checkMode, messages, loaded);
+        }
+    }
+
+    /**
+     * Stage 1, off-thread: the snapshot replaces this server's cache; local files with the same
+     * id are then updated according to the pull mode (with conflict checks), and are never
+     * created for content that only exists on the server.
+     */
+    private static ApplyResult writeFiles(SyncResponsePayload payload, String pullMode, int total) {
         Path scriptsDir = SceneStore.getSceneDir();
         Path structuresDir = SceneStore.getStructureDir();
+        boolean cached = ServerCache.isActive();
+        if (cached) {
+            ServerCache.replaceAll(payload.scripts(), payload.structures());
+        }
 
         try {
             Files.createDirectories(scriptsDir);
             Files.createDirectories(structuresDir);
         } catch (Exception e) {
             LOGGER.error("Failed to create client sync dirs", e);
-            return;
+            return null;
         }
 
-        String pullMode = PondererClientCommands.consumePullMode();
-        int written = 0;
-        int skipped = 0;
-        int conflicts = 0;
         boolean isCheckMode = "check".equals(pullMode);
-        java.util.Map<String, byte[]> syncedHashes = new java.util.HashMap<>();
+        List<Component> messages = new ArrayList<>();
+        Map<String, byte[]> syncedHashes = new HashMap<>();
+        int[] counts = new int[3]; // written, skipped, conflicts
+        int processed = 0;
 
-        for (FileEntry entry : payload.scripts()) {
-            String metaKey = "scripts/" + entry.id();
-            Path localFile = resolveLocalPath(scriptsDir, entry.id(), ".json");
-
-            if (!"force".equals(pullMode)) {
-                String status = SyncMeta.checkConflict(metaKey, entry.bytes(), localFile);
-                if ("both_modified".equals(status)) {
-                    conflicts++;
-                    if (isCheckMode) {
-                        notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.conflict_both", entry.id()));
-                        skipped++;
-                        continue;
-                    }
-                    if ("keep_local".equals(pullMode)) {
-                        skipped++;
-                        continue;
-                    }
-                    // overwrite mode: warn but continue
-                    notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.conflict_server", entry.id()));
-                } else if ("local_modified".equals(status) && "keep_local".equals(pullMode)) {
-                    skipped++;
-                    continue;
+        for (int pass = 0; pass < 2; pass++) {
+            boolean scripts = pass == 0;
+            List<FileEntry> entries = scripts ? payload.scripts() : payload.structures();
+            Path root = scripts ? scriptsDir : structuresDir;
+            String ext = scripts ? ".json" : ".nbt";
+            String prefix = scripts ? "scripts/" : "structures/";
+
+            for (FileEntry entry : entries) {
+                processed++;
+                if (processed % PROGRESS_INTERVAL == 0) {
+                    int done = processed;
+                    Minecraft.getInstance().execute(() -> showProgress(done, total));
                 }
-            }
 
-            writeFile(scriptsDir, entry.id(), entry.bytes(), ".json");
-            syncedHashes.put(metaKey, entry.bytes());
-            written++;
-        }
+                String metaKey = prefix + entry.id();
+                Path localFile = resolveLocalPath(root, entry.id(), ext);
+                if (cached && !Files.exists(localFile)) {
+                    // Served from the cache overlay, no local copy to keep in step
+                    counts[0]++;
+                    continue;
+                }
 
-        for (FileEntry entry : payload.structures()) {
-            String metaKey = "structures/" + entry.id();
-            Path localFile = resolveLocalPath(structuresDir, entry.id(), ".nbt");
-
-            if (!"force".equals(pullMode)) {
-                String status = SyncMeta.checkConflict(metaKey, entry.bytes(), localFile);
-                if ("both_modified".equals(status)) {
-                    conflicts++;
-                    if (isCheckMode) {
-                        notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.conflict_both", entry.id()));
-                        skipped++;
-                        continue;
+                if (!"force".equals(pullMode)) {
+                    String status = SyncMeta.checkConflict(metaKey, entry.bytes(), localFile);
+                    if ("both_modified".equals(status) && scripts) {
+                        // Edits to different parts of the scene combine; overlapping ones follow the pull mode
+                        boolean keepLocal = "keep_local".equals(pullMode);
+                        SceneMerge.Result merged = SceneMerge.mergeWithLocal(entry.id(), localFile, entry.bytes(), keepLocal);
+                        if (merged != null && (merged.conflicts().isEmpty() || !isCheckMode)) {
+                            writeFile(root, entry.id(), SceneStore.toJson(merged.scene()).getBytes(StandardCharsets.UTF_8), ext);
+                            // The sync point is the server version, so the merged local edits are pushed next time
+                            syncedHashes.put(metaKey, entry.bytes());
+                            counts[0]++;
+                            if (merged.conflicts().isEmpty()) {
+                                messages.add(Component.translatable("ponderer.cmd.pull.merged", entry.id()));
+                            } else {
+                                counts[2]++;
+                                messages.add(Component.translatable(keepLocal ? "ponderer.cmd.pull.merged_local" : "ponderer.cmd.pull.merged_server",
+                                    entry.id(), String.join(", ", merged.conflicts())));
+                            }
+                            continue;
+                        }
+                        if (merged != null) {
+                            counts[2]++;
+                            counts[1]++;
+                            messages.add(Component.translatable("ponderer.cmd.pull.merge_conflict", entry.id(), String.join(", ", merged.conflicts())));
+                            continue;
+                        }
                     }
-                    if ("keep_local".equals(pullMode)) {
-                        skipped++;
+                    if ("both_modified".equals(status)) {
+                        counts[2]++;
+                        if (isCheckMode) {
+                            messages.add(Component.translatable("ponderer.cmd.pull.conflict_both", entry.id()));
+                            counts[1]++;
+                            continue;
+                        }
+                        if ("keep_local".equals(pullMode)) {
+                            counts[1]++;
+                            continue;
+                        }
+                        // overwrite mode: warn but continue
+                        messages.add(Component.translatable("ponderer.cmd.pull.conflict_server", entry.id()));
+                    } else if ("local_modified".equals(status) && "keep_local".equals(pullMode)) {
+                        counts[1]++;
                         continue;
                     }
-                    notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.conflict_server", entry.id()));
-                } else if ("local_modified".equals(status) && "keep_local".equals(pullMode)) {
-                    skipped++;
-                    continue;
                 }
-            }
 
-            writeFile(structuresDir, entry.id(), entry.bytes(), ".nbt");
-            syncedHashes.put(metaKey, entry.bytes());
-            written++;
+                writeFile(root, entry.id(), entry.bytes(), ext);
+                syncedHashes.put(metaKey, entry.bytes());
+                counts[0]++;
+            }
         }
 
         // Record sync hashes for conflict detection next time
         SyncMeta.recordHashes(syncedHashes);
+        SyncMeta.flush();
+        return new ApplyResult(counts[0], counts[1], counts[2], isCheckMode, messages, List.of());
+    }
 
-        SceneStore.reloadFromDisk();
-        Minecraft.getInstance().execute(PonderIndex::reload);
+    /** Stage 2, main thread: swap in the new scene set, re-register and report. */
+    private static void commit(ApplyResult result) {
+        Minecraft mc = Minecraft.getInstance();
+        SystemToast.forceHide(mc.getToasts(), PROGRESS_TOAST);
+        if (result == null) {
+            return;
+        }
 
-        notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.done", written, skipped, conflicts));
-        if (conflicts > 0 && isCheckMode) {
-            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.hint_force"));
-            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.pull.hint_keep"));
+        SceneRuntime.setScenes(result.scenes());
+        PonderIndex.reload();
+
+        for (Component message : result.messages()) {
+            notifyClient(message);
+        }
+        notifyClient(Component.translatable("ponderer.cmd.pull.done", result.written(), result.skipped(), result.conflicts()));
+        if (result.conflicts() > 0 && result.checkMode()) {
+            notifyClient(Component.translatable("ponderer.cmd.pull.hint_force"));
+            notifyClient(Component.translatable("ponderer.cmd.pull.hint_keep"));
         }
     }
 
-    private static Path resolveLocalPath(Path root, String id, String ext) {
+    private static void showProgress(int done, int total) {
+        SystemToast.addOrUpdate(Minecraft.getInstance().getToasts(), PROGRESS_TOAST,
+            Component.translatable("ponderer.sync.progress.title"),
+            Component.translatable("ponderer.sync.progress", done, total));
+    }
+
+    static Path resolveLocalPath(Path root, String id, String ext) {
         ResourceLocation loc = ResourceLocation.tryParse(id);
         if (loc == null) return root.resolve(id + ext);
         return loc.getNamespace().equals("ponderer")
@@ -160,21 +261,18 @@ public record SyncResponsePayload(List<FileEntry> scripts, List<FileEntry> struc
             : root.resolve(loc.getNamespace()).resolve(loc.getPath() + ext);
     }
 
-    private static void notifyClient(net.minecraft.network.chat.Component message) {
+    private static void notifyClient(Component message) {
         if (Minecraft.getInstance().player != null) {
             Minecraft.getInstance().player.displayClientMessage(message, false);
         }
     }
 
-    private static void writeFile(Path root, String id, byte[] bytes, String ext) {
-        ResourceLocation loc = ResourceLocation.tryParse(id);
-        if (loc == null) {
+    static void writeFile(Path root, String id, byte[] bytes, String ext) {
+        Path path = SceneStore.resolveId(root, id, ext);
+        if (path == null) {
             LOGGER.warn("Invalid id from server: {}", id);
             return;
         }
-        Path path = loc.getNamespace().equals("ponderer")
-            ? root.resolve(loc.getPath() + ext)
-            : root.resolve(loc.getNamespace()).resolve(loc.getPath() + ext);
         try {
             Files.createDirectories(path.getParent());
             Files.write(path, bytes);
@@ -0,0 +1,62 @@
+package com.nododiiiii.ponderer.network;
+
+import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
+import com.nododiiiii.ponderer.ponder.SceneStore;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client -> Server: pull everything changed after the given revision.
+ * Answered with a {@link CacheDeltaPayload} and a complete {@link RevisionsPayload}.
+ */
+public record SyncSincePayload(long revision) implements CustomPacketPayload {
+    public static final Type<SyncSincePayload> TYPE =
+        new Type<>(ResourceLocation.fromNamespaceAndPath(Ponderer.MODID, "sync_since"));
+    public static final StreamCodec<RegistryFriendlyByteBuf, SyncSincePayload> CODEC =
+        StreamCodec.of((buf, payload) -> buf.writeVarLong(payload.revision()), buf -> new SyncSincePayload(buf.readVarLong()));
+
+    @Override
+    public Type<? extends CustomPacketPayload> type() {
+        return TYPE;
+    }
+
+    public static void handle(SyncSincePayload payload, @Nullable ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+        SyncRequestScheduler.submit(player, "sync", target -> {
+            // A client ahead of us means the revision store was rebuilt: start over
+            long since = payload.revision() > SceneRevisions.head(target.server) ? 0 : payload.revision();
+            Map<String, SceneRevisions.Entry> scenes = SceneRevisions.scenesAfter(target.server, since);
+            List<SyncResponsePayload.FileEntry> scripts = new ArrayList<>();
+            for (String id : scenes.keySet()) {
+                byte[] bytes = SceneStore.readServerScene(target.server, id);
+                if (bytes != null) {
+                    scripts.add(new SyncResponsePayload.FileEntry(id, bytes));
+                }
+            }
+            List<SyncResponsePayload.FileEntry> structures = new ArrayList<>();
+            for (String id : SceneRevisions.structuresAfter(target.server, since).keySet()) {
+                byte[] bytes = SceneStore.readServerStructure(target.server, id);
+                if (bytes != null) {
+                    structures.add(new SyncResponsePayload.FileEntry(id, bytes));
+                }
+            }
+            PacketDistributor.sendToPlayer(target, new CacheDeltaPayload(scripts, structures,
+                SceneRevisions.scenesRemovedAfter(target.server, since),
+                SceneRevisions.structuresRemovedAfter(target.server, since)));
+            RevisionsPayload.sendIfSupported(target, true, scenes);
+            return SyncResponsePayload.totalBytes(scripts) + SyncResponsePayload.totalBytes(structures);
+        });
+    }
+}
@@ -1,6 +1,7 @@
 package com.nododiiiii.ponderer.network;
 
 import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ponder.PondererClientCommands;
 import com.nododiiiii.ponderer.ponder.SyncMeta;
 import net.minecraft.client.Minecraft;
 import net.minecraft.network.RegistryFriendlyByteBuf;
@@ -37,23 +38,22 @@ public record UploadResponsePayload(String sceneId, String status) implements Cu
     }
 
     public static void handle(UploadResponsePayload payload) {
+        // The push is settled either way; drop any blobs held for a second phase
+        PondererClientCommands.takePendingUpload(payload.sceneId());
         if (payload.status() != null && payload.status().startsWith("ok:")) {
             // Update SyncMeta with the new hash so next push/pull knows the sync point
             String newHash = payload.status().substring(3);
             String metaKey = "scripts/" + payload.sceneId();
 
-            // Also record the local file hash as the sync point
+            // Record the local file, in the keys-inlined form the push sent, as the sync point (and merge base)
             java.nio.file.Path localFile = resolveLocalScenePath(payload.sceneId());
             if (localFile != null && java.nio.file.Files.exists(localFile)) {
                 try {
-                    byte[] bytes = java.nio.file.Files.readAllBytes(localFile);
-                    SyncMeta.recordHash(metaKey, bytes);
-                } catch (Exception ignored) {
-                    // fallback: use the server hash directly
-                    java.util.Map<String, String> meta = SyncMeta.load();
-                    meta.put(metaKey, newHash);
-                    SyncMeta.save(meta);
+                    SyncMeta.recordHash(metaKey, java.nio.file.Files.readAllBytes(localFile));
+                } catch (java.io.IOException e) {
+                    SyncMeta.putHashes(java.util.Map.of(metaKey, newHash));
                 }
+                SyncMeta.flush();
             }
         } else if ("conflict".equals(payload.status())) {
             notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.push.conflict", payload.sceneId()));
@@ -2,19 +2,27 @@ package com.nododiiiii.ponderer.network;
 
 import com.mojang.logging.LogUtils;
 import com.nododiiiii.ponderer.Ponderer;
+import com.nododiiiii.ponderer.ServerConfig;
+import com.nododiiiii.ponderer.ponder.SceneRevisions;
 import com.nododiiiii.ponderer.ponder.SceneStore;
 import com.nododiiiii.ponderer.ponder.UploadPermissions;
+import com.nododiiiii.ponderer.ponder.UploadValidator;
+import io.netty.handler.codec.DecoderException;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public record UploadScenePayload(String sceneId, String json,
                                  List<StructureEntry> structures,
@@ -25,6 +33,12 @@ public record UploadScenePayload(String sceneId, String json,
         StreamCodec.of(UploadScenePayload::encode, UploadScenePayload::decode);
 
     private static final Logger LOGGER = LogUtils.getLogger();
+    /** Hard cap on any count decoded from a client packet. */
+    static final int MAX_DECODED_ENTRIES = 4096;
+    /** Chars the utf length check can handle without overflowing (3 bytes per char). */
+    private static final long MAX_JSON_CHARS_CEILING = Integer.MAX_VALUE / 3;
+    /** Prefix of a revision-based sync base, see {@link #isStale}. */
+    static final String REVISION_BASE = "rev:";
 
     public record StructureEntry(String id, byte[] bytes) {
     }
@@ -36,7 +50,7 @@ public record UploadScenePayload(String sceneId, String json,
 
     private static void encode(RegistryFriendlyByteBuf buf, UploadScenePayload payload) {
         buf.writeUtf(payload.sceneId());
-        buf.writeUtf(payload.json());
+        writeJson(buf, payload.json());
         buf.writeVarInt(payload.structures().size());
         for (StructureEntry entry : payload.structures()) {
             buf.writeUtf(entry.id());
@@ -48,8 +62,8 @@ public record UploadScenePayload(String sceneId, String json,
 
     private static UploadScenePayload decode(RegistryFriendlyByteBuf buf) {
         String sceneId = buf.readUtf();
-        String json = buf.readUtf();
-        int size = buf.readVarInt();
+        String json = readJson(buf);
+        int size = readCount(buf);
         List<StructureEntry> structures = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             structures.add(new StructureEntry(buf.readUtf(), buf.readByteArray()));
@@ -59,66 +73,145 @@ public record UploadScenePayload(String sceneId, String json,
         return new UploadScenePayload(sceneId, json, structures, mode, lastSyncHash);
     }
 
+    /**
+     * Longest scene JSON the upload codecs carry: twice {@link ServerConfig#MAX_SCENE_KILOBYTES},
+     * so a scene somewhat over the limit still decodes and gets the validator's rejection message
+     * instead of a dropped connection. Server configs are synced, so both sides agree on it.
+     */
+    public static int maxJsonChars() {
+        return (int) Math.min(MAX_JSON_CHARS_CEILING, ServerConfig.MAX_SCENE_KILOBYTES.get() * 2048L);
+    }
+
+    static void writeJson(RegistryFriendlyByteBuf buf, String json) {
+        buf.writeUtf(json, maxJsonChars());
+    }
+
+    static String readJson(RegistryFriendlyByteBuf buf) {
+        return buf.readUtf(maxJsonChars());
+    }
+
+    /**
+     * Read an entry count from a client and refuse absurd ones before allocating anything;
+     * the configured per-upload limits are applied later by {@link UploadValidator}.
+     */
+    static int readCount(RegistryFriendlyByteBuf buf) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > MAX_DECODED_ENTRIES) {
+            throw new DecoderException("Too many entries in upload: " + count);
+        }
+        return count;
+    }
+
     public static void handle(UploadScenePayload payload, @Nullable ServerPlayer player) {
         if (player == null) {
             return;
         }
+        if (!checkPush(player, payload.sceneId(), payload.mode(), payload.lastSyncHash())) {
+            return;
+        }
+        apply(player, payload.sceneId(), payload.json(), payload.structures());
+    }
+
+    /**
+     * Permission and conflict checks shared by every push path.
+     * Replies to the player and returns false if the push must be rejected.
+     */
+    static boolean checkPush(ServerPlayer player, String sceneId, @Nullable String mode, @Nullable String lastSyncHash) {
         if (!UploadPermissions.canUpload(player)) {
             player.sendSystemMessage(Component.translatable("ponderer.cmd.push.no_permission"));
-            return;
+            return false;
         }
 
-        String pushMode = payload.mode() == null ? "check" : payload.mode();
+        String pushMode = mode == null ? "check" : mode;
 
         // Conflict detection for non-force push
-        if (!"force".equals(pushMode)) {
-            String lastSyncHash = payload.lastSyncHash() == null ? "" : payload.lastSyncHash();
-            String serverHash = computeServerSceneHash(player.server, payload.sceneId());
-
-            if (!serverHash.isEmpty() && !lastSyncHash.isEmpty() && !serverHash.equals(lastSyncHash)) {
-                // Server file was modified since last sync - conflict
-                player.sendSystemMessage(Component.translatable("ponderer.cmd.push.server_conflict", payload.sceneId()));
-                net.neoforged.neoforge.network.PacketDistributor.sendToPlayer(player,
-                    new UploadResponsePayload(payload.sceneId(), "conflict"));
-                return;
+        if (!"force".equals(pushMode) && isStale(player.server, sceneId, lastSyncHash)) {
+            // Server file was modified since last sync - conflict
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.server_conflict", sceneId));
+            net.neoforged.neoforge.network.PacketDistributor.sendToPlayer(player,
+                new UploadResponsePayload(sceneId, "conflict"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether a push made on top of {@code base} would overwrite a newer server version.
+     * The base is "rev:N" from clients that negotiated {@link SyncCapabilities#REVISIONS},
+     * otherwise the hash of the content last synced; both are answered from
+     * {@link SceneRevisions} without touching the stored file.
+     */
+    static boolean isStale(MinecraftServer server, String sceneId, @Nullable String base) {
+        if (base == null || base.isEmpty()) {
+            return false;
+        }
+        if (base.startsWith(REVISION_BASE)) {
+            long current = SceneRevisions.sceneRevision(server, sceneId);
+            try {
+                return current != 0 && current != Long.parseLong(base.substring(REVISION_BASE.length()));
+            } catch (NumberFormatException e) {
+                return true;
             }
         }
+        String serverHash = SceneRevisions.sceneHash(server, sceneId);
+        return !serverHash.isEmpty() && !serverHash.equals(base);
+    }
 
-        boolean ok = SceneStore.saveToServer(player.server, payload.sceneId(), payload.json());
-        if (ok && payload.structures() != null) {
-            for (StructureEntry entry : payload.structures()) {
+    /**
+     * Write an accepted scene and its structures, notify subscribers and reply to the uploader.
+     */
+    static void apply(ServerPlayer player, String sceneId, String json, @Nullable List<StructureEntry> structures) {
+        Map<String, byte[]> structureBytes = new LinkedHashMap<>();
+        if (structures != null) {
+            for (StructureEntry entry : structures) {
                 if (entry == null || entry.id() == null || entry.id().isBlank() || entry.bytes() == null) {
                     continue;
                 }
-                ok = SceneStore.saveStructureToServer(player.server, entry.id(), entry.bytes()) && ok;
+                structureBytes.put(entry.id(), entry.bytes());
+            }
+        }
+        Component rejection = UploadValidator.checkRate(player, List.of(sceneId));
+        if (rejection == null) {
+            rejection = UploadValidator.check(player, Map.of(sceneId, json), structureBytes);
+        }
+        if (rejection != null) {
+            player.sendSystemMessage(Component.translatable("ponderer.upload.rejected", rejection));
+            net.neoforged.neoforge.network.PacketDistributor.sendToPlayer(player,
+                new UploadResponsePayload(sceneId, "error"));
+            return;
+        }
+
+        boolean ok = SceneStore.saveToServer(player.server, sceneId, json);
+        List<SyncResponsePayload.FileEntry> changedStructures = new ArrayList<>();
+        if (ok) {
+            for (Map.Entry<String, byte[]> entry : structureBytes.entrySet()) {
+                boolean unchanged = SceneStore.isServerStructureUnchanged(player.server, entry.getKey(), entry.getValue());
+                ok = SceneStore.saveStructureToServer(player.server, entry.getKey(), entry.getValue()) && ok;
+                if (!unchanged) {
+                    changedStructures.add(new SyncResponsePayload.FileEntry(entry.getKey(), entry.getValue()));
+                }
             }
+            UploadValidator.recordStored(player, Map.of(sceneId, json), structureBytes);
+            UploadValidator.countUpload(player, List.of(sceneId));
         }
 
         if (ok) {
-            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.upload_ok", payload.sceneId()));
-            // Compute new server hash after write and send it back to client for SyncMeta update
-            String newHash = computeServerSceneHash(player.server, payload.sceneId());
+            byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+            Map<String, SceneRevisions.Entry> revisions = SceneRevisions.record(player.server, Map.of(sceneId, jsonBytes), structureBytes);
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.upload_ok", sceneId));
+            // Push just this scene (and any new structures) to subscribed clients
+            SceneSubscriptions.broadcast(player.server, player, new SceneDeltaPayload(
+                List.of(new SyncResponsePayload.FileEntry(sceneId, jsonBytes)),
+                changedStructures));
+            // Send the new server hash back to the client for its SyncMeta update
+            String newHash = revisions.get(sceneId).sha256();
             net.neoforged.neoforge.network.PacketDistributor.sendToPlayer(player,
-                new UploadResponsePayload(payload.sceneId(), "ok:" + newHash));
+                new UploadResponsePayload(sceneId, "ok:" + newHash));
+            RevisionsPayload.sendIfSupported(player, false, revisions);
         } else {
-            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.upload_failed", payload.sceneId()));
+            player.sendSystemMessage(Component.translatable("ponderer.cmd.push.upload_failed", sceneId));
             net.neoforged.neoforge.network.PacketDistributor.sendToPlayer(player,
-                new UploadResponsePayload(payload.sceneId(), "error"));
-        }
-    }
-
-    private static String computeServerSceneHash(net.minecraft.server.MinecraftServer server, String sceneId) {
-        ResourceLocation loc = ResourceLocation.tryParse(sceneId);
-        if (loc == null) return "";
-        java.nio.file.Path sceneDir = SceneStore.getServerSceneDir(server);
-        java.nio.file.Path path = loc.getNamespace().equals(Ponderer.MODID)
-            ? sceneDir.resolve(loc.getPath() + ".json")
-            : sceneDir.resolve(loc.getNamespace()).resolve(loc.getPath() + ".json");
-        if (!java.nio.file.Files.exists(path)) return "";
-        try {
-            return com.nododiiiii.ponderer.ponder.SyncMeta.sha256(java.nio.file.Files.readAllBytes(path));
-        } catch (Exception e) {
-            return "";
+                new UploadResponsePayload(sceneId, "error"));
         }
     }
-}
\ No newline at end of file
+}
@@ -25,6 +25,16 @@ public class DslScene {
      * Example: "{CustomModelData:1}" or "{display:{Name:'\"Special\"'}}"
      */
     public String nbtFilter;
+    /**
+     * Set when the scene was loaded from the connected server's cache rather than the local
+     * scripts directory. Not serialized.
+     */
+    public transient boolean fromServerCache;
+    /**
+     * Set for index-only stand-ins of server scenes that have not been fetched yet;
+     * only {@link #id}, {@link #items} and {@link #tags} are filled in. Not serialized.
+     */
+    public transient boolean placeholder;
 
     public static class SceneSegment {
         public String id;
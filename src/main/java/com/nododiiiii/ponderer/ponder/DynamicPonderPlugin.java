@@ -185,6 +185,13 @@ public class DynamicPonderPlugin implements PonderPlugin {
 
         ResourceLocation[] tags = resolveTags(scene.tags);
 
+        if (scene.placeholder) {
+            // Not fetched from the server yet: the stand-in requests the real scene when opened
+            helper.forComponents(components).addStoryBoard(
+                ResourceLocation.fromNamespaceAndPath("ponder", "debug/scene_1"), createPlaceholderStoryBoard(scene), tags);
+            return;
+        }
+
         List<DslScene.SceneSegment> sceneList = normalizeScenes(scene);
         List<ResourceLocation> schematics = resolveSceneSchematics(scene, sceneList);
         var multi = helper.forComponents(components);
@@ -329,8 +336,36 @@ public class DynamicPonderPlugin implements PonderPlugin {
         return result.toArray(ResourceLocation[]::new);
     }
 
-    private PonderStoryBoard createStoryBoard(DslScene scene, DslScene.SceneSegment sc, int index, int total) {
+    private PonderStoryBoard createPlaceholderStoryBoard(DslScene scene) {
+        return (builder, util) -> {
+            ResourceLocation baseId = ResourceLocation.tryParse(scene.id);
+            builder.title(baseId == null ? "scene" : baseId.getPath(), I18n.get("ponderer.lazy.loading_title"));
+            builder.showBasePlate();
+            LazyFetch.requestScene(scene.id);
+
+            builder.idle(10);
+            builder.overlay().showText(200)
+                .text(I18n.get("ponderer.lazy.loading"))
+                .pointAt(util.vector().topOf(util.grid().at(2, 0, 2)))
+                .placeNearTarget();
+            builder.idle(200);
+        };
+    }
+
+    private PonderStoryBoard createStoryBoard(DslScene registered, DslScene.SceneSegment registeredSegment, int index, int total) {
         return (builder, util) -> {
+            // Built from the scene as loaded now, so an update that keeps the registration intact
+            // (see registrationKey) shows without re-registering anything
+            DslScene scene = liveScene(registered);
+            DslScene.SceneSegment sc = registeredSegment;
+            if (scene != registered) {
+                List<DslScene.SceneSegment> segments = normalizeScenes(scene);
+                if (segments.size() == total) {
+                    sc = segments.get(index);
+                } else {
+                    scene = registered;
+                }
+            }
             ResourceLocation baseId = ResourceLocation.tryParse(scene.id);
             String basePath = baseId == null ? "scene" : baseId.getPath();
             String scenePath = total > 1 ? basePath + "_" + sceneSuffix(sc, index) : basePath;
@@ -368,6 +403,52 @@ public class DynamicPonderPlugin implements PonderPlugin {
         };
     }
 
+    private static DslScene liveScene(DslScene registered) {
+        DslScene loaded = SceneRuntime.findById(registered.id);
+        return loaded == null || loaded.placeholder ? registered : loaded;
+    }
+
+    /**
+     * Everything the registration of a scene depends on: its items, tags and NBT filter, its
+     * segments with their ids and structures, and its shared texts. Two versions of a scene with
+     * the same key register identically, so switching between them needs no
+     * {@link net.createmod.ponder.foundation.PonderIndex#reload}; the storyboards pick up the new
+     * content when the ponder is next opened.
+     * <p>
+     * Ponder has no way to unregister the storyboards of a single component, so a changed key
+     * still means a full reload.
+     */
+    public static String registrationKey(DslScene scene) {
+        return KEYS.buildRegistrationKey(scene);
+    }
+
+    /** Stateless instance behind {@link #registrationKey}. */
+    private static final DynamicPonderPlugin KEYS = new DynamicPonderPlugin();
+
+    private String buildRegistrationKey(DslScene scene) {
+        StringBuilder key = new StringBuilder();
+        key.append(scene.placeholder).append('|').append(scene.items).append('|').append(scene.tags)
+            .append('|').append(scene.nbtFilter);
+        if (scene.placeholder) {
+            return key.toString();
+        }
+        List<DslScene.SceneSegment> sceneList = normalizeScenes(scene);
+        List<ResourceLocation> schematics = resolveSceneSchematics(scene, sceneList);
+        for (int i = 0; i < sceneList.size(); i++) {
+            DslScene.SceneSegment sc = sceneList.get(i);
+            boolean empty = sc.steps == null || sc.steps.isEmpty();
+            key.append('|').append(empty ? "-" : sceneSuffix(sc, i) + "@" + schematics.get(i));
+            if (empty) continue;
+            for (DslScene.DslStep step : sc.steps) {
+                if (step != null && "shared_text".equalsIgnoreCase(step.type)) {
+                    key.append("|shared:").append(step.key).append('=')
+                        .append(step.text == null ? "" : step.text.resolve());
+                }
+            }
+        }
+        return key.toString();
+    }
+
     private void applyStep(SceneBuilder scene, SceneBuildingUtil util, DslScene dsl, DslScene.DslStep step, StepContext context) {
         if (Boolean.TRUE.equals(step.attachKeyFrame)) {
             scene.addKeyframe();
@@ -0,0 +1,145 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent SHA-256 cache for files on disk, keyed by path and validated by size and
+ * modification time, so a file that has not changed since it was last hashed is never read again.
+ * <p>
+ * A file modified within {@link #RACY_WINDOW_MS} of being hashed is not cached: a second write
+ * inside the filesystem's timestamp granularity would otherwise keep the stale hash.
+ * <p>
+ * Storage: config/ponderer/.hash_cache.json, written by {@link #flush()} (called from
+ * {@link SyncMeta#flush()}).
+ */
+public final class FileHashCache {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final String CACHE_FILE = ".hash_cache.json";
+    private static final long RACY_WINDOW_MS = 2000;
+
+    private static Map<String, Entry> entries;
+    private static boolean dirty;
+
+    private FileHashCache() {
+    }
+
+    private record Entry(long size, long mtime, String sha256) {
+    }
+
+    /**
+     * SHA-256 of a file, or "" if it does not exist or cannot be read.
+     */
+    public static String hash(Path file) {
+        String key = file.toAbsolutePath().normalize().toString();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return "";
+        } catch (IOException e) {
+            return "";
+        }
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+
+        synchronized (FileHashCache.class) {
+            Entry cached = entries().get(key);
+            if (cached != null && cached.size() == size && cached.mtime() == mtime) {
+                return cached.sha256();
+            }
+        }
+
+        String hash;
+        try {
+            hash = SyncMeta.sha256(file);
+        } catch (IOException e) {
+            return "";
+        }
+        if (System.currentTimeMillis() - mtime > RACY_WINDOW_MS) {
+            synchronized (FileHashCache.class) {
+                entries().put(key, new Entry(size, mtime, hash));
+                dirty = true;
+            }
+        }
+        return hash;
+    }
+
+    private static synchronized void forget(String key) {
+        if (entries().remove(key) != null) {
+            dirty = true;
+        }
+    }
+
+    private static Map<String, Entry> entries() {
+        if (entries == null) {
+            entries = read(getCachePath());
+        }
+        return entries;
+    }
+
+    private static Path getCachePath() {
+        return SceneStore.getSceneDir().getParent().resolve(CACHE_FILE);
+    }
+
+    private static Map<String, Entry> read(Path path) {
+        if (!Files.exists(path)) {
+            return new HashMap<>();
+        }
+        try (Reader r = Files.newBufferedReader(path)) {
+            Map<String, Entry> map = GSON.fromJson(r, new TypeToken<Map<String, Entry>>() {}.getType());
+            if (map == null) {
+                return new HashMap<>();
+            }
+            // Drop files that are gone so the cache does not grow forever
+            Map<String, Entry> live = new HashMap<>();
+            map.forEach((key, entry) -> {
+                if (entry != null && entry.sha256() != null && Files.exists(Path.of(key))) {
+                    live.put(key, entry);
+                }
+            });
+            dirty = live.size() != map.size();
+            return live;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read file hash cache, starting over: {}", path, e);
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Write pending changes, if any, with a single atomic replace of the file.
+     */
+    public static synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        Path path = getCachePath();
+        Path tmp = path.resolveSibling(CACHE_FILE + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                GSON.toJson(entries, w);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to write file hash cache: {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.mojang.logging.LogUtils;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Component;
+import net.neoforged.fml.loading.FMLPaths;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Per-language translation bundles in config/ponderer/lang/&lt;lang&gt;.json: flat objects of
+ * text key to string. A {@link LocalizedText} stored as a key looks its text up here instead of
+ * carrying every language inline.
+ * <p>
+ * A bundle is read the first time a text asks for its language, so normally only the active
+ * language and the en_us fallback are ever loaded. Loaded bundles are dropped on a language change.
+ * <p>
+ * {@code /ponderer lang extract} moves the inline translations of local scenes into the bundles;
+ * {@code /ponderer lang inline} puts them back.
+ * <p>
+ * Bundles never leave this client: scenes and edits sent to the server carry their keyed texts
+ * inline ({@link #inlineKeys}), so other players see the translations rather than the keys.
+ */
+public final class LangBundles {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Type BUNDLE_TYPE = new TypeToken<LinkedHashMap<String, String>>() {}.getType();
+    private static final String FALLBACK = "en_us";
+
+    /** Loaded bundles by language; an empty map for a language without a file. */
+    private static final Map<String, Map<String, String>> LOADED = new ConcurrentHashMap<>();
+
+    private LangBundles() {
+    }
+
+    public static Path getDir() {
+        return FMLPaths.CONFIGDIR.get().resolve("ponderer").resolve("lang");
+    }
+
+    /**
+     * The text of {@code key} in {@code lang}, then in en_us, or null if neither bundle has it.
+     */
+    @Nullable
+    static String resolve(String key, String lang) {
+        String text = bundle(lang).get(key);
+        return text != null || FALLBACK.equals(lang) ? text : bundle(FALLBACK).get(key);
+    }
+
+    /** The text of {@code key} in {@code lang} only, or null. */
+    @Nullable
+    static String get(String key, String lang) {
+        return bundle(lang).get(key);
+    }
+
+    /**
+     * Every translation of {@code key}, en_us first. Reads all bundle files, so it is meant for
+     * edits and the inline command, not for rendering.
+     */
+    static Map<String, String> translations(String key) {
+        Map<String, String> result = new LinkedHashMap<>();
+        String fallback = get(key, FALLBACK);
+        if (fallback != null) result.put(FALLBACK, fallback);
+        for (String lang : languages()) {
+            String text = get(key, lang);
+            if (text != null) result.putIfAbsent(lang, text);
+        }
+        return result;
+    }
+
+    /**
+     * Size and modification time of the bundles the current language resolves through, so callers
+     * caching resolved texts can tell when a bundle changed.
+     */
+    static String fingerprint(String lang) {
+        return stamp(lang) + "," + stamp(FALLBACK);
+    }
+
+    /** Forget the loaded bundles and every resolved text; they are read again on next use. */
+    public static void invalidate() {
+        LOADED.clear();
+        LocalizedText.invalidateResolved();
+    }
+
+    private static Map<String, String> bundle(String lang) {
+        return LOADED.computeIfAbsent(lang, LangBundles::read);
+    }
+
+    private static Map<String, String> read(String lang) {
+        Path file = getDir().resolve(lang + ".json");
+        if (!Files.exists(file)) {
+            return Map.of();
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, String> bundle = GSON.fromJson(reader, BUNDLE_TYPE);
+            LOGGER.debug("Loaded {} translation(s) from {}", bundle == null ? 0 : bundle.size(), file);
+            return bundle == null ? Map.of() : bundle;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read translation bundle: {}", file, e);
+            return Map.of();
+        }
+    }
+
+    private static String stamp(String lang) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(getDir().resolve(lang + ".json"), BasicFileAttributes.class);
+            return attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            return "-";
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+
+    /** Languages that have a bundle file, sorted. */
+    private static List<String> languages() {
+        Path dir = getDir();
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.map(path -> path.getFileName().toString())
+                .filter(name -> name.toLowerCase(Locale.ROOT).endsWith(".json"))
+                .map(name -> name.substring(0, name.length() - ".json".length()))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list translation bundles in {}", dir, e);
+            return List.of();
+        }
+    }
+
+    // ---- sending ----
+
+    /**
+     * A keyed text replaced by its bundle translations; other texts are returned as they are. A key
+     * no bundle knows is sent as plain text.
+     */
+    static LocalizedText inlined(LocalizedText text) {
+        if (text == null || !text.isKey()) {
+            return text;
+        }
+        Map<String, String> translations = translations(text.getKey());
+        if (translations.isEmpty()) {
+            LOGGER.warn("No translation found for {}, sending the key as text", text.getKey());
+            return LocalizedText.of(text.getKey());
+        }
+        return LocalizedText.ofMap(translations);
+    }
+
+    /**
+     * Inline every keyed text of {@code scene} in place. Only meant for a copy about to be sent.
+     *
+     * @return whether the scene had any keyed text
+     */
+    static boolean inlineKeys(DslScene scene) {
+        return rewriteTexts(scene, (key, text) -> text.isKey() ? inlined(text) : null);
+    }
+
+    /** Inline the keyed texts of a segment copy about to be sent. */
+    static void inlineKeys(DslScene.SceneSegment segment) {
+        segment.title = inlined(segment.title);
+        rewriteSteps(segment.steps, "", (key, text) -> text.isKey() ? inlined(text) : null);
+    }
+
+    // ---- /ponderer lang extract / inline ----
+
+    /**
+     * Move the inline translations of every local scene into the bundles, leaving keys in the scenes.
+     * <p>
+     * New keys follow the text's position, but steps move after they were keyed, so a key already
+     * held by a keyed text is never handed out again: the new one gets a numbered suffix instead.
+     * Keyed texts keep their keys, and no bundle entry still in use is overwritten.
+     */
+    public static int extractAll() {
+        List<DslScene> scenes = localScenes();
+        Set<String> held = new HashSet<>();
+        for (DslScene scene : scenes) {
+            rewriteTexts(scene, (key, text) -> {
+                if (text.isKey()) held.add(text.getKey());
+                return null;
+            });
+        }
+        Map<String, Map<String, String>> bundles = new TreeMap<>();
+        int[] texts = {0};
+        List<DslScene> changed = new ArrayList<>();
+        for (DslScene scene : scenes) {
+            boolean sceneChanged = rewriteTexts(scene, (position, text) -> {
+                if (text.isPlain() || text.isKey()) return null;
+                String key = position;
+                for (int n = 2; !held.add(key); n++) {
+                    key = position + "." + n;
+                }
+                for (Map.Entry<String, String> e : text.getAllTranslations().entrySet()) {
+                    if (e.getValue() != null) {
+                        bundles.computeIfAbsent(e.getKey(), lang -> new TreeMap<>()).put(key, e.getValue());
+                    }
+                }
+                texts[0]++;
+                return LocalizedText.ofKey(key);
+            });
+            if (sceneChanged) changed.add(scene);
+        }
+        if (changed.isEmpty()) {
+            notifyClient(Component.translatable("ponderer.cmd.lang.extract_done", 0, 0));
+            return 1;
+        }
+
+        try {
+            // Bundles first: if writing them fails, the scenes still hold their texts
+            for (Map.Entry<String, Map<String, String>> e : bundles.entrySet()) {
+                Map<String, String> merged = new TreeMap<>(readFile(e.getKey()));
+                merged.putAll(e.getValue());
+                writeFile(e.getKey(), merged);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to write translation bundles", e);
+            notifyClient(Component.translatable("ponderer.cmd.lang.failed", String.valueOf(e.getMessage())));
+            return 0;
+        }
+        int saved = SceneStore.saveScenesToLocal(changed).size();
+        finish();
+        notifyClient(Component.translatable("ponderer.cmd.lang.extract_done", texts[0], saved));
+        return 1;
+    }
+
+    /**
+     * Put the bundle translations of every key in local scenes back inline. The bundles are kept.
+     */
+    public static int inlineAll() {
+        List<DslScene> scenes = localScenes();
+        int[] counts = {0, 0};
+        List<DslScene> changed = new ArrayList<>();
+        for (DslScene scene : scenes) {
+            boolean sceneChanged = rewriteTexts(scene, (key, text) -> {
+                if (!text.isKey()) return null;
+                Map<String, String> translations = translations(text.getKey());
+                if (translations.isEmpty()) {
+                    LOGGER.warn("No translation found for {} in scene {}", text.getKey(), scene.id);
+                    counts[1]++;
+                    return null;
+                }
+                counts[0]++;
+                return LocalizedText.ofMap(translations);
+            });
+            if (sceneChanged) changed.add(scene);
+        }
+        int saved = changed.isEmpty() ? 0 : SceneStore.saveScenesToLocal(changed).size();
+        if (saved > 0) finish();
+        notifyClient(Component.translatable("ponderer.cmd.lang.inline_done", counts[0], saved));
+        if (counts[1] > 0) {
+            notifyClient(Component.translatable("ponderer.cmd.lang.inline_missing", counts[1]));
+        }
+        return 1;
+    }
+
+    private static List<DslScene> localScenes() {
+        List<DslScene> scenes = new ArrayList<>();
+        for (DslScene scene : SceneStore.loadScenesFromDisk()) {
+            if (!scene.fromServerCache) scenes.add(scene);
+        }
+        return scenes;
+    }
+
+    /**
+     * Offer every title and step text of a scene to {@code rewrite} with its bundle key; a non-null
+     * result replaces the text.
+     *
+     * @return whether anything was replaced
+     */
+    private static boolean rewriteTexts(DslScene scene, BiFunction<String, LocalizedText, LocalizedText> rewrite) {
+        boolean changed = false;
+        if (scene.title != null) {
+            LocalizedText replaced = rewrite.apply(scene.id + ".title", scene.title);
+            if (replaced != null) {
+                scene.title = replaced;
+                changed = true;
+            }
+        }
+        changed |= rewriteSteps(scene.steps, scene.id + ".step.", rewrite);
+        if (scene.scenes != null) {
+            for (int i = 0; i < scene.scenes.size(); i++) {
+                DslScene.SceneSegment segment = scene.scenes.get(i);
+                if (segment == null) continue;
+                String prefix = scene.id + ".scene." + (i + 1);
+                if (segment.title != null) {
+                    LocalizedText replaced = rewrite.apply(prefix + ".title", segment.title);
+                    if (replaced != null) {
+                        segment.title = replaced;
+                        changed = true;
+                    }
+                }
+                changed |= rewriteSteps(segment.steps, prefix + ".step.", rewrite);
+            }
+        }
+        return changed;
+    }
+
+    private static boolean rewriteSteps(@Nullable List<DslScene.DslStep> steps, String prefix,
+                                        BiFunction<String, LocalizedText, LocalizedText> rewrite) {
+        if (steps == null) return false;
+        boolean changed = false;
+        for (int i = 0; i < steps.size(); i++) {
+            DslScene.DslStep step = steps.get(i);
+            if (step == null || step.text == null) continue;
+            LocalizedText replaced = rewrite.apply(prefix + (i + 1), step.text);
+            if (replaced != null) {
+                step.text = replaced;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static Map<String, String> readFile(String lang) throws IOException {
+        Path file = getDir().resolve(lang + ".json");
+        if (!Files.exists(file)) {
+            return Map.of();
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, String> bundle = GSON.fromJson(reader, BUNDLE_TYPE);
+            return bundle == null ? Map.of() : bundle;
+        } catch (com.google.gson.JsonParseException e) {
+            // Don't overwrite a bundle we can't read
+            throw new IOException("Malformed bundle " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeFile(String lang, Map<String, String> bundle) throws IOException {
+        Path file = getDir().resolve(lang + ".json");
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, GSON.toJson(bundle), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reload bundles and scenes after a conversion. */
+    private static void finish() {
+        invalidate();
+        SceneStore.reloadFromDisk();
+        Minecraft.getInstance().execute(PonderIndex::reload);
+    }
+
+    private static void notifyClient(Component message) {
+        if (Minecraft.getInstance().player != null) {
+            Minecraft.getInstance().player.displayClientMessage(message, false);
+        }
+    }
+}
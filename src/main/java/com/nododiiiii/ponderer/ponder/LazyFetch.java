@@ -0,0 +1,127 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.network.LazyFetchPayload;
+import com.nododiiiii.ponderer.network.SceneIndexPayload;
+import com.nododiiiii.ponderer.network.SyncCapabilities;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.resources.ResourceLocation;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client side of on-demand scene loading. The server index becomes placeholder scenes;
+ * opening a placeholder's ponder, or loading a structure that is not cached, asks the
+ * server for just that file. Main thread only.
+ */
+public final class LazyFetch {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Set<String> PENDING_SCENES = new HashSet<>();
+    private static final Set<String> PENDING_STRUCTURES = new HashSet<>();
+
+    private LazyFetch() {
+    }
+
+    public static boolean isActive() {
+        return SyncCapabilities.serverHas(SyncCapabilities.LAZY_FETCH);
+    }
+
+    public static void reset() {
+        PENDING_SCENES.clear();
+        PENDING_STRUCTURES.clear();
+    }
+
+    /**
+     * Reconcile the loaded scenes with the server index: cached scenes that are current stay,
+     * stale or missing ones become placeholders, and scenes the server no longer has are dropped.
+     */
+    public static void applyIndex(List<SceneIndexPayload.Entry> entries) {
+        Map<String, SceneIndexPayload.Entry> index = new HashMap<>();
+        for (SceneIndexPayload.Entry entry : entries) {
+            index.put(entry.id(), entry);
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String cachedId : ServerCache.scriptHashes().keySet()) {
+            if (!index.containsKey(cachedId)) {
+                removed.add(cachedId);
+            }
+        }
+        if (!removed.isEmpty()) {
+            ServerCache.applyDelta(List.of(), List.of(), removed, List.of());
+        }
+
+        List<DslScene> scenes = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        int placeholders = 0;
+        for (DslScene scene : SceneRuntime.getScenes()) {
+            if (scene.fromServerCache) {
+                SceneIndexPayload.Entry entry = index.get(scene.id);
+                if (entry == null || !entry.sha256().equals(ServerCache.scriptHash(scene.id))) {
+                    continue;
+                }
+            }
+            scenes.add(scene);
+            present.add(scene.id);
+        }
+        for (SceneIndexPayload.Entry entry : entries) {
+            if (present.contains(entry.id())) {
+                continue;
+            }
+            DslScene placeholder = new DslScene();
+            placeholder.id = entry.id();
+            placeholder.items = entry.items();
+            placeholder.tags = entry.tags();
+            placeholder.fromServerCache = true;
+            placeholder.placeholder = true;
+            scenes.add(placeholder);
+            placeholders++;
+        }
+
+        SceneRuntime.setScenes(scenes);
+        PonderIndex.reload();
+        LOGGER.info("Server index: {} scene(s), {} to fetch on demand", entries.size(), placeholders);
+    }
+
+    /** Called when a placeholder's ponder is opened. */
+    public static void requestScene(String sceneId) {
+        if (isActive() && PENDING_SCENES.add(sceneId)) {
+            PacketDistributor.sendToServer(new LazyFetchPayload(LazyFetchPayload.SCENE, sceneId));
+        }
+    }
+
+    /**
+     * Called when a referenced structure is neither local nor cached.
+     *
+     * @return true if the structure will be requested (or already was)
+     */
+    public static boolean requestStructure(ResourceLocation structureId) {
+        if (!isActive()) {
+            return false;
+        }
+        if (PENDING_STRUCTURES.add(structureId.toString())) {
+            PacketDistributor.sendToServer(new LazyFetchPayload(LazyFetchPayload.STRUCTURE, structureId.toString()));
+        }
+        return true;
+    }
+
+    /**
+     * Mark a fetched file as arrived.
+     *
+     * @return true if it was requested through this class
+     */
+    public static boolean completeScene(String sceneId) {
+        return PENDING_SCENES.remove(sceneId);
+    }
+
+    public static boolean completeStructure(String structureId) {
+        return PENDING_STRUCTURES.remove(structureId);
+    }
+}
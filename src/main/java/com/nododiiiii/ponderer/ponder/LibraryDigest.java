@@ -0,0 +1,225 @@
+package com.nododiiiii.ponderer.ponder;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merkle tree over a scene library, so two sides can tell whether they hold the same files by
+ * comparing one root hash, and find what differs by descending only into subtrees whose hashes differ.
+ * <p>
+ * Layout: the root has a {@code scripts/} and a {@code structures/} child, each with one child per
+ * namespace, then one per directory of the id path; leaves are files, hashed as their SHA-256.
+ * A directory hashes its sorted children's names and hashes. A node is addressed by its path from the
+ * root, e.g. {@code scripts/create/mixer/} for a directory or {@code scripts/create/mixer/basics}
+ * for the file of scene {@code create:mixer/basics}; directory names end in '/'.
+ * <p>
+ * Updates only mark the path to the root stale; hashes are recomputed for stale nodes when read.
+ */
+public final class LibraryDigest {
+    public static final String SCRIPTS = "scripts/";
+    public static final String STRUCTURES = "structures/";
+
+    private final Node root = new Node();
+
+    private static final class Node {
+        /** Children by name; null for a file. */
+        @Nullable
+        final TreeMap<String, Node> children;
+        @Nullable
+        String hash;
+
+        Node() {
+            this.children = new TreeMap<>();
+        }
+
+        Node(String fileHash) {
+            this.children = null;
+            this.hash = fileHash;
+        }
+    }
+
+    /**
+     * A child as seen from its parent.
+     *
+     * @param name child name, ending in '/' for directories
+     */
+    public record Child(String name, String hash) {
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    public static LibraryDigest of(Map<String, String> scripts, Map<String, String> structures) {
+        LibraryDigest digest = new LibraryDigest();
+        scripts.forEach((id, hash) -> digest.put(SCRIPTS, id, hash));
+        structures.forEach((id, hash) -> digest.put(STRUCTURES, id, hash));
+        return digest;
+    }
+
+    /**
+     * Set the hash of a file.
+     *
+     * @param kind {@link #SCRIPTS} or {@link #STRUCTURES}
+     */
+    public synchronized void put(String kind, String id, String hash) {
+        List<String> names = names(kind, id);
+        Node node = root;
+        node.hash = null;
+        for (int i = 0; i < names.size() - 1; i++) {
+            node = node.children.computeIfAbsent(names.get(i), name -> new Node());
+            node.hash = null;
+        }
+        node.children.put(names.get(names.size() - 1), new Node(hash));
+    }
+
+    public synchronized void remove(String kind, String id) {
+        List<String> names = names(kind, id);
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        for (int i = 0; i < names.size() - 1; i++) {
+            path.add(node);
+            node = node.children.get(names.get(i));
+            if (node == null || node.children == null) {
+                return;
+            }
+        }
+        if (node.children.remove(names.get(names.size() - 1)) == null) {
+            return;
+        }
+        // Drop directories left empty, then invalidate the rest of the path
+        for (int i = path.size() - 1; i >= 0 && node.children.isEmpty(); i--) {
+            path.get(i).children.remove(names.get(i));
+            node = path.get(i);
+        }
+        root.hash = null;
+        Node current = root;
+        for (int i = 0; i < names.size() - 1 && current != null; i++) {
+            current = current.children.get(names.get(i));
+            if (current != null) {
+                current.hash = null;
+            }
+        }
+    }
+
+    public synchronized String rootHash() {
+        return hash(root);
+    }
+
+    /**
+     * Hash of the node at {@code path}, or null if there is none.
+     */
+    @Nullable
+    public synchronized String hash(String path) {
+        Node node = find(path);
+        return node == null ? null : hash(node);
+    }
+
+    /**
+     * Children of the directory at {@code path}, in name order; empty if there is no such directory.
+     */
+    public synchronized List<Child> children(String path) {
+        Node node = find(path);
+        if (node == null || node.children == null) {
+            return List.of();
+        }
+        List<Child> result = new ArrayList<>(node.children.size());
+        node.children.forEach((name, child) -> result.add(new Child(name, hash(child))));
+        return result;
+    }
+
+    /**
+     * Every file under {@code path} as id -> hash, for one kind.
+     */
+    public synchronized Map<String, String> files(String path) {
+        Map<String, String> result = new LinkedHashMap<>();
+        Node node = find(path);
+        if (node != null) {
+            collect(path, node, result);
+        }
+        return result;
+    }
+
+    private static void collect(String path, Node node, Map<String, String> into) {
+        if (node.children == null) {
+            String id = idOf(path);
+            if (id != null) {
+                into.put(id, node.hash);
+            }
+            return;
+        }
+        node.children.forEach((name, child) -> collect(path + name, child, into));
+    }
+
+    /**
+     * Kind of a node path: {@link #SCRIPTS}, {@link #STRUCTURES}, or null for the root.
+     */
+    @Nullable
+    public static String kindOf(String path) {
+        if (path.startsWith(SCRIPTS)) return SCRIPTS;
+        if (path.startsWith(STRUCTURES)) return STRUCTURES;
+        return null;
+    }
+
+    /**
+     * Id of the file at a leaf path, e.g. {@code create:mixer/basics}; null if it is not a file path.
+     */
+    @Nullable
+    public static String idOf(String path) {
+        String kind = kindOf(path);
+        if (kind == null || path.endsWith("/")) {
+            return null;
+        }
+        String rest = path.substring(kind.length());
+        int slash = rest.indexOf('/');
+        return slash <= 0 ? null : rest.substring(0, slash) + ":" + rest.substring(slash + 1);
+    }
+
+    @Nullable
+    private Node find(String path) {
+        Node node = root;
+        int start = 0;
+        while (start < path.length()) {
+            if (node.children == null) {
+                return null;
+            }
+            int slash = path.indexOf('/', start);
+            String name = slash < 0 ? path.substring(start) : path.substring(start, slash + 1);
+            node = node.children.get(name);
+            if (node == null) {
+                return null;
+            }
+            start += name.length();
+        }
+        return node;
+    }
+
+    private static String hash(Node node) {
+        if (node.hash == null) {
+            StringBuilder sb = new StringBuilder();
+            node.children.forEach((name, child) -> sb.append(name).append('\0').append(hash(child)).append('\n'));
+            node.hash = SyncMeta.sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return node.hash;
+    }
+
+    /** Node names from the root down to the file: kind, namespace and directories end in '/'. */
+    private static List<String> names(String kind, String id) {
+        int colon = id.indexOf(':');
+        String namespace = colon < 0 ? "minecraft" : id.substring(0, colon);
+        String[] parts = id.substring(colon + 1).split("/");
+        List<String> names = new ArrayList<>(parts.length + 2);
+        names.add(kind);
+        names.add(namespace + "/");
+        for (int i = 0; i < parts.length - 1; i++) {
+            names.add(parts[i] + "/");
+        }
+        names.add(parts[parts.length - 1]);
+        return names;
+    }
+}
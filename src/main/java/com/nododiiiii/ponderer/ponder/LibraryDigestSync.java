@@ -0,0 +1,198 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.network.LibraryDigestPayload;
+import com.nododiiiii.ponderer.network.LibraryDigestReplyPayload;
+import com.nododiiiii.ponderer.network.LibraryFetchPayload;
+import com.nododiiiii.ponderer.network.SyncCapabilities;
+import com.nododiiiii.ponderer.network.SyncRequestPayload;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Component;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.slf4j.Logger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client side of {@link LibraryDigest} comparisons with the server.
+ * <ul>
+ *   <li>Pull: the cache's root hash is sent first. If it matches and every local copy of a cached
+ *       file is identical to it, the pull is skipped; otherwise the regular full pull runs.</li>
+ *   <li>Cache refresh on login: the descent goes one level per round trip, only into directories
+ *       whose hashes differ, then fetches just the differing files.</li>
+ * </ul>
+ * Main thread only.
+ */
+public final class LibraryDigestSync {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private enum Purpose { PULL, REFRESH }
+
+    private static final Map<Integer, Purpose> PENDING = new HashMap<>();
+    private static int nextQuery = 0;
+
+    private LibraryDigestSync() {
+    }
+
+    public static boolean isActive() {
+        return SyncCapabilities.serverHas(SyncCapabilities.LIBRARY_DIGEST) && ServerCache.hasManifest();
+    }
+
+    public static void reset() {
+        PENDING.clear();
+    }
+
+    /**
+     * Ask whether a pull would change anything; the pull itself is requested only if it would.
+     */
+    public static void pull() {
+        query(Purpose.PULL, List.of(new LibraryDigestPayload.Node("", LibraryDigestPayload.toBytes(rootHash()))));
+    }
+
+    /** Bring the cache up to date with the server, transferring only what differs. */
+    public static void refreshCache() {
+        query(Purpose.REFRESH, List.of(new LibraryDigestPayload.Node("", LibraryDigestPayload.toBytes(rootHash()))));
+    }
+
+    private static String rootHash() {
+        LibraryDigest digest = ServerCache.digest();
+        return digest == null ? "" : digest.rootHash();
+    }
+
+    private static void query(Purpose purpose, List<LibraryDigestPayload.Node> nodes) {
+        int max = LibraryFetchPayload.MAX_IDS;
+        for (int i = 0; i < nodes.size(); i += max) {
+            int id = ++nextQuery;
+            PENDING.put(id, purpose);
+            PacketDistributor.sendToServer(new LibraryDigestPayload(id, nodes.subList(i, Math.min(i + max, nodes.size()))));
+        }
+    }
+
+    public static void onReply(int queryId, List<LibraryDigestReplyPayload.Expanded> expanded) {
+        Purpose purpose = PENDING.remove(queryId);
+        if (purpose == Purpose.PULL) {
+            onPullReply(expanded.isEmpty());
+        } else if (purpose == Purpose.REFRESH) {
+            descend(expanded);
+        }
+    }
+
+    private static void onPullReply(boolean cacheCurrent) {
+        if (!cacheCurrent) {
+            PacketDistributor.sendToServer(new SyncRequestPayload());
+            return;
+        }
+        Minecraft mc = Minecraft.getInstance();
+        CompletableFuture.supplyAsync(LibraryDigestSync::localCopiesCurrent, Util.ioPool())
+            .thenAcceptAsync(current -> {
+                if (!current) {
+                    PacketDistributor.sendToServer(new SyncRequestPayload());
+                    return;
+                }
+                PondererClientCommands.consumePullMode();
+                if (mc.player != null) {
+                    mc.player.displayClientMessage(Component.translatable("ponderer.cmd.pull.up_to_date"), false);
+                }
+            }, mc)
+            .exceptionally(e -> {
+                LOGGER.error("Failed to compare local files with the server cache", e);
+                mc.execute(() -> PacketDistributor.sendToServer(new SyncRequestPayload()));
+                return null;
+            });
+    }
+
+    /**
+     * Whether every local file with the id of a cached one has the same content, i.e. a pull would
+     * not write anything locally either.
+     */
+    private static boolean localCopiesCurrent() {
+        boolean current = matches(SceneStore.getSceneDir(), ".json", ServerCache.scriptHashes())
+            && matches(SceneStore.getStructureDir(), ".nbt", ServerCache.structureHashes());
+        FileHashCache.flush();
+        return current;
+    }
+
+    private static boolean matches(Path root, String ext, Map<String, String> cached) {
+        for (Map.Entry<String, String> e : cached.entrySet()) {
+            Path local = ServerCache.resolve(root, e.getKey(), ext);
+            if (local != null && Files.exists(local) && !FileHashCache.hash(local).equals(e.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One level of the refresh descent: queue differing directories for the next query, and collect
+     * differing files to fetch. Files only the cache has are requested too; the server reports them removed.
+     */
+    private static void descend(List<LibraryDigestReplyPayload.Expanded> expanded) {
+        LibraryDigest digest = ServerCache.digest();
+        if (digest == null) {
+            return;
+        }
+        List<LibraryDigestPayload.Node> next = new ArrayList<>();
+        List<String> scripts = new ArrayList<>();
+        List<String> structures = new ArrayList<>();
+        for (LibraryDigestReplyPayload.Expanded node : expanded) {
+            Map<String, String> ours = new HashMap<>();
+            for (LibraryDigest.Child child : digest.children(node.path())) {
+                ours.put(child.name(), child.hash());
+            }
+            for (LibraryDigest.Child child : node.children()) {
+                String path = node.path() + child.name();
+                String ourHash = ours.remove(child.name());
+                if (child.hash().equals(ourHash)) {
+                    continue;
+                }
+                if (child.isDirectory()) {
+                    next.add(new LibraryDigestPayload.Node(path, LibraryDigestPayload.toBytes(ourHash)));
+                } else {
+                    addFile(path, scripts, structures);
+                }
+            }
+            for (String onlyOurs : ours.keySet()) {
+                String path = node.path() + onlyOurs;
+                for (String id : digest.files(path).keySet()) {
+                    addFile(LibraryDigest.kindOf(path), id, scripts, structures);
+                }
+            }
+        }
+
+        if (!scripts.isEmpty() || !structures.isEmpty()) {
+            LOGGER.debug("Fetching {} scene(s) and {} structure(s) that differ from the server", scripts.size(), structures.size());
+            fetch(scripts, structures);
+        }
+        if (!next.isEmpty()) {
+            query(Purpose.REFRESH, next);
+        }
+    }
+
+    private static void addFile(String path, List<String> scripts, List<String> structures) {
+        String id = LibraryDigest.idOf(path);
+        if (id != null) {
+            addFile(LibraryDigest.kindOf(path), id, scripts, structures);
+        }
+    }
+
+    private static void addFile(String kind, String id, List<String> scripts, List<String> structures) {
+        (LibraryDigest.STRUCTURES.equals(kind) ? structures : scripts).add(id);
+    }
+
+    private static void fetch(List<String> scripts, List<String> structures) {
+        int max = LibraryFetchPayload.MAX_IDS;
+        for (int i = 0; i < scripts.size(); i += max) {
+            PacketDistributor.sendToServer(new LibraryFetchPayload(scripts.subList(i, Math.min(i + max, scripts.size())), List.of()));
+        }
+        for (int i = 0; i < structures.size(); i += max) {
+            PacketDistributor.sendToServer(new LibraryFetchPayload(List.of(), structures.subList(i, Math.min(i + max, structures.size()))));
+        }
+    }
+}
@@ -4,11 +4,15 @@ import com.google.gson.*;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import net.minecraft.client.Minecraft;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A text value that can be either a plain string or a map of language code to string.
@@ -16,15 +20,44 @@ import java.util.Map;
  * <pre>
  *   "text": "Hello"                                       // plain string
  *   "text": {"en_us": "Hello", "zh_cn": "你好"}            // localized
+ *   "text": {"$key": "ponderer:demo.step.1"}              // looked up in {@link LangBundles}
  * </pre>
  * <p>Resolution order: user language -> en_us -> first available -> ""</p>
+ * <p>{@link #resolve()} is cached per instance until the language changes or the text is edited.</p>
+ * <p>Translations are kept as two parallel arrays: ids into a shared table of language codes, and
+ * the texts, in insertion order. Texts read from JSON are deduplicated across all scenes.</p>
  */
 public final class LocalizedText {
 
-    /** null if this is a localized map; the plain text otherwise */
+    private static final int[] NO_LANGS = new int[0];
+    private static final String[] NO_TEXTS = new String[0];
+
+    /** Language code -> id; ids index {@link #languageCodes}. */
+    private static final Map<String, Integer> LANGUAGE_IDS = new ConcurrentHashMap<>();
+    private static volatile String[] languageCodes = new String[0];
+    /** Shares equal texts loaded from different scenes. */
+    private static final Interner<String> TEXTS = Interners.newWeakInterner();
+    private static final int EN_US = languageId("en_us");
+    static final String KEY_FIELD = "$key";
+
+    /** Bumped on every resource reload, which is how a language change is applied. */
+    private static volatile int languageEpoch;
+    /** Selected language code, or null until read after the last reload. */
+    private static volatile String currentLanguage;
+
+    /** A resolved string and the epoch it belongs to, replaced as one reference so other threads never see a mixed pair. */
+    private record Resolved(int epoch, String text) {}
+
+    /** null if this is a localized map or a key; the plain text otherwise */
     private String plain;
-    /** null if this is a plain string; the lang->text map otherwise */
-    private Map<String, String> localized;
+    /** null unless this is a bundle key */
+    private String key;
+    /** null if this is a plain string; language ids of the translations otherwise */
+    private int[] langs;
+    /** null if this is a plain string; texts parallel to {@link #langs} otherwise */
+    private String[] texts;
+    /** null until first resolved or after an edit */
+    private Resolved resolved;
 
     private LocalizedText() {}
 
@@ -38,7 +71,20 @@ public final class LocalizedText {
     /** Create a localized text from a language map. */
     public static LocalizedText ofMap(Map<String, String> map) {
         LocalizedText lt = new LocalizedText();
-        lt.localized = new LinkedHashMap<>(map);
+        lt.langs = new int[map.size()];
+        lt.texts = new String[map.size()];
+        int i = 0;
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            lt.langs[i] = languageId(e.getKey());
+            lt.texts[i++] = e.getValue();
+        }
+        return lt;
+    }
+
+    /** Create a text whose translations live in the {@link LangBundles} under {@code key}. */
+    public static LocalizedText ofKey(String key) {
+        LocalizedText lt = new LocalizedText();
+        lt.key = key;
         return lt;
     }
 
@@ -47,10 +93,30 @@ public final class LocalizedText {
         return plain != null;
     }
 
-    /** Get the map of all translations. Returns a single-entry map for plain text. */
+    /** Whether this is a key into the translation bundles. */
+    public boolean isKey() {
+        return key != null;
+    }
+
+    /** The bundle key, or null if the translations are inline. */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Get a copy of all translations. Returns a single-entry map for plain text, and the
+     * translations from every bundle for a key.
+     */
     public Map<String, String> getAllTranslations() {
-        if (localized != null) return localized;
+        if (key != null) return LangBundles.translations(key);
         Map<String, String> m = new LinkedHashMap<>();
+        if (plain == null && langs != null) {
+            String[] codes = languageCodes;
+            for (int i = 0; i < langs.length; i++) {
+                m.put(codes[langs[i]], texts[i]);
+            }
+            return m;
+        }
         m.put("_plain", plain != null ? plain : "");
         return m;
     }
@@ -61,20 +127,13 @@ public final class LocalizedText {
      */
     public String resolve() {
         if (plain != null) return plain;
-        if (localized == null || localized.isEmpty()) return "";
-
-        String lang = getCurrentLanguage();
+        int epoch = languageEpoch;
+        Resolved cached = resolved;
+        if (cached != null && cached.epoch() == epoch) return cached.text();
 
-        // 1. Try current language
-        String val = localized.get(lang);
-        if (val != null) return val;
-
-        // 2. Try en_us
-        val = localized.get("en_us");
-        if (val != null) return val;
-
-        // 3. First available
-        return localized.values().iterator().next();
+        String text = resolve(getCurrentLanguage());
+        resolved = new Resolved(epoch, text);
+        return text;
     }
 
     /**
@@ -82,15 +141,21 @@ public final class LocalizedText {
      */
     public String resolve(String lang) {
         if (plain != null) return plain;
-        if (localized == null || localized.isEmpty()) return "";
+        if (key != null) {
+            // A missing translation shows the key, so it is easy to spot
+            String val = LangBundles.resolve(key, lang);
+            return val != null ? val : key;
+        }
+        if (langs == null || langs.length == 0) return "";
 
-        String val = localized.get(lang);
+        Integer id = LANGUAGE_IDS.get(lang);
+        String val = id != null ? find(id) : null;
         if (val != null) return val;
 
-        val = localized.get("en_us");
+        val = find(EN_US);
         if (val != null) return val;
 
-        return localized.values().iterator().next();
+        return texts[0];
     }
 
     /**
@@ -116,20 +181,37 @@ public final class LocalizedText {
      * it will be upgraded to a localized map (keeping the old plain as en_us).
      */
     public void setForLang(String lang, String text) {
+        resolved = null;
+        if (key != null) {
+            // Edited texts go back inline; the bundles are only changed by /ponderer lang extract
+            Map<String, String> translations = LangBundles.translations(key);
+            key = null;
+            langs = NO_LANGS;
+            texts = NO_TEXTS;
+            for (Map.Entry<String, String> e : translations.entrySet()) {
+                put(languageId(e.getKey()), e.getValue());
+            }
+            put(languageId(lang), text);
+            return;
+        }
         if (plain != null) {
             if ("en_us".equals(lang)) {
                 plain = text;
             } else {
-                localized = new LinkedHashMap<>();
+                langs = NO_LANGS;
+                texts = NO_TEXTS;
                 if (!plain.isEmpty()) {
-                    localized.put("en_us", plain);
+                    put(EN_US, plain);
                 }
-                localized.put(lang, text);
+                put(languageId(lang), text);
                 plain = null;
             }
         } else {
-            if (localized == null) localized = new LinkedHashMap<>();
-            localized.put(lang, text);
+            if (langs == null) {
+                langs = NO_LANGS;
+                texts = NO_TEXTS;
+            }
+            put(languageId(lang), text);
         }
     }
 
@@ -143,15 +225,59 @@ public final class LocalizedText {
             // Plain text is treated as unlocalized; return it for any language query
             return plain;
         }
-        if (localized == null) return null;
-        return localized.get(lang);
+        if (key != null) return LangBundles.get(key, lang);
+        if (langs == null) return null;
+        Integer id = LANGUAGE_IDS.get(lang);
+        return id != null ? find(id) : null;
     }
 
     /** Check if the text is null/empty in all forms. */
     public boolean isEmpty() {
         if (plain != null) return plain.isEmpty();
-        if (localized == null || localized.isEmpty()) return true;
-        return localized.values().stream().allMatch(v -> v == null || v.isEmpty());
+        if (key != null) return key.isEmpty();
+        if (texts == null) return true;
+        for (String text : texts) {
+            if (text != null && !text.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /** The text stored under a language id, or null. */
+    private String find(int id) {
+        for (int i = 0; i < langs.length; i++) {
+            if (langs[i] == id) return texts[i];
+        }
+        return null;
+    }
+
+    /** Replace the text of a language, or append it. */
+    private void put(int id, String text) {
+        for (int i = 0; i < langs.length; i++) {
+            if (langs[i] == id) {
+                texts[i] = text;
+                return;
+            }
+        }
+        langs = Arrays.copyOf(langs, langs.length + 1);
+        texts = Arrays.copyOf(texts, texts.length + 1);
+        langs[langs.length - 1] = id;
+        texts[texts.length - 1] = text;
+    }
+
+    private static int languageId(String lang) {
+        Integer id = LANGUAGE_IDS.get(lang);
+        return id != null ? id : registerLanguage(lang);
+    }
+
+    private static synchronized int registerLanguage(String lang) {
+        Integer id = LANGUAGE_IDS.get(lang);
+        if (id != null) return id;
+        String[] codes = Arrays.copyOf(languageCodes, languageCodes.length + 1);
+        codes[codes.length - 1] = lang;
+        // Publish the code before the id, so a reader holding the id always finds it
+        languageCodes = codes;
+        LANGUAGE_IDS.put(lang, codes.length - 1);
+        return codes.length - 1;
     }
 
     @Override
@@ -159,12 +285,28 @@ public final class LocalizedText {
         return resolve();
     }
 
-    private static String getCurrentLanguage() {
+    static String getCurrentLanguage() {
+        String lang = currentLanguage;
+        if (lang != null) return lang;
         try {
-            return Minecraft.getInstance().getLanguageManager().getSelected();
+            lang = Minecraft.getInstance().getLanguageManager().getSelected();
         } catch (Exception e) {
+            // Not ready yet; don't remember the fallback
             return "en_us";
         }
+        currentLanguage = lang;
+        return lang;
+    }
+
+    /** Drop every cached resolution and loaded bundle; called after the client reloads its resources. */
+    public static void onLanguageChanged() {
+        currentLanguage = null;
+        LangBundles.invalidate();
+    }
+
+    /** Drop every cached resolution, e.g. after the bundles changed. */
+    static void invalidateResolved() {
+        languageEpoch++;
     }
 
     // ---- Gson TypeAdapter ----
@@ -178,10 +320,15 @@ public final class LocalizedText {
             }
             if (value.plain != null) {
                 out.value(value.plain);
-            } else if (value.localized != null) {
+            } else if (value.key != null) {
                 out.beginObject();
-                for (Map.Entry<String, String> e : value.localized.entrySet()) {
-                    out.name(e.getKey()).value(e.getValue());
+                out.name(KEY_FIELD).value(value.key);
+                out.endObject();
+            } else if (value.langs != null) {
+                String[] codes = languageCodes;
+                out.beginObject();
+                for (int i = 0; i < value.langs.length; i++) {
+                    out.name(codes[value.langs[i]]).value(value.texts[i]);
                 }
                 out.endObject();
             } else {
@@ -197,7 +344,7 @@ public final class LocalizedText {
                 return null;
             }
             if (token == JsonToken.STRING) {
-                return LocalizedText.of(in.nextString());
+                return LocalizedText.of(TEXTS.intern(in.nextString()));
             }
             if (token == JsonToken.BEGIN_OBJECT) {
                 Map<String, String> map = new LinkedHashMap<>();
@@ -206,7 +353,7 @@ public final class LocalizedText {
                     String key = in.nextName();
                     JsonToken valueToken = in.peek();
                     if (valueToken == JsonToken.STRING) {
-                        map.put(key, in.nextString());
+                        map.put(key, TEXTS.intern(in.nextString()));
                         continue;
                     }
 
@@ -218,7 +365,7 @@ public final class LocalizedText {
                             String lang = in.nextName();
                             JsonToken nested = in.peek();
                             if (nested == JsonToken.STRING) {
-                                map.put(lang, in.nextString());
+                                map.put(lang, TEXTS.intern(in.nextString()));
                             } else {
                                 in.skipValue();
                             }
@@ -230,6 +377,10 @@ public final class LocalizedText {
                     in.skipValue();
                 }
                 in.endObject();
+                String bundleKey = map.get(KEY_FIELD);
+                if (bundleKey != null && map.size() == 1) {
+                    return LocalizedText.ofKey(bundleKey);
+                }
                 return LocalizedText.ofMap(map);
             }
             // unexpected token - skip and return empty
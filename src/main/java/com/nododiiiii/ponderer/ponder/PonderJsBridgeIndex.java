@@ -0,0 +1,96 @@
+package com.nododiiiii.ponderer.ponder;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Client-side index of the PonderJS scripts folder: which scene each bridge script holds, read from
+ * its {@code PONDERER_BRIDGE_ID} header line only. Entries are re-read only when a file's size or
+ * modification time changes, so looking up one scene lists the folder but opens just changed files.
+ */
+final class PonderJsBridgeIndex {
+
+    /**
+     * @param bridgeId scene id from the bridge header, or null if the file has none
+     */
+    private record Entry(long size, long mtime, @Nullable String bridgeId) {
+    }
+
+    private static final Map<Path, Entry> ENTRIES = new HashMap<>();
+
+    private PonderJsBridgeIndex() {
+    }
+
+    /**
+     * Files that may hold scene {@code sceneId}: bridge scripts with that id, or plain PonderJS
+     * scripts whose file name gives that id on import. Callers still check the parsed scene's id.
+     */
+    static synchronized List<Path> filesFor(Path scriptsDir, String sceneId) throws IOException {
+        refresh(scriptsDir);
+        List<Path> result = new ArrayList<>();
+        for (Map.Entry<Path, Entry> e : ENTRIES.entrySet()) {
+            String bridgeId = e.getValue().bridgeId();
+            if (bridgeId != null ? bridgeId.equals(sceneId) : PonderJsConversionService.importedId(e.getKey()).equals(sceneId)) {
+                result.add(e.getKey());
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private static void refresh(Path scriptsDir) throws IOException {
+        Set<Path> seen = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(scriptsDir)) {
+            for (Path path : paths.filter(p -> p.toString().endsWith(".js")).toList()) {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                long mtime = attrs.lastModifiedTime().toMillis();
+                seen.add(path);
+                Entry cached = ENTRIES.get(path);
+                if (cached == null || cached.size() != attrs.size() || cached.mtime() != mtime) {
+                    ENTRIES.put(path, new Entry(attrs.size(), mtime, readBridgeId(path)));
+                }
+            }
+        }
+        ENTRIES.keySet().retainAll(seen);
+    }
+
+    /**
+     * The bridge id from the leading comment block, or null if the code starts without one.
+     */
+    @Nullable
+    static String readBridgeId(Path file) {
+        return readHeader(file, PonderJsConversionService.BRIDGE_ID_PREFIX);
+    }
+
+    /**
+     * The value of a {@code prefix} line in the leading comment block of a script, or null if there is none.
+     */
+    @Nullable
+    static String readHeader(Path file, String prefix) {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(prefix)) {
+                    return line.substring(prefix.length()).trim();
+                }
+                if (!line.isBlank() && !line.startsWith("//")) {
+                    return null;
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+}
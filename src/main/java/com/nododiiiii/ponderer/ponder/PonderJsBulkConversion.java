@@ -0,0 +1,260 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.mojang.logging.LogUtils;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Converts every scene to or from PonderJS in one background job.
+ * <ul>
+ *   <li>Import: files are parsed in parallel on the worker pool, the scenes are saved in one
+ *       batch, and scenes are reloaded once at the end.</li>
+ *   <li>Export: the loaded scenes are serialized on the main thread, then hashed in parallel;
+ *       scripts whose bridge hash already matches are skipped, and the rest are streamed to disk
+ *       in one batch.</li>
+ * </ul>
+ * Each file's time and outcome is logged; the chat gets a summary with the failures and the slowest file.
+ */
+public final class PonderJsBulkConversion {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    /** Failures listed in chat; the rest are only logged. */
+    private static final int MAX_REPORTED_FAILURES = 5;
+
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+
+    private PonderJsBulkConversion() {
+    }
+
+    /**
+     * Outcome of one file or scene.
+     *
+     * @param scene   the imported scene, or null if the file was skipped or failed
+     * @param error   why it failed, or null
+     * @param skipped the file is not a PonderJS script, or its export is already up to date
+     */
+    private record Outcome(String name, long nanos, @Nullable DslScene scene, @Nullable String error, boolean skipped) {
+        long millis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    /** A prepared export, or why it could not be prepared. */
+    private record Prepared(String name, long nanos, @Nullable PonderJsConversionService.Export export,
+                            boolean unchanged, @Nullable String error) {
+    }
+
+    /** @return 1 if the import was started, 0 if another conversion is still running */
+    public static int importAll() {
+        if (!RUNNING.compareAndSet(false, true)) {
+            notifyClient(Component.translatable("ponderer.cmd.convert.busy"));
+            return 0;
+        }
+        Path scriptsDir = PonderJsConversionService.getClientScriptsDir();
+        if (!Files.exists(scriptsDir)) {
+            RUNNING.set(false);
+            notifyClient(Component.translatable("ponderer.cmd.convert.dir_not_found"));
+            return 0;
+        }
+        Minecraft mc = Minecraft.getInstance();
+        long started = System.nanoTime();
+
+        CompletableFuture.supplyAsync(() -> listScripts(scriptsDir), Util.ioPool())
+            .thenCompose(files -> {
+                List<CompletableFuture<Outcome>> parsing = new ArrayList<>(files.size());
+                for (Path file : files) {
+                    parsing.add(CompletableFuture.supplyAsync(() -> parse(scriptsDir, file), Util.backgroundExecutor()));
+                }
+                return CompletableFuture.allOf(parsing.toArray(CompletableFuture[]::new))
+                    .thenApply(ignored -> parsing.stream().map(CompletableFuture::join).toList());
+            })
+            .thenApplyAsync(outcomes -> {
+                List<DslScene> scenes = new ArrayList<>();
+                for (Outcome outcome : outcomes) {
+                    if (outcome.scene() != null) scenes.add(outcome.scene());
+                }
+                Set<String> saved = scenes.isEmpty() ? Set.of() : SceneStore.saveScenesToLocal(scenes);
+                List<Outcome> result = new ArrayList<>(outcomes.size());
+                for (Outcome outcome : outcomes) {
+                    boolean failedSave = outcome.scene() != null && !saved.contains(outcome.scene().id);
+                    result.add(failedSave ? new Outcome(outcome.name(), outcome.nanos(), null, "save failed", false) : outcome);
+                }
+                return new Imported(result, saved.size(), SceneStore.loadScenesFromDisk());
+            }, Util.ioPool())
+            .thenAcceptAsync(imported -> {
+                SceneRuntime.setScenes(imported.scenes());
+                PonderIndex.reload();
+                notifyClient(Component.translatable("ponderer.cmd.convert.from_all_done", imported.saved()));
+                report(imported.outcomes(), started);
+            }, mc)
+            .whenComplete((ignored, e) -> RUNNING.set(false))
+            .exceptionally(e -> {
+                LOGGER.error("PonderJS import failed", e);
+                mc.execute(() -> notifyClient(Component.translatable("ponderer.cmd.convert.scan_failed")));
+                return null;
+            });
+        return 1;
+    }
+
+    private record Imported(List<Outcome> outcomes, int saved, List<DslScene> scenes) {
+    }
+
+    /** @return 1 if the export was started, 0 if another conversion is still running */
+    public static int exportAll() {
+        if (!RUNNING.compareAndSet(false, true)) {
+            notifyClient(Component.translatable("ponderer.cmd.convert.busy"));
+            return 0;
+        }
+        Minecraft mc = Minecraft.getInstance();
+        long started = System.nanoTime();
+
+        // The loaded scenes are only touched on the main thread: serialize them here, and let the
+        // workers hash and emit from their own copies
+        List<DslScene> scenes = SceneRuntime.getScenes();
+        List<CompletableFuture<Prepared>> preparing = new ArrayList<>(scenes.size());
+        int placeholders = 0;
+        for (DslScene scene : scenes) {
+            if (scene == null || scene.id == null || scene.id.isBlank()) continue;
+            if (scene.placeholder) {
+                // Not downloaded yet: exporting it would overwrite a real script with an empty one
+                placeholders++;
+                continue;
+            }
+            String id = scene.id;
+            String json;
+            try {
+                json = PonderJsConversionService.exportJson(scene);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to serialize {}", id, e);
+                preparing.add(CompletableFuture.completedFuture(new Prepared(id, 0, null, false, String.valueOf(e.getMessage()))));
+                continue;
+            }
+            preparing.add(CompletableFuture.supplyAsync(() -> prepare(id, json), Util.backgroundExecutor()));
+        }
+        if (placeholders > 0) {
+            LOGGER.info("Skipping {} scene(s) not downloaded from the server yet", placeholders);
+        }
+        CompletableFuture.allOf(preparing.toArray(CompletableFuture[]::new))
+            .thenApplyAsync(ignored -> write(preparing.stream().map(CompletableFuture::join).toList()), Util.ioPool())
+            .thenAcceptAsync(outcomes -> {
+                long written = outcomes.stream().filter(o -> o.error() == null && !o.skipped()).count();
+                notifyClient(Component.translatable("ponderer.cmd.convert.to_all_done", written));
+                report(outcomes, started);
+            }, mc)
+            .whenComplete((ignored, e) -> RUNNING.set(false))
+            .exceptionally(e -> {
+                LOGGER.error("PonderJS export failed", e);
+                return null;
+            });
+        return 1;
+    }
+
+    private static List<Path> listScripts(Path scriptsDir) {
+        try (Stream<Path> paths = Files.walk(scriptsDir)) {
+            return paths.filter(path -> path.toString().endsWith(".js")).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Outcome parse(Path scriptsDir, Path file) {
+        String name = scriptsDir.relativize(file).toString();
+        long start = System.nanoTime();
+        try {
+            DslScene scene = PonderJsConversionService.readPonderJsFile(file);
+            return new Outcome(name, System.nanoTime() - start, scene, null, scene == null);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to import {}", file, e);
+            return new Outcome(name, System.nanoTime() - start, null, String.valueOf(e.getMessage()), false);
+        }
+    }
+
+    private static Prepared prepare(String sceneId, String json) {
+        long start = System.nanoTime();
+        ResourceLocation id = ResourceLocation.tryParse(sceneId);
+        if (id == null) {
+            return new Prepared(sceneId, System.nanoTime() - start, null, false, "invalid id");
+        }
+        try {
+            PonderJsConversionService.Export export = PonderJsConversionService.prepareCopy(json, id);
+            boolean unchanged = export.unchanged();
+            return new Prepared(sceneId, System.nanoTime() - start, export, unchanged, null);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to convert {} to PonderJS", sceneId, e);
+            return new Prepared(sceneId, System.nanoTime() - start, null, false, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /** Write every changed script; a scene's time covers both preparing and writing it. */
+    private static List<Outcome> write(List<Prepared> prepared) {
+        List<Outcome> outcomes = new ArrayList<>(prepared.size());
+        for (Prepared p : prepared) {
+            if (p.error() != null || p.unchanged()) {
+                outcomes.add(new Outcome(p.name(), p.nanos(), null, p.error(), p.unchanged()));
+                continue;
+            }
+            long start = System.nanoTime();
+            String error = null;
+            try {
+                PonderJsConversionService.writeExport(p.export());
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write {}", p.export().out(), e);
+                error = String.valueOf(e.getMessage());
+            }
+            outcomes.add(new Outcome(p.name(), p.nanos() + System.nanoTime() - start, null, error, false));
+        }
+        return outcomes;
+    }
+
+    /** Log every file's time and outcome; show the totals, failures and slowest file in chat. */
+    private static void report(List<Outcome> outcomes, long started) {
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        List<Outcome> failed = new ArrayList<>();
+        int skipped = 0;
+        Outcome slowest = null;
+        for (Outcome outcome : outcomes) {
+            String status = outcome.error() != null ? "failed (" + outcome.error() + ")" : outcome.skipped() ? "skipped" : "ok";
+            LOGGER.info("  {}: {} in {} ms", outcome.name(), status, outcome.millis());
+            if (outcome.error() != null) failed.add(outcome);
+            if (outcome.skipped()) skipped++;
+            if (slowest == null || outcome.nanos() > slowest.nanos()) slowest = outcome;
+        }
+        LOGGER.info("PonderJS conversion: {} file(s), {} failed, {} skipped, {} ms",
+            outcomes.size(), failed.size(), skipped, wallMillis);
+
+        notifyClient(Component.translatable("ponderer.cmd.convert.timing", outcomes.size(), wallMillis, failed.size(), skipped));
+        if (slowest != null) {
+            notifyClient(Component.translatable("ponderer.cmd.convert.slowest", slowest.name(), slowest.millis()));
+        }
+        failed.sort(Comparator.comparing(Outcome::name));
+        for (int i = 0; i < Math.min(failed.size(), MAX_REPORTED_FAILURES); i++) {
+            notifyClient(Component.translatable("ponderer.cmd.convert.failed_file", failed.get(i).name(), failed.get(i).error()));
+        }
+        if (failed.size() > MAX_REPORTED_FAILURES) {
+            notifyClient(Component.translatable("ponderer.cmd.convert.more_failed", failed.size() - MAX_REPORTED_FAILURES));
+        }
+    }
+
+    private static void notifyClient(Component message) {
+        if (Minecraft.getInstance().player != null) {
+            Minecraft.getInstance().player.displayClientMessage(message, false);
+        }
+    }
+}
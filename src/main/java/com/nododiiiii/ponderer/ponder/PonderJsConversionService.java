@@ -2,23 +2,33 @@ package com.nododiiiii.ponderer.ponder;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.mojang.logging.LogUtils;
 import net.createmod.ponder.foundation.PonderIndex;
 import net.minecraft.client.Minecraft;
 import net.minecraft.resources.ResourceLocation;
+import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 public final class PonderJsConversionService {
-    private static final String BRIDGE_ID_PREFIX = "// PONDERER_BRIDGE_ID ";
+    private static final Logger LOGGER = LogUtils.getLogger();
+    static final String BRIDGE_ID_PREFIX = "// PONDERER_BRIDGE_ID ";
+    static final String BRIDGE_HASH_PREFIX = "// PONDERER_BRIDGE_HASH ";
     private static final String BRIDGE_JSON_PREFIX = "// PONDERER_BRIDGE_JSON_BASE64 ";
+    /** Part of the export hash; bump when the emitted code changes, so older exports get rewritten. */
+    private static final int EXPORT_FORMAT = 1;
     private static final Pattern PONDER_REGISTRY_PATTERN = Pattern.compile("Ponder\\s*\\.\\s*registry\\s*\\(\\s*\\(?\\s*event\\s*\\)?", Pattern.CASE_INSENSITIVE);
     private static final Pattern CREATE_PATTERN = Pattern.compile("event\\s*\\.\\s*create\\s*\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)", Pattern.CASE_INSENSITIVE);
     private static final Pattern SCENE_PATTERN = Pattern.compile("\\.\\s*scene\\s*\\(\\s*['\"]([^'\"]+)['\"]\\s*,\\s*['\"]([^'\"]*)['\"](?:\\s*,\\s*['\"]([^'\"]*)['\"])?", Pattern.CASE_INSENSITIVE);
@@ -31,7 +41,7 @@ public final class PonderJsConversionService {
     private PonderJsConversionService() {
     }
 
-    private static Path getClientScriptsDir() {
+    static Path getClientScriptsDir() {
         return Minecraft.getInstance().gameDirectory.toPath()
             .resolve("kubejs").resolve("client_scripts").resolve("ponder");
     }
@@ -44,17 +54,20 @@ public final class PonderJsConversionService {
             notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.scene_not_found", id.toString()));
             return 0;
         }
+        if (scene.get().placeholder) {
+            LazyFetch.requestScene(id.toString());
+            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.lazy.not_fetched", id.toString()));
+            return 0;
+        }
 
-        Path scriptsDir = getClientScriptsDir();
-        String flatName = id.getNamespace() + "_" + id.getPath().replace('/', '_') + ".ponderer.js";
-        Path out = scriptsDir.resolve(flatName);
         try {
-            Files.createDirectories(out.getParent());
-            String json = GSON.toJson(scene.get());
-            String b64 = Base64.getEncoder().encodeToString(json.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            String content = buildPonderJsScript(scene.get(), id.toString(), b64);
-            Files.writeString(out, content);
-            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.to_done", out.toString()));
+            Export export = prepareExport(scene.get(), id);
+            if (export.unchanged()) {
+                notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.to_unchanged", export.out().toString()));
+                return 1;
+            }
+            writeExport(export);
+            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.to_done", export.out().toString()));
             return 1;
         } catch (Exception e) {
             notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.to_failed", id.toString()));
@@ -63,19 +76,63 @@ public final class PonderJsConversionService {
     }
 
     public static int convertAllToPonderJs() {
-        int count = 0;
-        for (DslScene scene : SceneRuntime.getScenes()) {
-            if (scene == null || scene.id == null || scene.id.isBlank()) {
-                continue;
-            }
-            ResourceLocation id = ResourceLocation.tryParse(scene.id);
-            if (id == null) {
-                continue;
-            }
-            count += convertToPonderJs(id);
+        return PonderJsBulkConversion.exportAll();
+    }
+
+    /** File name of a scene's bridge script in the client scripts directory. */
+    static String bridgeFileName(ResourceLocation id) {
+        return id.getNamespace() + "_" + id.getPath().replace('/', '_') + ".ponderer.js";
+    }
+
+    /**
+     * A scene about to be exported.
+     *
+     * @param json the scene's JSON, embedded in the bridge header
+     * @param hash hash of what the script is generated from, recorded in the bridge header
+     */
+    record Export(DslScene scene, String id, Path out, byte[] json, String hash) {
+        /** Whether the script on disk was generated from the same input, so rewriting it would change nothing. */
+        boolean unchanged() {
+            return Files.exists(out) && hash.equals(PonderJsBridgeIndex.readHeader(out, BRIDGE_HASH_PREFIX));
         }
-        notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.to_all_done", count));
-        return count;
+    }
+
+    static Export prepareExport(DslScene scene, ResourceLocation id) {
+        return prepareExport(scene, id, GSON.toJson(scene).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The JSON a scene is exported from. Taking it is the only step that reads the live scene, so
+     * a background export serializes on the main thread and passes the result to {@link #prepareCopy}.
+     */
+    static String exportJson(DslScene scene) {
+        return GSON.toJson(scene);
+    }
+
+    /** Prepare an export from {@link #exportJson} output, emitting from a private copy of the scene. */
+    static Export prepareCopy(String json, ResourceLocation id) {
+        return prepareExport(GSON.fromJson(json, DslScene.class), id, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Export prepareExport(DslScene scene, ResourceLocation id, byte[] json) {
+        // Texts are emitted in the current language, possibly from its bundle, so both are part of the input too
+        String lang = LocalizedText.getCurrentLanguage();
+        byte[] context = ("\n" + lang + "\n" + LangBundles.fingerprint(lang) + "\n" + EXPORT_FORMAT).getBytes(StandardCharsets.UTF_8);
+        byte[] input = Arrays.copyOf(json, json.length + context.length);
+        System.arraycopy(context, 0, input, json.length, context.length);
+        Path out = getClientScriptsDir().resolve(bridgeFileName(id));
+        return new Export(scene, id.toString(), out, json, SyncMeta.sha256(input));
+    }
+
+    /** Stream the bridge script to a temporary file, then move it over the old one. */
+    static void writeExport(Export export) throws IOException {
+        Path out = export.out();
+        Files.createDirectories(out.getParent());
+        Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writePonderJsScript(writer, export);
+        }
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     public static int convertFromPonderJs(ResourceLocation id) {
@@ -85,8 +142,8 @@ public final class PonderJsConversionService {
             return 0;
         }
         int count = 0;
-        try (Stream<Path> paths = Files.walk(scriptsDir)) {
-            for (Path p : paths.filter(path -> path.toString().endsWith(".js")).toList()) {
+        try {
+            for (Path p : PonderJsBridgeIndex.filesFor(scriptsDir, id.toString())) {
                 DslScene scene = parseAnyPonderJsFile(p);
                 if (scene == null || !id.toString().equals(scene.id)) {
                     continue;
@@ -106,59 +163,32 @@ public final class PonderJsConversionService {
     }
 
     public static int convertAllFromPonderJs() {
-        Path scriptsDir = getClientScriptsDir();
-        if (!Files.exists(scriptsDir)) {
-            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.dir_not_found"));
-            return 0;
-        }
-        int count = 0;
-        try (Stream<Path> paths = Files.walk(scriptsDir)) {
-            for (Path p : paths.filter(path -> path.toString().endsWith(".js")).toList()) {
-                DslScene scene = parseAnyPonderJsFile(p);
-                if (scene == null) {
-                    continue;
-                }
-                if (SceneStore.saveSceneToLocal(scene)) {
-                    count++;
-                }
-            }
-        } catch (Exception e) {
-            notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.scan_failed"));
-            return 0;
-        }
-        SceneStore.reloadFromDisk();
-        Minecraft.getInstance().execute(PonderIndex::reload);
-        notifyClient(net.minecraft.network.chat.Component.translatable("ponderer.cmd.convert.from_all_done", count));
-        return count;
+        return PonderJsBulkConversion.importAll();
     }
 
     private record BridgeExtract(String id, String base64) {
     }
 
-    private static BridgeExtract extractBridge(Path file) {
-        try {
-            String id = null;
-            String b64 = null;
-            for (String line : Files.readAllLines(file)) {
-                if (line.startsWith(BRIDGE_ID_PREFIX)) {
-                    id = line.substring(BRIDGE_ID_PREFIX.length()).trim();
-                } else if (line.startsWith(BRIDGE_JSON_PREFIX)) {
-                    b64 = line.substring(BRIDGE_JSON_PREFIX.length()).trim();
-                }
-            }
-            if (id == null || b64 == null) {
-                return null;
+    private static BridgeExtract extractBridge(String content) {
+        String id = null;
+        String b64 = null;
+        for (String line : content.lines().toList()) {
+            if (line.startsWith(BRIDGE_ID_PREFIX)) {
+                id = line.substring(BRIDGE_ID_PREFIX.length()).trim();
+            } else if (line.startsWith(BRIDGE_JSON_PREFIX)) {
+                b64 = line.substring(BRIDGE_JSON_PREFIX.length()).trim();
             }
-            return new BridgeExtract(id, b64);
-        } catch (Exception e) {
+        }
+        if (id == null || b64 == null) {
             return null;
         }
+        return new BridgeExtract(id, b64);
     }
 
     private static DslScene parseBridgeScene(BridgeExtract extracted) {
         try {
             byte[] raw = Base64.getDecoder().decode(extracted.base64());
-            String json = new String(raw, java.nio.charset.StandardCharsets.UTF_8);
+            String json = new String(raw, StandardCharsets.UTF_8);
             DslScene scene = GSON.fromJson(json, DslScene.class);
             if (scene == null || scene.id == null || scene.id.isBlank()) {
                 return null;
@@ -171,123 +201,103 @@ public final class PonderJsConversionService {
 
     private static DslScene parseAnyPonderJsFile(Path file) {
         try {
-            String content = Files.readString(file);
+            return readPonderJsFile(file);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 
-            BridgeExtract extracted = extractBridge(file);
-            if (extracted != null) {
-                DslScene decoded = parseBridgeScene(extracted);
-                if (decoded != null) {
-                    return decoded;
-                }
+    /**
+     * Read a scene from a bridge script, or import it from plain PonderJS code.
+     *
+     * @return null if the file is neither
+     */
+    static DslScene readPonderJsFile(Path file) throws IOException {
+        String content = Files.readString(file);
+
+        BridgeExtract extracted = extractBridge(content);
+        if (extracted != null) {
+            DslScene decoded = parseBridgeScene(extracted);
+            if (decoded != null) {
+                return decoded;
             }
+        }
 
-            if (!PONDER_REGISTRY_PATTERN.matcher(content).find()) {
-                return null;
-            }
+        if (!PONDER_REGISTRY_PATTERN.matcher(content).find()) {
+            return null;
+        }
 
-            String defaultId = "ponderer:imported/" + stripExt(file.getFileName().toString()).replaceAll("[^a-zA-Z0-9_/-]", "_");
+        String firstItem = "minecraft:stone";
+        Matcher createMatcher = CREATE_PATTERN.matcher(content);
+        if (createMatcher.find()) {
+            firstItem = createMatcher.group(1);
+        }
 
-            String firstItem = "minecraft:stone";
-            Matcher createMatcher = CREATE_PATTERN.matcher(content);
-            if (createMatcher.find()) {
-                firstItem = createMatcher.group(1);
+        PonderJsTokenizer.Tokens tokens = PonderJsTokenizer.tokenize(content);
+        List<DslScene.SceneSegment> segments = new ArrayList<>();
+        java.util.LinkedHashSet<String> schematicSet = new java.util.LinkedHashSet<>();
+        List<String> segmentSchematics = new ArrayList<>();
+        Matcher sceneMatcher = SCENE_PATTERN.matcher(content);
+        int index = 0;
+        while (sceneMatcher.find()) {
+            DslScene.SceneSegment seg = new DslScene.SceneSegment();
+            String sid = sceneMatcher.group(1);
+            String stitle = sceneMatcher.group(2);
+            String schematic = sceneMatcher.group(3);
+            seg.id = sid == null || sid.isBlank() ? ("scene_" + (++index)) : sid;
+            seg.title = LocalizedText.of(stitle == null || stitle.isBlank() ? seg.id : stitle);
+
+            if (schematic != null && !schematic.isBlank()) {
+                schematicSet.add(schematic);
+                segmentSchematics.add(schematic);
+            } else {
+                segmentSchematics.add(null);
             }
 
-            List<DslScene.SceneSegment> segments = new ArrayList<>();
-            java.util.LinkedHashSet<String> schematicSet = new java.util.LinkedHashSet<>();
-            List<String> segmentSchematics = new ArrayList<>();
-            Matcher sceneMatcher = SCENE_PATTERN.matcher(content);
-            int index = 0;
-            while (sceneMatcher.find()) {
-                DslScene.SceneSegment seg = new DslScene.SceneSegment();
-                String sid = sceneMatcher.group(1);
-                String stitle = sceneMatcher.group(2);
-                String schematic = sceneMatcher.group(3);
-                seg.id = sid == null || sid.isBlank() ? ("scene_" + (++index)) : sid;
-                seg.title = LocalizedText.of(stitle == null || stitle.isBlank() ? seg.id : stitle);
-
-                if (schematic != null && !schematic.isBlank()) {
-                    schematicSet.add(schematic);
-                    segmentSchematics.add(schematic);
-                } else {
-                    segmentSchematics.add(null);
-                }
-
-                // Try to extract the scene body and parse steps semantically
-                String body = extractSceneBody(content, sceneMatcher.end());
-                if (body != null && !body.isBlank()) {
-                    seg.steps = PonderJsParsers.parseSceneBody(body);
-                } else {
-                    seg.steps = List.of();
+            // Parse the steps of the scene callback that follows
+            PonderJsParsers.Result parsed = PonderJsParsers.parseSceneCallback(tokens, sceneMatcher.end());
+            if (parsed != null) {
+                seg.steps = parsed.stepList();
+                for (PonderJsParsers.Diagnostic d : parsed.diagnostics()) {
+                    LOGGER.warn("Skipped in {}:{}", file, d);
                 }
-                segments.add(seg);
+            } else {
+                seg.steps = List.of();
             }
+            segments.add(seg);
+        }
 
-            // Populate structures pool from .scene() schematic arguments
-            List<String> structurePool = new ArrayList<>(schematicSet);
-            String defaultSchematic = structurePool.isEmpty() ? null : structurePool.get(0);
-            for (int i = 0; i < segments.size(); i++) {
-                String segSchematic = i < segmentSchematics.size() ? segmentSchematics.get(i) : null;
-                if (segSchematic != null && !segSchematic.equals(defaultSchematic)) {
-                    DslScene.SceneSegment seg = segments.get(i);
-                    if (seg.steps != null) {
-                        for (DslScene.DslStep step : seg.steps) {
-                            if ("show_structure".equalsIgnoreCase(step.type)) {
-                                step.structure = segSchematic;
-                                break;
-                            }
+        // Populate structures pool from .scene() schematic arguments
+        List<String> structurePool = new ArrayList<>(schematicSet);
+        String defaultSchematic = structurePool.isEmpty() ? null : structurePool.get(0);
+        for (int i = 0; i < segments.size(); i++) {
+            String segSchematic = i < segmentSchematics.size() ? segmentSchematics.get(i) : null;
+            if (segSchematic != null && !segSchematic.equals(defaultSchematic)) {
+                DslScene.SceneSegment seg = segments.get(i);
+                if (seg.steps != null) {
+                    for (DslScene.DslStep step : seg.steps) {
+                        if ("show_structure".equalsIgnoreCase(step.type)) {
+                            step.structure = segSchematic;
+                            break;
                         }
                     }
                 }
             }
-
-            DslScene scene = new DslScene();
-            scene.id = defaultId;
-            scene.items = List.of(firstItem);
-            scene.title = LocalizedText.of("Imported from PonderJS");
-            scene.structures = structurePool;
-            scene.scenes = segments.isEmpty() ? List.of() : segments;
-            scene.steps = List.of();
-            return scene;
-        } catch (Exception e) {
-            return null;
         }
+
+        DslScene scene = new DslScene();
+        scene.id = importedId(file);
+        scene.items = List.of(firstItem);
+        scene.title = LocalizedText.of("Imported from PonderJS");
+        scene.structures = structurePool;
+        scene.scenes = segments.isEmpty() ? List.of() : segments;
+        scene.steps = List.of();
+        return scene;
     }
 
-    /**
-     * Extract the function body of a scene callback starting after .scene("id", "title", (scene, util) => {
-     * Finds the matching closing brace by tracking brace depth.
-     */
-    private static String extractSceneBody(String content, int searchStart) {
-        // Find the opening of the callback body: (scene, util) => { or (scene) => { or function(scene, util) {
-        Pattern callbackOpen = Pattern.compile("\\(\\s*scene\\s*(?:,\\s*util\\s*)?\\)\\s*=>\\s*\\{");
-        Matcher m = callbackOpen.matcher(content);
-        if (!m.find(searchStart)) {
-            Pattern funcOpen = Pattern.compile("function\\s*\\(\\s*scene\\s*(?:,\\s*util\\s*)?\\)\\s*\\{");
-            m = funcOpen.matcher(content);
-            if (!m.find(searchStart)) return null;
-        }
-        int braceStart = m.end();
-        int depth = 1;
-        boolean inString = false;
-        char stringChar = 0;
-        for (int i = braceStart; i < content.length(); i++) {
-            char c = content.charAt(i);
-            if (inString) {
-                if (c == '\\' && i + 1 < content.length()) { i++; continue; }
-                if (c == stringChar) inString = false;
-                continue;
-            }
-            if (c == '"' || c == '\'') { inString = true; stringChar = c; continue; }
-            if (c == '{') depth++;
-            if (c == '}') {
-                depth--;
-                if (depth == 0) {
-                    return content.substring(braceStart, i);
-                }
-            }
-        }
-        return null;
+    /** Id given to a scene imported from a plain PonderJS script (one without a bridge header). */
+    static String importedId(Path file) {
+        return "ponderer:imported/" + stripExt(file.getFileName().toString()).replaceAll("[^a-zA-Z0-9_/-]", "_");
     }
 
     private static String stripExt(String fileName) {
@@ -295,24 +305,27 @@ public final class PonderJsConversionService {
         return dot > 0 ? fileName.substring(0, dot) : fileName;
     }
 
-    private static String buildPonderJsScript(DslScene scene, String id, String b64) {
-        StringBuilder sb = new StringBuilder();
+    private static void writePonderJsScript(Writer out, Export export) throws IOException {
+        DslScene scene = export.scene();
         String item = (scene.items != null && !scene.items.isEmpty()) ? scene.items.get(0) : "minecraft:stone";
-        sb.append("// Auto-generated by Ponderer bridge\n");
-        sb.append(BRIDGE_ID_PREFIX).append(id).append("\n");
-        sb.append(BRIDGE_JSON_PREFIX).append(b64).append("\n\n");
-        sb.append("Ponder.registry((event) => {\n");
+        out.write("// Auto-generated by Ponderer bridge\n");
+        out.write(BRIDGE_ID_PREFIX + export.id() + "\n");
+        out.write(BRIDGE_HASH_PREFIX + export.hash() + "\n");
+        out.write(BRIDGE_JSON_PREFIX);
+        out.write(Base64.getEncoder().encodeToString(export.json()));
+        out.write("\n\n");
+        out.write("Ponder.registry((event) => {\n");
 
         List<DslScene.SceneSegment> segments = (scene.scenes != null && !scene.scenes.isEmpty())
             ? scene.scenes
             : List.of();
 
         // Open a single event.create() builder and chain all .scene() calls
-        sb.append("  event.create(\"").append(escapeJs(item)).append("\")\n");
+        out.write("  event.create(\"" + escapeJs(item) + "\")\n");
 
         if (segments.isEmpty()) {
             String schematic = resolveDefaultSchematic(scene);
-            emitSceneCall(sb, scene.id, scene.title, scene.steps, schematic, true);
+            emitSceneCall(out, scene.id, scene.title, scene.steps, schematic, true);
         } else {
             List<String> schematics = resolveSceneSchematics(scene, segments);
             for (int i = 0; i < segments.size(); i++) {
@@ -320,20 +333,19 @@ public final class PonderJsConversionService {
                 String sid = seg.id == null || seg.id.isBlank() ? "scene" : seg.id;
                 String schematic = i < schematics.size() ? schematics.get(i) : resolveDefaultSchematic(scene);
                 boolean isLast = (i == segments.size() - 1);
-                emitSceneCall(sb, sid, seg.title, seg.steps, schematic, isLast);
+                emitSceneCall(out, sid, seg.title, seg.steps, schematic, isLast);
             }
         }
 
-        sb.append("});\n");
-        return sb.toString();
+        out.write("});\n");
     }
 
-    private static void emitSceneCall(StringBuilder sb, String sceneId, LocalizedText title,
-                                       List<DslScene.DslStep> steps, String schematic, boolean isLast) {
+    private static void emitSceneCall(Writer out, String sceneId, LocalizedText title,
+                                      List<DslScene.DslStep> steps, String schematic, boolean isLast) throws IOException {
         String sid = safeSceneId(sceneId);
         String titleText = title == null ? sid : escapeJs(title.resolve());
-        sb.append("    .scene(\"").append(escapeJs(sid)).append("\", \"").append(titleText)
-          .append("\", \"").append(escapeJs(schematic)).append("\", (scene, util) => {\n");
+        out.write("    .scene(\"" + escapeJs(sid) + "\", \"" + titleText
+            + "\", \"" + escapeJs(schematic) + "\", (scene, util) => {\n");
 
         PonderJsEmitters.EmitContext ctx = new PonderJsEmitters.EmitContext();
         boolean hasSteps = steps != null && !steps.isEmpty();
@@ -347,26 +359,36 @@ public final class PonderJsConversionService {
                 // Emit standalone addKeyframe() for non-text steps with attachKeyFrame
                 if (Boolean.TRUE.equals(step.attachKeyFrame)
                         && !keyFrameChainedTypes.contains(step.type.toLowerCase(java.util.Locale.ROOT))) {
-                    sb.append("      scene.addKeyframe();\n");
+                    out.write("      scene.addKeyframe();\n");
                 }
                 String emitted = PonderJsEmitters.emit(step, ctx);
                 if (emitted != null) {
-                    for (String line : emitted.split("\n")) {
-                        sb.append("      ").append(line).append("\n");
-                    }
+                    writeIndented(out, "      ", emitted);
                 } else {
-                    sb.append("      // TODO_UNSUPPORTED_STEP: ").append(step.type).append("\n");
+                    out.write("      // TODO_UNSUPPORTED_STEP: " + step.type + "\n");
                 }
             }
         } else {
-            sb.append("      scene.showStructure();\n");
-            sb.append("      scene.idle(20);\n");
+            out.write("      scene.showStructure();\n");
+            out.write("      scene.idle(20);\n");
         }
 
-        if (isLast) {
-            sb.append("    });\n");
-        } else {
-            sb.append("    })\n");
+        out.write(isLast ? "    });\n" : "    })\n");
+    }
+
+    /** Write each line of {@code text} with {@code indent} in front. */
+    private static void writeIndented(Writer out, String indent, String text) throws IOException {
+        int start = 0;
+        while (true) {
+            int newline = text.indexOf('\n', start);
+            int end = newline < 0 ? text.length() : newline;
+            out.write(indent);
+            out.write(text, start, end - start);
+            out.write('\n');
+            if (newline < 0) {
+                return;
+            }
+            start = newline + 1;
         }
     }
 
@@ -1,50 +1,90 @@
 package com.nododiiiii.ponderer.ponder;
 
+import com.nododiiiii.ponderer.ponder.PonderJsTokenizer.Kind;
+import com.nododiiiii.ponderer.ponder.PonderJsTokenizer.Token;
+import com.nododiiiii.ponderer.ponder.PonderJsTokenizer.Tokens;
+import org.jetbrains.annotations.Nullable;
+
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * M3: StepParserRegistry -- parses PonderJS code lines back to DslScene.DslStep.
- * Uses regex-based pattern matching for each recognized API call.
- * Covers all step types in the emitter registry (M2).
+ * M3: StepParserRegistry -- parses PonderJS code back to DslScene.DslStep.
+ * Source is tokenized once by {@link PonderJsTokenizer}, then statements are read by a small
+ * recursive-descent parser into call chains, and each chain is dispatched by its API path
+ * (e.g. {@code scene.world.setBlock}) to a step parser. Covers all step types in the emitter registry (M2).
+ * <p>
+ * Statements that are not supported are skipped and reported with their line and column.
  */
 public final class PonderJsParsers {
 
+    /**
+     * @param line   1-based
+     * @param column 1-based
+     */
+    public record Diagnostic(int line, int column, String message) {
+        @Override
+        public String toString() {
+            return line + ":" + column + ": " + message;
+        }
+    }
+
+    /** A parsed step and where its statement starts. */
+    public record ParsedStep(DslScene.DslStep step, int line, int column) {
+    }
+
+    public record Result(List<ParsedStep> steps, List<Diagnostic> diagnostics) {
+        public List<DslScene.DslStep> stepList() {
+            List<DslScene.DslStep> list = new ArrayList<>(steps.size());
+            for (ParsedStep parsed : steps) {
+                list.add(parsed.step());
+            }
+            return list;
+        }
+    }
+
     @FunctionalInterface
     interface StepParser {
-        /** Try to parse the JS fragment into a DslStep. Return null if no match. */
-        DslScene.DslStep parse(String jsFragment);
+        /** Build a DslStep from a call; throw via {@link Call} accessors if the arguments do not fit. */
+        DslScene.DslStep parse(Call call);
     }
 
-    private static final List<StepParser> PARSERS = new ArrayList<>();
+    /** Step parsers by lower-cased API path. */
+    private static final Map<String, StepParser> PARSERS = new HashMap<>();
 
     static {
-        // Order matters: more specific patterns first
-        PARSERS.add(PonderJsParsers::parseShowStructure);
-        PARSERS.add(PonderJsParsers::parseIdle);
-        PARSERS.add(PonderJsParsers::parseIdleSeconds);
-        PARSERS.add(PonderJsParsers::parseSharedText);
-        PARSERS.add(PonderJsParsers::parseText);
-        PARSERS.add(PonderJsParsers::parseShowControls);
-        PARSERS.add(PonderJsParsers::parseCreateEntity);
-        PARSERS.add(PonderJsParsers::parseCreateItemEntity);
-        PARSERS.add(PonderJsParsers::parseRotateCameraY);
-        PARSERS.add(PonderJsParsers::parseEncapsulateBounds);
-        PARSERS.add(PonderJsParsers::parsePlaySound);
-        PARSERS.add(PonderJsParsers::parseSetBlock);
-        PARSERS.add(PonderJsParsers::parseSetBlocks);
-        PARSERS.add(PonderJsParsers::parseDestroyBlock);
-        PARSERS.add(PonderJsParsers::parseReplaceBlocks);
-        PARSERS.add(PonderJsParsers::parseHideSection);
-        PARSERS.add(PonderJsParsers::parseShowSectionAndMerge);
-        PARSERS.add(PonderJsParsers::parseShowIndependentSection);
-        PARSERS.add(PonderJsParsers::parseRotateSection);
-        PARSERS.add(PonderJsParsers::parseMoveSection);
-        PARSERS.add(PonderJsParsers::parseToggleRedstonePower);
-        PARSERS.add(PonderJsParsers::parseModifyBlockEntityNbt);
-        PARSERS.add(PonderJsParsers::parseIndicateRedstone);
-        PARSERS.add(PonderJsParsers::parseIndicateSuccess);
+        PARSERS.put("scene.showstructure", PonderJsParsers::parseShowStructure);
+        PARSERS.put("scene.idle", PonderJsParsers::parseIdle);
+        PARSERS.put("scene.idleseconds", PonderJsParsers::parseIdleSeconds);
+        PARSERS.put("scene.sharedtext", PonderJsParsers::parseSharedText);
+        PARSERS.put("scene.text", PonderJsParsers::parseText);
+        PARSERS.put("scene.showcontrols", PonderJsParsers::parseShowControls);
+        PARSERS.put("scene.world.createentity", PonderJsParsers::parseCreateEntity);
+        PARSERS.put("scene.world.createitementity", PonderJsParsers::parseCreateItemEntity);
+        PARSERS.put("scene.rotatecameray", PonderJsParsers::parseRotateCameraY);
+        PARSERS.put("scene.encapsulatebounds", PonderJsParsers::parseEncapsulateBounds);
+        PARSERS.put("scene.playsound", PonderJsParsers::parsePlaySound);
+        PARSERS.put("scene.world.setblock", PonderJsParsers::parseSetBlock);
+        PARSERS.put("scene.world.setblocks", PonderJsParsers::parseSetBlocks);
+        PARSERS.put("scene.world.destroyblock", PonderJsParsers::parseDestroyBlock);
+        PARSERS.put("scene.world.replaceblocks", PonderJsParsers::parseReplaceBlocks);
+        PARSERS.put("scene.world.hidesection", PonderJsParsers::parseHideSection);
+        PARSERS.put("scene.world.showsectionandmerge", PonderJsParsers::parseShowSectionAndMerge);
+        PARSERS.put("scene.world.showindependentsection", PonderJsParsers::parseShowIndependentSection);
+        PARSERS.put("scene.world.rotatesection", PonderJsParsers::parseRotateSection);
+        PARSERS.put("scene.world.movesection", PonderJsParsers::parseMoveSection);
+        PARSERS.put("scene.world.toggleredstonepower", PonderJsParsers::parseToggleRedstonePower);
+        PARSERS.put("scene.world.modifyblockentitynbt", PonderJsParsers::parseModifyBlockEntityNbt);
+        PARSERS.put("scene.effects.indicateredstone", PonderJsParsers::parseIndicateRedstone);
+        PARSERS.put("scene.effects.indicatesuccess", PonderJsParsers::parseIndicateSuccess);
+    }
+
+    private static final String ADD_KEYFRAME = "scene.addkeyframe";
+
+    /** Statement keywords reported as such rather than as a malformed call. */
+    private static final Set<String> STATEMENT_KEYWORDS = Set.of(
+        "if", "else", "for", "while", "do", "switch", "return", "function", "class", "try", "throw", "break", "continue");
+
+    private PonderJsParsers() {
     }
 
     /**
@@ -53,595 +93,870 @@ public final class PonderJsParsers {
      */
     public static DslScene.DslStep tryParse(String jsFragment) {
         if (jsFragment == null || jsFragment.isBlank()) return null;
-        // Normalize multiline chained calls: collapse whitespace around dots
-        // so "scene\n    .text(...)" becomes "scene.text(...)"
-        String stripped = normalizeWhitespace(jsFragment.strip());
-        for (StepParser parser : PARSERS) {
-            DslScene.DslStep result = parser.parse(stripped);
-            if (result != null) return result;
-        }
-        return null;
+        List<ParsedStep> steps = parse(jsFragment).steps();
+        return steps.isEmpty() ? null : steps.get(0).step();
+    }
+
+    /**
+     * Parse a full scene body (code between the scene callback braces) into a
+     * list of DslSteps. Unrecognized statements are skipped.
+     */
+    public static List<DslScene.DslStep> parseSceneBody(String body) {
+        return parse(body).stepList();
+    }
+
+    /** Parse a scene body, keeping source positions and diagnostics. */
+    public static Result parse(String source) {
+        Tokens tokens = PonderJsTokenizer.tokenize(source == null ? "" : source);
+        return parse(tokens, 0, tokens.size() - 1);
+    }
+
+    /** Parse the statements in tokens {@code [from, to)}. */
+    static Result parse(Tokens tokens, int from, int to) {
+        Parser parser = new Parser(tokens, from, to);
+        parser.statements();
+        return new Result(List.copyOf(parser.steps), List.copyOf(parser.diagnostics));
     }
 
     /**
-     * Collapse whitespace (including newlines) in JS code while preserving string literals.
-     * Turns multiline chained calls into single-line for regex matching.
+     * Find the first scene callback at or after {@code offset} - {@code (scene, util) => { ... }}
+     * or {@code function (scene, util) { ... }} - and parse its body.
+     *
+     * @return null if there is no such callback or its braces are unbalanced
      */
-    static String normalizeWhitespace(String src) {
-        if (src == null || src.isEmpty()) return "";
-        StringBuilder out = new StringBuilder(src.length());
-        boolean inString = false;
-        char stringChar = 0;
-        boolean lastWasSpace = false;
-
-        for (int i = 0; i < src.length(); i++) {
-            char c = src.charAt(i);
-
-            if (inString) {
-                out.append(c);
-                if (c == '\\' && i + 1 < src.length()) {
-                    out.append(src.charAt(i + 1));
+    @Nullable
+    static Result parseSceneCallback(Tokens tokens, int offset) {
+        for (int i = tokens.indexAt(offset); i < tokens.size(); i++) {
+            Token t = tokens.get(i);
+            int open = -1;
+            if (t.is("(") && isSceneParams(tokens, i)) {
+                int close = tokens.partner(i);
+                if (tokens.get(close + 1).is("=>") && tokens.get(close + 2).is("{")) {
+                    open = close + 2;
+                }
+            } else if (t.isIdent("function") && tokens.get(i + 1).is("(") && isSceneParams(tokens, i + 1)) {
+                int close = tokens.partner(i + 1);
+                if (tokens.get(close + 1).is("{")) {
+                    open = close + 1;
+                }
+            }
+            if (open >= 0) {
+                int close = tokens.partner(open);
+                return close < 0 ? null : parse(tokens, open + 1, close);
+            }
+        }
+        return null;
+    }
+
+    /** {@code (scene)} or {@code (scene, <name>)} starting at {@code open}. */
+    private static boolean isSceneParams(Tokens tokens, int open) {
+        if (tokens.partner(open) < 0 || !tokens.get(open + 1).isIdent("scene")) return false;
+        Token after = tokens.get(open + 2);
+        if (after.is(")")) return true;
+        return after.is(",") && tokens.get(open + 3).kind() == Kind.IDENT && tokens.get(open + 4).is(")");
+    }
+
+    // -- syntax tree -------------------------------------------------------------
+
+    private sealed interface Node {
+        Token token();
+    }
+
+    private record Ident(Token token) implements Node {
+        String name() {
+            return token.text();
+        }
+    }
+
+    private record Num(double value, Token token) implements Node {
+    }
+
+    private record Str(String value, Token token) implements Node {
+    }
+
+    private record Arr(List<Node> items, Token token) implements Node {
+    }
+
+    private record Member(Node target, Token token) implements Node {
+    }
+
+    private record Invoke(Node callee, List<Node> args, Token token) implements Node {
+    }
+
+    /** Function literal; only its body's token range is kept. */
+    private record Fn(int bodyFrom, int bodyTo, Token token) implements Node {
+    }
+
+    /** One link of a call chain: {@code name} or {@code name(args)}. */
+    private record Link(Token name, @Nullable List<Node> args) {
+    }
+
+    private static final class ParseError extends RuntimeException {
+        final Token token;
+
+        ParseError(Token token, String message) {
+            super(message, null, false, false);
+            this.token = token;
+        }
+    }
+
+    // -- parser ------------------------------------------------------------------
+
+    private static final class Parser {
+        final Tokens tokens;
+        final int end;
+        final Token eof;
+        int pos;
+        final List<ParsedStep> steps = new ArrayList<>();
+        final List<Diagnostic> diagnostics = new ArrayList<>();
+        boolean nextKeyFrame;
+
+        Parser(Tokens tokens, int from, int to) {
+            this.tokens = tokens;
+            this.pos = from;
+            this.end = to;
+            Token last = tokens.get(to);
+            this.eof = new Token(Kind.EOF, "", last.start(), last.start(), last.line(), last.column());
+        }
+
+        Token peek() {
+            return pos < end ? tokens.get(pos) : eof;
+        }
+
+        Token peek(int ahead) {
+            return pos + ahead < end ? tokens.get(pos + ahead) : eof;
+        }
+
+        Token next() {
+            Token t = peek();
+            if (pos < end) pos++;
+            return t;
+        }
+
+        void diagnose(Token at, String message) {
+            diagnostics.add(new Diagnostic(at.line(), at.column(), message));
+        }
+
+        void statements() {
+            while (pos < end) {
+                int start = pos;
+                try {
+                    statement();
+                } catch (ParseError e) {
+                    diagnose(e.token, e.getMessage());
+                    recover(start);
+                }
+            }
+        }
+
+        void statement() {
+            Token first = peek();
+            if (first.is(";")) {
+                pos++;
+                return;
+            }
+            if (first.kind() == Kind.ERROR) {
+                throw new ParseError(first, first.text());
+            }
+            if (first.kind() == Kind.IDENT && STATEMENT_KEYWORDS.contains(first.text())) {
+                throw new ParseError(first, "unsupported statement '" + first.text() + "'");
+            }
+            Token binding = null;
+            if ((first.isIdent("const") || first.isIdent("let") || first.isIdent("var"))
+                && peek(1).kind() == Kind.IDENT && peek(2).is("=")) {
+                binding = peek(1);
+                pos += 3;
+            }
+            Node expr = expression();
+            Token after = peek();
+            if (after.is(";")) {
+                pos++;
+            } else if (after.kind() != Kind.EOF && after.line() == tokens.get(pos - 1).line()) {
+                throw new ParseError(after, "expected ';' but found " + after.describe());
+            }
+            step(first, expr, binding);
+        }
+
+        /**
+         * Skip the rest of a statement that failed to parse: up to a ';', past a block, or to a line
+         * that starts a new statement. Bracketed regions are jumped over whole.
+         */
+        void recover(int start) {
+            int i = start;
+            while (i < end) {
+                Token t = tokens.get(i);
+                if (i > start && t.line() > tokens.get(i - 1).line() && t.kind() == Kind.IDENT && endsOperand(tokens.get(i - 1))) {
+                    break;
+                }
+                if (t.is(";")) {
                     i++;
+                    break;
+                }
+                int partner = tokens.partner(i);
+                if (partner > i && partner < end) {
+                    i = partner + 1;
+                    if (t.is("{")) break;
                     continue;
                 }
-                if (c == stringChar) {
-                    inString = false;
+                i++;
+            }
+            pos = Math.max(i, start + 1);
+        }
+
+        private static boolean endsOperand(Token t) {
+            return t.kind() == Kind.IDENT || t.kind() == Kind.NUMBER || t.kind() == Kind.STRING
+                || t.kind() == Kind.ERROR || t.is(")") || t.is("]") || t.is("}");
+        }
+
+        /** expression := primary ( '.' IDENT | '(' arguments ')' )* */
+        Node expression() {
+            Node node = primary();
+            while (true) {
+                Token t = peek();
+                if (t.is(".")) {
+                    pos++;
+                    Token name = next();
+                    if (name.kind() != Kind.IDENT) {
+                        throw new ParseError(name, "expected a name after '.' but found " + name.describe());
+                    }
+                    node = new Member(node, name);
+                } else if (t.is("(")) {
+                    node = new Invoke(node, list(")"), t);
+                } else {
+                    return node;
                 }
-                lastWasSpace = false;
-                continue;
             }
+        }
 
-            if (c == '"' || c == '\'') {
-                inString = true;
-                stringChar = c;
-                out.append(c);
-                lastWasSpace = false;
-                continue;
+        Node primary() {
+            Token t = next();
+            switch (t.kind()) {
+                case NUMBER:
+                    return new Num(number(t), t);
+                case STRING:
+                    return new Str(t.text(), t);
+                case IDENT:
+                    if (t.text().equals("function")) {
+                        Token open = next();
+                        int close = open.is("(") ? partner(pos - 1) : -1;
+                        if (close < 0) throw new ParseError(open, "expected '(' after 'function'");
+                        pos = close + 1;
+                        return block(t);
+                    }
+                    if (peek().is("=>")) {
+                        pos++;
+                        return functionBody(t);
+                    }
+                    return new Ident(t);
+                case PUNCT:
+                    if ((t.is("-") || t.is("+")) && peek().kind() == Kind.NUMBER) {
+                        double value = number(next());
+                        return new Num(t.is("-") ? -value : value, t);
+                    }
+                    if (t.is("[")) {
+                        pos--;
+                        return new Arr(list("]"), t);
+                    }
+                    if (t.is("(")) {
+                        int close = partner(pos - 1);
+                        if (close >= 0 && close + 1 < end && tokens.get(close + 1).is("=>")) {
+                            pos = close + 2;
+                            return functionBody(t);
+                        }
+                        Node inner = expression();
+                        Token after = next();
+                        if (!after.is(")")) throw new ParseError(after, "unsupported syntax at " + after.describe());
+                        return inner;
+                    }
+                    break;
+                default:
+                    break;
             }
+            if (t.kind() == Kind.ERROR) throw new ParseError(t, t.text());
+            throw new ParseError(t, "unsupported syntax at " + t.describe());
+        }
 
-            if (Character.isWhitespace(c)) {
-                if (!lastWasSpace) {
-                    out.append(' ');
-                    lastWasSpace = true;
+        /** Comma-separated expressions between the bracket at {@code pos} and its partner. */
+        List<Node> list(String closer) {
+            Token open = peek();
+            int close = partner(pos);
+            if (close < 0) throw new ParseError(open, "missing '" + closer + "'");
+            pos++;
+            List<Node> items = new ArrayList<>();
+            while (pos < close) {
+                items.add(expression());
+                if (peek().is(",")) {
+                    pos++;
+                } else if (pos != close) {
+                    Token t = peek();
+                    throw new ParseError(t, "expected ',' or '" + closer + "' but found " + t.describe());
                 }
-                continue;
             }
+            pos = close + 1;
+            return items;
+        }
+
+        Node functionBody(Token start) {
+            if (peek().is("{")) {
+                return block(start);
+            }
+            int from = pos;
+            expression();
+            return new Fn(from, pos, start);
+        }
 
-            out.append(c);
-            lastWasSpace = false;
+        Node block(Token start) {
+            int open = pos;
+            int close = peek().is("{") ? partner(open) : -1;
+            if (close < 0) throw new ParseError(peek(), "expected a function body");
+            pos = close + 1;
+            return new Fn(open + 1, close, start);
         }
 
-        return removeSpaceBeforeDot(out.toString());
-    }
+        /** Partner of the bracket at {@code index}, or -1 if it is not closed within the parsed range. */
+        int partner(int index) {
+            int p = tokens.partner(index);
+            return p > index && p < end ? p : -1;
+        }
 
-    /**
-     * Remove whitespace immediately before dots in method chains (outside string literals).
-     * Converts "scene .text(...)" to "scene.text(...)" for correct regex matching.
-     */
-    private static String removeSpaceBeforeDot(String src) {
-        StringBuilder sb = new StringBuilder(src.length());
-        boolean inStr = false;
-        char strChr = 0;
-        for (int i = 0; i < src.length(); i++) {
-            char c = src.charAt(i);
-            if (inStr) {
-                sb.append(c);
-                if (c == '\\' && i + 1 < src.length()) { sb.append(src.charAt(++i)); continue; }
-                if (c == strChr) inStr = false;
-                continue;
+        static double number(Token t) {
+            String s = t.text();
+            try {
+                if (s.length() > 2 && (s.startsWith("0x") || s.startsWith("0X"))) {
+                    return Long.parseLong(s.substring(2), 16);
+                }
+                return Double.parseDouble(s);
+            } catch (NumberFormatException e) {
+                throw new ParseError(t, "malformed number " + s);
             }
-            if (c == '"' || c == '\'') { inStr = true; strChr = c; sb.append(c); continue; }
-            if (c == ' ' && i + 1 < src.length() && src.charAt(i + 1) == '.') continue;
-            sb.append(c);
         }
-        return sb.toString();
-    }
 
-    /**
-     * Parse a full scene body (code between the scene callback braces) into a
-     * list of DslSteps. Unrecognized statements are silently skipped.
-     */
-    public static List<DslScene.DslStep> parseSceneBody(String body) {
-        List<DslScene.DslStep> steps = new ArrayList<>();
-        List<String> statements = splitStatements(stripComments(body));
-        boolean nextKeyFrame = false;
-        for (String stmt : statements) {
-            // Detect standalone scene.addKeyframe() and apply to next parsed step
-            String norm = normalizeWhitespace(stmt.strip());
-            if (norm.matches("(?i)scene\\.addKeyframe\\s*\\(\\s*\\)\\s*;?")) {
+        // -- statement to step ---------------------------------------------------
+
+        void step(Token first, Node expr, @Nullable Token binding) {
+            List<Link> chain = new ArrayList<>();
+            Node root = flatten(expr, chain);
+            if (!(root instanceof Ident ident)) {
+                throw new ParseError(root.token(), "unsupported statement");
+            }
+
+            // API path: the names up to the first call; the calls after it modify the step
+            StringBuilder path = new StringBuilder(ident.name());
+            int call = -1;
+            for (int i = 0; i < chain.size(); i++) {
+                path.append('.').append(chain.get(i).name().text());
+                if (chain.get(i).args() != null) {
+                    call = i;
+                    break;
+                }
+            }
+            if (call < 0) {
+                throw new ParseError(first, "unsupported statement: expected a scene call");
+            }
+            if (!ident.name().equals("scene")) {
+                throw new ParseError(ident.token(), "unsupported call " + path + "(): only scene.* calls are imported");
+            }
+
+            Link link = chain.get(call);
+            String key = path.toString().toLowerCase(Locale.ROOT);
+            if (key.equals(ADD_KEYFRAME)) {
                 nextKeyFrame = true;
-                continue;
+                modifiers(null, chain, call + 1);
+                return;
             }
-            DslScene.DslStep step = tryParse(stmt);
-            if (step != null) {
-                if (nextKeyFrame) {
-                    step.attachKeyFrame = true;
-                    nextKeyFrame = false;
+            StepParser parser = PARSERS.get(key);
+            if (parser == null) {
+                throw new ParseError(link.name(), "unsupported call " + path + "()");
+            }
+            DslScene.DslStep step = parser.parse(new Call(this, path.toString(), link, binding));
+            modifiers(step, chain, call + 1);
+            if (nextKeyFrame) {
+                step.attachKeyFrame = true;
+                nextKeyFrame = false;
+            }
+            steps.add(new ParsedStep(step, first.line(), first.column()));
+        }
+
+        /** Unwind a member/call chain into its root and links, outermost last. */
+        static Node flatten(Node node, List<Link> into) {
+            if (node instanceof Invoke invoke && invoke.callee() instanceof Member member) {
+                Node root = flatten(member.target(), into);
+                into.add(new Link(member.token(), invoke.args()));
+                return root;
+            }
+            if (node instanceof Member member) {
+                Node root = flatten(member.target(), into);
+                into.add(new Link(member.token(), null));
+                return root;
+            }
+            return node;
+        }
+
+        void modifiers(@Nullable DslScene.DslStep step, List<Link> chain, int from) {
+            for (int i = from; i < chain.size(); i++) {
+                Link link = chain.get(i);
+                if (link.args() == null) {
+                    throw new ParseError(link.name(), "expected a call to ." + link.name().text() + "()");
+                }
+                try {
+                    if (step == null || !modifier(step, link)) {
+                        diagnose(link.name(), "ignored ." + link.name().text() + "()");
+                    }
+                } catch (ParseError e) {
+                    diagnose(e.token, e.getMessage());
                 }
-                steps.add(step);
             }
         }
-        return steps;
     }
 
-    // -- statement splitting -----------------------------------------------------
+    // -- call arguments ----------------------------------------------------------
 
     /**
-     * Splits a JS body into logical statements by tracking brace/paren depth
-     * and splitting on semicolons at depth 0.
+     * The call a step is built from. Accessors throw a {@link ParseError} at the offending argument
+     * if it does not have the expected shape.
      */
-    static List<String> splitStatements(String body) {
-        List<String> result = new ArrayList<>();
-        int depth = 0;
-        boolean inString = false;
-        char stringChar = 0;
-        int start = 0;
-
-        for (int i = 0; i < body.length(); i++) {
-            char c = body.charAt(i);
-            if (inString) {
-                if (c == '\\' && i + 1 < body.length()) {
-                    i++; // skip escaped char
-                    continue;
-                }
-                if (c == stringChar) inString = false;
-                continue;
-            }
-            if (c == '"' || c == '\'') {
-                inString = true;
-                stringChar = c;
-                continue;
-            }
-            if (c == '(' || c == '{' || c == '[') { depth++; continue; }
-            if (c == ')' || c == '}' || c == ']') { depth--; continue; }
-            if (c == ';' && depth <= 0) {
-                String fragment = body.substring(start, i + 1).strip();
-                if (!fragment.isEmpty() && !fragment.equals(";")) {
-                    result.add(fragment);
-                }
-                start = i + 1;
+    static final class Call {
+        private final Parser parser;
+        private final String path;
+        private final Token name;
+        private final List<Node> args;
+        @Nullable
+        private final Token binding;
+
+        private Call(Parser parser, String path, Link link, @Nullable Token binding) {
+            this.parser = parser;
+            this.path = path;
+            this.name = link.name();
+            this.args = link.args();
+            this.binding = binding;
+        }
+
+        int count() {
+            return args.size();
+        }
+
+        void arity(int min, int max) {
+            if (args.size() < min) {
+                throw new ParseError(name, path + "() expects at least " + min + " argument" + (min == 1 ? "" : "s"));
+            }
+            if (args.size() > max) {
+                throw new ParseError(args.get(max).token(), "unexpected argument to " + path + "()");
+            }
+        }
+
+        /** Name the result is assigned to ({@code const x = ...}), or null. */
+        @Nullable
+        String binding() {
+            return binding == null ? null : binding.text();
+        }
+
+        int integer(int i) {
+            double value = number(i);
+            if (value != Math.rint(value)) {
+                throw new ParseError(args.get(i).token(), "expected an integer");
             }
+            return (int) value;
         }
-        // trailing fragment without semicolon
-        String trailing = body.substring(start).strip();
-        if (!trailing.isEmpty()) {
-            result.add(trailing);
+
+        double number(int i) {
+            if (args.get(i) instanceof Num num) return num.value();
+            throw expected(i, "a number");
         }
-        return result;
-    }
 
-    static String stripComments(String src) {
-        if (src == null || src.isEmpty()) {
-            return "";
+        String string(int i) {
+            if (args.get(i) instanceof Str str) return str.value();
+            throw expected(i, "a string");
         }
-        StringBuilder out = new StringBuilder(src.length());
-        boolean inString = false;
-        char stringChar = 0;
-        boolean inLine = false;
-        boolean inBlock = false;
 
-        for (int i = 0; i < src.length(); i++) {
-            char c = src.charAt(i);
-            char n = i + 1 < src.length() ? src.charAt(i + 1) : '\0';
+        String ident(int i) {
+            if (args.get(i) instanceof Ident ident) return ident.name();
+            throw expected(i, "a variable name");
+        }
 
-            if (inLine) {
-                if (c == '\n') {
-                    inLine = false;
-                    out.append(c);
-                }
-                continue;
+        boolean bool(int i) {
+            if (args.get(i) instanceof Ident ident) {
+                if (ident.name().equals("true")) return true;
+                if (ident.name().equals("false")) return false;
             }
+            throw expected(i, "true or false");
+        }
 
-            if (inBlock) {
-                if (c == '*' && n == '/') {
-                    inBlock = false;
-                    i++;
-                }
-                continue;
+        boolean isBool(int i) {
+            return args.get(i) instanceof Ident ident && (ident.name().equals("true") || ident.name().equals("false"));
+        }
+
+        /** {@code [x, y, z]}, {@code util.vector.of(x, y, z)} or {@code util.grid.at(x, y, z)}. */
+        List<Double> vector(int i) {
+            List<Double> values = numbers(args.get(i), "util.vector.of", "util.grid.at");
+            if (values == null) throw expected(i, "[x, y, z]");
+            return values;
+        }
+
+        /** A number array of any length. */
+        List<Double> doubles(int i) {
+            if (args.get(i) instanceof Arr arr) return numbers(arr.items());
+            throw expected(i, "an array of numbers");
+        }
+
+        List<Integer> ints(int i) {
+            return truncate(doubles(i));
+        }
+
+        /** A block position: {@code [x, y, z]} or {@code util.grid.at(x, y, z)}. */
+        List<Integer> position(int i) {
+            List<Double> values = numbers(args.get(i), "util.grid.at");
+            if (values == null) throw expected(i, "a block position");
+            return truncate(values);
+        }
+
+        /**
+         * A selection as 3 or 6 coordinates: a position, {@code util.select.position(...)} or
+         * {@code util.select.fromTo(...)} with six numbers or two positions.
+         */
+        List<Integer> selection(int i) {
+            List<Double> values = numbers(args.get(i), "util.grid.at", "util.select.position", "util.select.fromto");
+            if (values == null || (values.size() != 3 && values.size() != 6)) {
+                throw expected(i, "a position or util.select.fromTo(...)");
             }
+            return truncate(values);
+        }
 
-            if (inString) {
-                out.append(c);
-                if (c == '\\' && i + 1 < src.length()) {
-                    out.append(src.charAt(i + 1));
-                    i++;
-                    continue;
-                }
-                if (c == stringChar) {
-                    inString = false;
+        /**
+         * Body of a function argument, searched for {@code NBT.parseTag("...")}.
+         *
+         * @return the tag string, or null if there is none
+         */
+        @Nullable
+        String parsedTag(int i) {
+            if (!(args.get(i) instanceof Fn fn)) throw expected(i, "a function");
+            Tokens tokens = parser.tokens;
+            for (int t = fn.bodyFrom(); t + 5 <= fn.bodyTo(); t++) {
+                if (tokens.get(t).isIdent("NBT") && tokens.get(t + 1).is(".") && tokens.get(t + 2).isIdent("parseTag")
+                    && tokens.get(t + 3).is("(") && tokens.get(t + 4).kind() == Kind.STRING) {
+                    return tokens.get(t + 4).text();
                 }
-                continue;
             }
-
-            if (c == '"' || c == '\'') {
-                inString = true;
-                stringChar = c;
-                out.append(c);
-                continue;
+            if (fn.bodyTo() > fn.bodyFrom()) {
+                parser.diagnose(fn.token(), "only NBT.parseTag(\"...\") is imported from " + path + "() callbacks");
             }
+            return null;
+        }
 
-            if (c == '/' && n == '/') {
-                inLine = true;
-                i++;
-                continue;
+        private ParseError expected(int i, String what) {
+            Token t = args.get(i).token();
+            return new ParseError(t, "expected " + what + " but found " + t.describe());
+        }
+
+        /**
+         * Numbers of an array literal, or of the arguments of one of the given helper calls
+         * (lower-cased paths); null if the node is neither.
+         */
+        @Nullable
+        private List<Double> numbers(Node node, String... helpers) {
+            if (node instanceof Arr arr) {
+                return numbers(arr.items());
             }
-            if (c == '/' && n == '*') {
-                inBlock = true;
-                i++;
-                continue;
+            if (node instanceof Invoke invoke) {
+                List<Link> chain = new ArrayList<>();
+                if (Parser.flatten(invoke, chain) instanceof Ident root && chain.size() >= 1) {
+                    StringBuilder path = new StringBuilder(root.name());
+                    for (Link link : chain) {
+                        path.append('.').append(link.name().text());
+                    }
+                    String key = path.toString().toLowerCase(Locale.ROOT);
+                    for (String helper : helpers) {
+                        if (helper.equals(key)) {
+                            List<Double> values = new ArrayList<>();
+                            for (Node arg : invoke.args()) {
+                                List<Double> nested = arg instanceof Num ? null : numbers(arg, "util.grid.at");
+                                if (nested != null) values.addAll(nested);
+                                else values.addAll(numbers(List.of(arg)));
+                            }
+                            return values;
+                        }
+                    }
+                }
             }
+            return null;
+        }
 
-            out.append(c);
+        private static List<Double> numbers(List<Node> items) {
+            List<Double> values = new ArrayList<>(items.size());
+            for (Node item : items) {
+                if (!(item instanceof Num num)) {
+                    throw new ParseError(item.token(), "expected a number but found " + item.token().describe());
+                }
+                values.add(num.value());
+            }
+            return values;
         }
 
-        return out.toString();
+        private static List<Integer> truncate(List<Double> values) {
+            List<Integer> ints = new ArrayList<>(values.size());
+            for (double v : values) {
+                ints.add((int) v);
+            }
+            return ints;
+        }
     }
 
     // -- individual parsers ------------------------------------------------------
 
-    private static final Pattern SHOW_STRUCTURE = Pattern.compile(
-        "scene\\.showStructure\\s*\\(\\s*(\\d+)?\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseShowStructure(String js) {
-        Matcher m = SHOW_STRUCTURE.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseShowStructure(Call c) {
+        c.arity(0, 1);
         DslScene.DslStep s = step("show_structure");
-        if (m.group(1) != null) s.height = Integer.parseInt(m.group(1));
+        if (c.count() > 0) s.height = c.integer(0);
         return s;
     }
 
-    private static final Pattern IDLE = Pattern.compile(
-        "scene\\.idle\\s*\\(\\s*(\\d+)\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseIdle(String js) {
-        Matcher m = IDLE.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseIdle(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("idle");
-        s.duration = Integer.parseInt(m.group(1));
+        s.duration = c.integer(0);
         return s;
     }
 
-    private static final Pattern IDLE_SECONDS = Pattern.compile(
-        "scene\\.idleSeconds\\s*\\(\\s*(\\d+)\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseIdleSeconds(String js) {
-        Matcher m = IDLE_SECONDS.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseIdleSeconds(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("idle");
-        s.duration = Integer.parseInt(m.group(1)) * 20;
+        s.duration = c.integer(0) * 20;
         return s;
     }
 
-    private static final Pattern TEXT = Pattern.compile(
-        "scene\\.text\\s*\\(\\s*(\\d+)\\s*,\\s*\"([^\"]*?)\"(?:\\s*,\\s*\\[([^\\]]+)\\])?\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseText(String js) {
-        Matcher m = TEXT.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseText(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("text");
-        s.duration = Integer.parseInt(m.group(1));
-        s.text = LocalizedText.of(m.group(2));
-        if (m.group(3) != null) s.point = parseDoubleList(m.group(3));
-        parseTextChain(s, js);
+        s.duration = c.integer(0);
+        s.text = LocalizedText.of(c.string(1));
+        if (c.count() > 2) s.point = c.vector(2);
         return s;
     }
 
-    private static final Pattern SHARED_TEXT = Pattern.compile(
-        "scene\\.sharedText\\s*\\(\\s*(\\d+)\\s*,\\s*\"([^\"]*?)\"(?:\\s*,\\s*\\[([^\\]]+)\\])?\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseSharedText(String js) {
-        Matcher m = SHARED_TEXT.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseSharedText(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("shared_text");
-        s.duration = Integer.parseInt(m.group(1));
-        s.key = m.group(2);
-        if (m.group(3) != null) s.point = parseDoubleList(m.group(3));
-        parseTextChain(s, js);
+        s.duration = c.integer(0);
+        s.key = c.string(1);
+        if (c.count() > 2) s.point = c.vector(2);
         return s;
     }
 
-    private static final Pattern SHOW_CONTROLS = Pattern.compile(
-        "scene\\.showControls\\s*\\(\\s*(\\d+)\\s*,\\s*\\[([^\\]]+)\\]\\s*,\\s*\"([^\"]+)\"\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseShowControls(String js) {
-        Matcher m = SHOW_CONTROLS.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseShowControls(Call c) {
+        c.arity(3, 3);
         DslScene.DslStep s = step("show_controls");
-        s.duration = Integer.parseInt(m.group(1));
-        s.point = parseDoubleList(m.group(2));
-        s.direction = m.group(3);
-        if (js.contains(".leftClick()")) s.action = "left";
-        else if (js.contains(".rightClick()")) s.action = "right";
-        else if (js.contains(".scroll()")) s.action = "scroll";
-        Matcher itemM = Pattern.compile("\\.withItem\\s*\\(\\s*\"([^\"]+)\"\\s*\\)").matcher(js);
-        if (itemM.find()) s.item = itemM.group(1);
-        if (js.contains(".whileSneaking()")) s.whileSneaking = true;
-        if (js.contains(".whileCTRL()")) s.whileCTRL = true;
+        s.duration = c.integer(0);
+        s.point = c.vector(1);
+        s.direction = c.string(2);
         return s;
     }
 
-    private static final Pattern CREATE_ENTITY = Pattern.compile(
-        "scene\\.world\\.createEntity\\s*\\(\\s*\"([^\"]+)\"\\s*,\\s*\\[([^\\]]+)\\]", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseCreateEntity(String js) {
-        Matcher m = CREATE_ENTITY.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseCreateEntity(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("create_entity");
-        s.entity = m.group(1);
-        s.pos = parseDoubleList(m.group(2));
+        s.entity = c.string(0);
+        s.pos = c.vector(1);
         return s;
     }
 
-    private static final Pattern CREATE_ITEM_ENTITY = Pattern.compile(
-        "scene\\.world\\.createItemEntity\\s*\\(\\s*\\[([^\\]]+)\\]\\s*,\\s*\\[([^\\]]+)\\]\\s*,\\s*\"([^\"]+)\"", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseCreateItemEntity(String js) {
-        Matcher m = CREATE_ITEM_ENTITY.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseCreateItemEntity(Call c) {
+        c.arity(3, 3);
         DslScene.DslStep s = step("create_item_entity");
-        s.pos = parseDoubleList(m.group(1));
-        s.motion = parseDoubleList(m.group(2));
-        s.item = m.group(3);
+        s.pos = c.vector(0);
+        s.motion = c.vector(1);
+        s.item = c.string(2);
         return s;
     }
 
-    private static final Pattern ROTATE_CAMERA_Y = Pattern.compile(
-        "scene\\.rotateCameraY\\s*\\(\\s*(-?[\\d.]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseRotateCameraY(String js) {
-        Matcher m = ROTATE_CAMERA_Y.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseRotateCameraY(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("rotate_camera_y");
-        s.degrees = Float.parseFloat(m.group(1));
+        s.degrees = (float) c.number(0);
         return s;
     }
 
-    private static final Pattern ENCAPSULATE = Pattern.compile(
-        "scene\\.encapsulateBounds\\s*\\(\\s*\\[([^\\]]+)\\]\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseEncapsulateBounds(String js) {
-        Matcher m = ENCAPSULATE.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseEncapsulateBounds(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("encapsulate_bounds");
-        s.bounds = parseIntList(m.group(1));
+        s.bounds = c.ints(0);
         return s;
     }
 
-    private static final Pattern PLAY_SOUND = Pattern.compile(
-        "scene\\.playSound\\s*\\(\\s*\"([^\"]+)\"(?:\\s*,\\s*\"([^\"]*)\")?(?:\\s*,\\s*(-?[\\d.]+))?(?:\\s*,\\s*(-?[\\d.]+))?", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parsePlaySound(String js) {
-        Matcher m = PLAY_SOUND.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parsePlaySound(Call c) {
+        c.arity(1, 4);
         DslScene.DslStep s = step("play_sound");
-        s.sound = m.group(1);
-        if (m.group(2) != null) s.source = m.group(2);
-        if (m.group(3) != null) s.soundVolume = Float.parseFloat(m.group(3));
-        if (m.group(4) != null) s.pitch = Float.parseFloat(m.group(4));
+        s.sound = c.string(0);
+        if (c.count() > 1) s.source = c.string(1);
+        if (c.count() > 2) s.soundVolume = (float) c.number(2);
+        if (c.count() > 3) s.pitch = (float) c.number(3);
         return s;
     }
 
-    private static final Pattern SET_BLOCK = Pattern.compile(
-        "scene\\.world\\.setBlock\\s*\\(\\s*\\[([^\\]]+)\\]\\s*,\\s*\"([^\"]+)\"(?:\\s*,\\s*(true|false))?", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseSetBlock(String js) {
-        Matcher m = SET_BLOCK.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseSetBlock(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("set_block");
-        s.blockPos = parseIntList(m.group(1));
-        s.block = m.group(2);
-        if (m.group(3) != null) s.spawnParticles = Boolean.parseBoolean(m.group(3));
+        s.blockPos = c.position(0);
+        s.block = c.string(1);
+        if (c.count() > 2) s.spawnParticles = c.bool(2);
         return s;
     }
 
-    private static final Pattern SET_BLOCKS = Pattern.compile(
-        "scene\\.world\\.setBlocks\\s*\\(\\s*util\\.select\\.fromTo\\s*\\(([^)]+)\\)\\s*,\\s*\"([^\"]+)\"(?:\\s*,\\s*(true|false))?", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseSetBlocks(String js) {
-        Matcher m = SET_BLOCKS.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseSetBlocks(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("set_block");
-        List<Integer> coords = parseIntList(m.group(1));
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        }
-        s.block = m.group(2);
-        if (m.group(3) != null) s.spawnParticles = Boolean.parseBoolean(m.group(3));
+        setSelection(s, c.selection(0));
+        s.block = c.string(1);
+        if (c.count() > 2) s.spawnParticles = c.bool(2);
         return s;
     }
 
-    private static final Pattern DESTROY_BLOCK = Pattern.compile(
-        "scene\\.world\\.destroyBlock\\s*\\(\\s*\\[([^\\]]+)\\]\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseDestroyBlock(String js) {
-        Matcher m = DESTROY_BLOCK.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseDestroyBlock(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("destroy_block");
-        s.blockPos = parseIntList(m.group(1));
+        s.blockPos = c.position(0);
         return s;
     }
 
-    private static final Pattern REPLACE_BLOCKS = Pattern.compile(
-        "scene\\.world\\.replaceBlocks\\s*\\(\\s*(?:util\\.select\\.fromTo\\s*\\(([^)]+)\\)|\\[([^\\]]+)\\])\\s*,\\s*\"([^\"]+)\"(?:\\s*,\\s*(true|false))?", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseReplaceBlocks(String js) {
-        Matcher m = REPLACE_BLOCKS.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseReplaceBlocks(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("replace_blocks");
-        s.block = m.group(3);
-        String coordStr = m.group(1) != null ? m.group(1) : m.group(2);
-        List<Integer> coords = parseIntList(coordStr);
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        } else if (coords.size() >= 3) {
-            s.blockPos = coords.subList(0, 3);
-        }
-        if (m.group(4) != null) s.spawnParticles = Boolean.parseBoolean(m.group(4));
+        setSelection(s, c.selection(0));
+        s.block = c.string(1);
+        if (c.count() > 2) s.spawnParticles = c.bool(2);
         return s;
     }
 
-    private static final Pattern HIDE_SECTION = Pattern.compile(
-        "scene\\.world\\.hideSection\\s*\\(\\s*(?:util\\.select\\.fromTo\\s*\\(([^)]+)\\)|\\[([^\\]]+)\\])\\s*,\\s*\"([^\"]+)\"\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseHideSection(String js) {
-        Matcher m = HIDE_SECTION.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseHideSection(Call c) {
+        c.arity(2, 2);
         DslScene.DslStep s = step("hide_section");
-        String coordStr = m.group(1) != null ? m.group(1) : m.group(2);
-        List<Integer> coords = parseIntList(coordStr);
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        } else if (coords.size() >= 3) {
-            s.blockPos = coords.subList(0, 3);
-        }
-        s.direction = m.group(3);
+        setSelection(s, c.selection(0));
+        s.direction = c.string(1);
         return s;
     }
 
-    private static final Pattern SHOW_SECTION_AND_MERGE = Pattern.compile(
-        "scene\\.world\\.showSectionAndMerge\\s*\\(\\s*(?:util\\.select\\.fromTo\\s*\\(([^)]+)\\)|\\[([^\\]]+)\\])\\s*,\\s*\"([^\"]+)\"\\s*,\\s*(\\w+)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseShowSectionAndMerge(String js) {
-        Matcher m = SHOW_SECTION_AND_MERGE.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseShowSectionAndMerge(Call c) {
+        c.arity(3, 3);
         DslScene.DslStep s = step("show_section_and_merge");
-        String coordStr = m.group(1) != null ? m.group(1) : m.group(2);
-        List<Integer> coords = parseIntList(coordStr);
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        } else if (coords.size() >= 3) {
-            s.blockPos = coords.subList(0, 3);
-        }
-        s.direction = m.group(3);
-        s.linkId = m.group(4);
+        setSelection(s, c.selection(0));
+        s.direction = c.string(1);
+        s.linkId = c.ident(2);
         return s;
     }
 
-    private static final Pattern SHOW_INDEPENDENT_SECTION = Pattern.compile(
-        "(?:const|let|var)\\s+(\\w+)\\s*=\\s*scene\\.world\\.showIndependentSection\\s*\\(\\s*(?:util\\.select\\.fromTo\\s*\\(([^)]+)\\)|\\[([^\\]]+)\\])\\s*,\\s*\"([^\"]+)\"\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseShowIndependentSection(String js) {
-        Matcher m = SHOW_INDEPENDENT_SECTION.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseShowIndependentSection(Call c) {
+        c.arity(2, 2);
         DslScene.DslStep s = step("show_section_and_merge");
-        s.linkId = m.group(1);
-        String coordStr = m.group(2) != null ? m.group(2) : m.group(3);
-        List<Integer> coords = parseIntList(coordStr);
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        } else if (coords.size() >= 3) {
-            s.blockPos = coords.subList(0, 3);
-        }
-        s.direction = m.group(4);
+        s.linkId = c.binding();
+        setSelection(s, c.selection(0));
+        s.direction = c.string(1);
         return s;
     }
 
-    private static final Pattern ROTATE_SECTION = Pattern.compile(
-        "scene\\.world\\.rotateSection\\s*\\(\\s*(\\w+)\\s*,\\s*(-?[\\d.]+)\\s*,\\s*(-?[\\d.]+)\\s*,\\s*(-?[\\d.]+)\\s*,\\s*(\\d+)\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseRotateSection(String js) {
-        Matcher m = ROTATE_SECTION.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseRotateSection(Call c) {
+        c.arity(5, 5);
         DslScene.DslStep s = step("rotate_section");
-        s.linkId = m.group(1);
-        s.rotX = Float.parseFloat(m.group(2));
-        s.rotY = Float.parseFloat(m.group(3));
-        s.rotZ = Float.parseFloat(m.group(4));
-        s.duration = Integer.parseInt(m.group(5));
+        s.linkId = c.ident(0);
+        s.rotX = (float) c.number(1);
+        s.rotY = (float) c.number(2);
+        s.rotZ = (float) c.number(3);
+        s.duration = c.integer(4);
         return s;
     }
 
-    private static final Pattern MOVE_SECTION = Pattern.compile(
-        "scene\\.world\\.moveSection\\s*\\(\\s*(\\w+)\\s*,\\s*\\[([^\\]]+)\\]\\s*,\\s*(\\d+)\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseMoveSection(String js) {
-        Matcher m = MOVE_SECTION.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseMoveSection(Call c) {
+        c.arity(3, 3);
         DslScene.DslStep s = step("move_section");
-        s.linkId = m.group(1);
-        s.offset = parseDoubleList(m.group(2));
-        s.duration = Integer.parseInt(m.group(3));
+        s.linkId = c.ident(0);
+        s.offset = c.vector(1);
+        s.duration = c.integer(2);
         return s;
     }
 
-    private static final Pattern TOGGLE_REDSTONE = Pattern.compile(
-        "scene\\.world\\.toggleRedstonePower\\s*\\(\\s*(?:util\\.select\\.fromTo\\s*\\(([^)]+)\\)|\\[([^\\]]+)\\])\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseToggleRedstonePower(String js) {
-        Matcher m = TOGGLE_REDSTONE.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseToggleRedstonePower(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("toggle_redstone_power");
-        String coordStr = m.group(1) != null ? m.group(1) : m.group(2);
-        List<Integer> coords = parseIntList(coordStr);
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        } else if (coords.size() >= 3) {
-            s.blockPos = coords.subList(0, 3);
-        }
+        setSelection(s, c.selection(0));
         return s;
     }
 
-    private static final Pattern MODIFY_BE_NBT = Pattern.compile(
-        "scene\\.world\\.modifyBlockEntityNBT\\s*\\(\\s*(?:util\\.select\\.fromTo\\s*\\(([^)]+)\\)|\\[([^\\]]+)\\])", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseModifyBlockEntityNbt(String js) {
-        Matcher m = MODIFY_BE_NBT.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseModifyBlockEntityNbt(Call c) {
+        c.arity(2, 3);
         DslScene.DslStep s = step("modify_block_entity_nbt");
-        String coordStr = m.group(1) != null ? m.group(1) : m.group(2);
-        List<Integer> coords = parseIntList(coordStr);
-        if (coords.size() >= 6) {
-            s.blockPos = coords.subList(0, 3);
-            s.blockPos2 = coords.subList(3, 6);
-        } else if (coords.size() >= 3) {
-            s.blockPos = coords.subList(0, 3);
-        }
-        // Try to extract nbt from NBT.parseTag("...")
-        Matcher nbtM = Pattern.compile("NBT\\.parseTag\\s*\\(\\s*\"([^\"]+)\"\\s*\\)").matcher(js);
-        if (nbtM.find()) {
-            s.nbt = nbtM.group(1);
-        }
-        if (js.contains(", true,") || js.contains(",true,")) {
+        setSelection(s, c.selection(0));
+        // (selection, consumer) or (selection, reDrawBlocks, consumer)
+        if (c.count() == 3 && c.isBool(1) && c.bool(1)) {
             s.reDrawBlocks = true;
         }
+        s.nbt = c.parsedTag(c.count() - 1);
         return s;
     }
 
-    private static final Pattern INDICATE_REDSTONE = Pattern.compile(
-        "scene\\.effects\\.indicateRedstone\\s*\\(\\s*\\[([^\\]]+)\\]\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseIndicateRedstone(String js) {
-        Matcher m = INDICATE_REDSTONE.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseIndicateRedstone(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("indicate_redstone");
-        s.blockPos = parseIntList(m.group(1));
+        s.blockPos = c.position(0);
         return s;
     }
 
-    private static final Pattern INDICATE_SUCCESS = Pattern.compile(
-        "scene\\.effects\\.indicateSuccess\\s*\\(\\s*\\[([^\\]]+)\\]\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static DslScene.DslStep parseIndicateSuccess(String js) {
-        Matcher m = INDICATE_SUCCESS.matcher(js);
-        if (!m.find()) return null;
+    private static DslScene.DslStep parseIndicateSuccess(Call c) {
+        c.arity(1, 1);
         DslScene.DslStep s = step("indicate_success");
-        s.blockPos = parseIntList(m.group(1));
+        s.blockPos = c.position(0);
         return s;
     }
 
-    // -- chain parsing helpers ---------------------------------------------------
+    // -- chain modifiers ---------------------------------------------------------
 
-    private static void parseTextChain(DslScene.DslStep step, String js) {
-        if (js.contains(".placeNearTarget()")) step.placeNearTarget = true;
-        if (js.contains(".attachKeyFrame()")) step.attachKeyFrame = true;
-        Matcher colorM = Pattern.compile("\\.colored\\s*\\(\\s*PonderPalette\\.(\\w+)\\s*\\)").matcher(js);
-        if (colorM.find()) step.color = colorM.group(1).toLowerCase(Locale.ROOT);
+    /**
+     * Apply a chained call such as {@code .colored(PonderPalette.RED)} or {@code .leftClick()}.
+     *
+     * @return false if it does not apply to this step type
+     */
+    private static boolean modifier(DslScene.DslStep step, Link link) {
+        String name = link.name().text().toLowerCase(Locale.ROOT);
+        List<Node> args = link.args();
+        switch (step.type) {
+            case "text", "shared_text" -> {
+                switch (name) {
+                    case "placeneartarget" -> step.placeNearTarget = true;
+                    case "attachkeyframe" -> step.attachKeyFrame = true;
+                    case "colored" -> {
+                        if (args.size() != 1 || !(args.get(0) instanceof Member color)
+                            || !(color.target() instanceof Ident palette) || !palette.name().equals("PonderPalette")) {
+                            Token at = args.isEmpty() ? link.name() : args.get(0).token();
+                            throw new ParseError(at, "expected .colored(PonderPalette.<COLOR>)");
+                        }
+                        step.color = color.token().text().toLowerCase(Locale.ROOT);
+                    }
+                    default -> {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case "show_controls" -> {
+                switch (name) {
+                    case "leftclick" -> step.action = "left";
+                    case "rightclick" -> step.action = "right";
+                    case "scroll" -> step.action = "scroll";
+                    case "whilesneaking" -> step.whileSneaking = true;
+                    case "whilectrl" -> step.whileCTRL = true;
+                    case "withitem" -> {
+                        if (args.size() != 1 || !(args.get(0) instanceof Str item)) {
+                            Token at = args.isEmpty() ? link.name() : args.get(0).token();
+                            throw new ParseError(at, "expected .withItem(\"<item id>\")");
+                        }
+                        step.item = item.value();
+                    }
+                    default -> {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
     }
 
     // -- utility -----------------------------------------------------------------
@@ -652,33 +967,12 @@ public final class PonderJsParsers {
         return s;
     }
 
-    static List<Integer> parseIntList(String csv) {
-        if (csv == null || csv.isBlank()) return List.of();
-        List<Integer> result = new ArrayList<>();
-        for (String part : csv.split(",")) {
-            String trimmed = part.strip();
-            if (!trimmed.isEmpty()) {
-                try {
-                    result.add((int) Double.parseDouble(trimmed));
-                } catch (NumberFormatException ignored) {
-                }
-            }
-        }
-        return result;
-    }
-
-    static List<Double> parseDoubleList(String csv) {
-        if (csv == null || csv.isBlank()) return List.of();
-        List<Double> result = new ArrayList<>();
-        for (String part : csv.split(",")) {
-            String trimmed = part.strip();
-            if (!trimmed.isEmpty()) {
-                try {
-                    result.add(Double.parseDouble(trimmed));
-                } catch (NumberFormatException ignored) {
-                }
-            }
+    private static void setSelection(DslScene.DslStep s, List<Integer> coords) {
+        if (coords.size() >= 6) {
+            s.blockPos = coords.subList(0, 3);
+            s.blockPos2 = coords.subList(3, 6);
+        } else {
+            s.blockPos = coords;
         }
-        return result;
     }
 }
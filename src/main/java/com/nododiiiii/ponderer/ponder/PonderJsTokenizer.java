@@ -0,0 +1,277 @@
+package com.nododiiiii.ponderer.ponder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Single-pass JavaScript tokenizer for PonderJS scripts. Comments and whitespace are dropped,
+ * string escapes are decoded, and every token keeps its offset, line and column so the parser can
+ * point at the exact spot it does not understand. Bracket pairs are matched in the same pass, so
+ * the parser can skip or look past any bracketed region in constant time.
+ */
+final class PonderJsTokenizer {
+
+    enum Kind { IDENT, NUMBER, STRING, PUNCT, ERROR, EOF }
+
+    /**
+     * @param text   identifier or punctuation as written, decoded string contents, raw number,
+     *               or the problem for {@link Kind#ERROR}
+     * @param line   1-based
+     * @param column 1-based
+     */
+    record Token(Kind kind, String text, int start, int end, int line, int column) {
+        boolean is(String punct) {
+            return kind == Kind.PUNCT && text.equals(punct);
+        }
+
+        boolean isIdent(String name) {
+            return kind == Kind.IDENT && text.equals(name);
+        }
+
+        String describe() {
+            return switch (kind) {
+                case EOF -> "end of input";
+                case STRING -> "string \"" + text + "\"";
+                default -> "'" + text + "'";
+            };
+        }
+    }
+
+    /**
+     * Tokens of a source, ending with one {@link Kind#EOF} token.
+     */
+    static final class Tokens {
+        private final List<Token> tokens;
+        /** For each bracket token, the index of its partner; -1 if unbalanced or not a bracket. */
+        private final int[] partner;
+
+        private Tokens(List<Token> tokens, int[] partner) {
+            this.tokens = tokens;
+            this.partner = partner;
+        }
+
+        Token get(int index) {
+            return tokens.get(Math.min(index, tokens.size() - 1));
+        }
+
+        int size() {
+            return tokens.size();
+        }
+
+        int partner(int index) {
+            return index < partner.length ? partner[index] : -1;
+        }
+
+        /** Index of the first token starting at or after {@code offset}. */
+        int indexAt(int offset) {
+            int lo = 0, hi = tokens.size() - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (tokens.get(mid).start() < offset) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private PonderJsTokenizer() {
+    }
+
+    static Tokens tokenize(String src) {
+        List<Token> tokens = new ArrayList<>(Math.max(16, src.length() / 4));
+        int line = 1;
+        int lineStart = 0;
+        int i = 0;
+        int n = src.length();
+        while (i < n) {
+            char c = src.charAt(i);
+            if (c == '\n') {
+                line++;
+                lineStart = ++i;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            char next = i + 1 < n ? src.charAt(i + 1) : '\0';
+            if (c == '/' && next == '/') {
+                while (i < n && src.charAt(i) != '\n') i++;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                int startLine = line, startColumn = i - lineStart + 1, start = i;
+                i += 2;
+                while (i < n && !(src.charAt(i) == '*' && i + 1 < n && src.charAt(i + 1) == '/')) {
+                    if (src.charAt(i) == '\n') {
+                        line++;
+                        lineStart = i + 1;
+                    }
+                    i++;
+                }
+                if (i >= n) {
+                    tokens.add(new Token(Kind.ERROR, "unterminated comment", start, n, startLine, startColumn));
+                    break;
+                }
+                i += 2;
+                continue;
+            }
+
+            int start = i;
+            int column = i - lineStart + 1;
+            if (c == '"' || c == '\'' || c == '`') {
+                StringBuilder value = new StringBuilder();
+                int startLine = line;
+                i++;
+                boolean closed = false;
+                while (i < n) {
+                    char ch = src.charAt(i);
+                    if (ch == c) {
+                        closed = true;
+                        i++;
+                        break;
+                    }
+                    if (ch == '\n') {
+                        if (c != '`') break;
+                        line++;
+                        lineStart = i + 1;
+                    }
+                    if (ch == '\\' && i + 1 < n) {
+                        if (src.charAt(i + 1) == '\n') {
+                            line++;
+                            lineStart = i + 2;
+                        }
+                        i = unescape(src, i + 1, value);
+                        continue;
+                    }
+                    value.append(ch);
+                    i++;
+                }
+                tokens.add(closed
+                    ? new Token(Kind.STRING, value.toString(), start, i, startLine, column)
+                    : new Token(Kind.ERROR, "unterminated string", start, i, startLine, column));
+                continue;
+            }
+            if (isDigit(c) || (c == '.' && isDigit(next))) {
+                i = scanNumber(src, i);
+                tokens.add(new Token(Kind.NUMBER, src.substring(start, i), start, i, line, column));
+                continue;
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                while (i < n && Character.isJavaIdentifierPart(src.charAt(i))) i++;
+                tokens.add(new Token(Kind.IDENT, src.substring(start, i), start, i, line, column));
+                continue;
+            }
+            if (c == '=' && next == '>') {
+                i += 2;
+                tokens.add(new Token(Kind.PUNCT, "=>", start, i, line, column));
+                continue;
+            }
+            i++;
+            tokens.add(new Token(Kind.PUNCT, String.valueOf(c), start, i, line, column));
+        }
+        tokens.add(new Token(Kind.EOF, "", n, n, line, n - lineStart + 1));
+        return new Tokens(tokens, matchBrackets(tokens));
+    }
+
+    private static int[] matchBrackets(List<Token> tokens) {
+        int[] partner = new int[tokens.size()];
+        Arrays.fill(partner, -1);
+        Deque<Integer> open = new ArrayDeque<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token t = tokens.get(i);
+            if (t.kind() != Kind.PUNCT) continue;
+            String s = t.text();
+            if (s.equals("(") || s.equals("[") || s.equals("{")) {
+                open.push(i);
+            } else if (s.equals(")") || s.equals("]") || s.equals("}")) {
+                // Openers left unclosed inside this pair stay unmatched; a closer with no opener is ignored
+                boolean found = false;
+                for (int o : open) {
+                    if (closes(tokens.get(o).text(), s)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (found) {
+                    int o;
+                    do {
+                        o = open.pop();
+                    } while (!closes(tokens.get(o).text(), s));
+                    partner[o] = i;
+                    partner[i] = o;
+                }
+            }
+        }
+        return partner;
+    }
+
+    private static boolean closes(String open, String close) {
+        return (open.equals("(") && close.equals(")"))
+            || (open.equals("[") && close.equals("]"))
+            || (open.equals("{") && close.equals("}"));
+    }
+
+    private static int scanNumber(String src, int i) {
+        int n = src.length();
+        if (src.charAt(i) == '0' && i + 1 < n && (src.charAt(i + 1) == 'x' || src.charAt(i + 1) == 'X')) {
+            i += 2;
+            while (i < n && Character.digit(src.charAt(i), 16) >= 0) i++;
+            return i;
+        }
+        while (i < n && (isDigit(src.charAt(i)) || src.charAt(i) == '.')) i++;
+        if (i < n && (src.charAt(i) == 'e' || src.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < n && (src.charAt(j) == '+' || src.charAt(j) == '-')) j++;
+            if (j < n && isDigit(src.charAt(j))) {
+                i = j;
+                while (i < n && isDigit(src.charAt(i))) i++;
+            }
+        }
+        return i;
+    }
+
+    /** Decode the escape after a backslash at {@code i - 1}; returns the index after it. */
+    private static int unescape(String src, int i, StringBuilder out) {
+        char e = src.charAt(i);
+        switch (e) {
+            case 'n' -> out.append('\n');
+            case 't' -> out.append('\t');
+            case 'r' -> out.append('\r');
+            case 'b' -> out.append('\b');
+            case 'f' -> out.append('\f');
+            case 'v' -> out.append('\u000B');
+            case '0' -> out.append('\0');
+            case '\n' -> { }
+            case 'u' -> {
+                if (i + 5 <= src.length()) {
+                    try {
+                        out.append((char) Integer.parseInt(src.substring(i + 1, i + 5), 16));
+                        return i + 5;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                out.append(e);
+            }
+            case 'x' -> {
+                if (i + 3 <= src.length()) {
+                    try {
+                        out.append((char) Integer.parseInt(src.substring(i + 1, i + 3), 16));
+                        return i + 3;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                out.append(e);
+            }
+            default -> out.append(e);
+        }
+        return i + 1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
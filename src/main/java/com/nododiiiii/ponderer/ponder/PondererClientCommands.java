@@ -3,6 +3,9 @@ package com.nododiiiii.ponderer.ponder;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.nododiiiii.ponderer.network.AnnounceScenePayload;
+import com.nododiiiii.ponderer.network.BatchUploadPayload;
+import com.nododiiiii.ponderer.network.SyncCapabilities;
 import com.nododiiiii.ponderer.network.DownloadStructurePayload;
 import com.nododiiiii.ponderer.network.UploadScenePayload;
 import com.nododiiiii.ponderer.network.SyncRequestPayload;
@@ -80,6 +83,11 @@ public final class PondererClientCommands {
                         .then(Commands.argument("id", ResourceLocationArgument.id())
                             .executes(ctx -> convertFromPonderJs(ResourceLocationArgument.getId(ctx, "id")))))
                 )
+                .then(Commands.literal("lang")
+                    .then(Commands.literal("extract")
+                        .executes(ctx -> LangBundles.extractAll()))
+                    .then(Commands.literal("inline")
+                        .executes(ctx -> LangBundles.inlineAll())))
                 .then(Commands.literal("new")
                     .then(Commands.literal("hand")
                         .executes(ctx -> newSceneFromHand(null))
@@ -135,7 +143,12 @@ public final class PondererClientCommands {
 
     private static int pull(String mode) {
         pendingPullMode = mode;
-        PacketDistributor.sendToServer(new SyncRequestPayload());
+        if (LibraryDigestSync.isActive()) {
+            // Skipped entirely if nothing changed on either side
+            LibraryDigestSync.pull();
+        } else {
+            PacketDistributor.sendToServer(new SyncRequestPayload());
+        }
         notifyClient(Component.translatable("ponderer.cmd.pull.requesting", mode));
         return 1;
     }
@@ -176,23 +189,67 @@ public final class PondererClientCommands {
             return 0;
         }
 
+        if (scene.get().placeholder) {
+            notifyClient(Component.translatable("ponderer.lazy.not_fetched", id.toString()));
+            return 0;
+        }
+
         List<UploadScenePayload.StructureEntry> structures = new ArrayList<>();
-        DslScene uploadScene = GSON.fromJson(GSON.toJson(scene.get()), DslScene.class);
-        remapStructuresForUpload(uploadScene, structures);
-        String json = GSON.toJson(uploadScene);
+        String json = buildUploadJson(scene.get(), structures, new HashMap<>());
 
         // Compute lastSyncHash for conflict detection
         String metaKey = "scripts/" + id;
-        Map<String, String> meta = SyncMeta.load();
-        String lastSyncHash = meta.getOrDefault(metaKey, "");
+        String lastSyncHash = SyncCapabilities.serverHas(SyncCapabilities.REVISIONS)
+            ? SyncMeta.syncBase(metaKey)
+            : SyncMeta.get(metaKey);
+        if (lastSyncHash.isEmpty() && scene.get().fromServerCache) {
+            // Never pulled into the local folder: the cached server copy is the base
+            lastSyncHash = ServerCache.scriptHash(id.toString());
+        }
+
+        UploadScenePayload upload = new UploadScenePayload(id.toString(), json, structures, mode, lastSyncHash);
+        if (!SyncCapabilities.serverHas(SyncCapabilities.STRUCTURE_HASHES)) {
+            // Older server: send everything in one go
+            PacketDistributor.sendToServer(upload);
+            notifyClient(Component.translatable("ponderer.cmd.push.uploading", id.toString(), mode));
+            return 1;
+        }
 
-        PacketDistributor.sendToServer(new UploadScenePayload(id.toString(), json, structures, mode, lastSyncHash));
+        // Announce structure hashes first; the bytes are only sent for structures the server lacks
+        List<AnnounceScenePayload.StructureHash> hashes = new ArrayList<>(structures.size());
+        for (UploadScenePayload.StructureEntry entry : structures) {
+            hashes.add(new AnnounceScenePayload.StructureHash(entry.id(), SyncMeta.sha256(entry.bytes())));
+        }
+        PENDING_UPLOADS.put(upload.sceneId(), upload);
+        PacketDistributor.sendToServer(new AnnounceScenePayload(upload.sceneId(), json, hashes, mode, lastSyncHash));
         notifyClient(Component.translatable("ponderer.cmd.push.uploading", id.toString(), mode));
         return 1;
     }
 
-    private static void remapStructuresForUpload(DslScene scene, List<UploadScenePayload.StructureEntry> uploadEntries) {
-        Map<String, String> remapped = new HashMap<>();
+    /** Pushes waiting for the server's {@link com.nododiiiii.ponderer.network.MissingStructuresPayload} reply. */
+    private static final Map<String, UploadScenePayload> PENDING_UPLOADS = new HashMap<>();
+
+    @Nullable
+    public static UploadScenePayload takePendingUpload(String sceneId) {
+        return PENDING_UPLOADS.remove(sceneId);
+    }
+
+    /**
+     * Serialize a copy of the scene with its structure references remapped to ponderer: ids and
+     * its bundle keys inlined, collecting the referenced structure bytes into {@code uploadEntries}.
+     *
+     * @param remapped ref -> remapped id, shared across scenes of one push so each structure is read once
+     */
+    private static String buildUploadJson(DslScene scene, List<UploadScenePayload.StructureEntry> uploadEntries,
+                                          Map<String, String> remapped) {
+        DslScene uploadScene = GSON.fromJson(GSON.toJsonTree(scene), DslScene.class);
+        remapStructuresForUpload(uploadScene, uploadEntries, remapped);
+        LangBundles.inlineKeys(uploadScene);
+        return GSON.toJson(uploadScene);
+    }
+
+    private static void remapStructuresForUpload(DslScene scene, List<UploadScenePayload.StructureEntry> uploadEntries,
+                                                 Map<String, String> remapped) {
 
         if (scene.structures != null && !scene.structures.isEmpty()) {
             List<String> mapped = new ArrayList<>();
@@ -308,16 +365,62 @@ public final class PondererClientCommands {
             notifyClient(Component.translatable("ponderer.cmd.push.no_scenes"));
             return 0;
         }
-        int count = 0;
+        if (!SyncCapabilities.serverHas(SyncCapabilities.BATCH_UPLOAD)) {
+            // Older server: one upload per scene
+            int count = 0;
+            for (DslScene scene : scenes) {
+                if (scene == null || scene.id == null || scene.id.isBlank() || scene.fromServerCache) continue;
+                ResourceLocation id = ResourceLocation.tryParse(scene.id);
+                if (id == null) continue;
+                count += push(id, mode);
+            }
+            notifyClient(Component.translatable("ponderer.cmd.push.done", count, mode));
+            return count;
+        }
+
+        // One payload for the whole local library: each structure is read and hashed once,
+        // however many scenes reference it. Cached server scenes are skipped.
+        boolean useRevisions = SyncCapabilities.serverHas(SyncCapabilities.REVISIONS);
+        Map<String, String> remapped = new HashMap<>();
+        List<UploadScenePayload.StructureEntry> structures = new ArrayList<>();
+        List<BatchUploadPayload.SceneEntry> entries = new ArrayList<>();
         for (DslScene scene : scenes) {
-            if (scene == null || scene.id == null || scene.id.isBlank()) continue;
+            if (scene == null || scene.id == null || scene.id.isBlank() || scene.fromServerCache) continue;
             ResourceLocation id = ResourceLocation.tryParse(scene.id);
             if (id == null) continue;
-            push(id, mode);
-            count++;
+            String json = buildUploadJson(scene, structures, remapped);
+            entries.add(new BatchUploadPayload.SceneEntry(id.toString(), json,
+                useRevisions ? SyncMeta.syncBase("scripts/" + id) : SyncMeta.get("scripts/" + id)));
         }
-        notifyClient(Component.translatable("ponderer.cmd.push.done", count, mode));
-        return count;
+        if (entries.isEmpty()) {
+            notifyClient(Component.translatable("ponderer.cmd.push.no_scenes"));
+            return 0;
+        }
+
+        List<BatchUploadPayload.StructureBlob> blobs = new ArrayList<>(structures.size());
+        for (UploadScenePayload.StructureEntry entry : structures) {
+            blobs.add(new BatchUploadPayload.StructureBlob(entry.id(), SyncMeta.sha256(entry.bytes()), entry.bytes()));
+        }
+        BatchUploadPayload batch = new BatchUploadPayload("batch:" + (++batchCounter), entries, blobs, mode);
+        PENDING_BATCHES.put(batch.batchId(), batch);
+        PacketDistributor.sendToServer(batch.withoutBlobs());
+        notifyClient(Component.translatable("ponderer.cmd.push.done", entries.size(), mode));
+        return entries.size();
+    }
+
+    /** Batch pushes waiting for a {@link com.nododiiiii.ponderer.network.MissingStructuresPayload} or summary reply. */
+    private static final Map<String, BatchUploadPayload> PENDING_BATCHES = new HashMap<>();
+    private static int batchCounter = 0;
+
+    @Nullable
+    public static BatchUploadPayload takePendingBatch(String batchId) {
+        return PENDING_BATCHES.remove(batchId);
+    }
+
+    /** Drop every push still waiting for a reply; the server that would send it is gone. */
+    public static void clearPendingUploads() {
+        PENDING_UPLOADS.clear();
+        PENDING_BATCHES.clear();
     }
 
     // ---- /ponderer new ----
@@ -433,6 +536,11 @@ public final class PondererClientCommands {
         }
 
         DslScene original = source.get();
+        if (original.placeholder) {
+            LazyFetch.requestScene(original.id);
+            notifyClient(Component.translatable("ponderer.lazy.not_fetched", sceneId.toString()));
+            return 0;
+        }
         String json = GSON.toJson(original);
         DslScene copy = GSON.fromJson(json, DslScene.class);
 
@@ -523,6 +631,7 @@ public final class PondererClientCommands {
         Path baseDir = net.neoforged.fml.loading.FMLPaths.CONFIGDIR.get().resolve("ponderer");
         Path scriptsDir = SceneStore.getSceneDir();
         Path structuresDir = SceneStore.getStructureDir();
+        Path langDir = LangBundles.getDir();
         Path outputFile = baseDir.resolve(filename);
 
         try {
@@ -551,6 +660,17 @@ public final class PondererClientCommands {
                         }
                     }
                 }
+                if (Files.exists(langDir)) {
+                    try (Stream<Path> paths = Files.walk(langDir)) {
+                        for (Path p : paths.filter(Files::isRegularFile).toList()) {
+                            String entryName = "lang/" + langDir.relativize(p).toString().replace("\\", "/");
+                            zos.putNextEntry(new ZipEntry(entryName));
+                            Files.copy(p, zos);
+                            zos.closeEntry();
+                            count++;
+                        }
+                    }
+                }
             }
             notifyClient(Component.translatable("ponderer.cmd.export.done", count, outputFile.getFileName().toString()));
             return 1;
@@ -573,6 +693,7 @@ public final class PondererClientCommands {
 
         Path scriptsDir = SceneStore.getSceneDir();
         Path structuresDir = SceneStore.getStructureDir();
+        Path langDir = LangBundles.getDir();
 
         try {
             int count = 0;
@@ -586,6 +707,8 @@ public final class PondererClientCommands {
                         target = scriptsDir.resolve(name.substring("scripts/".length()));
                     } else if (name.startsWith("structures/")) {
                         target = structuresDir.resolve(name.substring("structures/".length()));
+                    } else if (name.startsWith("lang/")) {
+                        target = langDir.resolve(name.substring("lang/".length()));
                     } else {
                         continue;
                     }
@@ -596,6 +719,7 @@ public final class PondererClientCommands {
                     count++;
                 }
             }
+            LangBundles.invalidate();
             SceneStore.reloadFromDisk();
             Minecraft.getInstance().execute(PonderIndex::reload);
             notifyClient(Component.translatable("ponderer.cmd.import.done", count, filename));
@@ -0,0 +1,70 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.mojang.logging.LogUtils;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Client-side copy of each scene as it was at its last sync point: the common ancestor
+ * {@link SceneMerge} needs to tell local edits from server edits.
+ * <p>
+ * Storage: config/ponderer/.sync_base/&lt;namespace&gt;/&lt;path&gt;.json, same layout as the scripts
+ * directory. A copy is only used while its hash still equals the sync point recorded in
+ * {@link SyncMeta}.
+ */
+public final class SceneBases {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String BASE_DIR = ".sync_base";
+
+    private SceneBases() {
+    }
+
+    private static Path root() {
+        return SceneStore.getSceneDir().getParent().resolve(BASE_DIR);
+    }
+
+    static void store(String sceneId, byte[] bytes) {
+        Path path = ServerCache.resolve(root(), sceneId, ".json");
+        if (path == null) {
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(tmp, bytes);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to store sync base of {}", sceneId, e);
+        }
+    }
+
+    static boolean has(String sceneId) {
+        Path path = ServerCache.resolve(root(), sceneId, ".json");
+        return path != null && Files.exists(path);
+    }
+
+    /**
+     * The stored base of a scene, or null if there is none or it is not the expected version.
+     */
+    @Nullable
+    public static byte[] load(String sceneId, String expectedHash) {
+        if (expectedHash == null || expectedHash.isEmpty()) {
+            return null;
+        }
+        Path path = ServerCache.resolve(root(), sceneId, ".json");
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+            return SyncMeta.sha256(bytes).equals(expectedHash) ? bytes : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
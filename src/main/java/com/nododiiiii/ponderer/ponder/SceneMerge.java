@@ -0,0 +1,353 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Three-way merge of a scene edited both locally and on the server since the last sync.
+ * <p>
+ * Scenes are merged as JSON trees: scene and segment properties field by field, segments by id
+ * (by position when ids are missing or repeated), and step lists with a diff3 over step content,
+ * anchored on steps that neither side touched. Edits to different fields, segments or step
+ * ranges combine; only a range both sides changed differently is a conflict, resolved towards
+ * the preferred side and reported.
+ */
+public final class SceneMerge {
+    /** Larger step lists are not merged (the LCS table is quadratic). */
+    private static final long MAX_LCS_CELLS = 4_000_000L;
+    private static final String STEPS = "steps";
+    private static final String SCENES = "scenes";
+
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(LocalizedText.class, new LocalizedText.GsonAdapter())
+        .create();
+
+    private SceneMerge() {
+    }
+
+    /**
+     * @param scene     the merged scene
+     * @param conflicts where both sides changed the same thing, e.g. "title" or "[intro] 4-6"
+     */
+    public record Result(DslScene scene, List<String> conflicts) {
+    }
+
+    /**
+     * @param preferLocal which side wins a conflict
+     * @return null if the versions cannot be merged structurally (different ids, one side
+     * switched between flat steps and segments, or lists too large)
+     */
+    @Nullable
+    public static Result merge(DslScene base, DslScene local, DslScene server, boolean preferLocal) {
+        if (base.id == null || !base.id.equals(local.id) || !base.id.equals(server.id)) {
+            return null;
+        }
+        JsonObject b = GSON.toJsonTree(base).getAsJsonObject();
+        JsonObject l = GSON.toJsonTree(local).getAsJsonObject();
+        JsonObject s = GSON.toJsonTree(server).getAsJsonObject();
+        boolean segmented = isSegmented(b);
+        if (segmented != isSegmented(l) || segmented != isSegmented(s)) {
+            return null;
+        }
+
+        Merger merger = new Merger(preferLocal);
+        JsonObject merged = merger.fields(b, l, s, Set.of(STEPS, SCENES), "");
+        if (segmented) {
+            JsonArray segments = merger.segments(b.getAsJsonArray(SCENES), l.getAsJsonArray(SCENES), s.getAsJsonArray(SCENES));
+            if (segments == null) {
+                return null;
+            }
+            merged.add(SCENES, segments);
+        } else {
+            JsonArray steps = merger.steps(array(b, STEPS), array(l, STEPS), array(s, STEPS), "");
+            if (steps == null) {
+                return null;
+            }
+            merged.add(STEPS, steps);
+        }
+        return new Result(GSON.fromJson(merged, DslScene.class), List.copyOf(merger.conflicts));
+    }
+
+    /**
+     * Merge a local scene file with the server's version, using the base stored at the last sync.
+     *
+     * @return null if there is no usable base, or a version does not parse or cannot be merged
+     */
+    @Nullable
+    public static Result mergeWithLocal(String sceneId, Path localFile, byte[] serverBytes, boolean preferLocal) {
+        byte[] baseBytes = SceneBases.load(sceneId, SyncMeta.get("scripts/" + sceneId));
+        if (baseBytes == null) {
+            return null;
+        }
+        byte[] localBytes;
+        try {
+            localBytes = Files.readAllBytes(localFile);
+        } catch (IOException e) {
+            return null;
+        }
+        DslScene base = SceneStore.parseScene(baseBytes);
+        DslScene local = SceneStore.parseScene(localBytes);
+        DslScene server = SceneStore.parseScene(serverBytes);
+        if (base == null || local == null || server == null) {
+            return null;
+        }
+        return merge(base, local, server, preferLocal);
+    }
+
+    private static boolean isSegmented(JsonObject scene) {
+        return scene.has(SCENES) && scene.get(SCENES).isJsonArray() && !scene.getAsJsonArray(SCENES).isEmpty();
+    }
+
+    private static JsonArray array(JsonObject object, String key) {
+        JsonElement value = object.get(key);
+        return value != null && value.isJsonArray() ? value.getAsJsonArray() : new JsonArray();
+    }
+
+    private static JsonElement field(JsonObject object, String key) {
+        JsonElement value = object.get(key);
+        return value == null ? JsonNull.INSTANCE : value;
+    }
+
+    private static final class Merger {
+        final boolean preferLocal;
+        final List<String> conflicts = new ArrayList<>();
+
+        Merger(boolean preferLocal) {
+            this.preferLocal = preferLocal;
+        }
+
+        /** Three-way merge of one value: take whichever side changed it. */
+        JsonElement value(JsonElement b, JsonElement l, JsonElement s, String where) {
+            if (l.equals(b) || l.equals(s)) {
+                return s;
+            }
+            if (s.equals(b)) {
+                return l;
+            }
+            conflicts.add(where);
+            return preferLocal ? l : s;
+        }
+
+        /** Merge every property of an object except {@code skip}. */
+        JsonObject fields(JsonObject b, JsonObject l, JsonObject s, Set<String> skip, String prefix) {
+            Set<String> keys = new LinkedHashSet<>();
+            keys.addAll(s.keySet());
+            keys.addAll(l.keySet());
+            keys.addAll(b.keySet());
+            JsonObject merged = new JsonObject();
+            for (String key : keys) {
+                if (skip.contains(key)) {
+                    continue;
+                }
+                JsonElement value = value(field(b, key), field(l, key), field(s, key), prefix + key);
+                if (!value.isJsonNull()) {
+                    merged.add(key, value);
+                }
+            }
+            return merged;
+        }
+
+        @Nullable
+        JsonArray segments(JsonArray b, JsonArray l, JsonArray s) {
+            Map<String, JsonObject> base = keyed(b);
+            Map<String, JsonObject> local = keyed(l);
+            Map<String, JsonObject> server = keyed(s);
+
+            // Server order first, then locally added segments after their local predecessor
+            List<String> order = new ArrayList<>();
+            Map<String, JsonObject> result = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonObject> e : server.entrySet()) {
+                String key = e.getKey();
+                JsonObject baseSegment = base.get(key);
+                JsonObject localSegment = local.get(key);
+                JsonObject merged;
+                if (localSegment != null) {
+                    merged = segment(baseSegment == null ? new JsonObject() : baseSegment, localSegment, e.getValue(), key);
+                    if (merged == null) {
+                        return null;
+                    }
+                } else if (baseSegment == null || baseSegment.equals(e.getValue())) {
+                    // Added on the server, or deleted locally and untouched on the server
+                    merged = baseSegment == null ? e.getValue() : null;
+                } else {
+                    conflicts.add("[" + key + "]");
+                    merged = preferLocal ? null : e.getValue();
+                }
+                if (merged != null) {
+                    order.add(key);
+                    result.put(key, merged);
+                }
+            }
+
+            String previous = null;
+            for (Map.Entry<String, JsonObject> e : local.entrySet()) {
+                String key = e.getKey();
+                if (server.containsKey(key)) {
+                    if (result.containsKey(key)) {
+                        previous = key;
+                    }
+                    continue;
+                }
+                JsonObject baseSegment = base.get(key);
+                boolean keep;
+                if (baseSegment == null) {
+                    keep = true;
+                } else if (baseSegment.equals(e.getValue())) {
+                    // Deleted on the server, untouched locally
+                    keep = false;
+                } else {
+                    conflicts.add("[" + key + "]");
+                    keep = preferLocal;
+                }
+                if (keep) {
+                    order.add(previous == null ? 0 : order.indexOf(previous) + 1, key);
+                    result.put(key, e.getValue());
+                    previous = key;
+                }
+            }
+
+            JsonArray merged = new JsonArray();
+            for (String key : order) {
+                merged.add(result.get(key));
+            }
+            return merged;
+        }
+
+        @Nullable
+        JsonObject segment(JsonObject b, JsonObject l, JsonObject s, String key) {
+            JsonObject merged = fields(b, l, s, Set.of(STEPS), "[" + key + "] ");
+            JsonArray steps = steps(array(b, STEPS), array(l, STEPS), array(s, STEPS), "[" + key + "] ");
+            if (steps == null) {
+                return null;
+            }
+            merged.add(STEPS, steps);
+            return merged;
+        }
+
+        /**
+         * diff3 over step lists: steps present unchanged in all three versions anchor the merge,
+         * and each stretch between anchors takes whichever side changed it.
+         */
+        @Nullable
+        JsonArray steps(JsonArray b, JsonArray l, JsonArray s, String prefix) {
+            List<JsonElement> base = b.asList();
+            List<JsonElement> local = l.asList();
+            List<JsonElement> server = s.asList();
+            int[] toLocal = match(base, local);
+            int[] toServer = match(base, server);
+            if (toLocal == null || toServer == null) {
+                return null;
+            }
+
+            JsonArray merged = new JsonArray();
+            int bi = 0, li = 0, si = 0;
+            while (true) {
+                int anchor = bi;
+                while (anchor < base.size() && (toLocal[anchor] < 0 || toServer[anchor] < 0)) {
+                    anchor++;
+                }
+                int lEnd = anchor < base.size() ? toLocal[anchor] : local.size();
+                int sEnd = anchor < base.size() ? toServer[anchor] : server.size();
+                List<JsonElement> baseChunk = base.subList(bi, anchor);
+                List<JsonElement> localChunk = local.subList(li, lEnd);
+                List<JsonElement> serverChunk = server.subList(si, sEnd);
+
+                List<JsonElement> taken;
+                if (localChunk.equals(baseChunk) || localChunk.equals(serverChunk)) {
+                    taken = serverChunk;
+                } else if (serverChunk.equals(baseChunk)) {
+                    taken = localChunk;
+                } else {
+                    taken = preferLocal ? localChunk : serverChunk;
+                    int first = merged.size() + 1;
+                    int last = merged.size() + Math.max(taken.size(), 1);
+                    conflicts.add(prefix + (first == last ? String.valueOf(first) : first + "-" + last));
+                }
+                taken.forEach(merged::add);
+
+                if (anchor >= base.size()) {
+                    return merged;
+                }
+                merged.add(base.get(anchor));
+                bi = anchor + 1;
+                li = lEnd + 1;
+                si = sEnd + 1;
+            }
+        }
+    }
+
+    /**
+     * Segments by id, or by position if any id is missing or repeated.
+     */
+    private static Map<String, JsonObject> keyed(JsonArray segments) {
+        Map<String, JsonObject> byId = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        boolean usable = true;
+        for (JsonElement element : segments) {
+            JsonElement id = element.isJsonObject() ? element.getAsJsonObject().get("id") : null;
+            if (id == null || !id.isJsonPrimitive() || !seen.add(id.getAsString())) {
+                usable = false;
+                break;
+            }
+            byId.put(id.getAsString(), element.getAsJsonObject());
+        }
+        if (usable) {
+            return byId;
+        }
+        Map<String, JsonObject> byPosition = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            JsonElement element = segments.get(i);
+            byPosition.put("#" + (i + 1), element.isJsonObject() ? element.getAsJsonObject() : new JsonObject());
+        }
+        return byPosition;
+    }
+
+    /**
+     * Longest common subsequence between {@code base} and {@code other}.
+     *
+     * @return for each base index, the matching index in {@code other} or -1; null if too large
+     */
+    @Nullable
+    private static int[] match(List<JsonElement> base, List<JsonElement> other) {
+        int n = base.size(), m = other.size();
+        if ((long) (n + 1) * (m + 1) > MAX_LCS_CELLS) {
+            return null;
+        }
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                lcs[i][j] = base.get(i).equals(other.get(j))
+                    ? lcs[i + 1][j + 1] + 1
+                    : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+        int[] matched = new int[n];
+        int i = 0, j = 0;
+        while (i < n) {
+            if (j < m && base.get(i).equals(other.get(j))) {
+                matched[i++] = j++;
+            } else if (j < m && lcs[i][j + 1] >= lcs[i + 1][j]) {
+                j++;
+            } else {
+                matched[i++] = -1;
+            }
+        }
+        return matched;
+    }
+}
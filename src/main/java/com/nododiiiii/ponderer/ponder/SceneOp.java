@@ -0,0 +1,346 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One editor mutation of a scene, small enough to send instead of the whole file.
+ * <p>
+ * Step operations address a step list by {@code segment}: -1 is the flat {@link DslScene#steps}
+ * list, otherwise an index into {@link DslScene#scenes}. Segment operations use {@code segment}
+ * as the segment position. {@code json} carries the step, step list, segment or title being set,
+ * with any translation bundle key inlined.
+ * <p>
+ * Concurrent edits are reconciled by index transformation ({@link #rebase}): inserts and removals
+ * shift the positions of later operations, and operations that touch the same step or segment
+ * are reported as conflicts instead of being guessed at.
+ */
+public record SceneOp(Kind kind, int segment, int index, int target, String json) {
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(LocalizedText.class, new LocalizedText.GsonAdapter())
+        .create();
+
+    public enum Kind {
+        /** Insert a step at {@code index}. */
+        INSERT,
+        /** Replace the step at {@code index}. */
+        REPLACE,
+        /** Remove the step at {@code index}. */
+        REMOVE,
+        /** Remove the step at {@code index} and re-insert it at {@code target}. */
+        MOVE,
+        /** Replace a whole step list (undo / redo). */
+        SET_STEPS,
+        /** Insert a segment at position {@code segment}. */
+        ADD_SEGMENT,
+        /** Delete the segment at position {@code segment}. */
+        DELETE_SEGMENT,
+        /** Set the ponder title ({@code segment} -1) or a segment title. */
+        SET_TITLE
+    }
+
+    public static SceneOp insert(int segment, int index, DslScene.DslStep step) {
+        return new SceneOp(Kind.INSERT, segment, index, 0, GSON.toJson(sendable(step)));
+    }
+
+    public static SceneOp replace(int segment, int index, DslScene.DslStep step) {
+        return new SceneOp(Kind.REPLACE, segment, index, 0, GSON.toJson(sendable(step)));
+    }
+
+    public static SceneOp remove(int segment, int index) {
+        return new SceneOp(Kind.REMOVE, segment, index, 0, "");
+    }
+
+    public static SceneOp move(int segment, int from, int to) {
+        return new SceneOp(Kind.MOVE, segment, from, to, "");
+    }
+
+    public static SceneOp setSteps(int segment, List<DslScene.DslStep> steps) {
+        List<DslScene.DslStep> sendable = new ArrayList<>(steps.size());
+        for (DslScene.DslStep step : steps) {
+            sendable.add(sendable(step));
+        }
+        return new SceneOp(Kind.SET_STEPS, segment, 0, 0, GSON.toJson(sendable));
+    }
+
+    public static SceneOp addSegment(int position, DslScene.SceneSegment segment) {
+        DslScene.SceneSegment copy = GSON.fromJson(GSON.toJsonTree(segment), DslScene.SceneSegment.class);
+        LangBundles.inlineKeys(copy);
+        return new SceneOp(Kind.ADD_SEGMENT, position, 0, 0, GSON.toJson(copy));
+    }
+
+    public static SceneOp deleteSegment(int position) {
+        return new SceneOp(Kind.DELETE_SEGMENT, position, 0, 0, "");
+    }
+
+    public static SceneOp setTitle(int segment, @Nullable LocalizedText title) {
+        return new SceneOp(Kind.SET_TITLE, segment, 0, 0, title == null ? "" : GSON.toJson(LangBundles.inlined(title)));
+    }
+
+    /** The step, or a copy with its bundle key inlined: translation bundles are local to this client. */
+    private static DslScene.DslStep sendable(DslScene.DslStep step) {
+        if (step == null || step.text == null || !step.text.isKey()) {
+            return step;
+        }
+        DslScene.DslStep copy = GSON.fromJson(GSON.toJsonTree(step), DslScene.DslStep.class);
+        copy.text = LangBundles.inlined(copy.text);
+        return copy;
+    }
+
+    // ---- applying ----
+
+    /**
+     * Apply to a scene in place.
+     *
+     * @return false if the operation does not fit the scene (nothing is changed then)
+     */
+    public boolean apply(DslScene scene) {
+        try {
+            return switch (kind) {
+                case INSERT -> {
+                    List<DslScene.DslStep> steps = steps(scene);
+                    if (steps == null || index < 0 || index > steps.size()) yield false;
+                    steps.add(index, GSON.fromJson(json, DslScene.DslStep.class));
+                    yield true;
+                }
+                case REPLACE -> {
+                    List<DslScene.DslStep> steps = steps(scene);
+                    if (steps == null || index < 0 || index >= steps.size()) yield false;
+                    steps.set(index, GSON.fromJson(json, DslScene.DslStep.class));
+                    yield true;
+                }
+                case REMOVE -> {
+                    List<DslScene.DslStep> steps = steps(scene);
+                    if (steps == null || index < 0 || index >= steps.size()) yield false;
+                    steps.remove(index);
+                    yield true;
+                }
+                case MOVE -> {
+                    List<DslScene.DslStep> steps = steps(scene);
+                    if (steps == null || index < 0 || index >= steps.size() || target < 0 || target >= steps.size()) yield false;
+                    steps.add(target, steps.remove(index));
+                    yield true;
+                }
+                case SET_STEPS -> {
+                    List<DslScene.DslStep> steps = GSON.fromJson(json, new TypeToken<List<DslScene.DslStep>>() {}.getType());
+                    if (steps == null || steps(scene) == null) yield false;
+                    if (segment < 0) {
+                        scene.steps = new ArrayList<>(steps);
+                    } else {
+                        scene.scenes.get(segment).steps = new ArrayList<>(steps);
+                    }
+                    yield true;
+                }
+                case ADD_SEGMENT -> {
+                    List<DslScene.SceneSegment> segments = segments(scene);
+                    if (segment < 0 || segment > segments.size()) yield false;
+                    DslScene.SceneSegment added = GSON.fromJson(json, DslScene.SceneSegment.class);
+                    if (added == null) yield false;
+                    segments.add(segment, added);
+                    yield true;
+                }
+                case DELETE_SEGMENT -> {
+                    List<DslScene.SceneSegment> segments = segments(scene);
+                    if (segment < 0 || segment >= segments.size()) yield false;
+                    segments.remove(segment);
+                    yield true;
+                }
+                case SET_TITLE -> {
+                    LocalizedText title = json.isEmpty() ? null : GSON.fromJson(json, LocalizedText.class);
+                    if (segment < 0) {
+                        scene.title = title;
+                        yield true;
+                    }
+                    if (scene.scenes == null || segment >= scene.scenes.size()) yield false;
+                    scene.scenes.get(segment).title = title;
+                    yield true;
+                }
+            };
+        } catch (RuntimeException e) {
+            // Malformed JSON from a peer
+            return false;
+        }
+    }
+
+    /** The addressed step list made mutable, or null if the segment does not exist. */
+    @Nullable
+    private List<DslScene.DslStep> steps(DslScene scene) {
+        if (segment < 0) {
+            if (!(scene.steps instanceof ArrayList)) {
+                scene.steps = scene.steps == null ? new ArrayList<>() : new ArrayList<>(scene.steps);
+            }
+            return scene.steps;
+        }
+        if (scene.scenes == null || segment >= scene.scenes.size()) {
+            return null;
+        }
+        DslScene.SceneSegment addressed = scene.scenes.get(segment);
+        if (!(addressed.steps instanceof ArrayList)) {
+            addressed.steps = addressed.steps == null ? new ArrayList<>() : new ArrayList<>(addressed.steps);
+        }
+        return addressed.steps;
+    }
+
+    private static List<DslScene.SceneSegment> segments(DslScene scene) {
+        if (!(scene.scenes instanceof ArrayList)) {
+            scene.scenes = scene.scenes == null ? new ArrayList<>() : new ArrayList<>(scene.scenes);
+        }
+        return scene.scenes;
+    }
+
+    // ---- concurrent edits ----
+
+    /**
+     * @param ops     the operations rewritten to apply after {@code applied}
+     * @param applied the operations rewritten to apply after {@code ops}
+     */
+    public record Rebased(List<SceneOp> ops, List<SceneOp> applied) {
+    }
+
+    /**
+     * Rewrite two concurrent operation sequences made on the same version so that each can be
+     * applied after the other with the same result. {@code applied} is the one the server ordered
+     * first; it wins ties between inserts at the same position.
+     *
+     * @return null if the sequences touch the same step or segment
+     */
+    @Nullable
+    public static Rebased rebase(List<SceneOp> ops, List<SceneOp> applied) {
+        List<SceneOp> pending = new ArrayList<>(ops);
+        List<SceneOp> done = new ArrayList<>(applied);
+        for (int i = 0; i < pending.size(); i++) {
+            SceneOp op = pending.get(i);
+            for (int j = 0; j < done.size(); j++) {
+                SceneOp other = done.get(j);
+                SceneOp opAfter = op.after(other, true);
+                SceneOp otherAfter = other.after(op, false);
+                if (opAfter == null || otherAfter == null) {
+                    return null;
+                }
+                op = opAfter;
+                done.set(j, otherAfter);
+            }
+            pending.set(i, op);
+        }
+        return new Rebased(pending, done);
+    }
+
+    /**
+     * This operation rewritten to apply after {@code other}, or null on a conflict.
+     *
+     * @param otherWins whether {@code other} goes first when both insert at the same position
+     */
+    @Nullable
+    SceneOp after(SceneOp other, boolean otherWins) {
+        // Segment structure changes shift or invalidate everything addressing segments
+        if (other.kind == Kind.ADD_SEGMENT) {
+            if (kind == Kind.ADD_SEGMENT) {
+                boolean shift = segment > other.segment || (segment == other.segment && otherWins);
+                return shift ? withSegment(segment + 1) : this;
+            }
+            return segment >= other.segment ? withSegment(segment + 1) : this;
+        }
+        if (other.kind == Kind.DELETE_SEGMENT) {
+            if (kind == Kind.ADD_SEGMENT) {
+                return segment > other.segment ? withSegment(segment - 1) : this;
+            }
+            if (segment == other.segment) {
+                return null;
+            }
+            return segment > other.segment ? withSegment(segment - 1) : this;
+        }
+        if (kind == Kind.ADD_SEGMENT) {
+            return this;
+        }
+        if (kind == Kind.DELETE_SEGMENT) {
+            return other.segment == segment ? null : this;
+        }
+        if (kind == Kind.SET_TITLE || other.kind == Kind.SET_TITLE) {
+            return kind == other.kind && segment == other.segment ? null : this;
+        }
+
+        // Both address steps; lists of different segments are independent
+        if (segment != other.segment) {
+            return this;
+        }
+        if (kind == Kind.SET_STEPS || other.kind == Kind.SET_STEPS) {
+            return null;
+        }
+        return switch (other.kind) {
+            case INSERT -> afterInsert(other.index, otherWins);
+            case REMOVE -> afterRemove(other.index);
+            case REPLACE -> (kind == Kind.REPLACE || kind == Kind.REMOVE) && index == other.index ? null : this;
+            case MOVE -> afterMove(other.index, other.target);
+            default -> this;
+        };
+    }
+
+    @Nullable
+    private SceneOp afterInsert(int at, boolean otherWins) {
+        return switch (kind) {
+            case INSERT -> index > at || (index == at && otherWins) ? withIndex(index + 1, target) : this;
+            case REPLACE, REMOVE -> index >= at ? withIndex(index + 1, target) : this;
+            case MOVE -> {
+                int lo = Math.min(index, target), hi = Math.max(index, target);
+                if (at > lo && at <= hi) yield null;
+                yield at <= lo ? withIndex(index + 1, target + 1) : this;
+            }
+            default -> this;
+        };
+    }
+
+    @Nullable
+    private SceneOp afterRemove(int at) {
+        return switch (kind) {
+            case INSERT -> index > at ? withIndex(index - 1, target) : this;
+            case REPLACE, REMOVE -> {
+                if (index == at) yield null;
+                yield index > at ? withIndex(index - 1, target) : this;
+            }
+            case MOVE -> {
+                int lo = Math.min(index, target), hi = Math.max(index, target);
+                if (at >= lo && at <= hi) yield null;
+                yield at < lo ? withIndex(index - 1, target - 1) : this;
+            }
+            default -> this;
+        };
+    }
+
+    @Nullable
+    private SceneOp afterMove(int from, int to) {
+        int lo = Math.min(from, to), hi = Math.max(from, to);
+        return switch (kind) {
+            case INSERT -> index > lo && index <= hi ? null : this;
+            case REPLACE, REMOVE -> withIndex(movedPosition(index, from, to), target);
+            case MOVE -> Math.min(index, target) <= hi && lo <= Math.max(index, target) ? null : this;
+            default -> this;
+        };
+    }
+
+    /** Where the step at {@code position} ends up after moving {@code from} to {@code to}. */
+    private static int movedPosition(int position, int from, int to) {
+        if (position == from) {
+            return to;
+        }
+        if (from < to && position > from && position <= to) {
+            return position - 1;
+        }
+        if (to < from && position >= to && position < from) {
+            return position + 1;
+        }
+        return position;
+    }
+
+    private SceneOp withSegment(int newSegment) {
+        return new SceneOp(kind, newSegment, index, target, json);
+    }
+
+    private SceneOp withIndex(int newIndex, int newTarget) {
+        return new SceneOp(kind, segment, newIndex, newTarget, json);
+    }
+}
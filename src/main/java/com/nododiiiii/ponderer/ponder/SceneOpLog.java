@@ -0,0 +1,66 @@
+package com.nododiiiii.ponderer.ponder;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side, in-memory record of the operations recently applied to each scene, so an
+ * operation made against an older revision can be rebased instead of rejected.
+ * Only an unbroken chain from the client's base to the current revision is usable; a whole-file
+ * push in between breaks the chain and the client gets a conflict.
+ */
+public final class SceneOpLog {
+    /** Applied batches kept per scene. */
+    private static final int MAX_BATCHES = 64;
+    private static final Map<String, Deque<Batch>> LOG = new HashMap<>();
+
+    private SceneOpLog() {
+    }
+
+    private record Batch(long from, long to, List<SceneOp> ops) {
+    }
+
+    public static synchronized void record(String sceneId, long from, long to, List<SceneOp> ops) {
+        Deque<Batch> batches = LOG.computeIfAbsent(sceneId, id -> new ArrayDeque<>());
+        batches.addLast(new Batch(from, to, List.copyOf(ops)));
+        while (batches.size() > MAX_BATCHES) {
+            batches.removeFirst();
+        }
+    }
+
+    /**
+     * Operations applied between two revisions of a scene, in order.
+     *
+     * @return null if the log does not cover the whole range
+     */
+    @Nullable
+    public static synchronized List<SceneOp> between(String sceneId, long from, long to) {
+        Deque<Batch> batches = LOG.get(sceneId);
+        if (batches == null) {
+            return null;
+        }
+        List<SceneOp> ops = new ArrayList<>();
+        long at = from;
+        for (Batch batch : batches) {
+            if (batch.to() <= at) {
+                continue;
+            }
+            if (batch.from() != at) {
+                return null;
+            }
+            ops.addAll(batch.ops());
+            at = batch.to();
+        }
+        return at == to ? ops : null;
+    }
+
+    public static synchronized void clear() {
+        LOG.clear();
+    }
+}
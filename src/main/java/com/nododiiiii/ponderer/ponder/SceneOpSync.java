@@ -0,0 +1,252 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.Config;
+import com.nododiiiii.ponderer.network.LazyFetchPayload;
+import com.nododiiiii.ponderer.network.SceneOpsPayload;
+import com.nododiiiii.ponderer.network.SceneOpsResultPayload;
+import com.nododiiiii.ponderer.network.SyncCapabilities;
+import com.nododiiiii.ponderer.network.SyncResponsePayload;
+import com.nododiiiii.ponderer.network.UploadScenePayload;
+import net.createmod.ponder.foundation.PonderIndex;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Component;
+import net.neoforged.neoforge.network.PacketDistributor;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side of live editor sync ({@link Config#LIVE_EDIT_SYNC}).
+ * <p>
+ * A scene whose content matches a known server revision gets a session when the editor opens
+ * it. Each editor mutation is then sent as a {@link SceneOp}; at most one batch is in flight,
+ * and edits made meanwhile are buffered and sent with the revision the server acknowledges.
+ * Operations relayed from other authors are rebased over the unacknowledged local ones, the
+ * same way the server rebases ours over theirs, so both sides end up with the same scene.
+ * Anything that cannot be reconciled ends the session; the local edits stay and the regular
+ * push / pull conflict handling takes over. Main thread only.
+ */
+public final class SceneOpSync {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Map<String, Session> SESSIONS = new HashMap<>();
+
+    private SceneOpSync() {
+    }
+
+    private static final class Session {
+        final DslScene scene;
+        long revision;
+        /** Sent but not answered yet; null if nothing is in flight. */
+        @Nullable
+        List<SceneOp> inFlight;
+        List<SceneOp> buffered = new ArrayList<>();
+        /** Whether the scene lives in the local scripts directory rather than only in the server cache. */
+        boolean local;
+
+        Session(DslScene scene, long revision) {
+            this.scene = scene;
+            this.revision = revision;
+            this.local = !scene.fromServerCache;
+        }
+
+        boolean idle() {
+            return inFlight == null && buffered.isEmpty();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return Config.LIVE_EDIT_SYNC.get() && SyncCapabilities.serverHas(SyncCapabilities.SCENE_OPS);
+    }
+
+    public static void reset() {
+        SESSIONS.clear();
+    }
+
+    /**
+     * Called when the editor opens a scene, before any change: start a session if the scene
+     * is exactly a server revision.
+     */
+    public static void attach(DslScene scene) {
+        if (isEnabled()) {
+            session(scene);
+        }
+    }
+
+    @Nullable
+    private static Session session(DslScene scene) {
+        Session existing = SESSIONS.get(scene.id);
+        if (existing != null && (existing.scene == scene || !existing.idle())) {
+            return existing.scene == scene ? existing : null;
+        }
+        SESSIONS.remove(scene.id);
+        if (scene.placeholder) {
+            return null;
+        }
+        String key = "scripts/" + scene.id;
+        String hash = SyncMeta.sha256(SyncMeta.syncForm(key, SceneStore.toJson(scene).getBytes(StandardCharsets.UTF_8)));
+        long revision = SyncMeta.revisionFor(key, hash);
+        if (revision == 0) {
+            return null;
+        }
+        Session created = new Session(scene, revision);
+        SESSIONS.put(scene.id, created);
+        return created;
+    }
+
+    /**
+     * Called after the editor applied and saved a change.
+     */
+    public static void record(DslScene scene, SceneOp op) {
+        Session session = SESSIONS.get(scene.id);
+        if (session == null || !isEnabled()) {
+            return;
+        }
+        if (session.scene != scene) {
+            // The scene was reloaded under the editor; its state is unknown now
+            SESSIONS.remove(scene.id);
+            return;
+        }
+        if (op.json().length() > UploadScenePayload.maxJsonChars()) {
+            stop(scene.id, "ponderer.ops.too_large");
+            return;
+        }
+        session.local = true;
+        session.buffered.add(op);
+        flush(session);
+    }
+
+    private static void flush(Session session) {
+        if (session.inFlight != null || session.buffered.isEmpty()) {
+            return;
+        }
+        session.inFlight = session.buffered;
+        session.buffered = new ArrayList<>();
+        PacketDistributor.sendToServer(new SceneOpsPayload(session.scene.id, session.revision, session.inFlight));
+    }
+
+    public static void onResult(String sceneId, String status, long revision, String sha256) {
+        Session session = SESSIONS.get(sceneId);
+        if (session == null || session.inFlight == null) {
+            return;
+        }
+        if (!SceneOpsResultPayload.OK.equals(status)) {
+            stop(sceneId, SceneOpsResultPayload.CONFLICT.equals(status) ? "ponderer.ops.conflict" : "ponderer.ops.failed");
+            return;
+        }
+        session.inFlight = null;
+        session.revision = revision;
+        if (session.buffered.isEmpty()) {
+            markSynced(session, sha256);
+        }
+        flush(session);
+    }
+
+    /**
+     * Apply operations another author made.
+     *
+     * @return true if the loaded scene was changed in place
+     */
+    public static boolean onRemote(String sceneId, long fromRevision, long revision, String sha256, List<SceneOp> ops) {
+        DslScene scene = findLoaded(sceneId);
+        if (scene != null && scene.placeholder) {
+            // Fetched in full when it is first opened
+            return false;
+        }
+        Session session = scene == null ? null : session(scene);
+        if (session == null || session.revision != fromRevision) {
+            refetch(sceneId);
+            return false;
+        }
+
+        List<SceneOp> remote = ops;
+        if (session.inFlight != null) {
+            SceneOp.Rebased rebased = SceneOp.rebase(session.inFlight, remote);
+            if (rebased == null) {
+                stop(sceneId, "ponderer.ops.conflict");
+                return false;
+            }
+            session.inFlight = rebased.ops();
+            remote = rebased.applied();
+        }
+        if (!session.buffered.isEmpty()) {
+            SceneOp.Rebased rebased = SceneOp.rebase(session.buffered, remote);
+            if (rebased == null) {
+                stop(sceneId, "ponderer.ops.conflict");
+                return false;
+            }
+            session.buffered = new ArrayList<>(rebased.ops());
+            remote = rebased.applied();
+        }
+        String registration = DynamicPonderPlugin.registrationKey(scene);
+        for (SceneOp op : remote) {
+            if (!op.apply(scene)) {
+                LOGGER.warn("Could not apply a relayed edit to {}, fetching it again", sceneId);
+                SESSIONS.remove(sceneId);
+                refetch(sceneId);
+                return false;
+            }
+        }
+        session.revision = revision;
+
+        if (session.local) {
+            SceneStore.saveSceneToLocal(scene);
+        } else {
+            byte[] bytes = SceneStore.toJson(scene).getBytes(StandardCharsets.UTF_8);
+            ServerCache.applyDelta(List.of(new SyncResponsePayload.FileEntry(sceneId, bytes)), List.of(), List.of(), List.of());
+        }
+        if (session.idle() && !markSynced(session, sha256)) {
+            refetch(sceneId);
+        }
+        if (!registration.equals(DynamicPonderPlugin.registrationKey(scene))) {
+            PonderIndex.reload();
+        }
+        return true;
+    }
+
+    /**
+     * Record the scene as synced at the session revision if it hashes like the server copy.
+     */
+    private static boolean markSynced(Session session, String serverHash) {
+        String key = "scripts/" + session.scene.id;
+        byte[] bytes = SceneStore.toJson(session.scene).getBytes(StandardCharsets.UTF_8);
+        String hash = SyncMeta.sha256(SyncMeta.syncForm(key, bytes));
+        if (!hash.equals(serverHash)) {
+            stop(session.scene.id, "ponderer.ops.diverged");
+            return false;
+        }
+        if (session.local) {
+            SyncMeta.recordHashes(Map.of(key, bytes));
+        }
+        SyncMeta.putRevisions(Map.of(key, session.revision), Map.of(key, hash), true);
+        SyncMeta.flush();
+        return true;
+    }
+
+    private static void stop(String sceneId, String messageKey) {
+        SESSIONS.remove(sceneId);
+        LOGGER.info("Live edit sync of {} stopped ({})", sceneId, messageKey);
+        if (Minecraft.getInstance().player != null) {
+            Minecraft.getInstance().player.displayClientMessage(Component.translatable(messageKey, sceneId), false);
+        }
+    }
+
+    private static void refetch(String sceneId) {
+        PacketDistributor.sendToServer(new LazyFetchPayload(LazyFetchPayload.SCENE, sceneId));
+    }
+
+    @Nullable
+    private static DslScene findLoaded(String sceneId) {
+        for (DslScene scene : SceneRuntime.getScenes()) {
+            if (sceneId.equals(scene.id)) {
+                return scene;
+            }
+        }
+        return null;
+    }
+}
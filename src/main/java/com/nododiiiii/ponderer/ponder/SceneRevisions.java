@@ -0,0 +1,423 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side revision counters for the scene repository.
+ * <p>
+ * One monotonic sequence is shared by scenes and structures: every write that changes a file
+ * takes the next number, so "everything after revision N" is a simple filter. The hash of each
+ * file is stored alongside, which makes conflict checks and upload replies O(1) instead of
+ * re-reading and re-hashing the stored file.
+ * <p>
+ * The same hashes feed the {@link LibraryDigest} clients compare against before syncing.
+ * <p>
+ * The files can also change behind the mod's back (an admin editing or deleting them by hand), so the
+ * entries are reconciled against a size / modification-time stat of the library when they are
+ * loaded and again at most every {@link #RECHECK_MS}: changed files are re-hashed and get a new
+ * revision, deleted ones leave a tombstone revision so delta syncs can report them removed.
+ * <p>
+ * The items and tags of each scene are kept here too, refreshed whenever its entry changes, so the
+ * lazy-fetch scene index is answered without reading the library.
+ * <p>
+ * Storage: world/ponderer/.revisions.json.
+ */
+public final class SceneRevisions {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String REVISIONS_FILE = ".revisions.json";
+    /** How stale the stat of the library may get before it is checked again. */
+    private static final long RECHECK_MS = 30_000L;
+
+    private static Path loadedFrom;
+    private static Data data;
+    private static long reconciledAt;
+    /** Built on first use from {@link #data}, then kept up to date by {@link #record}. */
+    private static LibraryDigest digest;
+
+    private SceneRevisions() {
+    }
+
+    public record Entry(long rev, String sha256) {
+    }
+
+    /** What the scene index needs of a scene besides its entry. */
+    private record Meta(List<String> items, List<String> tags) {
+    }
+
+    /** A scene's entry with its items and tags, for the scene index. */
+    public record Indexed(Entry entry, List<String> items, List<String> tags) {
+    }
+
+    /** Size and modification time of a file when its entry was last checked. */
+    private record Stamp(long size, long mtime) {
+    }
+
+    private static final class Data {
+        long head;
+        Map<String, Entry> scripts = new HashMap<>();
+        Map<String, Entry> structures = new HashMap<>();
+        /** Scene id -> items and tags; missing for scenes that do not parse. */
+        Map<String, Meta> meta = new HashMap<>();
+        /** Keyed "scripts/&lt;id&gt;" and "structures/&lt;id&gt;". */
+        Map<String, Stamp> stamps = new HashMap<>();
+        /** Id -> revision at which the file was found deleted. */
+        Map<String, Long> removedScripts = new HashMap<>();
+        Map<String, Long> removedStructures = new HashMap<>();
+    }
+
+    public static synchronized long head(MinecraftServer server) {
+        return data(server).head;
+    }
+
+    /** Current revision of a scene, or 0 if the repository does not have it. Checks the file first. */
+    public static synchronized long sceneRevision(MinecraftServer server, String sceneId) {
+        Entry entry = fresh(server, LibraryDigest.SCRIPTS, sceneId).scripts.get(sceneId);
+        return entry == null ? 0 : entry.rev();
+    }
+
+    /** Hash of the stored scene, or "" if the repository does not have it. Checks the file first. */
+    public static synchronized String sceneHash(MinecraftServer server, String sceneId) {
+        Entry entry = fresh(server, LibraryDigest.SCRIPTS, sceneId).scripts.get(sceneId);
+        return entry == null ? "" : entry.sha256();
+    }
+
+    /** Hash of the stored structure, or "" if the repository does not have it. Checks the file first. */
+    public static synchronized String structureHash(MinecraftServer server, String structureId) {
+        Entry entry = fresh(server, LibraryDigest.STRUCTURES, structureId).structures.get(structureId);
+        return entry == null ? "" : entry.sha256();
+    }
+
+    /** Merkle tree over the hashes of every stored scene and structure. */
+    public static synchronized LibraryDigest digest(MinecraftServer server) {
+        Data current = data(server);
+        if (digest == null) {
+            Map<String, String> scripts = new HashMap<>();
+            Map<String, String> structures = new HashMap<>();
+            current.scripts.forEach((id, entry) -> scripts.put(id, entry.sha256()));
+            current.structures.forEach((id, entry) -> structures.put(id, entry.sha256()));
+            digest = LibraryDigest.of(scripts, structures);
+        }
+        return digest;
+    }
+
+    public static synchronized Map<String, Entry> scenes(MinecraftServer server) {
+        return Map.copyOf(data(server).scripts);
+    }
+
+    public static synchronized Map<String, Entry> structures(MinecraftServer server) {
+        return Map.copyOf(data(server).structures);
+    }
+
+    /**
+     * Every scene that parses, with its items and tags. Scenes recorded before the metadata was kept
+     * are read once here.
+     */
+    public static synchronized Map<String, Indexed> sceneIndex(MinecraftServer server) {
+        Data current = data(server);
+        boolean filled = false;
+        Map<String, Indexed> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Entry> e : current.scripts.entrySet()) {
+            Meta meta = current.meta.get(e.getKey());
+            if (meta == null) {
+                byte[] bytes = SceneStore.readServerScene(server, e.getKey());
+                meta = bytes == null ? null : updateMeta(current, e.getKey(), bytes);
+                filled |= meta != null;
+            }
+            if (meta != null) {
+                result.put(e.getKey(), new Indexed(e.getValue(), meta.items(), meta.tags()));
+            }
+        }
+        if (filled) {
+            save(revisionsPath(server), current);
+        }
+        return result;
+    }
+
+    @Nullable
+    private static Meta updateMeta(Data current, String sceneId, byte[] bytes) {
+        DslScene scene = SceneStore.parseScene(bytes);
+        if (scene == null) {
+            current.meta.remove(sceneId);
+            return null;
+        }
+        Meta meta = new Meta(scene.items == null ? List.of() : List.copyOf(scene.items),
+            scene.tags == null ? List.of() : List.copyOf(scene.tags));
+        current.meta.put(sceneId, meta);
+        return meta;
+    }
+
+    /** Scenes changed after {@code revision}, with their current entries. */
+    public static synchronized Map<String, Entry> scenesAfter(MinecraftServer server, long revision) {
+        return after(data(server).scripts, revision);
+    }
+
+    public static synchronized Map<String, Entry> structuresAfter(MinecraftServer server, long revision) {
+        return after(data(server).structures, revision);
+    }
+
+    /** Scenes deleted after {@code revision}. */
+    public static synchronized List<String> scenesRemovedAfter(MinecraftServer server, long revision) {
+        return removedAfter(data(server).removedScripts, revision);
+    }
+
+    public static synchronized List<String> structuresRemovedAfter(MinecraftServer server, long revision) {
+        return removedAfter(data(server).removedStructures, revision);
+    }
+
+    private static List<String> removedAfter(Map<String, Long> removed, long revision) {
+        List<String> result = new ArrayList<>();
+        removed.forEach((id, rev) -> {
+            if (rev > revision) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    private static Map<String, Entry> after(Map<String, Entry> entries, long revision) {
+        Map<String, Entry> result = new LinkedHashMap<>();
+        entries.forEach((id, entry) -> {
+            if (entry.rev() > revision) {
+                result.put(id, entry);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Record files that were just written. Unchanged content keeps its revision.
+     *
+     * @return the resulting entries of the given scenes
+     */
+    public static synchronized Map<String, Entry> record(MinecraftServer server, Map<String, byte[]> scenes,
+                                                         Map<String, byte[]> structures) {
+        Data current = data(server);
+        Map<String, Entry> result = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> e : scenes.entrySet()) {
+            Entry before = current.scripts.get(e.getKey());
+            Entry after = bump(current, before, e.getValue());
+            current.scripts.put(e.getKey(), after);
+            current.removedScripts.remove(e.getKey());
+            stamp(current, LibraryDigest.SCRIPTS + e.getKey(), SceneStore.resolveServerScenePath(server, e.getKey()));
+            result.put(e.getKey(), after);
+            if (after != before) {
+                updateDigest(LibraryDigest.SCRIPTS, e.getKey(), after);
+                updateMeta(current, e.getKey(), e.getValue());
+            }
+        }
+        for (Map.Entry<String, byte[]> e : structures.entrySet()) {
+            Entry before = current.structures.get(e.getKey());
+            Entry after = bump(current, before, e.getValue());
+            current.structures.put(e.getKey(), after);
+            current.removedStructures.remove(e.getKey());
+            stamp(current, LibraryDigest.STRUCTURES + e.getKey(), SceneStore.resolveServerStructurePath(server, e.getKey()));
+            if (after != before) {
+                updateDigest(LibraryDigest.STRUCTURES, e.getKey(), after);
+            }
+        }
+        // The stamps changed even if the content did not
+        save(revisionsPath(server), current);
+        return result;
+    }
+
+    /** Remember the stat of a file just recorded; without one it is re-hashed on the next check. */
+    private static void stamp(Data current, String key, @Nullable Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            current.stamps.put(key, new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis()));
+        } catch (Exception e) {
+            current.stamps.remove(key);
+        }
+    }
+
+    private static void updateDigest(String kind, String id, Entry entry) {
+        if (digest != null) {
+            digest.put(kind, id, entry.sha256());
+        }
+    }
+
+    private static Entry bump(Data current, Entry before, byte[] bytes) {
+        String hash = SyncMeta.sha256(bytes);
+        if (before != null && before.sha256().equals(hash)) {
+            return before;
+        }
+        return new Entry(++current.head, hash);
+    }
+
+    private static Data data(MinecraftServer server) {
+        Path path = revisionsPath(server);
+        long now = System.currentTimeMillis();
+        if (!path.equals(loadedFrom)) {
+            Data loaded = Files.exists(path) ? load(path) : null;
+            data = loaded != null ? loaded : new Data();
+            loadedFrom = path;
+            digest = null;
+            reconcile(server, path, data);
+            reconciledAt = now;
+        } else if (now - reconciledAt > RECHECK_MS) {
+            reconcile(server, path, data);
+            reconciledAt = now;
+        }
+        return data;
+    }
+
+    private static Path revisionsPath(MinecraftServer server) {
+        return server.getWorldPath(LevelResource.ROOT).resolve("ponderer").resolve(REVISIONS_FILE);
+    }
+
+    /**
+     * Bring the entries in line with the library on disk. Only files whose size or modification
+     * time differ from their stamp are read; a re-hashed file with the same content keeps its revision.
+     */
+    private static void reconcile(MinecraftServer server, Path path, Data current) {
+        Map<String, BasicFileAttributes> files = SceneStore.serverFileAttributes(server);
+        // changed, removed, restamped, unchanged
+        int[] counts = {0, 0, 0, 0};
+        reconcileKind(server, current, files, LibraryDigest.SCRIPTS, current.scripts, counts);
+        reconcileKind(server, current, files, LibraryDigest.STRUCTURES, current.structures, counts);
+        if (counts[0] > 0 || counts[1] > 0) {
+            LOGGER.info("Scene revisions: {} file(s) changed on disk, {} removed", counts[0], counts[1]);
+        }
+        if (counts[0] > 0 || counts[1] > 0 || counts[2] > 0) {
+            save(path, current);
+        }
+    }
+
+    private static void reconcileKind(MinecraftServer server, Data current, Map<String, BasicFileAttributes> files,
+                                      String kind, Map<String, Entry> entries, int[] counts) {
+        for (String id : new ArrayList<>(entries.keySet())) {
+            if (!files.containsKey(kind + id)) {
+                counts[reconcileFile(server, current, kind, id, null)]++;
+            }
+        }
+        for (Map.Entry<String, BasicFileAttributes> file : files.entrySet()) {
+            if (file.getKey().startsWith(kind)) {
+                counts[reconcileFile(server, current, kind, file.getKey().substring(kind.length()), file.getValue())]++;
+            }
+        }
+    }
+
+    private static final int UNCHANGED = 3;
+
+    /**
+     * Check one file against its entry.
+     *
+     * @param attrs the file's current attributes, or null if it does not exist
+     * @return 0 if its content changed, 1 if it was removed, 2 if only its stamp changed, {@link #UNCHANGED} otherwise
+     */
+    private static int reconcileFile(MinecraftServer server, Data current, String kind, String id,
+                                     @Nullable BasicFileAttributes attrs) {
+        boolean scripts = LibraryDigest.SCRIPTS.equals(kind);
+        Map<String, Entry> entries = scripts ? current.scripts : current.structures;
+        Map<String, Long> removed = scripts ? current.removedScripts : current.removedStructures;
+        Entry before = entries.get(id);
+        if (attrs == null) {
+            if (before == null) return UNCHANGED;
+            entries.remove(id);
+            current.stamps.remove(kind + id);
+            if (scripts) current.meta.remove(id);
+            removed.put(id, ++current.head);
+            if (digest != null) {
+                digest.remove(kind, id);
+            }
+            return 1;
+        }
+        Stamp stamp = new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis());
+        if (before != null && stamp.equals(current.stamps.get(kind + id))) return UNCHANGED;
+
+        Path filePath = scripts ? SceneStore.resolveServerScenePath(server, id) : SceneStore.resolveServerStructurePath(server, id);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(filePath);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read {} while checking revisions", filePath, e);
+            return UNCHANGED;
+        }
+        Entry after = bump(current, before, bytes);
+        entries.put(id, after);
+        removed.remove(id);
+        current.stamps.put(kind + id, stamp);
+        if (after == before) {
+            // Touched but unchanged: only the stamp is new
+            return 2;
+        }
+        updateDigest(kind, id, after);
+        if (scripts) updateMeta(current, id, bytes);
+        return 0;
+    }
+
+    /**
+     * Check a single file right away, for callers that must not act on a stale entry (conflict
+     * checks before overwriting). One stat, plus a read if the file changed.
+     */
+    private static Data fresh(MinecraftServer server, String kind, String id) {
+        Data current = data(server);
+        Path filePath = LibraryDigest.SCRIPTS.equals(kind)
+            ? SceneStore.resolveServerScenePath(server, id)
+            : SceneStore.resolveServerStructurePath(server, id);
+        if (filePath == null) {
+            return current;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        } catch (Exception e) {
+            attrs = null;
+        }
+        if (reconcileFile(server, current, kind, id, attrs) != UNCHANGED) {
+            save(revisionsPath(server), current);
+        }
+        return current;
+    }
+
+    private static Data load(Path path) {
+        try (Reader r = Files.newBufferedReader(path)) {
+            Data loaded = GSON.fromJson(r, Data.class);
+            if (loaded == null) {
+                return null;
+            }
+            if (loaded.scripts == null) loaded.scripts = new HashMap<>();
+            if (loaded.structures == null) loaded.structures = new HashMap<>();
+            if (loaded.meta == null) loaded.meta = new HashMap<>();
+            if (loaded.stamps == null) loaded.stamps = new HashMap<>();
+            if (loaded.removedScripts == null) loaded.removedScripts = new HashMap<>();
+            if (loaded.removedStructures == null) loaded.removedStructures = new HashMap<>();
+            return loaded;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read scene revisions, rebuilding: {}", path, e);
+            return null;
+        }
+    }
+
+    private static void save(Path path, Data current) {
+        Path tmp = path.resolveSibling(REVISIONS_FILE + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                GSON.toJson(current, w);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to write scene revisions: {}", path, e);
+        }
+    }
+}
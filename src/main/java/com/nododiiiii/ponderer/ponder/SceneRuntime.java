@@ -22,10 +22,40 @@ public final class SceneRuntime {
         return scenes;
     }
 
+    /** The loaded scene with this id, or null. */
+    @Nullable
+    public static DslScene findById(String id) {
+        for (DslScene scene : scenes) {
+            if (id.equals(scene.id)) {
+                return scene;
+            }
+        }
+        return null;
+    }
+
     public static void setScenes(List<DslScene> newScenes) {
         scenes = Collections.unmodifiableList(new ArrayList<>(newScenes));
     }
 
+    /**
+     * Replace the scene with the same id, or append it if no such scene is loaded.
+     */
+    public static void upsertScene(DslScene scene) {
+        List<DslScene> updated = new ArrayList<>(scenes);
+        boolean replaced = false;
+        for (int i = 0; i < updated.size(); i++) {
+            if (scene.id.equals(updated.get(i).id)) {
+                updated.set(i, scene);
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            updated.add(scene);
+        }
+        scenes = Collections.unmodifiableList(updated);
+    }
+
     /**
      * Result record for scene lookup.
      */
@@ -37,11 +67,19 @@ public final class SceneRuntime {
      * For single-scene ponders: PonderScene.getId() == DslScene.id  (exact match)
      * For multi-scene ponders: PonderScene.getId() == DslScene.id + "_partN" or "_N"
      *
+     * A lazy-fetch placeholder is never returned: it has no content to edit.
+     *
      * @param ponderSceneId the ResourceLocation from PonderScene.getId()
      * @return the matching DslScene and scene index, or null if not found
      */
     @Nullable
     public static SceneMatch findBySceneId(ResourceLocation ponderSceneId) {
+        SceneMatch match = find(ponderSceneId);
+        return match == null || match.scene().placeholder ? null : match;
+    }
+
+    @Nullable
+    private static SceneMatch find(ResourceLocation ponderSceneId) {
         if (ponderSceneId == null) return null;
 
         String fullId = ponderSceneId.toString();
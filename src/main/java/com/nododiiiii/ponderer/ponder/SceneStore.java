@@ -8,17 +8,24 @@ import net.minecraft.resources.ResourceLocation;
 import com.nododiiiii.ponderer.Ponderer;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.level.storage.LevelResource;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -63,20 +70,14 @@ public final class SceneStore {
     }
 
     public static boolean saveToServer(MinecraftServer server, String sceneId, String json) {
-        ResourceLocation sceneLoc = ResourceLocation.tryParse(sceneId);
-        if (sceneLoc == null) {
+        Path scenePath = resolveServerScenePath(server, sceneId);
+        if (scenePath == null) {
             LOGGER.warn("Invalid scene id: {}", sceneId);
             return false;
         }
 
-        Path sceneDir = getServerSceneDir(server);
-        Path scenePath = sceneLoc.getNamespace().equals(Ponderer.MODID)
-            ? sceneDir.resolve(sceneLoc.getPath() + ".json")
-            : sceneDir.resolve(sceneLoc.getNamespace()).resolve(sceneLoc.getPath() + ".json");
-
         try {
-            Files.createDirectories(scenePath.getParent());
-            Files.writeString(scenePath, json);
+            writeAtomically(scenePath, json.getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             LOGGER.error("Failed to write scene json: {}", scenePath, e);
             return false;
@@ -91,18 +92,13 @@ public final class SceneStore {
             return true;
         }
 
-        ResourceLocation structureLoc = ResourceLocation.tryParse(structureId);
-        if (structureLoc == null) {
+        Path structurePath = resolveServerStructurePath(server, structureId);
+        if (structurePath == null) {
             LOGGER.warn("Invalid structure id: {}", structureId);
             return false;
         }
-        Path structureDir = getServerStructureDir(server);
-        Path structurePath = structureLoc.getNamespace().equals(Ponderer.MODID)
-            ? structureDir.resolve(structureLoc.getPath() + ".nbt")
-            : structureDir.resolve(structureLoc.getNamespace()).resolve(structureLoc.getPath() + ".nbt");
         try {
-            Files.createDirectories(structurePath.getParent());
-            Files.write(structurePath, structureBytes);
+            writeAtomically(structurePath, structureBytes);
             return true;
         } catch (IOException e) {
             LOGGER.error("Failed to write structure: {}", structurePath, e);
@@ -110,6 +106,160 @@ public final class SceneStore {
         }
     }
 
+    /**
+     * Write several scenes and structures as one transaction. Every target path is resolved
+     * before anything is written, and if any write fails the files touched so far are
+     * restored to their previous contents (or removed if they did not exist).
+     *
+     * @param scenes     scene id -> JSON
+     * @param structures structure id -> NBT bytes
+     * @return true if everything was written
+     */
+    public static boolean saveBatchToServer(MinecraftServer server, Map<String, String> scenes,
+                                            Map<String, byte[]> structures) {
+        Map<Path, byte[]> writes = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : scenes.entrySet()) {
+            Path scenePath = resolveServerScenePath(server, e.getKey());
+            if (scenePath == null) {
+                LOGGER.warn("Invalid scene id in batch: {}", e.getKey());
+                return false;
+            }
+            writes.put(scenePath, e.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        for (Map.Entry<String, byte[]> e : structures.entrySet()) {
+            Path structurePath = resolveServerStructurePath(server, e.getKey());
+            if (structurePath == null) {
+                LOGGER.warn("Invalid structure id in batch: {}", e.getKey());
+                return false;
+            }
+            writes.put(structurePath, e.getValue());
+        }
+
+        Map<Path, byte[]> previous = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Path, byte[]> e : writes.entrySet()) {
+                Path path = e.getKey();
+                previous.put(path, Files.exists(path) ? Files.readAllBytes(path) : null);
+                writeAtomically(path, e.getValue());
+            }
+        } catch (IOException e) {
+            LOGGER.error("Batch upload failed, rolling back {} file(s)", previous.size(), e);
+            for (Map.Entry<Path, byte[]> undo : previous.entrySet()) {
+                try {
+                    if (undo.getValue() == null) {
+                        Files.deleteIfExists(undo.getKey());
+                    } else {
+                        writeAtomically(undo.getKey(), undo.getValue());
+                    }
+                } catch (IOException rollbackError) {
+                    LOGGER.error("Failed to roll back {}", undo.getKey(), rollbackError);
+                }
+            }
+            return false;
+        }
+
+        LOGGER.info("Uploaded batch of {} scene(s) and {} structure(s) to server storage", scenes.size(), structures.size());
+        return true;
+    }
+
+    /**
+     * Write through a temporary file moved into place, so readers on the sync workers never see a
+     * half-written file.
+     */
+    private static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Whether the server already stores exactly these bytes for the given structure id.
+     */
+    public static boolean isServerStructureUnchanged(MinecraftServer server, String structureId, byte[] structureBytes) {
+        Path structurePath = resolveServerStructurePath(server, structureId);
+        if (structurePath == null || !Files.exists(structurePath)) {
+            return false;
+        }
+        try {
+            // Compared by hash: the stored side usually comes from FileHashCache without a read
+            return Files.size(structurePath) == structureBytes.length
+                && SyncMeta.hashLocalFile(structurePath).equals(SyncMeta.sha256(structureBytes));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * SHA-256 of the structure stored on the server, or "" if the library does not have it.
+     * Answered from {@link SceneRevisions}, so a client-supplied id never reaches the file system.
+     */
+    public static String hashServerStructure(MinecraftServer server, String structureId) {
+        return SceneRevisions.structureHash(server, structureId);
+    }
+
+    /**
+     * Bytes of a scene stored on the server, or null if it does not exist.
+     */
+    public static byte[] readServerScene(MinecraftServer server, String sceneId) {
+        Path path = resolveServerScenePath(server, sceneId);
+        return path == null ? null : readIfExists(path);
+    }
+
+    /**
+     * Bytes of a structure stored on the server, or null if it does not exist.
+     */
+    public static byte[] readServerStructure(MinecraftServer server, String structureId) {
+        Path path = resolveServerStructurePath(server, structureId);
+        return path == null ? null : readIfExists(path);
+    }
+
+    private static byte[] readIfExists(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Where a scene is stored on the server, or null if the id is invalid or would leave the scripts folder.
+     */
+    @Nullable
+    public static Path resolveServerScenePath(MinecraftServer server, String sceneId) {
+        return resolveId(getServerSceneDir(server), sceneId, ".json");
+    }
+
+    /**
+     * Where a structure is stored on the server, or null if the id is invalid or would leave the structures folder.
+     */
+    @Nullable
+    public static Path resolveServerStructurePath(MinecraftServer server, String structureId) {
+        return resolveId(getServerStructureDir(server), structureId, ".nbt");
+    }
+
+    /**
+     * Where a scene or structure id is stored under {@code root}: ponderer ids directly in it, other
+     * namespaces in a subfolder. Null if the id is invalid or its path ({@code ..} segments are legal
+     * in resource paths) would leave {@code root}.
+     */
+    @Nullable
+    public static Path resolveId(Path root, String id, String ext) {
+        ResourceLocation loc = ResourceLocation.tryParse(id);
+        if (loc == null) {
+            return null;
+        }
+        Path path = loc.getNamespace().equals(Ponderer.MODID)
+            ? root.resolve(loc.getPath() + ext)
+            : root.resolve(loc.getNamespace()).resolve(loc.getPath() + ext);
+        path = path.normalize();
+        return path.startsWith(root.normalize()) ? path : null;
+    }
+
     public static List<com.nododiiiii.ponderer.network.SyncResponsePayload.FileEntry> collectServerScripts(MinecraftServer server) {
         Path root = getServerSceneDir(server);
         if (!Files.exists(root)) {
@@ -146,6 +296,32 @@ public final class SceneStore {
         return entries;
     }
 
+    /**
+     * Size and modification time of every scene and structure file on the server, keyed
+     * "scripts/&lt;id&gt;" and "structures/&lt;id&gt;". Only stats the files.
+     */
+    public static Map<String, BasicFileAttributes> serverFileAttributes(MinecraftServer server) {
+        Map<String, BasicFileAttributes> files = new LinkedHashMap<>();
+        collectAttributes(getServerSceneDir(server), ".json", "scripts/", files);
+        collectAttributes(getServerStructureDir(server), ".nbt", "structures/", files);
+        return files;
+    }
+
+    private static void collectAttributes(Path root, String ext, String prefix, Map<String, BasicFileAttributes> into) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (var paths = Files.walk(root)) {
+            for (Path path : paths.filter(p -> p.toString().toLowerCase(Locale.ROOT).endsWith(ext)).toList()) {
+                String id = toId(root, path, ext);
+                if (id == null) continue;
+                into.put(prefix + id, Files.readAttributes(path, BasicFileAttributes.class));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to list server files in {}", root, e);
+        }
+    }
+
     private static String toId(Path root, Path file, String ext) {
         Path rel = root.relativize(file);
         if (rel.getNameCount() < 1) {
@@ -200,7 +376,7 @@ public final class SceneStore {
 
         try {
             Files.createDirectories(filePath.getParent());
-            String json = GSON_PRETTY.toJson(scene);
+            String json = toJson(scene);
             Files.writeString(filePath, json);
             LOGGER.info("Saved scene {} to {}", scene.id, filePath);
             return true;
@@ -210,6 +386,61 @@ public final class SceneStore {
         }
     }
 
+    /**
+     * Save many scenes with one scan of the scripts directory, instead of the scan per scene
+     * {@link #saveSceneToLocal} does. Files are named as there, and existing files keep their name.
+     *
+     * @return ids of the scenes that were saved
+     */
+    public static Set<String> saveScenesToLocal(List<DslScene> scenes) {
+        Path dir = getSceneDir();
+        Map<String, Path> existing = indexExistingFiles(dir);
+        Set<String> saved = new java.util.HashSet<>();
+        for (DslScene scene : scenes) {
+            ResourceLocation loc = scene == null || scene.id == null ? null : ResourceLocation.tryParse(scene.id);
+            if (loc == null) {
+                LOGGER.warn("Cannot save scene with invalid id: {}", scene == null ? null : scene.id);
+                continue;
+            }
+            Path filePath = existing.computeIfAbsent(scene.id, id -> dir.resolve(loc.getPath().replace('/', '_') + ".json"));
+            try {
+                Files.createDirectories(filePath.getParent());
+                Files.writeString(filePath, toJson(scene));
+                saved.add(scene.id);
+            } catch (IOException e) {
+                LOGGER.error("Failed to save scene {} to {}", scene.id, filePath, e);
+            }
+        }
+        LOGGER.info("Saved {} of {} scene(s) to {}", saved.size(), scenes.size(), dir);
+        return saved;
+    }
+
+    /**
+     * Serialize a scene exactly as {@link #saveSceneToLocal} writes it, so the same scene
+     * produces the same bytes (and hash) on every side.
+     */
+    public static String toJson(DslScene scene) {
+        return GSON_PRETTY.toJson(scene);
+    }
+
+    /**
+     * Parse scene JSON bytes as received from the server.
+     *
+     * @return the scene, or null if the bytes are not a valid scene with an id
+     */
+    public static DslScene parseScene(byte[] bytes) {
+        try {
+            DslScene scene = GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), DslScene.class);
+            if (scene == null || scene.id == null || scene.id.isBlank()) {
+                return null;
+            }
+            return scene;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to parse scene json", e);
+            return null;
+        }
+    }
+
     /**
      * Find the existing JSON file that contains a scene with the given id.
      */
@@ -230,6 +461,27 @@ public final class SceneStore {
         return null;
     }
 
+    /**
+     * Scene id -> file for every JSON file in {@code dir}; the first file wins for a repeated id.
+     */
+    private static Map<String, Path> indexExistingFiles(Path dir) {
+        Map<String, Path> index = new java.util.HashMap<>();
+        if (!Files.exists(dir)) return index;
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")).sorted().toList()) {
+                try (Reader reader = Files.newBufferedReader(path)) {
+                    DslScene existing = GSON.fromJson(reader, DslScene.class);
+                    if (existing != null && existing.id != null) {
+                        index.putIfAbsent(existing.id, path);
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return index;
+    }
+
     /**
      * Delete a scene's local JSON file by its id.
      *
@@ -298,6 +550,15 @@ public final class SceneStore {
     }
 
     public static int reloadFromDisk() {
+        List<DslScene> loaded = loadScenesFromDisk();
+        SceneRuntime.setScenes(loaded);
+        return loaded.size();
+    }
+
+    /**
+     * Parse all scene files without touching {@link SceneRuntime}. Safe to call off the main thread.
+     */
+    public static List<DslScene> loadScenesFromDisk() {
         Path dir = getSceneDir();
         List<DslScene> loaded = new ArrayList<>();
 
@@ -305,8 +566,7 @@ public final class SceneStore {
             Files.createDirectories(dir);
         } catch (IOException e) {
             LOGGER.error("Failed to create ponderer scene directory: {}", dir, e);
-            SceneRuntime.setScenes(List.of());
-            return 0;
+            return List.of();
         }
 
         try (Stream<Path> paths = Files.list(dir)) {
@@ -328,8 +588,51 @@ public final class SceneStore {
             LOGGER.error("Failed to list scene directory: {}", dir, e);
         }
 
-        SceneRuntime.setScenes(loaded);
         LOGGER.info("Loaded {} ponderer scene(s) from {}", loaded.size(), dir);
-        return loaded.size();
+        overlayServerCache(loaded);
+        return loaded;
+    }
+
+    /**
+     * Add the connected server's cached scenes that no local scene overrides.
+     */
+    private static void overlayServerCache(List<DslScene> loaded) {
+        Path cacheDir = ServerCache.scriptsDir();
+        if (cacheDir == null || !Files.exists(cacheDir)) {
+            return;
+        }
+        Set<String> localIds = loaded.stream().map(scene -> scene.id).collect(Collectors.toSet());
+        int added = 0;
+        try (Stream<Path> paths = Files.walk(cacheDir)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json"))
+                .sorted(Comparator.comparing(Path::toString)).toList()) {
+                try (Reader reader = Files.newBufferedReader(path)) {
+                    DslScene scene = GSON.fromJson(reader, DslScene.class);
+                    if (scene == null || scene.id == null || scene.id.isBlank() || localIds.contains(scene.id)) {
+                        continue;
+                    }
+                    scene.fromServerCache = true;
+                    loaded.add(scene);
+                    added++;
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to read cached scene file: {}", path, e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to list server cache directory: {}", cacheDir, e);
+        }
+        LOGGER.info("Overlaid {} cached server scene(s) from {}", added, cacheDir);
+    }
+
+    /**
+     * Resolve a ponderer structure, preferring the local structures directory over the server cache.
+     */
+    public static Path resolveStructure(ResourceLocation id) {
+        Path local = getStructurePath(id.getPath());
+        if (Files.exists(local)) {
+            return local;
+        }
+        Path cached = ServerCache.resolveStructure(id);
+        return cached != null ? cached : local;
     }
 }
\ No newline at end of file
@@ -0,0 +1,283 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.network.SyncResponsePayload.FileEntry;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Client-side cache of content pulled from servers, one directory per server:
+ * <pre>
+ * config/ponderer/servers/&lt;key&gt;/manifest.json
+ * config/ponderer/servers/&lt;key&gt;/scripts/...
+ * config/ponderer/servers/&lt;key&gt;/structures/...
+ * </pre>
+ * While connected, the active server's scenes are overlaid onto the local ones by
+ * {@link SceneStore#loadScenesFromDisk()} (local files win on id collisions) and its
+ * structures are used when no local structure exists. The manifest lists the hash of
+ * every cached file so a reconnect only needs to fetch what changed; {@link #digest()} summarizes
+ * it as a Merkle tree to compare with the server's.
+ */
+public final class ServerCache {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String SERVERS_DIR = "servers";
+    private static final String MANIFEST_FILE = "manifest.json";
+
+    private static volatile Path active;
+    private static Manifest manifest;
+    /** Merkle tree over {@link #manifest}, built on first use. */
+    private static LibraryDigest digest;
+
+    private ServerCache() {
+    }
+
+    /** On-disk manifest: id -> sha256 for each cached file. */
+    private static final class Manifest {
+        String server = "";
+        /** Server revision the cache is complete up to, 0 if unknown. */
+        long revision;
+        Map<String, String> scripts = new HashMap<>();
+        Map<String, String> structures = new HashMap<>();
+    }
+
+    /**
+     * Select the cache for a server, or none when {@code identity} is null (disconnected).
+     *
+     * @param identity stable server identity such as its address
+     */
+    public static synchronized void activate(@Nullable String identity) {
+        manifest = null;
+        digest = null;
+        if (identity == null) {
+            active = null;
+            return;
+        }
+        String key = sanitize(identity) + "-" + SyncMeta.sha256(identity.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+        active = SceneStore.getSceneDir().getParent().resolve(SERVERS_DIR).resolve(key);
+        manifest = readManifest(active);
+        manifest.server = identity;
+    }
+
+    public static boolean isActive() {
+        return active != null;
+    }
+
+    /** Whether the active server has been synced into the cache before. */
+    public static boolean hasManifest() {
+        Path dir = active;
+        return dir != null && Files.exists(dir.resolve(MANIFEST_FILE));
+    }
+
+    @Nullable
+    public static Path scriptsDir() {
+        Path dir = active;
+        return dir == null ? null : dir.resolve("scripts");
+    }
+
+    @Nullable
+    public static Path structuresDir() {
+        Path dir = active;
+        return dir == null ? null : dir.resolve("structures");
+    }
+
+    public static synchronized Map<String, String> scriptHashes() {
+        return manifest == null ? Map.of() : Map.copyOf(manifest.scripts);
+    }
+
+    public static synchronized Map<String, String> structureHashes() {
+        return manifest == null ? Map.of() : Map.copyOf(manifest.structures);
+    }
+
+    /**
+     * Merkle tree over the cached files of the active server, or null when disconnected.
+     */
+    @Nullable
+    public static synchronized LibraryDigest digest() {
+        if (manifest == null) {
+            return null;
+        }
+        if (digest == null) {
+            digest = LibraryDigest.of(manifest.scripts, manifest.structures);
+        }
+        return digest;
+    }
+
+    public static synchronized long headRevision() {
+        return manifest == null ? 0 : manifest.revision;
+    }
+
+    public static synchronized void setHeadRevision(long revision) {
+        Path dir = active;
+        if (dir == null || manifest == null || manifest.revision == revision) {
+            return;
+        }
+        manifest.revision = revision;
+        saveManifest(dir, manifest);
+    }
+
+    /** Cached hash of a scene, or "" if it is not cached. */
+    public static synchronized String scriptHash(String id) {
+        return manifest == null ? "" : manifest.scripts.getOrDefault(id, "");
+    }
+
+    /**
+     * Cached file of a structure, or null if the active server has not sent it.
+     */
+    @Nullable
+    public static Path resolveStructure(ResourceLocation id) {
+        Path root = structuresDir();
+        if (root == null) {
+            return null;
+        }
+        Path path = resolve(root, id.toString(), ".nbt");
+        return path != null && Files.exists(path) ? path : null;
+    }
+
+    /**
+     * Write changed files, delete removed ones and save the manifest once.
+     */
+    public static synchronized void applyDelta(List<FileEntry> scripts, List<FileEntry> structures,
+                                               List<String> removedScripts, List<String> removedStructures) {
+        Path dir = active;
+        if (dir == null || manifest == null) {
+            return;
+        }
+        write(dir.resolve("scripts"), ".json", scripts, manifest.scripts);
+        write(dir.resolve("structures"), ".nbt", structures, manifest.structures);
+        delete(dir.resolve("scripts"), ".json", removedScripts, manifest.scripts);
+        delete(dir.resolve("structures"), ".nbt", removedStructures, manifest.structures);
+        saveManifest(dir, manifest);
+        if (digest != null) {
+            updateDigest(LibraryDigest.SCRIPTS, scripts, removedScripts, manifest.scripts);
+            updateDigest(LibraryDigest.STRUCTURES, structures, removedStructures, manifest.structures);
+        }
+    }
+
+    private static void updateDigest(String kind, List<FileEntry> written, List<String> removed, Map<String, String> hashes) {
+        for (FileEntry entry : written) {
+            String hash = hashes.get(entry.id());
+            if (hash != null) {
+                digest.put(kind, entry.id(), hash);
+            }
+        }
+        for (String id : removed) {
+            digest.remove(kind, id);
+        }
+    }
+
+    /**
+     * Replace the cache with a full snapshot of the server library, pruning anything it no longer has.
+     */
+    public static synchronized void replaceAll(List<FileEntry> scripts, List<FileEntry> structures) {
+        if (manifest == null) {
+            return;
+        }
+        applyDelta(scripts, structures,
+            missingFrom(manifest.scripts.keySet(), scripts),
+            missingFrom(manifest.structures.keySet(), structures));
+    }
+
+    private static List<String> missingFrom(Set<String> cached, List<FileEntry> snapshot) {
+        Set<String> present = new HashSet<>();
+        for (FileEntry entry : snapshot) {
+            present.add(entry.id());
+        }
+        return cached.stream().filter(id -> !present.contains(id)).toList();
+    }
+
+    private static void write(Path root, String ext, List<FileEntry> entries, Map<String, String> hashes) {
+        for (FileEntry entry : entries) {
+            Path path = resolve(root, entry.id(), ext);
+            if (path == null) {
+                LOGGER.warn("Ignoring invalid cached id from server: {}", entry.id());
+                continue;
+            }
+            try {
+                Files.createDirectories(path.getParent());
+                Files.write(path, entry.bytes());
+                hashes.put(entry.id(), SyncMeta.sha256(entry.bytes()));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write cached file: {}", path, e);
+            }
+        }
+    }
+
+    private static void delete(Path root, String ext, List<String> ids, Map<String, String> hashes) {
+        for (String id : ids) {
+            hashes.remove(id);
+            Path path = resolve(root, id, ext);
+            if (path == null) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete cached file: {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Same layout as the local directories, but refuses ids that would escape the cache root.
+     */
+    @Nullable
+    static Path resolve(Path root, String id, String ext) {
+        return SceneStore.resolveId(root, id, ext);
+    }
+
+    private static Manifest readManifest(Path dir) {
+        Path path = dir.resolve(MANIFEST_FILE);
+        if (!Files.exists(path)) {
+            return new Manifest();
+        }
+        try (Reader r = Files.newBufferedReader(path)) {
+            Manifest loaded = GSON.fromJson(r, Manifest.class);
+            if (loaded == null) {
+                return new Manifest();
+            }
+            if (loaded.scripts == null) loaded.scripts = new HashMap<>();
+            if (loaded.structures == null) loaded.structures = new HashMap<>();
+            return loaded;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read server cache manifest: {}", path, e);
+            return new Manifest();
+        }
+    }
+
+    private static void saveManifest(Path dir, Manifest data) {
+        Path path = dir.resolve(MANIFEST_FILE);
+        Path tmp = dir.resolve(MANIFEST_FILE + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                GSON.toJson(data, w);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write server cache manifest: {}", path, e);
+        }
+    }
+
+    private static String sanitize(String identity) {
+        String cleaned = identity.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9._-]", "_");
+        return cleaned.length() > 32 ? cleaned.substring(0, 32) : cleaned;
+    }
+}
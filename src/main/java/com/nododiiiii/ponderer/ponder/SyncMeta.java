@@ -6,11 +6,16 @@ import com.google.gson.reflect.TypeToken;
 import com.mojang.logging.LogUtils;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.HexFormat;
 import java.util.Map;
@@ -18,14 +23,35 @@ import java.util.Map;
 /**
  * Tracks SHA-256 hashes of files at their last sync point, enabling
  * conflict detection between local and server versions.
+ * <p>
+ * The file is read once into memory; updates only mark the store dirty, and {@link #flush()}
+ * writes it back atomically. Callers flush once at the end of a pull, push reply or other batch,
+ * so syncing N files costs one parse and one write instead of N of each.
  *
  * Storage: config/ponderer/.sync_hashes.json
- * Format:  { "scripts/example.json": "abcdef...", "structures/castle.nbt": "123456..." }
+ * Format:  { "scripts/example.json": "abcdef...", "structures/castle.nbt": "123456...",
+ *           "rev/scripts/example.json": "42:abcdef..." }
  */
 public final class SyncMeta {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final String META_FILE = ".sync_hashes.json";
+    /** Prefix of the keys holding "revision:hash" pairs next to the plain hashes. */
+    private static final String REVISION_PREFIX = "rev/";
+    private static final String SCRIPTS_PREFIX = "scripts/";
+
+    private static final int STREAM_BUFFER = 64 * 1024;
+    /** MessageDigest instances are not thread-safe, and pulls hash off the main thread. */
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private static Map<String, String> entries;
+    private static boolean dirty;
 
     private SyncMeta() {
     }
@@ -34,8 +60,14 @@ public final class SyncMeta {
         return SceneStore.getSceneDir().getParent().resolve(META_FILE);
     }
 
-    public static Map<String, String> load() {
-        Path path = getMetaPath();
+    private static Map<String, String> entries() {
+        if (entries == null) {
+            entries = read(getMetaPath());
+        }
+        return entries;
+    }
+
+    private static Map<String, String> read(Path path) {
         if (!Files.exists(path)) {
             return new HashMap<>();
         }
@@ -48,57 +80,183 @@ public final class SyncMeta {
         }
     }
 
-    public static void save(Map<String, String> hashes) {
+    /**
+     * Write pending changes, if any, with a single atomic replace of the file.
+     */
+    public static synchronized void flush() {
+        FileHashCache.flush();
+        if (!dirty) {
+            return;
+        }
         Path path = getMetaPath();
+        Path tmp = path.resolveSibling(META_FILE + ".tmp");
         try {
             Files.createDirectories(path.getParent());
-            try (Writer w = Files.newBufferedWriter(path)) {
-                GSON.toJson(hashes, w);
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                GSON.toJson(entries, w);
             }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
         } catch (Exception e) {
             LOGGER.warn("Failed to write sync meta: {}", path, e);
         }
     }
 
+    /** Last synced hash of a file, or "" if it was never synced. */
+    public static synchronized String get(String key) {
+        return entries().getOrDefault(key, "");
+    }
+
     /**
      * Update the sync meta for a single key after a successful sync.
      */
     public static void recordHash(String key, byte[] content) {
-        Map<String, String> meta = load();
-        meta.put(key, sha256(content));
-        save(meta);
+        recordHashes(Map.of(key, content));
+    }
+
+    /**
+     * Update hashes for multiple keys at once. Scene content is also kept as the merge base
+     * ({@link SceneBases}) for the next conflict on that scene. Scenes are recorded in their
+     * {@link #syncForm sync form}, so a keyed local file and the inlined copy the server stores
+     * share one sync point.
+     */
+    public static void recordHashes(Map<String, byte[]> contents) {
+        Map<String, String> hashes = new HashMap<>();
+        for (var e : contents.entrySet()) {
+            byte[] content = syncForm(e.getKey(), e.getValue());
+            String hash = sha256(content);
+            hashes.put(e.getKey(), hash);
+            if (e.getKey().startsWith(SCRIPTS_PREFIX)) {
+                String sceneId = e.getKey().substring(SCRIPTS_PREFIX.length());
+                // Unchanged sync point: the stored base is already this content
+                if (!hash.equals(get(e.getKey())) || !SceneBases.has(sceneId)) {
+                    SceneBases.store(sceneId, content);
+                }
+            }
+        }
+        putHashes(hashes);
     }
 
     /**
-     * Update hashes for multiple keys at once.
+     * Store already-computed hashes for multiple keys.
      */
-    public static void recordHashes(Map<String, byte[]> entries) {
-        Map<String, String> meta = load();
-        for (var e : entries.entrySet()) {
-            meta.put(e.getKey(), sha256(e.getValue()));
+    public static synchronized void putHashes(Map<String, String> hashes) {
+        if (!hashes.isEmpty()) {
+            entries().putAll(hashes);
+            dirty = true;
         }
-        save(meta);
     }
 
-    public static String sha256(byte[] data) {
+    /**
+     * Remember server revisions together with the sync point they belong to. After a pull the
+     * sync point is the server content itself; after a push it is whatever the push reply just
+     * recorded (the local file in its sync form).
+     *
+     * @param revisions    key -> server revision
+     * @param serverHashes key -> hash of the server content at that revision
+     * @param pulled       whether the revisions come with a pull rather than a push reply
+     */
+    public static synchronized void putRevisions(Map<String, Long> revisions, Map<String, String> serverHashes, boolean pulled) {
+        Map<String, String> meta = entries();
+        for (var e : revisions.entrySet()) {
+            String serverHash = serverHashes.getOrDefault(e.getKey(), "");
+            String syncPoint = pulled ? serverHash : meta.getOrDefault(e.getKey(), serverHash);
+            meta.put(REVISION_PREFIX + e.getKey(), e.getValue() + ":" + syncPoint);
+            dirty = true;
+        }
+    }
+
+    /**
+     * The base to send with a push: "rev:N" if the recorded revision still belongs to the last
+     * synced content, otherwise the last synced hash itself.
+     */
+    public static synchronized String syncBase(String key) {
+        String lastSyncHash = get(key);
+        long revision = lastSyncHash.isEmpty() ? 0 : revisionFor(key, lastSyncHash);
+        return revision > 0 ? "rev:" + revision : lastSyncHash;
+    }
+
+    /**
+     * The recorded server revision of {@code key} if it was recorded for content hashing to
+     * {@code hash}, otherwise 0.
+     */
+    public static synchronized long revisionFor(String key, String hash) {
+        String revision = entries().get(REVISION_PREFIX + key);
+        if (revision == null) {
+            return 0;
+        }
+        int sep = revision.indexOf(':');
+        if (sep <= 0 || !revision.substring(sep + 1).equals(hash)) {
+            return 0;
+        }
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(data);
-            return HexFormat.of().formatHex(hash);
-        } catch (Exception e) {
-            return "";
+            return Long.parseLong(revision.substring(0, sep));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static String sha256(byte[] data) {
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        return HexFormat.of().formatHex(md.digest(data));
+    }
+
+    /**
+     * Stream a file through the digest without loading it whole.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest md = DIGEST.get();
+        md.reset();
+        byte[] buffer = new byte[STREAM_BUFFER];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                md.update(buffer, 0, read);
+            }
         }
+        return HexFormat.of().formatHex(md.digest());
     }
 
     /**
-     * Read a local file and compute its hash.
+     * Hash of a local file, or "" if it does not exist. Unchanged files are answered from
+     * {@link FileHashCache} without being read.
      */
     public static String hashLocalFile(Path file) {
-        if (!Files.exists(file)) return "";
+        return FileHashCache.hash(file);
+    }
+
+    /**
+     * Content as it is compared against the server: scenes have their bundle keys inlined, the
+     * way a push sends them, so extracting texts into a bundle does not count as an edit. Anything
+     * else, and scenes without keyed texts, are returned as is.
+     */
+    static byte[] syncForm(String key, byte[] content) {
+        if (!key.startsWith(SCRIPTS_PREFIX)
+            || !new String(content, StandardCharsets.UTF_8).contains(LocalizedText.KEY_FIELD)) {
+            return content;
+        }
+        DslScene scene = SceneStore.parseScene(content);
+        if (scene == null || !LangBundles.inlineKeys(scene)) {
+            return content;
+        }
+        return SceneStore.toJson(scene).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hash of a local file in its {@link #syncForm sync form}, or "" if it does not exist. Files
+     * still matching {@code lastSyncHash} byte for byte are answered from {@link FileHashCache}.
+     */
+    private static String localSyncHash(String key, Path file, String lastSyncHash) {
+        String hash = hashLocalFile(file);
+        if (hash.isEmpty() || hash.equals(lastSyncHash) || !key.startsWith(SCRIPTS_PREFIX)) {
+            return hash;
+        }
         try {
-            return sha256(Files.readAllBytes(file));
-        } catch (Exception e) {
-            return "";
+            return sha256(syncForm(key, Files.readAllBytes(file)));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read {}", file, e);
+            return hash;
         }
     }
 
@@ -109,10 +267,9 @@ public final class SyncMeta {
      * "server_modified" if only server changed, "both_modified" if conflict
      */
     public static String checkConflict(String metaKey, byte[] serverContent, Path localFile) {
-        Map<String, String> meta = load();
-        String lastSyncHash = meta.getOrDefault(metaKey, "");
+        String lastSyncHash = get(metaKey);
         String serverHash = sha256(serverContent);
-        String localHash = hashLocalFile(localFile);
+        String localHash = localSyncHash(metaKey, localFile, lastSyncHash);
 
         if (localHash.isEmpty()) {
             // Local file doesn't exist -> no conflict, just accept server
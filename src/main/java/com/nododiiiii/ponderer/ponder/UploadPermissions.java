@@ -1,61 +1,192 @@
 package com.nododiiiii.ponderer.ponder;
 
 import com.mojang.logging.LogUtils;
+import com.nododiiiii.ponderer.ServerConfig;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.storage.LevelResource;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Upload policy from world/ponderer/upload_allowlist.txt. Each line is either a player name or
+ * UUID allowed to push, or a limit:
+ * <pre>
+ * limit &lt;target&gt; &lt;key&gt; &lt;value&gt;
+ *   target: *              every non-operator, overriding the server config
+ *           player:&lt;name|uuid&gt;
+ *           namespace:&lt;namespace&gt;  everything stored under that namespace, by anyone
+ *   key:    scenes | structure_kb | uploads_per_minute
+ * </pre>
+ * A value of 0 means unlimited. Operators may always upload and are not limited.
+ * <p>
+ * The file is parsed once and re-read only when its size or modification time changes.
+ */
 public final class UploadPermissions {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final String ALLOWLIST_FILE = "upload_allowlist.txt";
+    private static final long BYTES_PER_KIB = 1024L;
+
+    private static volatile Policy policy;
 
     private UploadPermissions() {
     }
 
+    /**
+     * Limits of one target; -1 leaves a value to the next fallback, 0 is unlimited.
+     */
+    public record Limits(int scenes, long structureBytes, int uploadsPerMinute) {
+        static final Limits UNSET = new Limits(-1, -1, -1);
+
+        Limits with(String key, long value) {
+            return switch (key) {
+                case "scenes" -> new Limits((int) Math.min(value, Integer.MAX_VALUE), structureBytes, uploadsPerMinute);
+                case "structure_kb" -> new Limits(scenes, value * BYTES_PER_KIB, uploadsPerMinute);
+                case "uploads_per_minute" -> new Limits(scenes, structureBytes, (int) Math.min(value, Integer.MAX_VALUE));
+                default -> null;
+            };
+        }
+
+        Limits orElse(Limits fallback) {
+            return new Limits(
+                scenes >= 0 ? scenes : fallback.scenes,
+                structureBytes >= 0 ? structureBytes : fallback.structureBytes,
+                uploadsPerMinute >= 0 ? uploadsPerMinute : fallback.uploadsPerMinute);
+        }
+    }
+
+    private record Policy(Path path, long size, long mtime, Set<String> allowlist,
+                          Limits defaults, Map<String, Limits> players, Map<String, Limits> namespaces) {
+        static Policy empty(Path path) {
+            return new Policy(path, -1, -1, Set.of(), Limits.UNSET, Map.of(), Map.of());
+        }
+    }
+
     public static boolean canUpload(ServerPlayer player) {
         if (player.hasPermissions(2)) {
             return true;
         }
-        MinecraftServer server = player.server;
-        Path path = server.getWorldPath(LevelResource.ROOT)
-            .resolve("ponderer")
-            .resolve(ALLOWLIST_FILE);
-
-        Set<String> allowlist = loadAllowlist(path);
-        if (allowlist.isEmpty()) {
+        Policy current = policy(player.server);
+        if (current.allowlist().isEmpty()) {
             return false;
         }
+        String uuid = player.getUUID().toString().toLowerCase(Locale.ROOT);
+        String name = player.getGameProfile().getName().toLowerCase(Locale.ROOT);
+        return current.allowlist().contains(uuid) || current.allowlist().contains(name);
+    }
+
+    /**
+     * Effective limits of a non-operator: their own entry, then the file's defaults, then the server config.
+     */
+    public static Limits playerLimits(ServerPlayer player) {
+        Policy current = policy(player.server);
+        Limits own = current.players().get(player.getUUID().toString().toLowerCase(Locale.ROOT));
+        if (own == null) {
+            own = current.players().getOrDefault(player.getGameProfile().getName().toLowerCase(Locale.ROOT), Limits.UNSET);
+        }
+        Limits config = new Limits(ServerConfig.PLAYER_SCENE_LIMIT.get(),
+            ServerConfig.PLAYER_STRUCTURE_MEGABYTES.get() * BYTES_PER_KIB * BYTES_PER_KIB,
+            ServerConfig.PLAYER_UPLOADS_PER_MINUTE.get());
+        return own.orElse(current.defaults()).orElse(config);
+    }
 
-        String uuid = player.getUUID().toString().toLowerCase();
-        String name = player.getGameProfile().getName().toLowerCase();
-        return allowlist.contains(uuid) || allowlist.contains(name);
+    /**
+     * Limits on a namespace, or null if the policy sets none.
+     */
+    @Nullable
+    public static Limits namespaceLimits(MinecraftServer server, String namespace) {
+        Limits limits = policy(server).namespaces().get(namespace.toLowerCase(Locale.ROOT));
+        return limits == null ? null : limits.orElse(new Limits(0, 0, 0));
     }
 
-    private static Set<String> loadAllowlist(Path path) {
-        if (!Files.exists(path)) {
-            return Set.of();
+    private static Policy policy(MinecraftServer server) {
+        Path path = server.getWorldPath(LevelResource.ROOT).resolve("ponderer").resolve(ALLOWLIST_FILE);
+        long size;
+        long mtime;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            size = attrs.size();
+            mtime = attrs.lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            size = -1;
+            mtime = -1;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to check upload allowlist: {}", path, e);
+            Policy cached = policy;
+            return cached != null && cached.path().equals(path) ? cached : Policy.empty(path);
+        }
+
+        Policy cached = policy;
+        if (cached != null && cached.path().equals(path) && cached.size() == size && cached.mtime() == mtime) {
+            return cached;
         }
+        Policy loaded = size < 0 ? Policy.empty(path) : load(path, size, mtime);
+        policy = loaded;
+        // New limits are checked against what is actually stored
+        UploadQuotas.reconcile(server);
+        return loaded;
+    }
+
+    private static Policy load(Path path, long size, long mtime) {
+        List<String> lines;
         try {
-            List<String> lines = Files.readAllLines(path);
-            Set<String> set = new HashSet<>();
-            for (String line : lines) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
-                    continue;
-                }
-                set.add(trimmed.toLowerCase());
-            }
-            return set;
+            lines = Files.readAllLines(path);
         } catch (Exception e) {
             LOGGER.warn("Failed to read upload allowlist: {}", path, e);
-            return Set.of();
+            return new Policy(path, size, mtime, Set.of(), Limits.UNSET, Map.of(), Map.of());
+        }
+        Set<String> allowlist = new HashSet<>();
+        Limits defaults = Limits.UNSET;
+        Map<String, Limits> players = new HashMap<>();
+        Map<String, Limits> namespaces = new HashMap<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] parts = trimmed.split("\\s+");
+            if (!"limit".equalsIgnoreCase(parts[0])) {
+                allowlist.add(trimmed.toLowerCase(Locale.ROOT));
+                continue;
+            }
+
+            long value = -1;
+            if (parts.length == 4) {
+                try {
+                    value = Long.parseLong(parts[3]);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            String target = parts.length == 4 ? parts[1].toLowerCase(Locale.ROOT) : "";
+            String key = parts.length == 4 ? parts[2].toLowerCase(Locale.ROOT) : "";
+            if (value < 0 || Limits.UNSET.with(key, 0) == null) {
+                LOGGER.warn("Ignoring malformed line in {}: {}", path, trimmed);
+                continue;
+            }
+            if ("*".equals(target)) {
+                defaults = defaults.with(key, value);
+            } else if (target.startsWith("player:") && target.length() > 7) {
+                players.merge(target.substring(7), Limits.UNSET.with(key, value), (a, b) -> a.with(key, value));
+            } else if (target.startsWith("namespace:") && target.length() > 10) {
+                namespaces.merge(target.substring(10), Limits.UNSET.with(key, value), (a, b) -> a.with(key, value));
+            } else {
+                LOGGER.warn("Ignoring limit for unknown target in {}: {}", path, trimmed);
+            }
         }
+        LOGGER.debug("Loaded upload policy: {} allowed, {} player and {} namespace limits",
+            allowlist.size(), players.size(), namespaces.size());
+        return new Policy(path, size, mtime, Set.copyOf(allowlist), defaults, Map.copyOf(players), Map.copyOf(namespaces));
     }
-}
\ No newline at end of file
+}
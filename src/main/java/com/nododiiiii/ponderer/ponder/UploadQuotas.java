@@ -0,0 +1,223 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.mojang.logging.LogUtils;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+import org.slf4j.Logger;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Who uploaded each server-side file and how large it is, for per-player and per-namespace
+ * quotas, plus the recent upload times behind the upload rate limits (in memory only).
+ * <p>
+ * Storage: world/ponderer/.upload_owners.json, keyed like {@link SyncMeta}
+ * ("scripts/&lt;id&gt;", "structures/&lt;id&gt;"). The entries are checked against the files on
+ * disk when loaded and whenever the upload policy changes: files nobody uploaded (placed by an
+ * admin, or stored before quotas existed) count toward their namespace without an owner, and
+ * entries of deleted files are dropped.
+ */
+public final class UploadQuotas {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String OWNERS_FILE = ".upload_owners.json";
+
+    private static final long RATE_WINDOW_MS = 60_000L;
+    private static final String SCRIPTS = "scripts/";
+    private static final String STRUCTURES = "structures/";
+    /** Owner of files that were not uploaded through the mod. */
+    private static final String UNOWNED = "";
+
+    private static Path loadedFrom;
+    private static Map<String, Owner> owners = new HashMap<>();
+    /** Rate key ("player:&lt;uuid&gt;", "namespace:&lt;ns&gt;") -> times of recent uploads, oldest first. */
+    private static final Map<String, ArrayDeque<Long>> RECENT = new HashMap<>();
+
+    private UploadQuotas() {
+    }
+
+    private record Owner(String uuid, long size) {
+    }
+
+    /**
+     * @param bytes          all stored bytes
+     * @param scenes         number of scenes
+     * @param structureBytes bytes of structures alone
+     */
+    public record Usage(long bytes, int scenes, long structureBytes) {
+    }
+
+    /**
+     * What the player would own after storing {@code incoming} (key -> size),
+     * counting overwritten files of their own only once.
+     */
+    public static synchronized Usage projectedUsage(MinecraftServer server, UUID player, Map<String, Long> incoming) {
+        String uuid = player.toString();
+        return projected(owners(server), owner -> uuid.equals(owner.getValue().uuid()), incoming);
+    }
+
+    /**
+     * What would be stored under {@code namespace}, by anyone, after storing {@code incoming}.
+     */
+    public static synchronized Usage projectedNamespaceUsage(MinecraftServer server, String namespace, Map<String, Long> incoming) {
+        Map<String, Long> inNamespace = new HashMap<>();
+        incoming.forEach((key, size) -> {
+            if (namespace.equals(namespaceOf(key))) {
+                inNamespace.put(key, size);
+            }
+        });
+        return projected(owners(server), owner -> namespace.equals(namespaceOf(owner.getKey())), inNamespace);
+    }
+
+    private static Usage projected(Map<String, Owner> current, Predicate<Map.Entry<String, Owner>> counted,
+                                   Map<String, Long> incoming) {
+        long bytes = 0;
+        int scenes = 0;
+        long structureBytes = 0;
+        for (Map.Entry<String, Owner> e : current.entrySet()) {
+            if (counted.test(e) && !incoming.containsKey(e.getKey())) {
+                bytes += e.getValue().size();
+                if (e.getKey().startsWith(SCRIPTS)) scenes++;
+                else structureBytes += e.getValue().size();
+            }
+        }
+        for (Map.Entry<String, Long> e : incoming.entrySet()) {
+            bytes += e.getValue();
+            if (e.getKey().startsWith(SCRIPTS)) scenes++;
+            else structureBytes += e.getValue();
+        }
+        return new Usage(bytes, scenes, structureBytes);
+    }
+
+    /** Namespace of a "scripts/&lt;id&gt;" or "structures/&lt;id&gt;" key. */
+    public static String namespaceOf(String key) {
+        String id = key.startsWith(SCRIPTS) ? key.substring(SCRIPTS.length())
+            : key.startsWith(STRUCTURES) ? key.substring(STRUCTURES.length()) : key;
+        int colon = id.indexOf(':');
+        return colon < 0 ? "minecraft" : id.substring(0, colon);
+    }
+
+    /**
+     * Uploads counted under {@code rateKey} in the last minute.
+     */
+    public static synchronized int recentUploads(String rateKey) {
+        ArrayDeque<Long> times = RECENT.get(rateKey);
+        if (times == null) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - RATE_WINDOW_MS;
+        while (!times.isEmpty() && times.peekFirst() < cutoff) {
+            times.pollFirst();
+        }
+        if (times.isEmpty()) {
+            RECENT.remove(rateKey);
+            return 0;
+        }
+        return times.size();
+    }
+
+    public static synchronized void countUpload(String rateKey) {
+        recentUploads(rateKey);
+        RECENT.computeIfAbsent(rateKey, key -> new ArrayDeque<>()).addLast(System.currentTimeMillis());
+    }
+
+    /** Record the uploader of files that were just written. */
+    public static synchronized void record(MinecraftServer server, UUID player, Map<String, Long> written) {
+        Map<String, Owner> current = owners(server);
+        for (Map.Entry<String, Long> e : written.entrySet()) {
+            current.put(e.getKey(), new Owner(player.toString(), e.getValue()));
+        }
+        save(server, current);
+    }
+
+    /** Re-check the recorded files against the server's scene and structure folders. */
+    public static synchronized void reconcile(MinecraftServer server) {
+        if (ownersPath(server).equals(loadedFrom)) {
+            seed(server, owners);
+        } else {
+            owners(server);
+        }
+    }
+
+    private static Map<String, Owner> owners(MinecraftServer server) {
+        Path path = ownersPath(server);
+        if (!path.equals(loadedFrom)) {
+            owners = load(path);
+            loadedFrom = path;
+            seed(server, owners);
+        }
+        return owners;
+    }
+
+    /**
+     * Drop entries whose file is gone, take the current size of the rest, and add unowned
+     * entries for files that were never recorded.
+     */
+    private static void seed(MinecraftServer server, Map<String, Owner> current) {
+        Map<String, Long> files = new HashMap<>();
+        SceneStore.serverFileAttributes(server).forEach((key, attrs) -> files.put(key, attrs.size()));
+        int before = current.size();
+        current.keySet().retainAll(files.keySet());
+        int dropped = before - current.size();
+        int added = 0;
+        boolean changed = dropped > 0;
+        for (Map.Entry<String, Long> e : files.entrySet()) {
+            Owner owner = current.get(e.getKey());
+            if (owner == null) {
+                current.put(e.getKey(), new Owner(UNOWNED, e.getValue()));
+                added++;
+                changed = true;
+            } else if (owner.size() != e.getValue()) {
+                current.put(e.getKey(), new Owner(owner.uuid() == null ? UNOWNED : owner.uuid(), e.getValue()));
+                changed = true;
+            }
+        }
+        if (changed) {
+            LOGGER.info("Upload quotas: {} untracked file(s) counted, {} deleted file(s) dropped", added, dropped);
+            save(server, current);
+        }
+    }
+
+    private static Path ownersPath(MinecraftServer server) {
+        return server.getWorldPath(LevelResource.ROOT).resolve("ponderer").resolve(OWNERS_FILE);
+    }
+
+    private static Map<String, Owner> load(Path path) {
+        if (!Files.exists(path)) {
+            return new HashMap<>();
+        }
+        try (Reader r = Files.newBufferedReader(path)) {
+            Map<String, Owner> map = GSON.fromJson(r, new TypeToken<Map<String, Owner>>() {}.getType());
+            return map == null ? new HashMap<>() : new HashMap<>(map);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read upload owners: {}", path, e);
+            return new HashMap<>();
+        }
+    }
+
+    private static void save(MinecraftServer server, Map<String, Owner> data) {
+        Path path = ownersPath(server);
+        Path tmp = path.resolveSibling(OWNERS_FILE + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                GSON.toJson(data, w);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to write upload owners: {}", path, e);
+        }
+    }
+}
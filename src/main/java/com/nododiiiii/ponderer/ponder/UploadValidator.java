@@ -0,0 +1,332 @@
+package com.nododiiiii.ponderer.ponder;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nododiiiii.ponderer.ServerConfig;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.Tag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Server-side admission control for pushes. Everything is checked before the first byte is
+ * written, so a rejected upload never reaches disk or other clients:
+ * <ul>
+ *   <li>entry counts per upload, and every id must be stored inside the library folders</li>
+ *   <li>scene JSON: byte budget, then one strict streaming pass (depth and token limits,
+ *       id must match), then binding to {@link DslScene}</li>
+ *   <li>structures: size cap, then NBT parsing under a memory budget and a shape check</li>
+ *   <li>the uploader's storage quota and {@link UploadPermissions} limits, and the limits of
+ *       every namespace written to (operators are exempt)</li>
+ * </ul>
+ * Upload frequency is limited separately, once per push, by {@link #checkRate}.
+ */
+public final class UploadValidator {
+    private static final int MAX_JSON_DEPTH = 64;
+    /** Uncompressed NBT may be this many times larger than the compressed upload. */
+    private static final int NBT_EXPANSION = 32;
+    private static final int MAX_STRUCTURE_SIZE = 1024;
+    private static final long BYTES_PER_KIB = 1024L;
+    private static final String NAMESPACE_RATE = "namespace:";
+    /** Prefix of the rate keys live edits are counted under. */
+    private static final String EDIT_RATE = "edit:";
+
+    private UploadValidator() {
+    }
+
+    /**
+     * @param scenes     scene id -> JSON
+     * @param structures structure id -> NBT bytes
+     * @return null if the upload is acceptable, otherwise the reason to show the uploader
+     */
+    @Nullable
+    public static Component check(ServerPlayer player, Map<String, String> scenes, Map<String, byte[]> structures) {
+        int maxEntries = ServerConfig.MAX_ENTRIES_PER_UPLOAD.get();
+        if (scenes.size() > maxEntries || structures.size() > maxEntries) {
+            return Component.translatable("ponderer.upload.too_many", Math.max(scenes.size(), structures.size()), maxEntries);
+        }
+
+        long maxSceneBytes = ServerConfig.MAX_SCENE_KILOBYTES.get() * BYTES_PER_KIB;
+        for (Map.Entry<String, String> e : scenes.entrySet()) {
+            if (SceneStore.resolveServerScenePath(player.server, e.getKey()) == null) {
+                return Component.translatable("ponderer.upload.bad_path", e.getKey());
+            }
+            long size = utf8Length(e.getValue());
+            if (size > maxSceneBytes) {
+                return Component.translatable("ponderer.upload.scene_too_large", e.getKey(), kib(size), ServerConfig.MAX_SCENE_KILOBYTES.get());
+            }
+            String problem = validateSceneJson(e.getKey(), e.getValue());
+            if (problem != null) {
+                return Component.translatable("ponderer.upload.scene_invalid", e.getKey(), problem);
+            }
+        }
+
+        long maxStructureBytes = ServerConfig.MAX_STRUCTURE_KILOBYTES.get() * BYTES_PER_KIB;
+        for (Map.Entry<String, byte[]> e : structures.entrySet()) {
+            if (ResourceLocation.tryParse(e.getKey()) == null) {
+                return Component.translatable("ponderer.upload.structure_invalid", e.getKey());
+            }
+            if (SceneStore.resolveServerStructurePath(player.server, e.getKey()) == null) {
+                return Component.translatable("ponderer.upload.bad_path", e.getKey());
+            }
+            if (e.getValue().length > maxStructureBytes) {
+                return Component.translatable("ponderer.upload.structure_too_large", e.getKey(),
+                    kib(e.getValue().length), ServerConfig.MAX_STRUCTURE_KILOBYTES.get());
+            }
+            if (!isValidStructure(e.getValue(), maxStructureBytes * NBT_EXPANSION)) {
+                return Component.translatable("ponderer.upload.structure_invalid", e.getKey());
+            }
+        }
+
+        if (player.hasPermissions(2)) {
+            return null;
+        }
+        Map<String, Long> incoming = sizes(scenes, structures);
+        UploadQuotas.Usage usage = UploadQuotas.projectedUsage(player.server, player.getUUID(), incoming);
+        long quotaMb = ServerConfig.PLAYER_STORAGE_QUOTA_MEGABYTES.get();
+        if (quotaMb > 0) {
+            long quota = quotaMb * BYTES_PER_KIB * BYTES_PER_KIB;
+            if (usage.bytes() > quota) {
+                return Component.translatable("ponderer.upload.quota", kib(usage.bytes()), kib(quota));
+            }
+        }
+        UploadPermissions.Limits limits = UploadPermissions.playerLimits(player);
+        if (limits.scenes() > 0 && usage.scenes() > limits.scenes()) {
+            return Component.translatable("ponderer.upload.scene_limit", usage.scenes(), limits.scenes());
+        }
+        if (limits.structureBytes() > 0 && usage.structureBytes() > limits.structureBytes()) {
+            return Component.translatable("ponderer.upload.structure_quota", kib(usage.structureBytes()), kib(limits.structureBytes()));
+        }
+
+        for (String namespace : namespaces(incoming.keySet())) {
+            UploadPermissions.Limits nsLimits = UploadPermissions.namespaceLimits(player.server, namespace);
+            if (nsLimits == null || (nsLimits.scenes() == 0 && nsLimits.structureBytes() == 0)) {
+                continue;
+            }
+            UploadQuotas.Usage nsUsage = UploadQuotas.projectedNamespaceUsage(player.server, namespace, incoming);
+            if (nsLimits.scenes() > 0 && nsUsage.scenes() > nsLimits.scenes()) {
+                return Component.translatable("ponderer.upload.namespace_scene_limit", namespace, nsUsage.scenes(), nsLimits.scenes());
+            }
+            if (nsLimits.structureBytes() > 0 && nsUsage.structureBytes() > nsLimits.structureBytes()) {
+                return Component.translatable("ponderer.upload.namespace_structure_quota", namespace,
+                    kib(nsUsage.structureBytes()), kib(nsLimits.structureBytes()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Upload rate limits of the player and of the namespaces of {@code sceneIds}; call once per push,
+     * before {@link #check}.
+     *
+     * @return null if the push may go ahead, otherwise the reason to show the uploader
+     */
+    @Nullable
+    public static Component checkRate(ServerPlayer player, Collection<String> sceneIds) {
+        return checkRate(player, sceneIds, "", 1, "ponderer.upload.rate", "ponderer.upload.namespace_rate");
+    }
+
+    /**
+     * Rate limits for a batch of live edits: a budget of {@link ServerConfig#LIVE_EDITS_PER_UPLOAD}
+     * times the push limits, counted separately from pushes.
+     *
+     * @return null if the edits may be applied, otherwise the reason to show the editor
+     */
+    @Nullable
+    public static Component checkEditRate(ServerPlayer player, String sceneId) {
+        return checkRate(player, List.of(sceneId), EDIT_RATE, ServerConfig.LIVE_EDITS_PER_UPLOAD.get(),
+            "ponderer.upload.edit_rate", "ponderer.upload.namespace_edit_rate");
+    }
+
+    @Nullable
+    private static Component checkRate(ServerPlayer player, Collection<String> sceneIds, String prefix, int multiplier,
+                                       String playerKey, String namespaceKey) {
+        if (player.hasPermissions(2)) {
+            return null;
+        }
+        int perMinute = UploadPermissions.playerLimits(player).uploadsPerMinute() * multiplier;
+        if (perMinute > 0 && UploadQuotas.recentUploads(prefix + playerRateKey(player)) >= perMinute) {
+            return Component.translatable(playerKey, perMinute);
+        }
+        for (String namespace : namespaces(sceneIds)) {
+            UploadPermissions.Limits nsLimits = UploadPermissions.namespaceLimits(player.server, namespace);
+            int nsPerMinute = nsLimits == null ? 0 : nsLimits.uploadsPerMinute() * multiplier;
+            if (nsPerMinute > 0 && UploadQuotas.recentUploads(prefix + NAMESPACE_RATE + namespace) >= nsPerMinute) {
+                return Component.translatable(namespaceKey, namespace, nsPerMinute);
+            }
+        }
+        return null;
+    }
+
+    /** Count an accepted push against the rate limits checked by {@link #checkRate}. */
+    public static void countUpload(ServerPlayer player, Collection<String> sceneIds) {
+        count(player, sceneIds, "");
+    }
+
+    /** Count an applied batch of live edits against the limits checked by {@link #checkEditRate}. */
+    public static void countEdit(ServerPlayer player, String sceneId) {
+        count(player, List.of(sceneId), EDIT_RATE);
+    }
+
+    private static void count(ServerPlayer player, Collection<String> sceneIds, String prefix) {
+        if (player.hasPermissions(2)) {
+            return;
+        }
+        UploadQuotas.countUpload(prefix + playerRateKey(player));
+        for (String namespace : namespaces(sceneIds)) {
+            if (UploadPermissions.namespaceLimits(player.server, namespace) != null) {
+                UploadQuotas.countUpload(prefix + NAMESPACE_RATE + namespace);
+            }
+        }
+    }
+
+    private static String playerRateKey(ServerPlayer player) {
+        return "player:" + player.getUUID();
+    }
+
+    private static Set<String> namespaces(Collection<String> keys) {
+        Set<String> namespaces = new LinkedHashSet<>();
+        for (String key : keys) {
+            namespaces.add(UploadQuotas.namespaceOf(key));
+        }
+        return namespaces;
+    }
+
+    /** Charge an accepted, written upload to the player's quota. */
+    public static void recordStored(ServerPlayer player, Map<String, String> scenes, Map<String, byte[]> structures) {
+        UploadQuotas.record(player.server, player.getUUID(), sizes(scenes, structures));
+    }
+
+    private static Map<String, Long> sizes(Map<String, String> scenes, Map<String, byte[]> structures) {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        scenes.forEach((id, json) -> sizes.put("scripts/" + id, utf8Length(json)));
+        structures.forEach((id, bytes) -> sizes.put("structures/" + id, (long) bytes.length));
+        return sizes;
+    }
+
+    /**
+     * One strict pass over the JSON without building a tree.
+     *
+     * @return null if valid, otherwise a short description of the problem
+     */
+    @Nullable
+    static String validateSceneJson(String sceneId, String json) {
+        String id = null;
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return "not a JSON object";
+            }
+            int depth = 0;
+            do {
+                switch (reader.peek()) {
+                    case BEGIN_OBJECT -> {
+                        reader.beginObject();
+                        depth++;
+                    }
+                    case END_OBJECT -> {
+                        reader.endObject();
+                        depth--;
+                    }
+                    case BEGIN_ARRAY -> {
+                        reader.beginArray();
+                        depth++;
+                    }
+                    case END_ARRAY -> {
+                        reader.endArray();
+                        depth--;
+                    }
+                    case NAME -> {
+                        String name = reader.nextName();
+                        if (depth == 1 && "id".equals(name) && reader.peek() == JsonToken.STRING) {
+                            id = reader.nextString();
+                        }
+                    }
+                    case STRING, NUMBER -> reader.nextString();
+                    case BOOLEAN -> reader.nextBoolean();
+                    case NULL -> reader.nextNull();
+                    case END_DOCUMENT -> {
+                        return "truncated";
+                    }
+                }
+                if (depth > MAX_JSON_DEPTH) {
+                    return "nested too deeply";
+                }
+            } while (depth > 0);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                return "trailing data";
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return "malformed JSON";
+        }
+
+        if (id == null || id.isBlank()) {
+            return "missing id";
+        }
+        ResourceLocation declared = ResourceLocation.tryParse(id);
+        if (declared == null || !declared.equals(ResourceLocation.tryParse(sceneId))) {
+            return "id does not match " + sceneId;
+        }
+        if (SceneStore.parseScene(json.getBytes(StandardCharsets.UTF_8)) == null) {
+            return "not a scene";
+        }
+        return null;
+    }
+
+    static boolean isValidStructure(byte[] bytes, long maxHeapBytes) {
+        try {
+            CompoundTag tag = NbtIo.readCompressed(new ByteArrayInputStream(bytes), NbtAccounter.create(maxHeapBytes));
+            ListTag size = tag.getList("size", Tag.TAG_INT);
+            if (size.size() != 3) {
+                return false;
+            }
+            for (int i = 0; i < 3; i++) {
+                int extent = size.getInt(i);
+                if (extent < 0 || extent > MAX_STRUCTURE_SIZE) {
+                    return false;
+                }
+            }
+            return tag.contains("blocks", Tag.TAG_LIST)
+                && (tag.contains("palette", Tag.TAG_LIST) || tag.contains("palettes", Tag.TAG_LIST));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static long kib(long bytes) {
+        return (bytes + BYTES_PER_KIB - 1) / BYTES_PER_KIB;
+    }
+}
@@ -2,6 +2,8 @@ package com.nododiiiii.ponderer.ui;
 
 import com.nododiiiii.ponderer.ponder.DslScene;
 import com.nododiiiii.ponderer.ponder.LocalizedText;
+import com.nododiiiii.ponderer.ponder.SceneOp;
+import com.nododiiiii.ponderer.ponder.SceneOpSync;
 import com.nododiiiii.ponderer.ponder.SceneStore;
 import net.createmod.catnip.config.ui.HintableTextFieldWidget;
 import net.createmod.catnip.gui.AbstractSimiScreen;
@@ -188,6 +190,10 @@ public class SceneDescEditorScreen extends AbstractSimiScreen {
         }
 
         SceneStore.saveSceneToLocal(scene);
+        SceneOpSync.record(scene, SceneOp.setTitle(-1, scene.title));
+        if (hasMultiScene && sceneTitleField != null) {
+            SceneOpSync.record(scene, SceneOp.setTitle(sceneIndex, workingSceneTitle));
+        }
         returnToParent();
     }
 
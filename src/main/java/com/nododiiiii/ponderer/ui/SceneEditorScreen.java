@@ -4,6 +4,8 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.nododiiiii.ponderer.ponder.DslScene;
 import com.nododiiiii.ponderer.ponder.LocalizedText;
+import com.nododiiiii.ponderer.ponder.SceneOp;
+import com.nododiiiii.ponderer.ponder.SceneOpSync;
 import com.nododiiiii.ponderer.ponder.SceneStore;
 import net.createmod.catnip.gui.AbstractSimiScreen;
 import net.createmod.catnip.gui.ScreenOpener;
@@ -81,6 +83,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
         super(Component.translatable("ponderer.ui.scene_editor"));
         this.scene = scene;
         this.sceneIndex = sceneIndex;
+        SceneOpSync.attach(scene);
     }
 
     /* -------- Clipboard helpers -------- */
@@ -518,7 +521,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
         List<DslScene.DslStep> restored = undoManager.undo(getSteps());
         if (restored != null) {
             setMutableSteps(restored);
-            saveToFile();
+            saveToFile(SceneOp.setSteps(opSegment(), restored));
             this.init(Minecraft.getInstance(), this.width, this.height);
         }
     }
@@ -527,7 +530,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
         List<DslScene.DslStep> restored = undoManager.redo(getSteps());
         if (restored != null) {
             setMutableSteps(restored);
-            saveToFile();
+            saveToFile(SceneOp.setSteps(opSegment(), restored));
             this.init(Minecraft.getInstance(), this.width, this.height);
         }
     }
@@ -585,6 +588,15 @@ public class SceneEditorScreen extends AbstractSimiScreen {
         return scene.steps;
     }
 
+    /** Which list {@link #getMutableSteps()} edits, as addressed by {@link SceneOp}. */
+    private int opSegment() {
+        if (scene.scenes != null && !scene.scenes.isEmpty()
+                && sceneIndex >= 0 && sceneIndex < scene.scenes.size()) {
+            return sceneIndex;
+        }
+        return -1;
+    }
+
     private List<DslScene.SceneSegment> getScenes() {
         if (scene.scenes != null && !scene.scenes.isEmpty()) {
             return scene.scenes;
@@ -689,12 +701,9 @@ public class SceneEditorScreen extends AbstractSimiScreen {
     public void insertStepAndSave(int afterIndex, DslScene.DslStep newStep) {
         undoManager.saveState(getSteps());
         List<DslScene.DslStep> steps = getMutableSteps();
-        if (afterIndex >= 0 && afterIndex < steps.size()) {
-            steps.add(afterIndex + 1, newStep);
-        } else {
-            steps.add(newStep);
-        }
-        saveToFile();
+        int index = afterIndex >= 0 && afterIndex < steps.size() ? afterIndex + 1 : steps.size();
+        steps.add(index, newStep);
+        saveToFile(SceneOp.insert(opSegment(), index, newStep));
     }
 
     /** Replace an existing step at the given index and save. */
@@ -703,7 +712,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
         if (index >= 0 && index < steps.size()) {
             undoManager.saveState(getSteps());
             steps.set(index, newStep);
-            saveToFile();
+            saveToFile(SceneOp.replace(opSegment(), index, newStep));
         }
     }
 
@@ -714,7 +723,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
             undoManager.saveState(getSteps());
             steps.remove(index);
             clampScrollOffset(steps.size());
-            saveToFile();
+            saveToFile(SceneOp.remove(opSegment(), index));
             this.init(Minecraft.getInstance(), this.width, this.height);
         }
     }
@@ -727,7 +736,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
             DslScene.DslStep temp = steps.get(index);
             steps.set(index, steps.get(index - 1));
             steps.set(index - 1, temp);
-            saveToFile();
+            saveToFile(SceneOp.move(opSegment(), index, index - 1));
             this.init(Minecraft.getInstance(), this.width, this.height);
         }
     }
@@ -740,7 +749,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
             DslScene.DslStep temp = steps.get(index);
             steps.set(index, steps.get(index + 1));
             steps.set(index + 1, temp);
-            saveToFile();
+            saveToFile(SceneOp.move(opSegment(), index, index + 1));
             this.init(Minecraft.getInstance(), this.width, this.height);
         }
     }
@@ -752,6 +761,7 @@ public class SceneEditorScreen extends AbstractSimiScreen {
     private void insertSplitStep() {
         undoManager.saveState(getSteps());
         int newSceneIndex = -1;
+        SceneOp op;
 
         if (scene.scenes != null && !scene.scenes.isEmpty()
                 && sceneIndex >= 0 && sceneIndex < scene.scenes.size()) {
@@ -764,13 +774,16 @@ public class SceneEditorScreen extends AbstractSimiScreen {
             }
             scene.scenes.add(sceneIndex + 1, newScene);
             newSceneIndex = sceneIndex + 1;
+            op = SceneOp.addSegment(newSceneIndex, newScene);
         } else {
             // Flat steps mode: insert a next_scene marker
             DslScene.DslStep ns = new DslScene.DslStep();
             ns.type = "next_scene";
-            getMutableSteps().add(ns);
+            List<DslScene.DslStep> steps = getMutableSteps();
+            op = SceneOp.insert(opSegment(), steps.size(), ns);
+            steps.add(ns);
         }
-        saveToFile();
+        saveToFile(op);
 
         if (newSceneIndex >= 0) {
             // Switch to the new scene and open description editor
@@ -782,9 +795,20 @@ public class SceneEditorScreen extends AbstractSimiScreen {
         }
     }
 
-    /** Save the scene JSON to file without reloading Ponder. */
-    private void saveToFile() {
+    /** Save the scene JSON to file without reloading Ponder, then hand the change to live sync. */
+    private void saveToFile(SceneOp op) {
         SceneStore.saveSceneToLocal(scene);
+        SceneOpSync.record(scene, op);
+    }
+
+    /** Redraw after another author's edit was merged into the scene being edited. */
+    public void refreshAfterRemoteEdit(String sceneId) {
+        if (!sceneId.equals(scene.id)) {
+            return;
+        }
+        sceneIndex = Math.max(0, Math.min(sceneIndex, getSceneCount() - 1));
+        clampScrollOffset(getSteps().size());
+        this.init(Minecraft.getInstance(), this.width, this.height);
     }
 
     /**
@@ -838,11 +862,12 @@ public class SceneEditorScreen extends AbstractSimiScreen {
                 scene.scenes = new ArrayList<>(scene.scenes);
             }
             scene.scenes.remove(sceneIndex);
+            SceneOp op = SceneOp.deleteSegment(sceneIndex);
             // Adjust index
             if (sceneIndex >= scene.scenes.size()) {
                 sceneIndex = scene.scenes.size() - 1;
             }
-            saveToFile();
+            saveToFile(op);
             scrollOffset = 0;
             Minecraft mc = Minecraft.getInstance();
             mc.setScreen(this);